@@ -89,7 +89,8 @@ CREATE TABLE cs_conversation (
   KEY idx_agent_id (agent_id),
   KEY idx_status (status),
   KEY idx_start_time (start_time),
-  KEY idx_channel (channel)
+  KEY idx_channel (channel),
+  KEY idx_status_end_time (status, end_time)
 ) ENGINE=InnoDB AUTO_INCREMENT=100000 COMMENT = '会话管理表';
 
 -- ----------------------------
@@ -121,13 +122,85 @@ CREATE TABLE cs_message (
   reserved1         VARCHAR(100)    DEFAULT ''                 COMMENT '预留字段1',
   reserved2         VARCHAR(100)    DEFAULT ''                 COMMENT '预留字段2',
   ext_field1        TEXT            DEFAULT NULL               COMMENT '扩展字段1',
+  shard_slot        SMALLINT        AS (conversation_id % 1024) VIRTUAL COMMENT '分片槽位',
   PRIMARY KEY (message_id),
   KEY idx_conversation_id (conversation_id),
   KEY idx_sender_type_id (sender_type, sender_id),
   KEY idx_send_time (send_time),
-  KEY idx_message_type (message_type)
+  KEY idx_message_type (message_type),
+  KEY idx_shard_slot (shard_slot, message_id)
 ) ENGINE=InnoDB AUTO_INCREMENT=1000000 COMMENT = '消息记录表';
 
+-- 消息分片槽位表（未登记的槽位在 cs_message）
+DROP TABLE IF EXISTS cs_message_shard_slot;
+CREATE TABLE cs_message_shard_slot (
+  slot_id           INT(11)         NOT NULL                   COMMENT '槽位号（conversation_id % 1024）',
+  table_name        VARCHAR(64)     NOT NULL                   COMMENT '所在物理表',
+  target_table      VARCHAR(64)     DEFAULT NULL               COMMENT '迁移目标表',
+  update_time       DATETIME        DEFAULT NULL               COMMENT '更新时间',
+  PRIMARY KEY (slot_id)
+) ENGINE=InnoDB COMMENT = '消息分片槽位表';
+
+-- ID号段表（消息ID = 序号 << 10 | 槽位号）
+DROP TABLE IF EXISTS cs_id_segment;
+CREATE TABLE cs_id_segment (
+  biz_tag           VARCHAR(64)     NOT NULL                   COMMENT '业务标识',
+  max_id            BIGINT(20)      NOT NULL                   COMMENT '已分配的最大序号',
+  update_time       DATETIME        DEFAULT NULL               COMMENT '更新时间',
+  PRIMARY KEY (biz_tag)
+) ENGINE=InnoDB COMMENT = 'ID号段表';
+INSERT INTO cs_id_segment VALUES ('cs_message', 1073741823, NULL);
+
+-- 消息归档索引表（每个会话每月一个归档文件）
+DROP TABLE IF EXISTS cs_message_archive;
+CREATE TABLE cs_message_archive (
+  archive_id        BIGINT(20)      NOT NULL AUTO_INCREMENT    COMMENT '归档ID',
+  conversation_id   BIGINT(20)      NOT NULL                   COMMENT '会话ID',
+  archive_month     CHAR(6)         NOT NULL                   COMMENT '归档月份（yyyyMM）',
+  file_path         VARCHAR(255)    NOT NULL                   COMMENT '归档文件相对路径',
+  message_count     INT(11)         NOT NULL DEFAULT 0         COMMENT '累计归档消息数',
+  first_send_time   DATETIME        DEFAULT NULL               COMMENT '最早发送时间',
+  last_send_time    DATETIME        DEFAULT NULL               COMMENT '最晚发送时间',
+  checksum          CHAR(64)        NOT NULL                   COMMENT '文件SHA-256',
+  create_time       DATETIME        DEFAULT NULL               COMMENT '创建时间',
+  update_time       DATETIME        DEFAULT NULL               COMMENT '更新时间',
+  PRIMARY KEY (archive_id),
+  UNIQUE KEY uk_conversation_month (conversation_id, archive_month)
+) ENGINE=InnoDB COMMENT = '消息归档索引表';
+
+-- 会话消息压缩记录表（已结束会话的全部消息压缩为一条记录）
+DROP TABLE IF EXISTS cs_message_transcript;
+CREATE TABLE cs_message_transcript (
+  conversation_id   BIGINT(20)      NOT NULL                   COMMENT '会话ID',
+  shard_slot        SMALLINT        AS (conversation_id % 1024) VIRTUAL COMMENT '分片槽位',
+  message_count     INT(11)         NOT NULL DEFAULT 0         COMMENT '未删除的消息数量',
+  total_count       INT(11)         NOT NULL DEFAULT 0         COMMENT '全部消息数量（含已删除）',
+  min_message_id    BIGINT(20)      DEFAULT NULL               COMMENT '最小消息ID',
+  max_message_id    BIGINT(20)      DEFAULT NULL               COMMENT '最大消息ID',
+  first_send_time   DATETIME        DEFAULT NULL               COMMENT '最早发送时间',
+  last_send_time    DATETIME        DEFAULT NULL               COMMENT '最晚发送时间',
+  content           LONGBLOB        NOT NULL                   COMMENT 'gzip压缩的NDJSON消息记录',
+  line_index        LONGBLOB        NOT NULL                   COMMENT '行索引（消息ID、行偏移、删除标志）',
+  create_time       DATETIME        DEFAULT NULL               COMMENT '创建时间',
+  PRIMARY KEY (conversation_id),
+  KEY idx_shard_slot (shard_slot, min_message_id),
+  KEY idx_min_message_id (min_message_id),
+  KEY idx_last_send_time (last_send_time)
+) ENGINE=InnoDB COMMENT = '会话消息压缩记录表';
+
+-- 聊天文件内容存储表（按内容SHA-256去重，引用计数为0且超过保留时间后删除）
+DROP TABLE IF EXISTS cs_file_blob;
+CREATE TABLE cs_file_blob (
+  hash              CHAR(64)        NOT NULL                   COMMENT '文件内容SHA-256',
+  file_ext          VARCHAR(20)     NOT NULL DEFAULT ''        COMMENT '文件扩展名',
+  file_size         BIGINT(20)      NOT NULL DEFAULT 0         COMMENT '文件大小（字节）',
+  ref_count         INT(11)         NOT NULL DEFAULT 0         COMMENT '引用该文件的消息数量',
+  create_time       DATETIME        DEFAULT NULL               COMMENT '创建时间',
+  update_time       DATETIME        DEFAULT NULL               COMMENT '最后上传或引用变化时间',
+  PRIMARY KEY (hash),
+  KEY idx_ref_count_update_time (ref_count, update_time)
+) ENGINE=InnoDB COMMENT = '聊天文件内容存储表';
+
 -- ----------------------------
 -- 4、工单系统表
 -- ----------------------------
@@ -147,6 +220,7 @@ CREATE TABLE cs_ticket (
   source            VARCHAR(20)     DEFAULT ''                 COMMENT '来源渠道',
   tags              VARCHAR(500)    DEFAULT ''                 COMMENT '标签（JSON格式）',
   due_time          DATETIME        DEFAULT NULL               COMMENT '截止时间',
+  sla_time          DATETIME        DEFAULT NULL               COMMENT '下次SLA检查时间',
   resolve_time      DATETIME        DEFAULT NULL               COMMENT '解决时间',
   close_time        DATETIME        DEFAULT NULL               COMMENT '关闭时间',
   satisfaction      CHAR(1)         DEFAULT NULL               COMMENT '满意度（1-5分）',
@@ -168,7 +242,8 @@ CREATE TABLE cs_ticket (
   KEY idx_assigned_to (assigned_to),
   KEY idx_status (status),
   KEY idx_priority (priority),
-  KEY idx_create_time (create_time)
+  KEY idx_create_time (create_time),
+  KEY idx_sla_time (sla_time)
 ) ENGINE=InnoDB AUTO_INCREMENT=100000 COMMENT = '工单系统表';
 
 -- ----------------------------
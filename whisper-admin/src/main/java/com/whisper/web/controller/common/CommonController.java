@@ -1,5 +1,6 @@
 package com.whisper.web.controller.common;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import javax.servlet.http.HttpServletRequest;
@@ -9,16 +10,20 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 import com.whisper.common.config.RuoYiConfig;
 import com.whisper.common.core.domain.AjaxResult;
+import com.whisper.common.core.domain.model.ExportJob;
 import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.file.FileDownloadUtils;
 import com.whisper.common.utils.file.FileUploadUtils;
 import com.whisper.common.utils.file.FileUtils;
 import com.whisper.framework.config.ServerConfig;
+import com.whisper.framework.manager.ExportManager;
 
 /**
  * 通用请求处理
@@ -34,10 +39,13 @@ public class CommonController
     @Autowired
     private ServerConfig serverConfig;
 
+    @Autowired
+    private ExportManager exportManager;
+
     private static final String FILE_DELIMETER = ",";
 
     /**
-     * 通用下载请求
+     * 通用下载请求，支持断点续传，下载后删除的文件不支持
      * 
      * @param fileName 文件名称
      * @param delete 是否删除
@@ -51,15 +59,19 @@ public class CommonController
             {
                 throw new Exception(StringUtils.format("文件名称({})非法，不允许下载。 ", fileName));
             }
+            File file = exportManager.getDownloadFile(fileName);
+            if (file == null)
+            {
+                throw new Exception(StringUtils.format("没有权限下载文件({})", fileName));
+            }
             String realFileName = System.currentTimeMillis() + fileName.substring(fileName.indexOf("_") + 1);
-            String filePath = RuoYiConfig.getDownloadPath() + fileName;
 
             response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
             FileUtils.setAttachmentResponseHeader(response, realFileName);
-            FileUtils.writeBytes(filePath, response.getOutputStream());
-            if (delete)
+            FileDownloadUtils.writeFile(request, response, file, !Boolean.TRUE.equals(delete));
+            if (Boolean.TRUE.equals(delete))
             {
-                FileUtils.deleteFile(filePath);
+                FileUtils.deleteFile(file.getPath());
             }
         }
         catch (Exception e)
@@ -68,6 +80,31 @@ public class CommonController
         }
     }
 
+    /**
+     * 查询当前用户的导出任务
+     */
+    @GetMapping("/export/list")
+    public AjaxResult exportJobs()
+    {
+        return AjaxResult.success(exportManager.listJobs());
+    }
+
+    /**
+     * 查询导出任务进度
+     * 
+     * @param jobId 任务ID
+     */
+    @GetMapping("/export/{jobId}")
+    public AjaxResult exportJob(@PathVariable String jobId)
+    {
+        ExportJob job = exportManager.getJob(jobId);
+        if (job == null)
+        {
+            return AjaxResult.error("导出任务不存在或已过期");
+        }
+        return AjaxResult.success(job);
+    }
+
     /**
      * 通用上传请求（单个）
      */
@@ -132,7 +169,7 @@ public class CommonController
     }
 
     /**
-     * 本地资源通用下载
+     * 本地资源通用下载，支持断点续传
      */
     @GetMapping("/download/resource")
     public void resourceDownload(String resource, HttpServletRequest request, HttpServletResponse response)
@@ -152,7 +189,7 @@ public class CommonController
             String downloadName = StringUtils.substringAfterLast(downloadPath, "/");
             response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
             FileUtils.setAttachmentResponseHeader(response, downloadName);
-            FileUtils.writeBytes(downloadPath, response.getOutputStream());
+            FileDownloadUtils.writeFile(request, response, new File(downloadPath));
         }
         catch (Exception e)
         {
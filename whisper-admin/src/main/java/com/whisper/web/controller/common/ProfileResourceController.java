@@ -0,0 +1,72 @@
+package com.whisper.web.controller.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.HandlerMapping;
+import com.whisper.common.config.RuoYiConfig;
+import com.whisper.common.constant.Constants;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.file.FileDownloadUtils;
+
+/**
+ * 本地上传文件访问（/profile/**）
+ *
+ * 上传文件名带有唯一序号，内容不会变化，响应设置长期缓存，并支持条件请求和断点续传。
+ * 无需登录即可访问，只开放上传文件、头像、导入图片和聊天文件目录，其他目录及聊天文件的分片临时目录返回404。
+ *
+ * @author ruoyi
+ */
+@RestController
+public class ProfileResourceController
+{
+    /** 浏览器缓存天数 */
+    private static final int CACHE_DAYS = 30;
+
+    private static final String CACHE_CONTROL = CacheControl.maxAge(CACHE_DAYS, TimeUnit.DAYS).getHeaderValue();
+
+    /** 开放访问的目录 */
+    private static final String[] PUBLIC_DIRS = { "upload/", "avatar/", "import/", "blob/" };
+
+    /** 聊天文件分片上传的临时目录 */
+    private static final String BLOB_TEMP_DIR = "blob/tmp/";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * 访问本地资源
+     */
+    @GetMapping(Constants.RESOURCE_PREFIX + "/**")
+    public void resource(HttpServletRequest request, HttpServletResponse response) throws IOException
+    {
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String resource = pathMatcher.extractPathWithinPattern(pattern, path);
+        File base = new File(RuoYiConfig.getProfile()).getCanonicalFile();
+        File file = new File(base, resource).getCanonicalFile();
+        // 禁止访问资源目录之外以及未开放目录中的文件
+        if (StringUtils.isEmpty(resource) || !file.toPath().startsWith(base.toPath()) || !isPublic(base, file) || !file.isFile())
+        {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String contentType = request.getServletContext().getMimeType(file.getName());
+        response.setContentType(StringUtils.defaultIfEmpty(contentType, MediaType.APPLICATION_OCTET_STREAM_VALUE));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        FileDownloadUtils.writeFile(request, response, file);
+    }
+
+    private static boolean isPublic(File base, File file)
+    {
+        String path = base.toPath().relativize(file.toPath()).toString().replace('\\', '/');
+        return StringUtils.startsWithAny(path, PUBLIC_DIRS) && !path.startsWith(BLOB_TEMP_DIR);
+    }
+}
@@ -6,20 +6,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 import java.util.TreeSet;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import com.alibaba.fastjson2.JSON;
 import com.whisper.common.constant.CacheConstants;
 import com.whisper.common.core.domain.AjaxResult;
+import com.whisper.common.core.redis.RedisCache;
 import com.whisper.common.utils.StringUtils;
+import com.whisper.framework.web.service.TokenService;
 import com.whisper.system.domain.SysCache;
 
 /**
@@ -34,6 +37,12 @@ public class CacheController
     @Autowired
     private RedisTemplate<String, String> redisTemplate;
 
+    @Autowired
+    private RedisCache redisCache;
+
+    @Autowired
+    private TokenService tokenService;
+
     private final static List<SysCache> caches = new ArrayList<SysCache>();
     {
         caches.add(new SysCache(CacheConstants.LOGIN_TOKEN_KEY, "用户信息"));
@@ -80,7 +89,7 @@ public class CacheController
     @GetMapping("/getKeys/{cacheName}")
     public AjaxResult getCacheKeys(@PathVariable String cacheName)
     {
-        Set<String> cacheKeys = redisTemplate.keys(cacheName + "*");
+        Collection<String> cacheKeys = redisCache.keys(cacheName + "*");
         return AjaxResult.success(new TreeSet<>(cacheKeys));
     }
 
@@ -88,7 +97,17 @@ public class CacheController
     @GetMapping("/getValue/{cacheName}/{cacheKey}")
     public AjaxResult getCacheValue(@PathVariable String cacheName, @PathVariable String cacheKey)
     {
-        String cacheValue = redisTemplate.opsForValue().get(cacheKey);
+        String cacheValue;
+        try
+        {
+            // 值可能为JSONB或LZ4压缩格式，按缓存编码解码后再展示
+            Object value = redisCache.getCacheObject(cacheKey);
+            cacheValue = value == null || value instanceof String ? (String) value : JSON.toJSONString(value);
+        }
+        catch (SerializationException e)
+        {
+            cacheValue = redisTemplate.opsForValue().get(cacheKey);
+        }
         SysCache sysCache = new SysCache(cacheName, cacheKey, cacheValue);
         return AjaxResult.success(sysCache);
     }
@@ -97,8 +116,12 @@ public class CacheController
     @DeleteMapping("/clearCacheName/{cacheName}")
     public AjaxResult clearCacheName(@PathVariable String cacheName)
     {
-        Collection<String> cacheKeys = redisTemplate.keys(cacheName + "*");
-        redisTemplate.delete(cacheKeys);
+        redisCache.deleteByPattern(cacheName + "*");
+        if (CacheConstants.LOGIN_TOKEN_KEY.equals(cacheName))
+        {
+            redisCache.deleteObject(CacheConstants.LOGIN_TOKEN_INDEX_KEY);
+            tokenService.evictLoginUser(TokenService.EVICT_ALL);
+        }
         return AjaxResult.success();
     }
 
@@ -107,6 +130,10 @@ public class CacheController
     public AjaxResult clearCacheKey(@PathVariable String cacheKey)
     {
         redisTemplate.delete(cacheKey);
+        if (cacheKey.startsWith(CacheConstants.LOGIN_TOKEN_KEY))
+        {
+            tokenService.evictLoginUser(StringUtils.substringAfter(cacheKey, CacheConstants.LOGIN_TOKEN_KEY));
+        }
         return AjaxResult.success();
     }
 
@@ -114,8 +141,8 @@ public class CacheController
     @DeleteMapping("/clearCacheAll")
     public AjaxResult clearCacheAll()
     {
-        Collection<String> cacheKeys = redisTemplate.keys("*");
-        redisTemplate.delete(cacheKeys);
+        redisCache.deleteByPattern("*");
+        tokenService.evictLoginUser(TokenService.EVICT_ALL);
         return AjaxResult.success();
     }
 }
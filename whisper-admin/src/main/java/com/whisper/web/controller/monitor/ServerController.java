@@ -1,10 +1,16 @@
 package com.whisper.web.controller.monitor;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import com.whisper.common.core.domain.AjaxResult;
+import com.whisper.framework.aspectj.DataScopeAspect;
+import com.whisper.framework.aspectj.RateLimiterAspect;
+import com.whisper.framework.datasource.DynamicDataSource;
+import com.whisper.framework.datasource.ReplicaRouter;
+import com.whisper.framework.manager.LogBatchManager;
 import com.whisper.framework.web.domain.Server;
 
 /**
@@ -16,6 +22,18 @@ import com.whisper.framework.web.domain.Server;
 @RequestMapping("/monitor/server")
 public class ServerController
 {
+    @Autowired
+    private RateLimiterAspect rateLimiterAspect;
+
+    @Autowired
+    private LogBatchManager logBatchManager;
+
+    @Autowired
+    private DataScopeAspect dataScopeAspect;
+
+    @Autowired
+    private DynamicDataSource dynamicDataSource;
+
     @PreAuthorize("@ss.hasPermi('monitor:server:list')")
     @GetMapping()
     public AjaxResult getInfo() throws Exception
@@ -24,4 +42,49 @@ public class ServerController
         server.copyTo();
         return AjaxResult.success(server);
     }
+
+    /**
+     * 本节点限流统计
+     */
+    @PreAuthorize("@ss.hasPermi('monitor:server:list')")
+    @GetMapping("/rateLimiter")
+    public AjaxResult rateLimiter()
+    {
+        return AjaxResult.success(rateLimiterAspect.getStatistics());
+    }
+
+    /**
+     * 本节点日志写入队列统计
+     */
+    @PreAuthorize("@ss.hasPermi('monitor:server:list')")
+    @GetMapping("/logQueue")
+    public AjaxResult logQueue()
+    {
+        return AjaxResult.success(logBatchManager.getStatistics());
+    }
+
+    /**
+     * 本节点数据权限SQL缓存统计
+     */
+    @PreAuthorize("@ss.hasPermi('monitor:server:list')")
+    @GetMapping("/dataScope")
+    public AjaxResult dataScope()
+    {
+        return AjaxResult.success(dataScopeAspect.getStatistics());
+    }
+
+    /**
+     * 本节点读写分离路由统计
+     */
+    @PreAuthorize("@ss.hasPermi('monitor:server:list')")
+    @GetMapping("/dataSource")
+    public AjaxResult dataSource()
+    {
+        ReplicaRouter replicaRouter = dynamicDataSource.getReplicaRouter();
+        if (replicaRouter == null)
+        {
+            return AjaxResult.error("未开启读写分离");
+        }
+        return AjaxResult.success(replicaRouter.getStatistics());
+    }
 }
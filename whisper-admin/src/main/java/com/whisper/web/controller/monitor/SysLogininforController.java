@@ -1,7 +1,6 @@
 package com.whisper.web.controller.monitor;
 
 import java.util.List;
-import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -16,6 +15,7 @@ import com.whisper.common.core.domain.AjaxResult;
 import com.whisper.common.core.page.TableDataInfo;
 import com.whisper.common.enums.BusinessType;
 import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.framework.manager.ExportManager;
 import com.whisper.framework.web.service.SysPasswordService;
 import com.whisper.system.domain.SysLogininfor;
 import com.whisper.system.service.ISysLogininforService;
@@ -32,6 +32,9 @@ public class SysLogininforController extends BaseController
     @Autowired
     private ISysLogininforService logininforService;
 
+    @Autowired
+    private ExportManager exportManager;
+
     @Autowired
     private SysPasswordService passwordService;
 
@@ -47,11 +50,10 @@ public class SysLogininforController extends BaseController
     @Log(title = "登录日志", businessType = BusinessType.EXPORT)
     @PreAuthorize("@ss.hasPermi('monitor:logininfor:export')")
     @PostMapping("/export")
-    public void export(HttpServletResponse response, SysLogininfor logininfor)
+    public AjaxResult export(SysLogininfor logininfor)
     {
-        List<SysLogininfor> list = logininforService.selectLogininforList(logininfor);
         ExcelUtil<SysLogininfor> util = new ExcelUtil<SysLogininfor>(SysLogininfor.class);
-        util.exportExcel(response, list, "登录日志");
+        return success(exportManager.submit(util, "登录日志", rows -> logininforService.selectLogininforList(logininfor).forEach(rows)));
     }
 
     @PreAuthorize("@ss.hasPermi('monitor:logininfor:remove')")
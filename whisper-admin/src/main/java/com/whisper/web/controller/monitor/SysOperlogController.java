@@ -1,7 +1,6 @@
 package com.whisper.web.controller.monitor;
 
 import java.util.List;
-import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -16,6 +15,7 @@ import com.whisper.common.core.domain.AjaxResult;
 import com.whisper.common.core.page.TableDataInfo;
 import com.whisper.common.enums.BusinessType;
 import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.framework.manager.ExportManager;
 import com.whisper.system.domain.SysOperLog;
 import com.whisper.system.service.ISysOperLogService;
 
@@ -31,6 +31,9 @@ public class SysOperlogController extends BaseController
     @Autowired
     private ISysOperLogService operLogService;
 
+    @Autowired
+    private ExportManager exportManager;
+
     @PreAuthorize("@ss.hasPermi('monitor:operlog:list')")
     @GetMapping("/list")
     public TableDataInfo list(SysOperLog operLog)
@@ -43,11 +46,10 @@ public class SysOperlogController extends BaseController
     @Log(title = "操作日志", businessType = BusinessType.EXPORT)
     @PreAuthorize("@ss.hasPermi('monitor:operlog:export')")
     @PostMapping("/export")
-    public void export(HttpServletResponse response, SysOperLog operLog)
+    public AjaxResult export(SysOperLog operLog)
     {
-        List<SysOperLog> list = operLogService.selectOperLogList(operLog);
         ExcelUtil<SysOperLog> util = new ExcelUtil<SysOperLog>(SysOperLog.class);
-        util.exportExcel(response, list, "操作日志");
+        return success(exportManager.submit(util, "操作日志", rows -> operLogService.selectOperLogList(operLog).forEach(rows)));
     }
 
     @Log(title = "操作日志", businessType = BusinessType.DELETE)
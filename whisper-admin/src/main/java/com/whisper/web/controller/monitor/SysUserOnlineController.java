@@ -1,7 +1,6 @@
 package com.whisper.web.controller.monitor;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,14 +11,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import com.whisper.common.annotation.Log;
-import com.whisper.common.constant.CacheConstants;
 import com.whisper.common.core.controller.BaseController;
 import com.whisper.common.core.domain.AjaxResult;
 import com.whisper.common.core.domain.model.LoginUser;
+import com.whisper.common.core.page.PageDomain;
 import com.whisper.common.core.page.TableDataInfo;
-import com.whisper.common.core.redis.RedisCache;
+import com.whisper.common.core.page.TableSupport;
 import com.whisper.common.enums.BusinessType;
+import com.whisper.common.utils.ServletUtils;
 import com.whisper.common.utils.StringUtils;
+import com.whisper.framework.web.service.TokenService;
 import com.whisper.system.domain.SysUserOnline;
 import com.whisper.system.service.ISysUserOnlineService;
 
@@ -36,37 +37,77 @@ public class SysUserOnlineController extends BaseController
     private ISysUserOnlineService userOnlineService;
 
     @Autowired
-    private RedisCache redisCache;
+    private TokenService tokenService;
 
+    /**
+     * 在线用户列表，按登录时间倒序；传入分页参数且无筛选条件时只读取当前页，
+     * 有筛选条件时分批遍历在线会话索引，只保留当前页的结果
+     */
     @PreAuthorize("@ss.hasPermi('monitor:online:list')")
     @GetMapping("/list")
     public TableDataInfo list(String ipaddr, String userName)
     {
-        Collection<String> keys = redisCache.keys(CacheConstants.LOGIN_TOKEN_KEY + "*");
-        List<SysUserOnline> userOnlineList = new ArrayList<SysUserOnline>();
-        for (String key : keys)
+        boolean paged = StringUtils.isNotEmpty(ServletUtils.getParameter(TableSupport.PAGE_SIZE));
+        PageDomain pageDomain = TableSupport.buildPageRequest();
+        long offset = (long) (Math.max(pageDomain.getPageNum(), 1) - 1) * pageDomain.getPageSize();
+        if (StringUtils.isEmpty(ipaddr) && StringUtils.isEmpty(userName))
         {
-            LoginUser user = redisCache.getCacheObject(key);
-            if (StringUtils.isNotEmpty(ipaddr) && StringUtils.isNotEmpty(userName))
-            {
-                userOnlineList.add(userOnlineService.selectOnlineByInfo(ipaddr, userName, user));
-            }
-            else if (StringUtils.isNotEmpty(ipaddr))
+            List<LoginUser> users = paged ? tokenService.selectOnlineUsers(offset, pageDomain.getPageSize())
+                    : tokenService.selectOnlineUsers(0, -1);
+            List<SysUserOnline> userOnlineList = new ArrayList<SysUserOnline>(users.size());
+            for (LoginUser user : users)
             {
-                userOnlineList.add(userOnlineService.selectOnlineByIpaddr(ipaddr, user));
+                userOnlineList.add(userOnlineService.loginUserToUserOnline(user));
             }
-            else if (StringUtils.isNotEmpty(userName) && StringUtils.isNotNull(user.getUser()))
+            userOnlineList.removeAll(Collections.singleton(null));
+            TableDataInfo rspData = getDataTable(userOnlineList);
+            if (paged)
             {
-                userOnlineList.add(userOnlineService.selectOnlineByUserName(userName, user));
+                rspData.setTotal(tokenService.countOnlineUsers());
             }
-            else
+            return rspData;
+        }
+        long limit = offset + pageDomain.getPageSize();
+        List<SysUserOnline> userOnlineList = new ArrayList<SysUserOnline>();
+        long[] matched = new long[1];
+        tokenService.scanOnlineUsers(users -> {
+            for (LoginUser user : users)
             {
-                userOnlineList.add(userOnlineService.loginUserToUserOnline(user));
+                SysUserOnline userOnline = selectOnline(ipaddr, userName, user);
+                if (userOnline == null)
+                {
+                    continue;
+                }
+                long index = matched[0]++;
+                if (!paged || (index >= offset && index < limit))
+                {
+                    userOnlineList.add(userOnline);
+                }
             }
+        });
+        TableDataInfo rspData = getDataTable(userOnlineList);
+        rspData.setTotal(matched[0]);
+        return rspData;
+    }
+
+    /**
+     * 按筛选条件转换在线用户，不匹配返回null
+     */
+    private SysUserOnline selectOnline(String ipaddr, String userName, LoginUser user)
+    {
+        if (StringUtils.isNotEmpty(ipaddr) && StringUtils.isNotEmpty(userName))
+        {
+            return userOnlineService.selectOnlineByInfo(ipaddr, userName, user);
+        }
+        else if (StringUtils.isNotEmpty(ipaddr))
+        {
+            return userOnlineService.selectOnlineByIpaddr(ipaddr, user);
+        }
+        else if (StringUtils.isNotNull(user.getUser()))
+        {
+            return userOnlineService.selectOnlineByUserName(userName, user);
         }
-        Collections.reverse(userOnlineList);
-        userOnlineList.removeAll(Collections.singleton(null));
-        return getDataTable(userOnlineList);
+        return null;
     }
 
     /**
@@ -77,7 +118,7 @@ public class SysUserOnlineController extends BaseController
     @DeleteMapping("/{tokenId}")
     public AjaxResult forceLogout(@PathVariable String tokenId)
     {
-        redisCache.deleteObject(CacheConstants.LOGIN_TOKEN_KEY + tokenId);
+        tokenService.delLoginUser(tokenId);
         return success();
     }
 }
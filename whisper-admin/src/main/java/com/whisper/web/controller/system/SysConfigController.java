@@ -1,7 +1,6 @@
 package com.whisper.web.controller.system;
 
 import java.util.List;
-import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
@@ -19,6 +18,7 @@ import com.whisper.common.core.domain.AjaxResult;
 import com.whisper.common.core.page.TableDataInfo;
 import com.whisper.common.enums.BusinessType;
 import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.framework.manager.ExportManager;
 import com.whisper.system.domain.SysConfig;
 import com.whisper.system.service.ISysConfigService;
 
@@ -34,6 +34,9 @@ public class SysConfigController extends BaseController
     @Autowired
     private ISysConfigService configService;
 
+    @Autowired
+    private ExportManager exportManager;
+
     /**
      * 获取参数配置列表
      */
@@ -49,11 +52,10 @@ public class SysConfigController extends BaseController
     @Log(title = "参数管理", businessType = BusinessType.EXPORT)
     @PreAuthorize("@ss.hasPermi('system:config:export')")
     @PostMapping("/export")
-    public void export(HttpServletResponse response, SysConfig config)
+    public AjaxResult export(SysConfig config)
     {
-        List<SysConfig> list = configService.selectConfigList(config);
         ExcelUtil<SysConfig> util = new ExcelUtil<SysConfig>(SysConfig.class);
-        util.exportExcel(response, list, "参数数据");
+        return success(exportManager.submit(util, "参数数据", rows -> configService.selectConfigList(config).forEach(rows)));
     }
 
     /**
@@ -2,7 +2,6 @@ package com.whisper.web.controller.system;
 
 import java.util.ArrayList;
 import java.util.List;
-import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
@@ -22,6 +21,7 @@ import com.whisper.common.core.page.TableDataInfo;
 import com.whisper.common.enums.BusinessType;
 import com.whisper.common.utils.StringUtils;
 import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.framework.manager.ExportManager;
 import com.whisper.system.service.ISysDictDataService;
 import com.whisper.system.service.ISysDictTypeService;
 
@@ -37,6 +37,9 @@ public class SysDictDataController extends BaseController
     @Autowired
     private ISysDictDataService dictDataService;
 
+    @Autowired
+    private ExportManager exportManager;
+
     @Autowired
     private ISysDictTypeService dictTypeService;
 
@@ -52,11 +55,10 @@ public class SysDictDataController extends BaseController
     @Log(title = "字典数据", businessType = BusinessType.EXPORT)
     @PreAuthorize("@ss.hasPermi('system:dict:export')")
     @PostMapping("/export")
-    public void export(HttpServletResponse response, SysDictData dictData)
+    public AjaxResult export(SysDictData dictData)
     {
-        List<SysDictData> list = dictDataService.selectDictDataList(dictData);
         ExcelUtil<SysDictData> util = new ExcelUtil<SysDictData>(SysDictData.class);
-        util.exportExcel(response, list, "字典数据");
+        return success(exportManager.submit(util, "字典数据", rows -> dictDataService.selectDictDataList(dictData).forEach(rows)));
     }
 
     /**
@@ -1,7 +1,6 @@
 package com.whisper.web.controller.system;
 
 import java.util.List;
-import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
@@ -20,6 +19,7 @@ import com.whisper.common.core.domain.entity.SysDictType;
 import com.whisper.common.core.page.TableDataInfo;
 import com.whisper.common.enums.BusinessType;
 import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.framework.manager.ExportManager;
 import com.whisper.system.service.ISysDictTypeService;
 
 /**
@@ -34,6 +34,9 @@ public class SysDictTypeController extends BaseController
     @Autowired
     private ISysDictTypeService dictTypeService;
 
+    @Autowired
+    private ExportManager exportManager;
+
     @PreAuthorize("@ss.hasPermi('system:dict:list')")
     @GetMapping("/list")
     public TableDataInfo list(SysDictType dictType)
@@ -46,11 +49,10 @@ public class SysDictTypeController extends BaseController
     @Log(title = "字典类型", businessType = BusinessType.EXPORT)
     @PreAuthorize("@ss.hasPermi('system:dict:export')")
     @PostMapping("/export")
-    public void export(HttpServletResponse response, SysDictType dictType)
+    public AjaxResult export(SysDictType dictType)
     {
-        List<SysDictType> list = dictTypeService.selectDictTypeList(dictType);
         ExcelUtil<SysDictType> util = new ExcelUtil<SysDictType>(SysDictType.class);
-        util.exportExcel(response, list, "字典类型");
+        return success(exportManager.submit(util, "字典类型", rows -> dictTypeService.selectDictTypeList(dictType).forEach(rows)));
     }
 
     /**
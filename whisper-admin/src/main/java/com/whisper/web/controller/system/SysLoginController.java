@@ -1,7 +1,6 @@
 package com.whisper.web.controller.system;
 
 import java.util.Date;
-import java.util.List;
 import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,7 +9,6 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 import com.whisper.common.constant.Constants;
 import com.whisper.common.core.domain.AjaxResult;
-import com.whisper.common.core.domain.entity.SysMenu;
 import com.whisper.common.core.domain.entity.SysUser;
 import com.whisper.common.core.domain.model.LoginBody;
 import com.whisper.common.core.domain.model.LoginUser;
@@ -101,8 +99,7 @@ public class SysLoginController
     public AjaxResult getRouters()
     {
         Long userId = SecurityUtils.getUserId();
-        List<SysMenu> menus = menuService.selectMenuTreeByUserId(userId);
-        return AjaxResult.success(menuService.buildMenus(menus));
+        return AjaxResult.success(menuService.selectRoutersByUserId(userId));
     }
     
     // 检查初始密码是否提醒修改
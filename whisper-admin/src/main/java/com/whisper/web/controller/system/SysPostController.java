@@ -1,7 +1,6 @@
 package com.whisper.web.controller.system;
 
 import java.util.List;
-import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
@@ -19,6 +18,7 @@ import com.whisper.common.core.domain.AjaxResult;
 import com.whisper.common.core.page.TableDataInfo;
 import com.whisper.common.enums.BusinessType;
 import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.framework.manager.ExportManager;
 import com.whisper.system.domain.SysPost;
 import com.whisper.system.service.ISysPostService;
 
@@ -34,6 +34,9 @@ public class SysPostController extends BaseController
     @Autowired
     private ISysPostService postService;
 
+    @Autowired
+    private ExportManager exportManager;
+
     /**
      * 获取岗位列表
      */
@@ -49,11 +52,10 @@ public class SysPostController extends BaseController
     @Log(title = "岗位管理", businessType = BusinessType.EXPORT)
     @PreAuthorize("@ss.hasPermi('system:post:export')")
     @PostMapping("/export")
-    public void export(HttpServletResponse response, SysPost post)
+    public AjaxResult export(SysPost post)
     {
-        List<SysPost> list = postService.selectPostList(post);
         ExcelUtil<SysPost> util = new ExcelUtil<SysPost>(SysPost.class);
-        util.exportExcel(response, list, "岗位数据");
+        return success(exportManager.submit(util, "岗位数据", rows -> postService.selectPostList(post).forEach(rows)));
     }
 
     /**
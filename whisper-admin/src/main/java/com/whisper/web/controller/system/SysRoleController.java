@@ -1,7 +1,6 @@
 package com.whisper.web.controller.system;
 
 import java.util.List;
-import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
@@ -24,6 +23,7 @@ import com.whisper.common.core.page.TableDataInfo;
 import com.whisper.common.enums.BusinessType;
 import com.whisper.common.utils.StringUtils;
 import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.framework.manager.ExportManager;
 import com.whisper.framework.web.service.SysPermissionService;
 import com.whisper.framework.web.service.TokenService;
 import com.whisper.system.domain.SysUserRole;
@@ -43,6 +43,9 @@ public class SysRoleController extends BaseController
     @Autowired
     private ISysRoleService roleService;
 
+    @Autowired
+    private ExportManager exportManager;
+
     @Autowired
     private TokenService tokenService;
 
@@ -67,11 +70,10 @@ public class SysRoleController extends BaseController
     @Log(title = "角色管理", businessType = BusinessType.EXPORT)
     @PreAuthorize("@ss.hasPermi('system:role:export')")
     @PostMapping("/export")
-    public void export(HttpServletResponse response, SysRole role)
+    public AjaxResult export(SysRole role)
     {
-        List<SysRole> list = roleService.selectRoleList(role);
         ExcelUtil<SysRole> util = new ExcelUtil<SysRole>(SysRole.class);
-        util.exportExcel(response, list, "角色数据");
+        return success(exportManager.submit(util, "角色数据", rows -> roleService.selectRoleList(role).forEach(rows)));
     }
 
     /**
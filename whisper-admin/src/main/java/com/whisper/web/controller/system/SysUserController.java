@@ -1,5 +1,6 @@
 package com.whisper.web.controller.system;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletResponse;
@@ -27,6 +28,7 @@ import com.whisper.common.enums.BusinessType;
 import com.whisper.common.utils.SecurityUtils;
 import com.whisper.common.utils.StringUtils;
 import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.framework.manager.ExportManager;
 import com.whisper.system.service.ISysDeptService;
 import com.whisper.system.service.ISysPostService;
 import com.whisper.system.service.ISysRoleService;
@@ -41,9 +43,15 @@ import com.whisper.system.service.ISysUserService;
 @RequestMapping("/system/user")
 public class SysUserController extends BaseController
 {
+    /** 导入时每批处理的条数 */
+    private static final int IMPORT_BATCH_SIZE = 500;
+
     @Autowired
     private ISysUserService userService;
 
+    @Autowired
+    private ExportManager exportManager;
+
     @Autowired
     private ISysRoleService roleService;
 
@@ -68,11 +76,10 @@ public class SysUserController extends BaseController
     @Log(title = "用户管理", businessType = BusinessType.EXPORT)
     @PreAuthorize("@ss.hasPermi('system:user:export')")
     @PostMapping("/export")
-    public void export(HttpServletResponse response, SysUser user)
+    public AjaxResult export(SysUser user)
     {
-        List<SysUser> list = userService.selectUserList(user);
         ExcelUtil<SysUser> util = new ExcelUtil<SysUser>(SysUser.class);
-        util.exportExcel(response, list, "用户数据");
+        return success(exportManager.submit(util, "用户数据", rows -> userService.selectUserList(user).forEach(rows)));
     }
 
     @Log(title = "用户管理", businessType = BusinessType.IMPORT)
@@ -81,9 +88,9 @@ public class SysUserController extends BaseController
     public AjaxResult importData(MultipartFile file, boolean updateSupport) throws Exception
     {
         ExcelUtil<SysUser> util = new ExcelUtil<SysUser>(SysUser.class);
-        List<SysUser> userList = util.importExcel(file.getInputStream());
+        InputStream is = file.getInputStream();
         String operName = getUsername();
-        String message = userService.importUser(userList, updateSupport, operName);
+        String message = userService.importUser(batch -> util.importExcel(is, IMPORT_BATCH_SIZE, batch), updateSupport, operName);
         return success(message);
     }
 
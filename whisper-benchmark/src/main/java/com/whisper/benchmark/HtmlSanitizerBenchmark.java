@@ -0,0 +1,78 @@
+package com.whisper.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.whisper.common.utils.html.HTMLFilter;
+import com.whisper.common.utils.html.HtmlSanitizer;
+
+/**
+ * XSS过滤基准：单遍状态机 HtmlSanitizer 与多轮正则 HTMLFilter
+ *
+ * @author whisper
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlSanitizerBenchmark
+{
+    /** 输入类型：plain 纯文本聊天消息，markup 带标签的富文本，hostile 含XSS向量 */
+    @Param({ "plain", "markup", "hostile" })
+    public String kind;
+
+    /** 输入重复次数，决定输入长度 */
+    @Param({ "1", "50" })
+    public int repeat;
+
+    private String input;
+
+    @Setup
+    public void setup()
+    {
+        String unit;
+        switch (kind)
+        {
+            case "markup":
+                unit = "<b>订单</b>已发货，<a href=\"https://example.com/track?id=1&amp;t=2\" target=\"_blank\">查看物流</a>"
+                        + "<img src=\"https://example.com/a.png\" width=\"80\" height=\"80\" alt=\"商品\"/>";
+                break;
+            case "hostile":
+                unit = "<script>alert(1)</script><img src=x onerror=alert(1)><a href=\"javascript:alert(1)\">x</a>"
+                        + "<!-- <b> --><iframe src=//evil.com></iframe>>> <<b>";
+                break;
+            default:
+                unit = "您好，请问订单什么时候发货？我昨天下的单，订单号是 2024060112345678，谢谢！";
+                break;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < repeat; i++)
+        {
+            sb.append(unit);
+        }
+        input = sb.toString();
+    }
+
+    @Benchmark
+    public String htmlSanitizer()
+    {
+        return HtmlSanitizer.clean(input);
+    }
+
+    @Benchmark
+    public String htmlFilter()
+    {
+        return new HTMLFilter().filter(input);
+    }
+}
@@ -0,0 +1,131 @@
+package com.whisper.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.whisper.common.core.domain.entity.SysDept;
+import com.whisper.common.core.domain.entity.SysRole;
+import com.whisper.common.core.domain.entity.SysUser;
+import com.whisper.common.core.domain.model.LoginUser;
+import com.whisper.common.core.redis.RedisValueCodec;
+
+/**
+ * Redis值编解码基准：登录用户在 json / jsonb / jsonb+lz4 下的序列化、反序列化耗时
+ *
+ * 编码后的字节数在Setup中输出，便于与耗时一起比较。
+ *
+ * @author whisper
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisValueCodecBenchmark
+{
+    @Param({ "JSON", "JSONB" })
+    public String codec;
+
+    /** 压缩阈值，0表示不压缩 */
+    @Param({ "0", "256" })
+    public int compressThreshold;
+
+    /** 权限数量，决定登录用户的大小 */
+    @Param({ "20", "200" })
+    public int permissions;
+
+    private RedisValueCodec redisValueCodec;
+
+    private LoginUser loginUser;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setup()
+    {
+        redisValueCodec = new RedisValueCodec(RedisValueCodec.Codec.valueOf(codec), compressThreshold);
+        loginUser = createLoginUser(permissions);
+        encoded = redisValueCodec.serialize(loginUser);
+        System.out.println("encoded bytes: " + encoded.length);
+    }
+
+    @Benchmark
+    public byte[] serialize()
+    {
+        return redisValueCodec.serialize(loginUser);
+    }
+
+    @Benchmark
+    public Object deserialize()
+    {
+        return redisValueCodec.deserialize(encoded, Object.class);
+    }
+
+    static LoginUser createLoginUser(int permissionCount)
+    {
+        SysDept dept = new SysDept();
+        dept.setDeptId(103L);
+        dept.setParentId(101L);
+        dept.setAncestors("0,100,101");
+        dept.setDeptName("客服一部");
+        dept.setLeader("whisper");
+        dept.setStatus("0");
+
+        List<SysRole> roles = new ArrayList<SysRole>();
+        for (long i = 1; i <= 3; i++)
+        {
+            SysRole role = new SysRole(i);
+            role.setRoleName("角色" + i);
+            role.setRoleKey("role" + i);
+            role.setRoleSort((int) i);
+            role.setDataScope("4");
+            role.setStatus("0");
+            roles.add(role);
+        }
+
+        SysUser user = new SysUser(1L);
+        user.setDeptId(103L);
+        user.setUserName("agent001");
+        user.setNickName("客服001");
+        user.setEmail("agent001@whisper.com");
+        user.setPhonenumber("15888888888");
+        user.setSex("0");
+        user.setPassword("$2a$10$7JB720yubVSZvUI0rEqK/.VqGOZTH.ulu33dHOiBE8ByOhJIrdAu2");
+        user.setStatus("0");
+        user.setDelFlag("0");
+        user.setLoginIp("127.0.0.1");
+        user.setLoginDate(new Date());
+        user.setDept(dept);
+        user.setRoles(roles);
+
+        Set<String> perms = new HashSet<String>();
+        for (int i = 0; i < permissionCount; i++)
+        {
+            perms.add("customer:module" + (i / 5) + ":" + (i % 5 == 0 ? "list" : "edit" + i));
+        }
+        LoginUser loginUser = new LoginUser(1L, 103L, user, perms);
+        loginUser.setToken("8f6c3f1e-2b1d-4a52-9a0e-7b2f0f5c1d3a");
+        loginUser.setLoginTime(System.currentTimeMillis());
+        loginUser.setExpireTime(loginUser.getLoginTime() + TimeUnit.MINUTES.toMillis(30));
+        loginUser.setIpaddr("127.0.0.1");
+        loginUser.setLoginLocation("内网IP");
+        loginUser.setBrowser("Chrome 12");
+        loginUser.setOs("Windows 10");
+        return loginUser;
+    }
+}
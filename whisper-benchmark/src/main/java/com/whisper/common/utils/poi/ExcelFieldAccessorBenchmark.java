@@ -0,0 +1,227 @@
+package com.whisper.common.utils.poi;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.whisper.common.annotation.Excel;
+import com.whisper.common.annotation.Excels;
+import com.whisper.common.core.domain.entity.SysDept;
+import com.whisper.common.core.domain.entity.SysUser;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.reflect.ReflectUtils;
+import com.whisper.customer.domain.CsCustomer;
+
+/**
+ * Excel列取值和赋值基准：预编译的 ExcelFieldAccessor 与逐个单元格反射
+ *
+ * 每次调用处理一行的全部注解列，反射版本与改造前 ExcelUtil.getTargetValue 和 ReflectUtils.invokeSetter 的写法一致。
+ * ExcelFieldAccessor.of 为包内可见，基准放在同名包下。
+ *
+ * @author whisper
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExcelFieldAccessorBenchmark
+{
+    /** 实体类型：SysUser 含 targetAttr 下级属性，CsCustomer 只有本类和父类字段 */
+    @Param({ "SysUser", "CsCustomer" })
+    public String entity;
+
+    /** 注解字段及注解 */
+    private List<Object[]> fields;
+
+    /** 导出的实体 */
+    private Object vo;
+
+    /** 各列导入的值，与 fields 对应 */
+    private Object[] values;
+
+    private Class<?> clazz;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        if ("SysUser".equals(entity))
+        {
+            clazz = SysUser.class;
+            vo = createUser();
+        }
+        else
+        {
+            clazz = CsCustomer.class;
+            vo = createCustomer();
+        }
+        fields = getFields(clazz);
+        values = new Object[fields.size()];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = reflectGet(vo, (Field) fields.get(i)[0], (Excel) fields.get(i)[1]);
+        }
+    }
+
+    @Benchmark
+    public void exportAccessor(Blackhole bh) throws Exception
+    {
+        for (Object[] os : fields)
+        {
+            bh.consume(ExcelFieldAccessor.of((Field) os[0], (Excel) os[1]).get(vo));
+        }
+    }
+
+    @Benchmark
+    public void exportReflection(Blackhole bh) throws Exception
+    {
+        for (Object[] os : fields)
+        {
+            bh.consume(reflectGet(vo, (Field) os[0], (Excel) os[1]));
+        }
+    }
+
+    @Benchmark
+    public Object importAccessor() throws Exception
+    {
+        Object target = newEntity();
+        for (int i = 0; i < values.length; i++)
+        {
+            Object[] os = fields.get(i);
+            ExcelFieldAccessor.of((Field) os[0], (Excel) os[1]).set(target, values[i]);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public Object importReflection() throws Exception
+    {
+        Object target = newEntity();
+        for (int i = 0; i < values.length; i++)
+        {
+            Field field = (Field) fields.get(i)[0];
+            Excel attr = (Excel) fields.get(i)[1];
+            String propertyName = StringUtils.isNotEmpty(attr.targetAttr()) ? field.getName() + "." + attr.targetAttr() : field.getName();
+            ReflectUtils.invokeSetter(target, propertyName, values[i]);
+        }
+        return target;
+    }
+
+    private Object newEntity()
+    {
+        if (clazz == SysUser.class)
+        {
+            SysUser user = new SysUser();
+            user.setDept(new SysDept());
+            return user;
+        }
+        return new CsCustomer();
+    }
+
+    /**
+     * 与 ExcelUtil.getFields 相同的字段范围（父类和本类），不按导入导出类型过滤
+     */
+    private static List<Object[]> getFields(Class<?> clazz)
+    {
+        List<Field> tempFields = new ArrayList<Field>();
+        for (Field field : clazz.getSuperclass().getDeclaredFields())
+        {
+            tempFields.add(field);
+        }
+        for (Field field : clazz.getDeclaredFields())
+        {
+            tempFields.add(field);
+        }
+        List<Object[]> fields = new ArrayList<Object[]>();
+        for (Field field : tempFields)
+        {
+            if (field.isAnnotationPresent(Excel.class))
+            {
+                fields.add(new Object[] { field, field.getAnnotation(Excel.class) });
+            }
+            if (field.isAnnotationPresent(Excels.class))
+            {
+                for (Excel attr : field.getAnnotation(Excels.class).value())
+                {
+                    fields.add(new Object[] { field, attr });
+                }
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * 改造前的 ExcelUtil.getTargetValue
+     */
+    private static Object reflectGet(Object vo, Field field, Excel excel) throws Exception
+    {
+        field.setAccessible(true);
+        Object o = field.get(vo);
+        if (StringUtils.isNotEmpty(excel.targetAttr()))
+        {
+            for (String name : excel.targetAttr().split("[.]"))
+            {
+                if (StringUtils.isNotNull(o) && StringUtils.isNotEmpty(name))
+                {
+                    Field target = o.getClass().getDeclaredField(name);
+                    target.setAccessible(true);
+                    o = target.get(o);
+                }
+            }
+        }
+        return o;
+    }
+
+    private static SysUser createUser()
+    {
+        SysDept dept = new SysDept();
+        dept.setDeptId(103L);
+        dept.setDeptName("客服一部");
+        dept.setLeader("whisper");
+        SysUser user = new SysUser(1L);
+        user.setDeptId(103L);
+        user.setUserName("agent001");
+        user.setNickName("客服001");
+        user.setEmail("agent001@whisper.com");
+        user.setPhonenumber("15888888888");
+        user.setSex("0");
+        user.setStatus("0");
+        user.setLoginIp("127.0.0.1");
+        user.setLoginDate(new Date());
+        user.setDept(dept);
+        return user;
+    }
+
+    private static CsCustomer createCustomer()
+    {
+        CsCustomer customer = new CsCustomer();
+        customer.setCustomerId(10001L);
+        customer.setCustomerNo("C2024060100001");
+        customer.setCustomerName("张三");
+        customer.setCustomerType("1");
+        customer.setPhone("13900001111");
+        customer.setEmail("zhangsan@example.com");
+        customer.setCompany("示例科技有限公司");
+        customer.setBirthday(new Date());
+        customer.setGender("1");
+        customer.setLevel("2");
+        customer.setSource("官网");
+        customer.setLastContactTime(new Date());
+        customer.setStatus("0");
+        return customer;
+    }
+}
@@ -1,5 +1,7 @@
 package com.whisper.common.config;
 
+import java.io.File;
+import java.io.IOException;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -119,4 +121,36 @@ public class RuoYiConfig
     {
         return getProfile() + "/upload";
     }
+
+    /**
+     * 获取私有数据路径，与上传路径同级，不能通过 /profile/** 访问
+     */
+    public static String getDataPath()
+    {
+        File profileDir = new File(profile == null ? "." : profile).getAbsoluteFile();
+        File parent = profileDir.getParentFile();
+        return new File(parent != null ? parent : profileDir, "data").getPath();
+    }
+
+    /**
+     * 检查目录是否位于上传路径内，位于其中的文件可以通过 /profile/** 匿名访问
+     *
+     * @param dir 目录
+     * @return 结果
+     */
+    public static boolean isProfilePath(File dir)
+    {
+        if (profile == null)
+        {
+            return false;
+        }
+        try
+        {
+            return (dir.getCanonicalPath() + File.separator).startsWith(new File(profile).getCanonicalPath() + File.separator);
+        }
+        catch (IOException e)
+        {
+            return true;
+        }
+    }
 }
@@ -12,6 +12,11 @@ public class CacheConstants
      */
     public static final String LOGIN_TOKEN_KEY = "whisper:login_tokens:";
 
+    /**
+     * 在线会话索引 redis key（有序集合，成员为令牌uuid，分值为登录时间）
+     */
+    public static final String LOGIN_TOKEN_INDEX_KEY = "whisper:login_tokens_index";
+
     /**
      * 验证码 redis key
      */
@@ -41,4 +46,89 @@ public class CacheConstants
      * 登录账户密码错误次数 redis key
      */
     public static final String PWD_ERR_CNT_KEY = "pwd_err_cnt:";
+
+    /**
+     * 工单SLA分区租约 redis key
+     */
+    public static final String TICKET_SLA_KEY = "ticket_sla:";
+
+    /**
+     * 客服接待负载 redis key
+     */
+    public static final String AGENT_LOAD_KEY = "agent_load:";
+
+    /**
+     * 客服运营指标 redis key
+     */
+    public static final String CS_METRICS_KEY = "cs_metrics:";
+
+    /**
+     * 消息分片迁移锁 redis key
+     */
+    public static final String MESSAGE_SHARD_LOCK_KEY = "message_shard_lock";
+
+    /**
+     * 消息归档任务锁 redis key
+     */
+    public static final String MESSAGE_ARCHIVE_LOCK_KEY = "message_archive_lock";
+
+    /**
+     * 消息归档目录标识 redis key
+     */
+    public static final String MESSAGE_ARCHIVE_VOLUME_KEY = "message_archive_volume";
+
+    /**
+     * 会话消息压缩 redis key
+     */
+    public static final String MESSAGE_COMPACTION_KEY = "message_compaction:";
+
+    /**
+     * 消息搜索索引同步 redis channel，各节点把新增和删除的消息广播给其他节点的本地索引
+     */
+    public static final String MESSAGE_SEARCH_CHANNEL = "message_search";
+
+    /**
+     * 后台导出任务状态 redis key
+     */
+    public static final String EXPORT_JOB_KEY = "export_job:";
+
+    /**
+     * 用户的后台导出任务ID集合 redis key
+     */
+    public static final String EXPORT_JOB_USER_KEY = "export_job_user:";
+
+    /**
+     * 排队和执行中的后台导出任务 redis key（有序集合，成员为任务ID，分值为租约到期时间）
+     */
+    public static final String EXPORT_ACTIVE_KEY = "export_active:";
+
+    /**
+     * 导出目录标识 redis key
+     */
+    public static final String EXPORT_VOLUME_KEY = "export_volume";
+
+    /**
+     * 聊天文件分片上传任务 redis key
+     */
+    public static final String CHAT_UPLOAD_KEY = "chat_upload:";
+
+    /**
+     * 聊天文件分片上传已接收的分片序号集合 redis key
+     */
+    public static final String CHAT_UPLOAD_CHUNKS_KEY = "chat_upload_chunks:";
+
+    /**
+     * 本地缓存失效通知 redis channel
+     */
+    public static final String CACHE_EVICT_CHANNEL = "cache_evict:";
+
+    /**
+     * 数据权限SQL缓存失效通知 redis channel，角色、角色部门或部门变更后发布
+     */
+    public static final String DATA_SCOPE_EVICT_CHANNEL = CACHE_EVICT_CHANNEL + "data_scope";
+
+    /**
+     * 固定使用JSON文本编码的key前缀（值较小且常需直接查看），其余按默认编码
+     */
+    public static final String[] JSON_CODEC_PREFIXES = { CAPTCHA_CODE_KEY, SYS_CONFIG_KEY };
 }
@@ -0,0 +1,152 @@
+package com.whisper.common.core.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 进程内有界缓存
+ *
+ * 条目写入后按固定时长过期；超过容量时先清理过期条目，仍不足则淘汰部分条目。读取无锁，
+ * 适合缓存可从Redis或数据库重建、允许短暂过期的数据。
+ *
+ * @author ruoyi
+ */
+public class LocalCache<K, V>
+{
+    /** 最大条目数 */
+    private final int maximumSize;
+
+    /** 过期时长（毫秒） */
+    private final long expireMillis;
+
+    private final Map<K, Entry<V>> store;
+
+    public LocalCache(int maximumSize, long expireAfterWrite, TimeUnit unit)
+    {
+        this.maximumSize = maximumSize;
+        this.expireMillis = unit.toMillis(expireAfterWrite);
+        this.store = new ConcurrentHashMap<K, Entry<V>>(Math.min(maximumSize, 1024));
+    }
+
+    /**
+     * 获取缓存，不存在或已过期返回null
+     *
+     * @param key 键
+     * @return 值
+     */
+    public V get(K key)
+    {
+        Entry<V> entry = store.get(key);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis())
+        {
+            store.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param key 键
+     * @param value 值
+     */
+    public void put(K key, V value)
+    {
+        if (store.size() >= maximumSize && !store.containsKey(key))
+        {
+            shrink();
+        }
+        store.put(key, new Entry<V>(value, System.currentTimeMillis() + expireMillis));
+    }
+
+    /**
+     * 条件成立时写入缓存，条件判断与写入在同一key上原子执行
+     *
+     * 与 remove/clear 互斥：先修改条件依赖的状态再删除的一方，要么使条件不成立，要么删除本次写入。
+     *
+     * @param key 键
+     * @param value 值
+     * @param condition 写入条件
+     * @return 是否写入
+     */
+    public boolean putIf(K key, V value, BooleanSupplier condition)
+    {
+        if (store.size() >= maximumSize && !store.containsKey(key))
+        {
+            shrink();
+        }
+        boolean[] written = new boolean[1];
+        store.compute(key, (k, old) -> {
+            if (!condition.getAsBoolean())
+            {
+                return old;
+            }
+            written[0] = true;
+            return new Entry<V>(value, System.currentTimeMillis() + expireMillis);
+        });
+        return written[0];
+    }
+
+    /**
+     * 删除缓存
+     *
+     * @param key 键
+     */
+    public void remove(K key)
+    {
+        store.remove(key);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear()
+    {
+        store.clear();
+    }
+
+    /**
+     * 当前条目数（含未清理的过期条目）
+     */
+    public int size()
+    {
+        return store.size();
+    }
+
+    /**
+     * 清理过期条目，仍超过容量的90%时继续淘汰
+     */
+    private synchronized void shrink()
+    {
+        long now = System.currentTimeMillis();
+        store.values().removeIf(entry -> entry.expireAt < now);
+        int target = maximumSize - maximumSize / 10;
+        Iterator<K> it = store.keySet().iterator();
+        while (store.size() > target && it.hasNext())
+        {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static class Entry<V>
+    {
+        private final V value;
+
+        private final long expireAt;
+
+        private Entry(V value, long expireAt)
+        {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
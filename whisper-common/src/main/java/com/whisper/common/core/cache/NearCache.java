@@ -0,0 +1,152 @@
+package com.whisper.common.core.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import com.whisper.common.constant.CacheConstants;
+
+/**
+ * Redis前的进程内读穿缓存
+ *
+ * 未命中时同一key只有一个线程执行加载，其余线程等待其结果；加载结果（包括空值）写入本地缓存。
+ * 每次失效都会递增版本号，加载开始后发生过失效的结果不写入本地缓存，避免旧值覆盖新值；
+ * 版本比较与写入在同一key上原子执行，失效先递增版本再删除，二者交错时写入的旧值也会被删除。
+ * 失效通过 CACHE_EVICT_CHANNEL + 名称 广播到所有节点，消息内容为key，"*"表示全部。
+ *
+ * @author ruoyi
+ */
+public class NearCache<V>
+{
+    private static final Logger log = LoggerFactory.getLogger(NearCache.class);
+
+    /** 全部失效的消息内容 */
+    private static final String ALL = "*";
+
+    /** 空值占位 */
+    private static final Object NULL = new Object();
+
+    private final String channel;
+
+    private final LocalCache<String, Object> local;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /** 正在加载的key */
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<String, CompletableFuture<Object>>();
+
+    /** 失效版本号 */
+    private final AtomicLong version = new AtomicLong();
+
+    public NearCache(String name, int maximumSize, long expireAfterWrite, TimeUnit unit,
+            StringRedisTemplate stringRedisTemplate, RedisMessageListenerContainer redisMessageListenerContainer)
+    {
+        this.channel = CacheConstants.CACHE_EVICT_CHANNEL + name;
+        this.local = new LocalCache<String, Object>(maximumSize, expireAfterWrite, unit);
+        this.stringRedisTemplate = stringRedisTemplate;
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(channel));
+    }
+
+    /**
+     * 读取缓存，未命中时调用加载方法
+     *
+     * @param key 键
+     * @param loader 加载方法，可返回null
+     * @return 值
+     */
+    @SuppressWarnings("unchecked")
+    public V get(String key, Function<String, V> loader)
+    {
+        Object value = local.get(key);
+        if (value == null)
+        {
+            value = load(key, loader);
+        }
+        return value == NULL ? null : (V) value;
+    }
+
+    /**
+     * 使本节点和其他节点的指定key失效
+     *
+     * @param key 键
+     */
+    public void evict(String key)
+    {
+        invalidate(key);
+        publish(key);
+    }
+
+    /**
+     * 使本节点和其他节点的全部key失效
+     */
+    public void evictAll()
+    {
+        invalidate(ALL);
+        publish(ALL);
+    }
+
+    private Object load(String key, Function<String, V> loader)
+    {
+        CompletableFuture<Object> future = new CompletableFuture<Object>();
+        CompletableFuture<Object> running = loading.putIfAbsent(key, future);
+        if (running != null)
+        {
+            return running.join();
+        }
+        long startVersion = version.get();
+        try
+        {
+            V loaded = loader.apply(key);
+            Object value = loaded == null ? NULL : loaded;
+            local.putIf(key, value, () -> version.get() == startVersion);
+            future.complete(value);
+            return value;
+        }
+        catch (RuntimeException e)
+        {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            loading.remove(key, future);
+        }
+    }
+
+    private void invalidate(String key)
+    {
+        version.incrementAndGet();
+        if (ALL.equals(key))
+        {
+            local.clear();
+            loading.clear();
+        }
+        else
+        {
+            local.remove(key);
+            loading.remove(key);
+        }
+    }
+
+    private void publish(String key)
+    {
+        try
+        {
+            stringRedisTemplate.convertAndSend(channel, key);
+        }
+        catch (Exception e)
+        {
+            log.warn("发布缓存失效通知失败'{}'", e.getMessage());
+        }
+    }
+}
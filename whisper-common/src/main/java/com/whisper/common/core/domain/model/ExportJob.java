@@ -0,0 +1,170 @@
+package com.whisper.common.core.domain.model;
+
+import java.util.Date;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * 后台导出任务
+ *
+ * @author ruoyi
+ */
+public class ExportJob
+{
+    /** 排队中 */
+    public static final String STATUS_WAITING = "waiting";
+
+    /** 导出中 */
+    public static final String STATUS_RUNNING = "running";
+
+    /** 已完成 */
+    public static final String STATUS_SUCCESS = "success";
+
+    /** 失败 */
+    public static final String STATUS_FAILED = "failed";
+
+    /** 任务ID */
+    private String jobId;
+
+    /** 提交用户ID */
+    private Long userId;
+
+    /** 提交用户名称 */
+    private String userName;
+
+    /** 导出名称（工作表名称） */
+    private String title;
+
+    /** 任务状态 */
+    private String status;
+
+    /** 已写入行数 */
+    private long rows;
+
+    /** 导出文件名称（export/任务ID_名称.xlsx），通过 /common/download 下载 */
+    private String fileName;
+
+    /** 失败原因 */
+    private String message;
+
+    /** 提交时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+
+    /** 开始时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date startTime;
+
+    /** 结束时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date finishTime;
+
+    public String getJobId()
+    {
+        return jobId;
+    }
+
+    public void setJobId(String jobId)
+    {
+        this.jobId = jobId;
+    }
+
+    public Long getUserId()
+    {
+        return userId;
+    }
+
+    public void setUserId(Long userId)
+    {
+        this.userId = userId;
+    }
+
+    public String getUserName()
+    {
+        return userName;
+    }
+
+    public void setUserName(String userName)
+    {
+        this.userName = userName;
+    }
+
+    public String getTitle()
+    {
+        return title;
+    }
+
+    public void setTitle(String title)
+    {
+        this.title = title;
+    }
+
+    public String getStatus()
+    {
+        return status;
+    }
+
+    public void setStatus(String status)
+    {
+        this.status = status;
+    }
+
+    public long getRows()
+    {
+        return rows;
+    }
+
+    public void setRows(long rows)
+    {
+        this.rows = rows;
+    }
+
+    public String getFileName()
+    {
+        return fileName;
+    }
+
+    public void setFileName(String fileName)
+    {
+        this.fileName = fileName;
+    }
+
+    public String getMessage()
+    {
+        return message;
+    }
+
+    public void setMessage(String message)
+    {
+        this.message = message;
+    }
+
+    public Date getCreateTime()
+    {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime)
+    {
+        this.createTime = createTime;
+    }
+
+    public Date getStartTime()
+    {
+        return startTime;
+    }
+
+    public void setStartTime(Date startTime)
+    {
+        this.startTime = startTime;
+    }
+
+    public Date getFinishTime()
+    {
+        return finishTime;
+    }
+
+    public void setFinishTime(Date finishTime)
+    {
+        this.finishTime = finishTime;
+    }
+}
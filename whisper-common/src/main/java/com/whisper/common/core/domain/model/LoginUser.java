@@ -66,6 +66,11 @@ public class LoginUser implements UserDetails
      */
     private Set<String> permissions;
 
+    /**
+     * 权限位图，由权限列表生成，不序列化
+     */
+    private transient PermissionBits permissionBits;
+
     /**
      * 用户信息
      */
@@ -246,6 +251,19 @@ public class LoginUser implements UserDetails
     public void setPermissions(Set<String> permissions)
     {
         this.permissions = permissions;
+        this.permissionBits = null;
+    }
+
+    @JSONField(serialize = false)
+    public PermissionBits getPermissionBits()
+    {
+        PermissionBits bits = permissionBits;
+        if (bits == null)
+        {
+            bits = PermissionBits.of(permissions);
+            permissionBits = bits;
+        }
+        return bits;
     }
 
     public SysUser getUser()
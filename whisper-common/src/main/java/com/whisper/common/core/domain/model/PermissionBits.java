@@ -0,0 +1,118 @@
+package com.whisper.common.core.domain.model;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.whisper.common.constant.Constants;
+import com.whisper.common.utils.StringUtils;
+
+/**
+ * 权限位图
+ *
+ * 权限字符串在进程内编号，用户的权限列表转换为位图后，权限校验只需一次编号查找和位测试。
+ * 编号只增不减，数量受菜单权限和注解中的权限字符串限制。
+ *
+ * @author ruoyi
+ */
+public final class PermissionBits
+{
+    private static final PermissionBits EMPTY = new PermissionBits(new BitSet(), false);
+
+    /** 权限字符串 -> 编号 */
+    private static final Map<String, Integer> INDEX = new ConcurrentHashMap<String, Integer>();
+
+    /** 待校验的权限字符串（未去空格） -> 编号 */
+    private static final Map<String, Integer> LOOKUP = new ConcurrentHashMap<String, Integer>();
+
+    /** 以分隔符拼接的权限列表 -> 编号数组 */
+    private static final Map<String, int[]> LOOKUP_ANY = new ConcurrentHashMap<String, int[]>();
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final BitSet bits;
+
+    /** 是否拥有全部权限 */
+    private final boolean all;
+
+    private PermissionBits(BitSet bits, boolean all)
+    {
+        this.bits = bits;
+        this.all = all;
+    }
+
+    /**
+     * 由权限列表生成位图
+     *
+     * @param permissions 权限列表
+     * @return 权限位图
+     */
+    public static PermissionBits of(Collection<String> permissions)
+    {
+        if (permissions == null || permissions.isEmpty())
+        {
+            return EMPTY;
+        }
+        BitSet bits = new BitSet();
+        for (String permission : permissions)
+        {
+            if (permission != null)
+            {
+                bits.set(intern(permission));
+            }
+        }
+        return new PermissionBits(bits, permissions.contains(Constants.ALL_PERMISSION));
+    }
+
+    /**
+     * 是否拥有某权限
+     *
+     * @param permission 权限字符串，两端空格忽略
+     * @return 结果
+     */
+    public boolean has(String permission)
+    {
+        if (all)
+        {
+            return true;
+        }
+        return bits.get(LOOKUP.computeIfAbsent(permission, p -> intern(StringUtils.trim(p))));
+    }
+
+    /**
+     * 是否拥有任意一个权限
+     *
+     * @param permissions 以 PERMISSION_DELIMETER 为分隔符的权限列表
+     * @return 结果
+     */
+    public boolean hasAny(String permissions)
+    {
+        if (all)
+        {
+            return true;
+        }
+        int[] indexes = LOOKUP_ANY.computeIfAbsent(permissions, p -> {
+            String[] values = p.split(Constants.PERMISSION_DELIMETER);
+            int[] result = new int[values.length];
+            for (int i = 0; i < values.length; i++)
+            {
+                result[i] = intern(StringUtils.trim(values[i]));
+            }
+            return result;
+        });
+        for (int index : indexes)
+        {
+            if (bits.get(index))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int intern(String permission)
+    {
+        return INDEX.computeIfAbsent(permission, p -> SEQUENCE.getAndIncrement());
+    }
+}
@@ -1,16 +1,26 @@
 package com.whisper.common.core.redis;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.data.redis.core.BoundSetOperations;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
 /**
@@ -22,9 +32,15 @@ import org.springframework.stereotype.Component;
 @Component
 public class RedisCache
 {
+    /** SCAN每次返回的建议条数，也是批量删除和批量读取的单批大小 */
+    private static final int BATCH_SIZE = 500;
+
     @Autowired
     public RedisTemplate redisTemplate;
 
+    @Autowired(required = false)
+    private RedisValueCodec redisValueCodec;
+
     /**
      * 缓存基本的对象，Integer、String、实体类等
      *
@@ -33,6 +49,11 @@ public class RedisCache
      */
     public <T> void setCacheObject(final String key, final T value)
     {
+        if (hasKeyCodec(key))
+        {
+            setEncoded(key, value, Expiration.persistent());
+            return;
+        }
         redisTemplate.opsForValue().set(key, value);
     }
 
@@ -46,9 +67,47 @@ public class RedisCache
      */
     public <T> void setCacheObject(final String key, final T value, final Integer timeout, final TimeUnit timeUnit)
     {
+        if (hasKeyCodec(key))
+        {
+            setEncoded(key, value, Expiration.from(timeout, timeUnit));
+            return;
+        }
         redisTemplate.opsForValue().set(key, value, timeout, timeUnit);
     }
 
+    /**
+     * 键不存在时缓存对象（SET NX PX）
+     *
+     * @param key 缓存的键值
+     * @param value 缓存的值
+     * @param timeout 时间
+     * @param timeUnit 时间颗粒度
+     * @return true=写入成功；false=键已存在
+     */
+    public <T> boolean setCacheObjectIfAbsent(final String key, final T value, final long timeout, final TimeUnit timeUnit)
+    {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, timeout, timeUnit));
+    }
+
+    /**
+     * key前缀是否指定了不同于默认的编码
+     */
+    private boolean hasKeyCodec(final String key)
+    {
+        return redisValueCodec != null && redisValueCodec.codecForKey(key) != redisValueCodec.getDefaultCodec();
+    }
+
+    /**
+     * 按key前缀指定的编码写入，读取时由序列化器根据头部识别
+     */
+    private void setEncoded(final String key, final Object value, final Expiration expiration)
+    {
+        final byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] rawValue = redisValueCodec.serialize(value, redisValueCodec.codecForKey(key));
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.set(rawKey, rawValue, expiration,
+                RedisStringCommands.SetOption.upsert()));
+    }
+
     /**
      * 设置有效时间
      *
@@ -108,6 +167,32 @@ public class RedisCache
         return operation.get(key);
     }
 
+    /**
+     * 批量获得缓存的基本对象，按批使用MGET，一批一次往返
+     *
+     * @param keys 缓存键值集合
+     * @return 与键值顺序一致的数据，不存在的为null
+     */
+    public <T> List<T> getMultiCacheObject(final Collection<String> keys)
+    {
+        List<T> values = new ArrayList<T>(keys.size());
+        List<String> batch = new ArrayList<String>(Math.min(keys.size(), BATCH_SIZE));
+        for (String key : keys)
+        {
+            batch.add(key);
+            if (batch.size() >= BATCH_SIZE)
+            {
+                values.addAll(redisTemplate.opsForValue().multiGet(batch));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+        {
+            values.addAll(redisTemplate.opsForValue().multiGet(batch));
+        }
+        return values;
+    }
+
     /**
      * 删除单个对象
      *
@@ -171,6 +256,19 @@ public class RedisCache
         return setOperation;
     }
 
+    /**
+     * 往Set中加入成员
+     *
+     * @param key 缓存键值
+     * @param value 成员
+     * @return 成员原来不存在时为true
+     */
+    public <T> boolean setCacheSetMember(final String key, final T value)
+    {
+        Long added = redisTemplate.opsForSet().add(key, value);
+        return added != null && added > 0;
+    }
+
     /**
      * 获得缓存的set
      *
@@ -256,13 +354,63 @@ public class RedisCache
     }
 
     /**
-     * 获得缓存的基本对象列表
+     * 获得缓存的基本对象列表，使用SCAN分批遍历，不阻塞Redis
      *
      * @param pattern 字符串前缀
      * @return 对象列表
      */
     public Collection<String> keys(final String pattern)
     {
-        return redisTemplate.keys(pattern);
+        Set<String> keys = new HashSet<String>();
+        scan(pattern, keys::addAll);
+        return keys;
+    }
+
+    /**
+     * 使用SCAN分批遍历匹配的键
+     *
+     * @param pattern 匹配模式
+     * @param consumer 每批键的处理方法
+     */
+    public void scan(final String pattern, final Consumer<List<String>> consumer)
+    {
+        RedisSerializer<String> keySerializer = redisTemplate.getKeySerializer();
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(BATCH_SIZE).build();
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            try (Cursor<byte[]> cursor = connection.scan(options))
+            {
+                List<String> batch = new ArrayList<String>(BATCH_SIZE);
+                while (cursor.hasNext())
+                {
+                    batch.add(keySerializer.deserialize(cursor.next()));
+                    if (batch.size() >= BATCH_SIZE)
+                    {
+                        consumer.accept(batch);
+                        batch = new ArrayList<String>(BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty())
+                {
+                    consumer.accept(batch);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 删除匹配的全部键，边遍历边分批删除
+     *
+     * @param pattern 匹配模式
+     * @return 删除的键数量
+     */
+    public long deleteByPattern(final String pattern)
+    {
+        long[] deleted = new long[1];
+        scan(pattern, batch -> {
+            Long count = redisTemplate.delete(batch);
+            deleted[0] += count == null ? 0 : count;
+        });
+        return deleted[0];
     }
 }
@@ -0,0 +1,222 @@
+package com.whisper.common.core.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.springframework.data.redis.serializer.SerializationException;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONB;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.JSONWriter;
+import com.alibaba.fastjson2.filter.Filter;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.constant.Constants;
+import com.whisper.common.utils.StringUtils;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Redis值编解码
+ *
+ * 二进制或压缩后的值带4字节头部：标识(0xC1) 版本 编码 标志位，压缩时其后为4字节原始长度。
+ * 0xC1不会出现在UTF-8文本中，不带头部的值按旧版JSON文本读取，新旧格式可以共存。
+ *
+ * @author ruoyi
+ */
+public class RedisValueCodec
+{
+    /** 头部标识 */
+    private static final byte MAGIC = (byte) 0xC1;
+
+    /** 当前格式版本 */
+    private static final byte VERSION = 1;
+
+    /** 头部长度 */
+    private static final int HEADER_LENGTH = 4;
+
+    /** LZ4压缩标志 */
+    private static final byte FLAG_LZ4 = 1;
+
+    private static final Filter AUTO_TYPE_FILTER = JSONReader.autoTypeFilter(Constants.JSON_WHITELIST_STR);
+
+    /** JSONB根节点的集合类型也带类型名，需放行JDK基础类型 */
+    private static final Filter JSONB_AUTO_TYPE_FILTER = JSONReader.autoTypeFilter(true, Constants.JSON_WHITELIST_STR);
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    /**
+     * 编码方式
+     */
+    public enum Codec
+    {
+        /** JSON文本，未压缩时与旧版格式一致 */
+        JSON((byte) 1),
+
+        /** fastjson2 JSONB紧凑二进制 */
+        JSONB((byte) 2);
+
+        private final byte id;
+
+        Codec(byte id)
+        {
+            this.id = id;
+        }
+
+        public byte getId()
+        {
+            return id;
+        }
+
+        public static Codec of(byte id)
+        {
+            for (Codec codec : values())
+            {
+                if (codec.id == id)
+                {
+                    return codec;
+                }
+            }
+            throw new SerializationException("未知的Redis值编码: " + id);
+        }
+    }
+
+    /** 默认编码 */
+    private final Codec defaultCodec;
+
+    /** 压缩阈值（字节），小于等于0表示不压缩 */
+    private final int compressThreshold;
+
+    /** 固定使用JSONB编码的key前缀 */
+    private final String[] jsonbPrefixes;
+
+    public RedisValueCodec(Codec defaultCodec, int compressThreshold)
+    {
+        this(defaultCodec, compressThreshold, new String[0]);
+    }
+
+    public RedisValueCodec(Codec defaultCodec, int compressThreshold, String... jsonbPrefixes)
+    {
+        this.defaultCodec = defaultCodec;
+        this.compressThreshold = compressThreshold;
+        this.jsonbPrefixes = jsonbPrefixes == null ? new String[0] : jsonbPrefixes;
+    }
+
+    public Codec getDefaultCodec()
+    {
+        return defaultCodec;
+    }
+
+    /**
+     * 按key前缀选择编码，CacheConstants.JSON_CODEC_PREFIXES 中的前缀固定使用JSON，
+     * 配置的JSONB前缀固定使用JSONB，其余使用默认编码
+     *
+     * @param key Redis键
+     * @return 编码方式
+     */
+    public Codec codecForKey(String key)
+    {
+        if (key != null && StringUtils.startsWithAny(key, CacheConstants.JSON_CODEC_PREFIXES))
+        {
+            return Codec.JSON;
+        }
+        if (key != null && jsonbPrefixes.length > 0 && StringUtils.startsWithAny(key, jsonbPrefixes))
+        {
+            return Codec.JSONB;
+        }
+        return defaultCodec;
+    }
+
+    /**
+     * 使用默认编码序列化
+     */
+    public byte[] serialize(Object value)
+    {
+        return serialize(value, defaultCodec);
+    }
+
+    /**
+     * 使用指定编码序列化
+     *
+     * @param value 值
+     * @param codec 编码方式
+     * @return 字节
+     */
+    public byte[] serialize(Object value, Codec codec)
+    {
+        if (value == null)
+        {
+            return new byte[0];
+        }
+        byte[] payload = codec == Codec.JSONB
+                ? JSONB.toBytes(value, JSONWriter.Feature.WriteClassName)
+                : JSON.toJSONString(value, JSONWriter.Feature.WriteClassName).getBytes(StandardCharsets.UTF_8);
+        boolean compress = compressThreshold > 0 && payload.length >= compressThreshold;
+        if (codec == Codec.JSON && !compress)
+        {
+            return payload;
+        }
+        if (!compress)
+        {
+            byte[] bytes = new byte[HEADER_LENGTH + payload.length];
+            writeHeader(bytes, codec, (byte) 0);
+            System.arraycopy(payload, 0, bytes, HEADER_LENGTH, payload.length);
+            return bytes;
+        }
+        LZ4Compressor compressor = LZ4.fastCompressor();
+        byte[] bytes = new byte[HEADER_LENGTH + 4 + compressor.maxCompressedLength(payload.length)];
+        writeHeader(bytes, codec, FLAG_LZ4);
+        ByteBuffer.wrap(bytes, HEADER_LENGTH, 4).putInt(payload.length);
+        int length = compressor.compress(payload, 0, payload.length, bytes, HEADER_LENGTH + 4);
+        return Arrays.copyOf(bytes, HEADER_LENGTH + 4 + length);
+    }
+
+    /**
+     * 反序列化，兼容旧版JSON文本
+     *
+     * @param bytes 字节
+     * @param clazz 目标类型
+     * @return 值
+     */
+    public <T> T deserialize(byte[] bytes, Class<T> clazz)
+    {
+        if (bytes == null || bytes.length <= 0)
+        {
+            return null;
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC)
+        {
+            return JSON.parseObject(new String(bytes, StandardCharsets.UTF_8), clazz, AUTO_TYPE_FILTER);
+        }
+        if (bytes[1] > VERSION)
+        {
+            throw new SerializationException("不支持的Redis值格式版本: " + bytes[1]);
+        }
+        Codec codec = Codec.of(bytes[2]);
+        byte[] payload;
+        if ((bytes[3] & FLAG_LZ4) != 0)
+        {
+            int length = ByteBuffer.wrap(bytes, HEADER_LENGTH, 4).getInt();
+            payload = new byte[length];
+            LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+            decompressor.decompress(bytes, HEADER_LENGTH + 4, payload, 0, length);
+        }
+        else
+        {
+            payload = Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length);
+        }
+        if (codec == Codec.JSONB)
+        {
+            return JSONB.parseObject(payload, clazz, JSONB_AUTO_TYPE_FILTER);
+        }
+        return JSON.parseObject(new String(payload, StandardCharsets.UTF_8), clazz, AUTO_TYPE_FILTER);
+    }
+
+    private static void writeHeader(byte[] bytes, Codec codec, byte flags)
+    {
+        bytes[0] = MAGIC;
+        bytes[1] = VERSION;
+        bytes[2] = codec.getId();
+        bytes[3] = flags;
+    }
+}
@@ -0,0 +1,24 @@
+package com.whisper.common.enums;
+
+/**
+ * 限流算法
+ *
+ * @author ruoyi
+ */
+public enum LimitAlgorithm
+{
+    /**
+     * 固定窗口，窗口内累计次数不超过限流次数
+     */
+    FIXED_WINDOW,
+
+    /**
+     * 滑动窗口，按上一窗口计数加权估算最近一个周期内的次数，避免窗口边界处的突发翻倍
+     */
+    SLIDING_WINDOW,
+
+    /**
+     * 通用信元速率算法（GCRA），按固定间隔匀速放行，允许不超过限流次数的突发
+     */
+    GCRA
+}
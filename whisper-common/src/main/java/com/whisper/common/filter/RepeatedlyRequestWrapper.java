@@ -48,6 +48,12 @@ public class RepeatedlyRequestWrapper extends HttpServletRequestWrapper
                 return bais.read();
             }
 
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException
+            {
+                return bais.read(b, off, len);
+            }
+
             @Override
             public int available() throws IOException
             {
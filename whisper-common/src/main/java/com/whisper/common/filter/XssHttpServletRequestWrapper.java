@@ -1,16 +1,23 @@
 package com.whisper.common.filter;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
-import org.apache.commons.io.IOUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import com.whisper.common.utils.StringUtils;
 import com.whisper.common.utils.html.EscapeUtil;
+import com.whisper.common.utils.html.HtmlSanitizer;
 
 /**
  * XSS过滤处理
@@ -54,16 +61,14 @@ public class XssHttpServletRequestWrapper extends HttpServletRequestWrapper
             return super.getInputStream();
         }
 
-        // 为空，直接返回
-        String json = IOUtils.toString(super.getInputStream(), "utf-8");
-        if (StringUtils.isEmpty(json))
+        // xss过滤，边读取边过滤，不构造完整的请求体字符串
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(getContentLength(), 32));
+        try (Reader reader = new InputStreamReader(super.getInputStream(), StandardCharsets.UTF_8);
+                Writer writer = new OutputStreamWriter(bos, StandardCharsets.UTF_8))
         {
-            return super.getInputStream();
+            HtmlSanitizer.clean(reader, writer);
         }
-
-        // xss过滤
-        json = EscapeUtil.clean(json).trim();
-        byte[] jsonBytes = json.getBytes("utf-8");
+        final byte[] jsonBytes = trim(bos.toByteArray());
         final ByteArrayInputStream bis = new ByteArrayInputStream(jsonBytes);
         return new ServletInputStream()
         {
@@ -95,9 +100,33 @@ public class XssHttpServletRequestWrapper extends HttpServletRequestWrapper
             {
                 return bis.read();
             }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException
+            {
+                return bis.read(b, off, len);
+            }
         };
     }
 
+    /**
+     * 去掉前后空白，与String.trim一致（UTF-8多字节字符的每个字节都大于0x20）
+     */
+    private static byte[] trim(byte[] bytes)
+    {
+        int start = 0;
+        int end = bytes.length;
+        while (start < end && (bytes[start] & 0xff) <= ' ')
+        {
+            start++;
+        }
+        while (end > start && (bytes[end - 1] & 0xff) <= ' ')
+        {
+            end--;
+        }
+        return start == 0 && end == bytes.length ? bytes : Arrays.copyOfRange(bytes, start, end);
+    }
+
     /**
      * 是否是Json请求
      * 
@@ -108,4 +137,4 @@ public class XssHttpServletRequestWrapper extends HttpServletRequestWrapper
         String header = super.getHeader(HttpHeaders.CONTENT_TYPE);
         return StringUtils.startsWithIgnoreCase(header, MediaType.APPLICATION_JSON_VALUE);
     }
-}
\ No newline at end of file
+}
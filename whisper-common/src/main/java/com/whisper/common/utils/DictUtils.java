@@ -1,9 +1,14 @@
 package com.whisper.common.utils;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import com.alibaba.fastjson2.JSONArray;
 import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.core.cache.NearCache;
 import com.whisper.common.core.domain.entity.SysDictData;
 import com.whisper.common.core.redis.RedisCache;
 import com.whisper.common.utils.spring.SpringUtils;
@@ -11,6 +16,8 @@ import com.whisper.common.utils.spring.SpringUtils;
 /**
  * 字典工具类
  * 
+ * 字典数据在Redis之前还有一层本地缓存，导出时逐个单元格翻译字典不再每次访问Redis。
+ *
  * @author ruoyi
  */
 public class DictUtils
@@ -20,6 +27,15 @@ public class DictUtils
      */
     public static final String SEPARATOR = ",";
 
+    /** 本地缓存最大条目数 */
+    private static final int NEAR_CACHE_SIZE = 2000;
+
+    /** 本地缓存过期时间（分钟） */
+    private static final int NEAR_CACHE_MINUTES = 10;
+
+    /** 字典类型 -> 字典数据列表 */
+    private static volatile NearCache<List<SysDictData>> nearCache;
+
     /**
      * 设置字典缓存
      * 
@@ -29,6 +45,7 @@ public class DictUtils
     public static void setDictCache(String key, List<SysDictData> dictDatas)
     {
         SpringUtils.getBean(RedisCache.class).setCacheObject(getCacheKey(key), dictDatas);
+        getNearCache().evict(key);
     }
 
     /**
@@ -38,11 +55,19 @@ public class DictUtils
      * @return dictDatas 字典数据列表
      */
     public static List<SysDictData> getDictCache(String key)
+    {
+        return getNearCache().get(key, DictUtils::loadDictCache);
+    }
+
+    /**
+     * 从Redis读取字典数据，本地缓存未命中时调用
+     */
+    private static List<SysDictData> loadDictCache(String key)
     {
         JSONArray arrayCache = SpringUtils.getBean(RedisCache.class).getCacheObject(getCacheKey(key));
         if (StringUtils.isNotNull(arrayCache))
         {
-            return arrayCache.toList(SysDictData.class);
+            return Collections.unmodifiableList(arrayCache.toList(SysDictData.class));
         }
         return null;
     }
@@ -215,6 +240,7 @@ public class DictUtils
     public static void removeDictCache(String key)
     {
         SpringUtils.getBean(RedisCache.class).deleteObject(getCacheKey(key));
+        getNearCache().evict(key);
     }
 
     /**
@@ -224,6 +250,27 @@ public class DictUtils
     {
         Collection<String> keys = SpringUtils.getBean(RedisCache.class).keys(CacheConstants.SYS_DICT_KEY + "*");
         SpringUtils.getBean(RedisCache.class).deleteObject(keys);
+        getNearCache().evictAll();
+    }
+
+    private static NearCache<List<SysDictData>> getNearCache()
+    {
+        NearCache<List<SysDictData>> cache = nearCache;
+        if (cache == null)
+        {
+            synchronized (DictUtils.class)
+            {
+                cache = nearCache;
+                if (cache == null)
+                {
+                    cache = new NearCache<List<SysDictData>>("sys_dict", NEAR_CACHE_SIZE, NEAR_CACHE_MINUTES,
+                            TimeUnit.MINUTES, SpringUtils.getBean(StringRedisTemplate.class),
+                            SpringUtils.getBean(RedisMessageListenerContainer.class));
+                    nearCache = cache;
+                }
+            }
+        }
+        return cache;
     }
 
     /**
@@ -0,0 +1,240 @@
+package com.whisper.common.utils.file;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.web.context.request.ServletWebRequest;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.uuid.IdUtils;
+
+/**
+ * 文件下载工具类
+ *
+ * 支持 ETag/Last-Modified 条件请求（304）和 Range 断点续传（单个范围206，多个范围 multipart/byteranges）。
+ * 文件内容通过 FileChannel.transferTo 写出，Tomcat 支持 sendfile 时较大的文件直接交给连接器由内核发送。
+ *
+ * @author ruoyi
+ */
+public class FileDownloadUtils
+{
+    /** Tomcat 是否支持 sendfile 的请求属性 */
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+
+    /** Tomcat sendfile 文件路径的请求属性 */
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+
+    /** Tomcat sendfile 起始位置的请求属性 */
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+
+    /** Tomcat sendfile 结束位置（不含）的请求属性 */
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /** 小于该字节数的内容直接写出，不使用 sendfile，与 Tomcat DefaultServlet 默认值一致 */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024L;
+
+    /**
+     * 输出文件，支持条件请求和断点续传
+     *
+     * @param request 请求对象
+     * @param response 响应对象，需已设置 Content-Type 和其他响应头
+     * @param file 文件
+     */
+    public static void writeFile(HttpServletRequest request, HttpServletResponse response, File file) throws IOException
+    {
+        writeFile(request, response, file, true);
+    }
+
+    /**
+     * 输出文件
+     *
+     * @param request 请求对象
+     * @param response 响应对象，需已设置 Content-Type 和其他响应头
+     * @param file 文件
+     * @param partial 是否支持条件请求、断点续传和 sendfile，响应后立即删除的文件应为 false
+     */
+    public static void writeFile(HttpServletRequest request, HttpServletResponse response, File file, boolean partial)
+            throws IOException
+    {
+        if (!file.isFile())
+        {
+            throw new FileNotFoundException(file.getPath());
+        }
+        long length = file.length();
+        if (!partial)
+        {
+            response.setContentLengthLong(length);
+            transfer(file, 0, length, response.getOutputStream());
+            return;
+        }
+        long lastModified = file.lastModified();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified))
+        {
+            return;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        boolean head = HttpMethod.HEAD.matches(request.getMethod());
+        List<HttpRange> ranges = getRanges(request, etag, lastModified);
+        if (ranges == null)
+        {
+            response.setContentLengthLong(length);
+            if (!head)
+            {
+                send(request, response, file, 0, length);
+            }
+            return;
+        }
+        if (!isSatisfiable(ranges, length))
+        {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1)
+        {
+            long start = ranges.get(0).getRangeStart(length);
+            long end = ranges.get(0).getRangeEnd(length) + 1;
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+            response.setContentLengthLong(end - start);
+            if (!head)
+            {
+                send(request, response, file, start, end);
+            }
+            return;
+        }
+        String contentType = StringUtils.defaultIfEmpty(response.getContentType(), "application/octet-stream");
+        String boundary = IdUtils.fastSimpleUUID();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        if (head)
+        {
+            return;
+        }
+        ServletOutputStream out = response.getOutputStream();
+        for (HttpRange range : ranges)
+        {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length) + 1;
+            out.write(("\r\n--" + boundary + "\r\n" + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + (end - 1) + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            transfer(file, start, end, out);
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * 解析请求范围，没有 Range、If-Range 不匹配或格式错误时返回 null 输出完整文件
+     */
+    private static List<HttpRange> getRanges(HttpServletRequest request, String etag, long lastModified)
+    {
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (StringUtils.isEmpty(range))
+        {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (StringUtils.isNotEmpty(ifRange) && !ifRange.equals(etag))
+        {
+            try
+            {
+                if (request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 != lastModified / 1000)
+                {
+                    return null;
+                }
+            }
+            catch (IllegalArgumentException e)
+            {
+                // 既不是当前 ETag 也不是日期
+                return null;
+            }
+        }
+        try
+        {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.isEmpty() ? null : ranges;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * 各范围都落在文件内，且范围总长度不超过文件长度，防止重叠范围放大响应
+     */
+    private static boolean isSatisfiable(List<HttpRange> ranges, long length)
+    {
+        long total = 0;
+        for (HttpRange range : ranges)
+        {
+            long start;
+            long end;
+            try
+            {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            }
+            catch (IllegalArgumentException e)
+            {
+                return false;
+            }
+            if (start >= length || end < start)
+            {
+                return false;
+            }
+            total += end - start + 1;
+        }
+        return total <= length;
+    }
+
+    /**
+     * 输出文件区间，支持时交给 Tomcat sendfile
+     */
+    private static void send(HttpServletRequest request, HttpServletResponse response, File file, long start, long end)
+            throws IOException
+    {
+        if (end - start >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR)))
+        {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end);
+            return;
+        }
+        transfer(file, start, end, response.getOutputStream());
+    }
+
+    /**
+     * 通过 FileChannel.transferTo 输出文件区间 [start, end)
+     */
+    private static void transfer(File file, long start, long end, ServletOutputStream out) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            while (position < end)
+            {
+                long count = channel.transferTo(position, end - position, target);
+                if (count <= 0)
+                {
+                    throw new EOFException(file.getPath());
+                }
+                position += count;
+            }
+        }
+    }
+}
@@ -0,0 +1,679 @@
+package com.whisper.common.utils.html;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HTML过滤器，用于去除XSS漏洞隐患。
+ *
+ * 与 HTMLFilter 默认配置的白名单和输出一致，但用单遍状态机代替多轮正则替换：文本逐字符直接输出，
+ * 只有标签内容和注释需要暂存，可以按块处理输入流。实例保存解析状态，不可并发使用。
+ *
+ * 唯一的差异：输入以'>'开头时，HTMLFilter 其后第一个不成对的'>'原样输出（正则空匹配后跳过了下标0），
+ * 这里所有不成对的'>'都转义为&amp;gt;。差分测试见 HtmlSanitizerTest。
+ *
+ * @author ruoyi
+ */
+public final class HtmlSanitizer
+{
+    /** 允许的标签及其属性 */
+    private static final Map<String, Set<String>> ALLOWED = new HashMap<>();
+
+    /** 必须自闭合的标签 */
+    private static final Set<String> SELF_CLOSING_TAGS = setOf("img");
+
+    /** 需要校验协议的属性 */
+    private static final Set<String> PROTOCOL_ATTS = setOf("src", "href");
+
+    /** 允许的协议 */
+    private static final Set<String> ALLOWED_PROTOCOLS = setOf("http", "mailto", "https");
+
+    /** 内容为空时删除的标签，顺序与 HTMLFilter 一致 */
+    private static final String[] REMOVE_BLANKS = { "a", "b", "strong", "i", "em" };
+
+    /** 允许的实体 */
+    private static final Set<String> ALLOWED_ENTITIES = setOf("amp", "gt", "lt", "quot");
+
+    /** 输出超过该长度时写出 */
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    private static final int STATE_TEXT = 0;
+
+    private static final int STATE_TAG = 1;
+
+    private static final int STATE_COMMENT = 2;
+
+    static
+    {
+        ALLOWED.put("a", setOf("href", "target"));
+        ALLOWED.put("img", setOf("src", "width", "height", "alt"));
+        ALLOWED.put("b", Collections.emptySet());
+        ALLOWED.put("strong", Collections.emptySet());
+        ALLOWED.put("i", Collections.emptySet());
+        ALLOWED.put("em", Collections.emptySet());
+    }
+
+    private final StringBuilder out;
+
+    private final Writer writer;
+
+    /** 当前标签或注释的内容（不含尖括号） */
+    private final StringBuilder pending = new StringBuilder();
+
+    private int state = STATE_TEXT;
+
+    /** 是否已遇到第一个注释开始标记，只有第一个完整注释整体删除 */
+    private boolean commentChecked;
+
+    /** 注释中连续的'-'数量 */
+    private int dashes;
+
+    /** 未闭合标签计数，结束时补齐 */
+    private Map<String, Integer> tagCounts;
+
+    /** 第一个输出标签的位置，之后的输出暂存到结束时做空标签删除 */
+    private int holdFrom = -1;
+
+    private HtmlSanitizer(StringBuilder out, Writer writer)
+    {
+        this.out = out;
+        this.writer = writer;
+    }
+
+    /**
+     * 过滤字符串
+     *
+     * @param input 用户提交的文本
+     * @return 只保留白名单标签后的文本
+     */
+    public static String clean(String input)
+    {
+        if (input == null || (input.indexOf('<') < 0 && input.indexOf('>') < 0))
+        {
+            return input;
+        }
+        HtmlSanitizer sanitizer = new HtmlSanitizer(new StringBuilder(input.length() + 16), null);
+        char[] buffer = new char[Math.min(input.length(), FLUSH_THRESHOLD)];
+        for (int off = 0; off < input.length(); off += buffer.length)
+        {
+            int len = Math.min(buffer.length, input.length() - off);
+            input.getChars(off, off + len, buffer, 0);
+            sanitizer.feed(buffer, 0, len);
+        }
+        sanitizer.finish();
+        return sanitizer.out.toString();
+    }
+
+    /**
+     * 过滤字符流
+     *
+     * @param reader 输入
+     * @param writer 输出
+     */
+    public static void clean(Reader reader, Writer writer) throws IOException
+    {
+        HtmlSanitizer sanitizer = new HtmlSanitizer(new StringBuilder(), writer);
+        char[] buffer = new char[FLUSH_THRESHOLD];
+        int n;
+        while ((n = reader.read(buffer)) != -1)
+        {
+            sanitizer.feed(buffer, 0, n);
+            sanitizer.flush(false);
+        }
+        sanitizer.finish();
+        sanitizer.flush(true);
+    }
+
+    private void feed(char[] buf, int off, int len)
+    {
+        int end = off + len;
+        int i = off;
+        while (i < end)
+        {
+            char c = buf[i];
+            if (state == STATE_TEXT)
+            {
+                int start = i;
+                while (i < end && (c = buf[i]) != '<' && c != '>')
+                {
+                    i++;
+                }
+                out.append(buf, start, i - start);
+                if (i == end)
+                {
+                    break;
+                }
+                if (c == '<')
+                {
+                    state = STATE_TAG;
+                    pending.setLength(0);
+                }
+                else
+                {
+                    // 不成对的'>'
+                    out.append("&gt;");
+                }
+            }
+            else if (state == STATE_TAG)
+            {
+                if (c == '>')
+                {
+                    emitTag(processTag(pending.toString()));
+                    state = STATE_TEXT;
+                }
+                else if (c == '<')
+                {
+                    // 不成对的'<'，内容按文本输出
+                    out.append("&lt;").append(pending);
+                    pending.setLength(0);
+                }
+                else
+                {
+                    pending.append(c);
+                    if (!commentChecked && pending.length() == 3 && pending.charAt(0) == '!' && pending.charAt(1) == '-' && pending.charAt(2) == '-')
+                    {
+                        commentChecked = true;
+                        state = STATE_COMMENT;
+                        dashes = 0;
+                    }
+                }
+            }
+            else
+            {
+                pending.append(c);
+                if (c == '-')
+                {
+                    dashes++;
+                }
+                else
+                {
+                    if (c == '>' && dashes >= 2)
+                    {
+                        // 注释整体删除
+                        pending.setLength(0);
+                        state = STATE_TEXT;
+                    }
+                    dashes = 0;
+                }
+            }
+            i++;
+        }
+    }
+
+    private void finish()
+    {
+        if (state == STATE_COMMENT)
+        {
+            // 注释未结束，按普通内容重新处理
+            char[] rest = pending.substring(3).toCharArray();
+            pending.setLength(3);
+            state = STATE_TAG;
+            feed(rest, 0, rest.length);
+        }
+        if (state == STATE_TAG)
+        {
+            out.append("&lt;").append(pending);
+            pending.setLength(0);
+            state = STATE_TEXT;
+        }
+        if (tagCounts != null)
+        {
+            for (Map.Entry<String, Integer> entry : tagCounts.entrySet())
+            {
+                for (int i = 0; i < entry.getValue(); i++)
+                {
+                    out.append("</").append(entry.getKey()).append('>');
+                }
+            }
+        }
+        if (holdFrom >= 0)
+        {
+            String held = out.substring(holdFrom);
+            for (String tag : REMOVE_BLANKS)
+            {
+                held = removeBlanks(held, tag);
+            }
+            out.setLength(holdFrom);
+            out.append(held);
+            holdFrom = -1;
+        }
+    }
+
+    private void flush(boolean all) throws IOException
+    {
+        int limit = holdFrom >= 0 ? holdFrom : out.length();
+        if (limit > 0 && (all || limit >= FLUSH_THRESHOLD))
+        {
+            writer.append(out, 0, limit);
+            out.delete(0, limit);
+            if (holdFrom >= 0)
+            {
+                holdFrom = 0;
+            }
+        }
+    }
+
+    private void emitTag(String tag)
+    {
+        if (tag.isEmpty())
+        {
+            return;
+        }
+        if (holdFrom < 0)
+        {
+            holdFrom = out.length();
+        }
+        out.append(tag);
+    }
+
+    private String processTag(String s)
+    {
+        // 结束标签
+        if (s.length() > 0 && s.charAt(0) == '/')
+        {
+            int nameEnd = alnumEnd(s, 1, s.length());
+            if (nameEnd > 1)
+            {
+                String name = s.substring(1, nameEnd).toLowerCase();
+                if (ALLOWED.containsKey(name) && !SELF_CLOSING_TAGS.contains(name) && tagCounts != null && tagCounts.containsKey(name))
+                {
+                    tagCounts.put(name, tagCounts.get(name) - 1);
+                    return "</" + name + ">";
+                }
+            }
+            return "";
+        }
+
+        // 开始标签，其它内容（包括注释）删除
+        int nameEnd = alnumEnd(s, 0, s.length());
+        if (nameEnd == 0)
+        {
+            return "";
+        }
+        String name = s.substring(0, nameEnd).toLowerCase();
+        Set<String> atts = ALLOWED.get(name);
+        if (atts == null)
+        {
+            return "";
+        }
+        StringBuilder tag = new StringBuilder(s.length() + 8).append('<').append(name);
+        if (!atts.isEmpty())
+        {
+            int bodyEnd = bodyEnd(s, nameEnd);
+            appendQuotedAttributes(tag, atts, s, nameEnd, bodyEnd);
+            appendUnquotedAttributes(tag, atts, s, nameEnd, bodyEnd);
+        }
+        if (SELF_CLOSING_TAGS.contains(name))
+        {
+            tag.append(" /");
+        }
+        else
+        {
+            if (tagCounts == null)
+            {
+                tagCounts = new HashMap<>();
+            }
+            // 与 HTMLFilter 相同使用put，保证补齐结束标签的顺序一致
+            Integer count = tagCounts.get(name);
+            tagCounts.put(name, count == null ? 1 : count + 1);
+        }
+        return tag.append('>').toString();
+    }
+
+    /**
+     * 属性部分的结束位置，去掉结尾的'/'以及输入末尾的换行
+     */
+    private static int bodyEnd(String s, int from)
+    {
+        int end = s.length();
+        char last = s.charAt(end - 1);
+        if (end - from >= 2 && last == '\n' && s.charAt(end - 2) == '\r')
+        {
+            end -= 2;
+        }
+        else if (end > from && (last == '\n' || last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029'))
+        {
+            end -= 1;
+        }
+        if (end > from && s.charAt(end - 1) == '/')
+        {
+            end -= 1;
+        }
+        return end;
+    }
+
+    /**
+     * name="value" 或 name='value'
+     */
+    private void appendQuotedAttributes(StringBuilder tag, Set<String> atts, String s, int from, int end)
+    {
+        int i = from;
+        while (i < end)
+        {
+            if (!isAlnum(s.charAt(i)))
+            {
+                i++;
+                continue;
+            }
+            int j = alnumEnd(s, i, end);
+            if (j + 1 < end && s.charAt(j) == '=')
+            {
+                char quote = s.charAt(j + 1);
+                if (quote == '"' || quote == '\'')
+                {
+                    int k = s.indexOf(quote, j + 2);
+                    if (k >= 0 && k < end)
+                    {
+                        appendAttribute(tag, atts, s.substring(i, j), s.substring(j + 2, k));
+                        i = k + 1;
+                        continue;
+                    }
+                }
+            }
+            i = j;
+        }
+    }
+
+    /**
+     * name=value
+     */
+    private void appendUnquotedAttributes(StringBuilder tag, Set<String> atts, String s, int from, int end)
+    {
+        int i = from;
+        while (i < end)
+        {
+            if (!isAlnum(s.charAt(i)))
+            {
+                i++;
+                continue;
+            }
+            int j = alnumEnd(s, i, end);
+            if (j + 1 < end && s.charAt(j) == '=' && !isQuoteOrSpace(s.charAt(j + 1)))
+            {
+                int k = j + 1;
+                while (k < end && !isQuoteOrSpace(s.charAt(k)))
+                {
+                    k++;
+                }
+                appendAttribute(tag, atts, s.substring(i, j), s.substring(j + 1, k));
+                i = k;
+                continue;
+            }
+            i = j;
+        }
+    }
+
+    private void appendAttribute(StringBuilder tag, Set<String> atts, String paramName, String paramValue)
+    {
+        paramName = paramName.toLowerCase();
+        if (atts.contains(paramName))
+        {
+            if (PROTOCOL_ATTS.contains(paramName))
+            {
+                paramValue = processParamProtocol(paramValue);
+            }
+            tag.append(' ').append(paramName).append("=\\\"").append(paramValue).append("\\\"");
+        }
+    }
+
+    private static String processParamProtocol(String s)
+    {
+        s = validateEntities(decodePercent(decodeHexEntities(decodeEntities(s))));
+        int colon = s.indexOf(':');
+        if (colon > 0)
+        {
+            String protocol = s.substring(0, colon);
+            if (!ALLOWED_PROTOCOLS.contains(protocol))
+            {
+                // 不允许的协议，转为页内锚点
+                s = "#" + s.substring(colon + 1);
+                if (s.startsWith("#//"))
+                {
+                    s = "#" + s.substring(3);
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * &amp;#十进制; 转字符
+     */
+    private static String decodeEntities(String s)
+    {
+        if (s.indexOf("&#") < 0)
+        {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        int n = s.length();
+        int i = 0;
+        while (i < n)
+        {
+            char c = s.charAt(i);
+            if (c == '&' && i + 2 < n && s.charAt(i + 1) == '#' && isDigit(s.charAt(i + 2)))
+            {
+                int j = i + 2;
+                while (j < n && isDigit(s.charAt(j)))
+                {
+                    j++;
+                }
+                try
+                {
+                    sb.append((char) Integer.decode(s.substring(i + 2, j)).intValue());
+                    i = j < n && s.charAt(j) == ';' ? j + 1 : j;
+                    continue;
+                }
+                catch (NumberFormatException e)
+                {
+                    // 无法解析的数值保持原样
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * &amp;#x十六进制; 转字符
+     */
+    private static String decodeHexEntities(String s)
+    {
+        if (s.indexOf("&#x") < 0)
+        {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        int n = s.length();
+        int i = 0;
+        while (i < n)
+        {
+            char c = s.charAt(i);
+            if (c == '&' && i + 3 < n && s.charAt(i + 1) == '#' && s.charAt(i + 2) == 'x' && isLowerHex(s.charAt(i + 3)))
+            {
+                int j = i + 3;
+                while (j < n && isLowerHex(s.charAt(j)))
+                {
+                    j++;
+                }
+                try
+                {
+                    sb.append((char) Integer.parseInt(s.substring(i + 3, j), 16));
+                    i = j < n && s.charAt(j) == ';' ? j + 1 : j;
+                    continue;
+                }
+                catch (NumberFormatException e)
+                {
+                    // 超出范围的数值保持原样
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * %十六进制 转字符
+     */
+    private static String decodePercent(String s)
+    {
+        if (s.indexOf('%') < 0)
+        {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        int n = s.length();
+        int i = 0;
+        while (i < n)
+        {
+            char c = s.charAt(i);
+            if (c == '%' && i + 2 < n && isLowerHex(s.charAt(i + 1)) && isLowerHex(s.charAt(i + 2)))
+            {
+                sb.append((char) Integer.parseInt(s.substring(i + 1, i + 3), 16));
+                i = i + 3 < n && s.charAt(i + 3) == ';' ? i + 4 : i + 3;
+                continue;
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 不在白名单内或未以';'结束的实体转义'&amp;'
+     */
+    private static String validateEntities(String s)
+    {
+        if (s.indexOf('&') < 0)
+        {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        int n = s.length();
+        int i = 0;
+        while (i < n)
+        {
+            char c = s.charAt(i);
+            if (c != '&')
+            {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            int j = i + 1;
+            while (j < n && s.charAt(j) != '&' && s.charAt(j) != ';')
+            {
+                j++;
+            }
+            String entity = s.substring(i + 1, j);
+            if (j < n && s.charAt(j) == ';' && ALLOWED_ENTITIES.contains(entity))
+            {
+                sb.append('&');
+            }
+            else
+            {
+                sb.append("&amp;");
+            }
+            sb.append(entity);
+            i = j;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 删除内容为空的标签，如 &lt;b&gt;&lt;/b&gt;
+     */
+    private static String removeBlanks(String s, String tag)
+    {
+        String open = "<" + tag;
+        String close = "</" + tag + ">";
+        int i = s.indexOf(open);
+        if (i < 0)
+        {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        int last = 0;
+        int n = s.length();
+        while (i >= 0)
+        {
+            int j = i + open.length();
+            int matchEnd = -1;
+            if (j < n)
+            {
+                char c = s.charAt(j);
+                if (c == '>' && s.startsWith(close, j + 1))
+                {
+                    matchEnd = j + 1 + close.length();
+                }
+                else if (isSpace(c))
+                {
+                    int k = s.indexOf('>', j);
+                    if (k > 0 && s.startsWith(close, k + 1))
+                    {
+                        matchEnd = k + 1 + close.length();
+                    }
+                }
+            }
+            if (matchEnd < 0)
+            {
+                i = s.indexOf(open, i + 1);
+                continue;
+            }
+            sb.append(s, last, i);
+            last = matchEnd;
+            i = s.indexOf(open, matchEnd);
+        }
+        return sb.append(s, last, n).toString();
+    }
+
+    private static int alnumEnd(String s, int from, int end)
+    {
+        int i = from;
+        while (i < end && isAlnum(s.charAt(i)))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isAlnum(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLowerHex(char c)
+    {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+    }
+
+    private static boolean isSpace(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isQuoteOrSpace(char c)
+    {
+        return c == '"' || c == '\'' || isSpace(c);
+    }
+
+    private static Set<String> setOf(String... values)
+    {
+        Set<String> set = new HashSet<>();
+        Collections.addAll(set, values);
+        return Collections.unmodifiableSet(set);
+    }
+}
@@ -0,0 +1,234 @@
+package com.whisper.common.utils.poi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.whisper.common.annotation.Excel;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.reflect.ReflectUtils;
+
+/**
+ * Excel 列的预编译属性访问
+ *
+ * 按字段全局缓存。导出时直接读取已设为可访问的字段（Field.get 比非常量的 MethodHandle 快），
+ * targetAttr 指向的下级字段按运行时类解析后缓存；导入时的 getter/setter 按运行时类解析为 MethodHandle 后缓存。导出取值与 getTargetValue 原有逻辑一致
+ * （下级属性直接读取运行时类声明的字段），导入赋值与 ReflectUtils.invokeSetter 一致（按名称查找 getter/setter 并转换参数类型），
+ * 但每个单元格不再按名称查找字段和方法。
+ *
+ * @author ruoyi
+ */
+final class ExcelFieldAccessor
+{
+    private static final Logger log = LoggerFactory.getLogger(ExcelFieldAccessor.class);
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /** 找不到方法时的占位 */
+    private static final Accessor MISSING = new Accessor(null, null);
+
+    private static final Map<Field, Map<String, ExcelFieldAccessor>> CACHE = new ConcurrentHashMap<Field, Map<String, ExcelFieldAccessor>>();
+
+    /** 导出时读取的注解字段，已设置为可访问 */
+    private final Field field;
+
+    /** targetAttr 按 . 拆分后的下级属性 */
+    private final String[] targets;
+
+    /** 导入时 setter 路径上的属性名，首个为字段名 */
+    private final String[] properties;
+
+    /** 导出时各级下级属性按运行时类缓存的字段读取 */
+    private final Map<Class<?>, Field>[] targetFields;
+
+    /** 导入时各级属性按运行时类缓存的 getter，最后一级为 setter */
+    private final Map<Class<?>, Accessor>[] propertyAccessors;
+
+    @SuppressWarnings("unchecked")
+    private ExcelFieldAccessor(Field field, String targetAttr)
+    {
+        field.setAccessible(true);
+        this.field = field;
+        this.targets = StringUtils.isNotEmpty(targetAttr) ? targetAttr.split("[.]") : new String[0];
+        String propertyName = StringUtils.isNotEmpty(targetAttr) ? field.getName() + "." + targetAttr : field.getName();
+        this.properties = StringUtils.split(propertyName, ".");
+        this.targetFields = new Map[targets.length];
+        for (int i = 0; i < targets.length; i++)
+        {
+            targetFields[i] = new ConcurrentHashMap<Class<?>, Field>();
+        }
+        this.propertyAccessors = new Map[properties.length];
+        for (int i = 0; i < properties.length; i++)
+        {
+            propertyAccessors[i] = new ConcurrentHashMap<Class<?>, Accessor>();
+        }
+    }
+
+    /**
+     * 获取字段的访问器
+     *
+     * @param field 字段
+     * @param attr 注解
+     * @return 访问器
+     */
+    static ExcelFieldAccessor of(Field field, Excel attr)
+    {
+        return CACHE.computeIfAbsent(field, f -> new ConcurrentHashMap<String, ExcelFieldAccessor>())
+                .computeIfAbsent(attr.targetAttr(), target -> new ExcelFieldAccessor(field, target));
+    }
+
+    /**
+     * 导出取值
+     *
+     * @param vo 实体对象
+     * @return 属性值
+     */
+    Object get(Object vo) throws Exception
+    {
+        Object o = field.get(vo);
+        for (int i = 0; i < targets.length && o != null; i++)
+        {
+            if (StringUtils.isEmpty(targets[i]))
+            {
+                continue;
+            }
+            Class<?> type = o.getClass();
+            Field target = targetFields[i].get(type);
+            if (target == null)
+            {
+                // 找不到字段时抛出 NoSuchFieldException，与逐个反射时一致
+                target = type.getDeclaredField(targets[i]);
+                target.setAccessible(true);
+                targetFields[i].put(type, target);
+            }
+            o = target.get(o);
+        }
+        return o;
+    }
+
+    /**
+     * 导入赋值，下级属性为空或找不到 setter 时忽略
+     *
+     * @param entity 实体对象
+     * @param value 值
+     */
+    void set(Object entity, Object value)
+    {
+        Object object = entity;
+        for (int i = 0; i < properties.length; i++)
+        {
+            if (object == null)
+            {
+                return;
+            }
+            boolean last = i == properties.length - 1;
+            Accessor accessor = resolve(i, object.getClass(), last);
+            if (accessor == MISSING)
+            {
+                log.debug("在 [{}] 中，没有找到 [{}] 属性的方法 ", object.getClass(), properties[i]);
+                return;
+            }
+            try
+            {
+                if (last)
+                {
+                    accessor.handle.invokeExact(object, ReflectUtils.convertArgument(value, accessor.type));
+                }
+                else
+                {
+                    object = (Object) accessor.handle.invokeExact(object);
+                }
+            }
+            catch (RuntimeException e)
+            {
+                throw e;
+            }
+            catch (Throwable e)
+            {
+                throw new RuntimeException("property: " + properties[i] + ", obj: " + object, e);
+            }
+        }
+    }
+
+    private Accessor resolve(int index, Class<?> type, boolean setter)
+    {
+        return propertyAccessors[index].computeIfAbsent(type, t -> {
+            try
+            {
+                if (setter)
+                {
+                    Method method = findMethodByName(t, "set" + StringUtils.capitalize(properties[index]));
+                    return method == null ? MISSING
+                            : new Accessor(MethodHandles.lookup().unreflect(method).asType(SETTER_TYPE), method.getParameterTypes()[0]);
+                }
+                Method method = findMethod(t, "get" + StringUtils.capitalize(properties[index]));
+                return method == null ? MISSING
+                        : new Accessor(MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE), method.getReturnType());
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * 按名称和无参查找方法，与 ReflectUtils.getAccessibleMethod 的查找顺序一致
+     */
+    private static Method findMethod(Class<?> type, String name)
+    {
+        for (Class<?> searchType = type; searchType != Object.class; searchType = searchType.getSuperclass())
+        {
+            try
+            {
+                Method method = searchType.getDeclaredMethod(name);
+                method.setAccessible(true);
+                return method;
+            }
+            catch (NoSuchMethodException e)
+            {
+                continue;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按名称查找单参数方法，与 ReflectUtils.getAccessibleMethodByName 的查找顺序一致
+     */
+    private static Method findMethodByName(Class<?> type, String name)
+    {
+        for (Class<?> searchType = type; searchType != Object.class; searchType = searchType.getSuperclass())
+        {
+            for (Method method : searchType.getDeclaredMethods())
+            {
+                if (method.getName().equals(name) && method.getParameterCount() == 1)
+                {
+                    method.setAccessible(true);
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static class Accessor
+    {
+        private final MethodHandle handle;
+
+        private final Class<?> type;
+
+        Accessor(MethodHandle handle, Class<?> type)
+        {
+            this.handle = handle;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.whisper.common.utils.poi;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.poi.ooxml.util.SAXHelper;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.PictureData;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFPicture;
+import org.apache.poi.xssf.usermodel.XSSFShape;
+import org.openxmlformats.schemas.drawingml.x2006.spreadsheetDrawing.CTMarker;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import com.whisper.common.utils.StringUtils;
+
+/**
+ * xlsx 工作表事件模型读取
+ *
+ * 以SAX方式逐行解析工作表XML，不构建工作簿对象，内存中只有共享字符串表和当前行。
+ * 单元格值的类型与 ExcelUtil.getCellValue 一致：日期格式的数值为 Date，小数为 BigDecimal，整数为不带小数点的字符串。
+ *
+ * @author ruoyi
+ */
+final class ExcelSaxReader implements Closeable
+{
+    /**
+     * 行回调
+     */
+    interface RowHandler
+    {
+        /**
+         * 处理一行
+         *
+         * @param rowNum 行下标，从0开始
+         * @param cells 列下标与单元格值，不含空单元格
+         */
+        void row(int rowNum, Map<Integer, Object> cells) throws Exception;
+    }
+
+    private final OPCPackage pkg;
+
+    private final ReadOnlySharedStringsTable strings;
+
+    private final StylesTable styles;
+
+    private final InputStream sheetStream;
+
+    private final List<XSSFShape> shapes;
+
+    /** 样式下标是否为日期格式 */
+    private final Map<Integer, Boolean> dateStyles = new HashMap<Integer, Boolean>();
+
+    /**
+     * 打开工作表
+     *
+     * @param file xlsx 文件
+     * @param sheetName 工作表名称，为空时读取第一个工作表
+     * @param withPictures 是否读取图片
+     */
+    ExcelSaxReader(File file, String sheetName, boolean withPictures) throws Exception
+    {
+        this.pkg = OPCPackage.open(file, PackageAccess.READ);
+        try
+        {
+            XSSFReader reader = new XSSFReader(pkg);
+            this.strings = new ReadOnlySharedStringsTable(pkg, false);
+            this.styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            InputStream found = null;
+            List<XSSFShape> foundShapes = null;
+            while (sheets.hasNext())
+            {
+                InputStream in = sheets.next();
+                if (StringUtils.isEmpty(sheetName) || sheetName.equals(sheets.getSheetName()))
+                {
+                    found = in;
+                    foundShapes = withPictures ? sheets.getShapes() : null;
+                    break;
+                }
+                IOUtils.closeQuietly(in);
+            }
+            if (found == null)
+            {
+                throw new IOException("文件sheet不存在");
+            }
+            this.sheetStream = found;
+            this.shapes = foundShapes;
+        }
+        catch (Exception e)
+        {
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    /**
+     * 工作表中的图片
+     *
+     * @return Map key:图片单元格索引（1_1）String，value:图片流PictureData
+     */
+    Map<String, List<PictureData>> getPictures()
+    {
+        Map<String, List<PictureData>> sheetIndexPicMap = new HashMap<>();
+        if (shapes == null)
+        {
+            return sheetIndexPicMap;
+        }
+        for (XSSFShape shape : shapes)
+        {
+            if (shape instanceof XSSFPicture)
+            {
+                XSSFPicture pic = (XSSFPicture) shape;
+                CTMarker ctMarker = pic.getClientAnchor().getFrom();
+                String picIndex = ctMarker.getRow() + "_" + ctMarker.getCol();
+                sheetIndexPicMap.computeIfAbsent(picIndex, k -> new ArrayList<>()).add(pic.getPictureData());
+            }
+        }
+        return sheetIndexPicMap;
+    }
+
+    /**
+     * 逐行读取工作表，跳过没有值的行
+     *
+     * @param handler 行回调
+     */
+    void read(RowHandler handler) throws Exception
+    {
+        XMLReader parser = SAXHelper.newXMLReader();
+        parser.setContentHandler(new SheetHandler(handler));
+        parser.parse(new InputSource(sheetStream));
+    }
+
+    @Override
+    public void close()
+    {
+        IOUtils.closeQuietly(sheetStream);
+        pkg.revert();
+    }
+
+    private boolean isDateStyle(int styleIndex)
+    {
+        if (styles == null)
+        {
+            return false;
+        }
+        return dateStyles.computeIfAbsent(styleIndex, index -> {
+            XSSFCellStyle style = styles.getStyleAt(index);
+            return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+        });
+    }
+
+    private class SheetHandler extends DefaultHandler
+    {
+        private final RowHandler handler;
+
+        private final StringBuilder text = new StringBuilder();
+
+        private Map<Integer, Object> cells = new HashMap<Integer, Object>();
+
+        private int rowNum = -1;
+
+        private int column = -1;
+
+        private String cellType;
+
+        private int styleIndex;
+
+        /** 是否在 v 或内联字符串的 t 元素内 */
+        private boolean inValue;
+
+        SheetHandler(RowHandler handler)
+        {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        {
+            switch (localName)
+            {
+                case "row":
+                    String r = attributes.getValue("r");
+                    rowNum = r != null ? Integer.parseInt(r) - 1 : rowNum + 1;
+                    column = -1;
+                    cells.clear();
+                    break;
+                case "c":
+                    String ref = attributes.getValue("r");
+                    column = ref != null ? new CellReference(ref).getCol() : column + 1;
+                    cellType = attributes.getValue("t");
+                    String s = attributes.getValue("s");
+                    styleIndex = s != null ? Integer.parseInt(s) : 0;
+                    text.setLength(0);
+                    break;
+                case "v":
+                case "t":
+                    inValue = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+        {
+            if (inValue)
+            {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException
+        {
+            switch (localName)
+            {
+                case "v":
+                case "t":
+                    inValue = false;
+                    break;
+                case "c":
+                    if (text.length() > 0)
+                    {
+                        cells.put(column, cellValue(text.toString()));
+                    }
+                    break;
+                case "row":
+                    if (!cells.isEmpty())
+                    {
+                        try
+                        {
+                            handler.row(rowNum, cells);
+                        }
+                        catch (RuntimeException e)
+                        {
+                            throw e;
+                        }
+                        catch (Exception e)
+                        {
+                            throw new SAXException(e);
+                        }
+                        cells = new HashMap<Integer, Object>();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private Object cellValue(String value)
+        {
+            if ("s".equals(cellType))
+            {
+                return strings.getItemAt(Integer.parseInt(value)).getString();
+            }
+            if ("inlineStr".equals(cellType) || "str".equals(cellType) || "e".equals(cellType))
+            {
+                return value;
+            }
+            if ("b".equals(cellType))
+            {
+                return "1".equals(value);
+            }
+            double number = Double.parseDouble(value);
+            if (isDateStyle(styleIndex))
+            {
+                return DateUtil.getJavaDate(number);
+            }
+            if (number % 1 != 0)
+            {
+                return new BigDecimal(Double.toString(number));
+            }
+            return new DecimalFormat("0").format(number);
+        }
+    }
+}
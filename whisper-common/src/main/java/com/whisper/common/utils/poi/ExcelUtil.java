@@ -5,11 +5,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -18,10 +21,14 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.ArrayUtils;
@@ -34,6 +41,7 @@ import org.apache.poi.hssf.usermodel.HSSFShape;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
@@ -84,7 +92,6 @@ import com.whisper.common.utils.StringUtils;
 import com.whisper.common.utils.file.FileTypeUtils;
 import com.whisper.common.utils.file.FileUtils;
 import com.whisper.common.utils.file.ImageUtils;
-import com.whisper.common.utils.reflect.ReflectUtils;
 
 /**
  * Excel相关处理
@@ -186,6 +193,26 @@ public class ExcelUtil<T>
      */
     private Map<Integer, Double> statistics = new HashMap<Integer, Double>();
 
+    /**
+     * 注解对应的数据样式键
+     */
+    private Map<Excel, String> dataStyleKeys = new IdentityHashMap<Excel, String>();
+
+    /**
+     * 日期格式对应的数据格式下标
+     */
+    private Map<String, Short> dataFormats = new HashMap<String, Short>();
+
+    /**
+     * 日期格式对应的格式化对象，ExcelUtil 实例只在单个线程中使用
+     */
+    private Map<String, SimpleDateFormat> dateFormats = new HashMap<String, SimpleDateFormat>();
+
+    /**
+     * 整数读取为小数时的文本，如 1.0
+     */
+    private static final Pattern INTEGRAL_DECIMAL = Pattern.compile("^\\d+\\.0$");
+
     /**
      * 实体对象
      */
@@ -388,17 +415,7 @@ public class ExcelUtil<T>
                 }
             }
             // 有数据时才处理 得到类的所有field.
-            List<Object[]> fields = this.getFields();
-            Map<Integer, Object[]> fieldsMap = new HashMap<Integer, Object[]>();
-            for (Object[] objects : fields)
-            {
-                Excel attr = (Excel) objects[1];
-                Integer column = cellMap.get(attr.name());
-                if (column != null)
-                {
-                    fieldsMap.put(column, objects);
-                }
-            }
+            Map<Integer, Object[]> fieldsMap = getFieldsMap(cellMap);
             for (int i = titleNum + 1; i <= rows; i++)
             {
                 // 从第2行开始取数据,默认第一行是表头.
@@ -408,116 +425,243 @@ public class ExcelUtil<T>
                 {
                     continue;
                 }
-                T entity = null;
-                for (Map.Entry<Integer, Object[]> entry : fieldsMap.entrySet())
-                {
-                    Object val = this.getCellValue(row, entry.getKey());
-
-                    // 如果不存在实例则新建.
-                    entity = (entity == null ? clazz.newInstance() : entity);
-                    // 从map中得到对应列的field.
-                    Field field = (Field) entry.getValue()[0];
-                    Excel attr = (Excel) entry.getValue()[1];
-                    // 取得类型,并根据对象类型设置值.
-                    Class<?> fieldType = field.getType();
-                    if (String.class == fieldType)
-                    {
-                        String s = Convert.toStr(val);
-                        if (s.matches("^\\d+\\.0$"))
-                        {
-                            val = StringUtils.substringBefore(s, ".0");
-                        }
-                        else
-                        {
-                            String dateFormat = field.getAnnotation(Excel.class).dateFormat();
-                            if (StringUtils.isNotEmpty(dateFormat))
-                            {
-                                val = parseDateToStr(dateFormat, val);
-                            }
-                            else
-                            {
-                                val = Convert.toStr(val);
-                            }
-                        }
-                    }
-                    else if ((Integer.TYPE == fieldType || Integer.class == fieldType) && StringUtils.isNumeric(Convert.toStr(val)))
-                    {
-                        val = Convert.toInt(val);
-                    }
-                    else if ((Long.TYPE == fieldType || Long.class == fieldType) && StringUtils.isNumeric(Convert.toStr(val)))
+                list.add(createEntity(fieldsMap, column -> this.getCellValue(row, column), i, pictures));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 流式导入默认第一个工作表，数据按批交给回调，不在内存中保存全部数据
+     * 
+     * @param is 输入流
+     * @param batchSize 每批条数
+     * @param consumer 批数据回调
+     */
+    public void importExcel(InputStream is, int batchSize, Consumer<List<T>> consumer)
+    {
+        try
+        {
+            importExcel(StringUtils.EMPTY, is, 0, batchSize, false, consumer);
+        }
+        catch (Exception e)
+        {
+            log.error("导入Excel异常{}", e.getMessage());
+            throw new UtilException(e.getMessage());
+        }
+        finally
+        {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * 流式导入指定工作表，数据按批交给回调，不在内存中保存全部数据
+     * 
+     * xlsx 文件先写入临时文件，再以事件模型逐行解析，不构建工作簿对象，内存占用只与共享字符串表和批大小有关；
+     * 图片只在 withPictures 为true时读取。xls 文件不支持事件模型，按原方式整体读取后分批回调。
+     * 
+     * @param sheetName 表格索引名
+     * @param is 输入流
+     * @param titleNum 标题占用行数
+     * @param batchSize 每批条数
+     * @param withPictures 是否读取图片列
+     * @param consumer 批数据回调
+     */
+    public void importExcel(String sheetName, InputStream is, int titleNum, int batchSize, boolean withPictures,
+            Consumer<List<T>> consumer) throws Exception
+    {
+        InputStream in = FileMagic.prepareToCheckMagic(is);
+        if (FileMagic.valueOf(in) != FileMagic.OOXML)
+        {
+            List<T> all = importExcel(sheetName, in, titleNum);
+            for (int i = 0; i < all.size(); i += batchSize)
+            {
+                consumer.accept(new ArrayList<T>(all.subList(i, Math.min(i + batchSize, all.size()))));
+            }
+            return;
+        }
+        this.type = Type.IMPORT;
+        File temp = Files.createTempFile("excel-import-", ".xlsx").toFile();
+        try
+        {
+            Files.copy(in, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try (ExcelSaxReader reader = new ExcelSaxReader(temp, sheetName, withPictures))
+            {
+                Map<String, List<PictureData>> pictures = withPictures ? reader.getPictures() : null;
+                List<Map<Integer, Object[]>> fieldsMap = new ArrayList<Map<Integer, Object[]>>(1);
+                List<T> batch = new ArrayList<T>(batchSize);
+                reader.read((rowNum, cells) -> {
+                    if (rowNum < titleNum)
                     {
-                        val = Convert.toLong(val);
+                        return;
                     }
-                    else if (Double.TYPE == fieldType || Double.class == fieldType)
+                    if (fieldsMap.isEmpty())
                     {
-                        val = Convert.toDouble(val);
+                        // 标题之后的第一个非空行是表头
+                        Map<String, Integer> cellMap = new HashMap<String, Integer>();
+                        for (Map.Entry<Integer, Object> cell : cells.entrySet())
+                        {
+                            cellMap.put(cell.getValue().toString(), cell.getKey());
+                        }
+                        fieldsMap.add(getFieldsMap(cellMap));
+                        return;
                     }
-                    else if (Float.TYPE == fieldType || Float.class == fieldType)
+                    batch.add(createEntity(fieldsMap.get(0), column -> cells.getOrDefault(column, ""), rowNum, pictures));
+                    if (batch.size() >= batchSize)
                     {
-                        val = Convert.toFloat(val);
+                        consumer.accept(new ArrayList<T>(batch));
+                        batch.clear();
                     }
-                    else if (BigDecimal.class == fieldType)
+                });
+                if (!batch.isEmpty())
+                {
+                    consumer.accept(batch);
+                }
+            }
+        }
+        finally
+        {
+            temp.delete();
+        }
+    }
+
+    /**
+     * 按表头匹配注解字段
+     * 
+     * @param cellMap 表头名称与列下标
+     * @return 列下标与字段信息
+     */
+    private Map<Integer, Object[]> getFieldsMap(Map<String, Integer> cellMap)
+    {
+        List<Object[]> fields = this.getFields();
+        Map<Integer, Object[]> fieldsMap = new HashMap<Integer, Object[]>();
+        for (Object[] objects : fields)
+        {
+            Excel attr = (Excel) objects[1];
+            Integer column = cellMap.get(attr.name());
+            if (column != null)
+            {
+                fieldsMap.put(column, objects);
+            }
+        }
+        return fieldsMap;
+    }
+
+    /**
+     * 把一行数据转换为实体
+     * 
+     * @param fieldsMap 列下标与字段信息
+     * @param cells 按列下标取单元格值
+     * @param rowNum 行下标
+     * @param pictures 图片，可为null
+     * @return 实体
+     */
+    private T createEntity(Map<Integer, Object[]> fieldsMap, Function<Integer, Object> cells, int rowNum,
+            Map<String, List<PictureData>> pictures) throws Exception
+    {
+        T entity = null;
+        for (Map.Entry<Integer, Object[]> entry : fieldsMap.entrySet())
+        {
+            Object val = cells.apply(entry.getKey());
+
+            // 如果不存在实例则新建.
+            entity = (entity == null ? clazz.newInstance() : entity);
+            // 从map中得到对应列的field.
+            Field field = (Field) entry.getValue()[0];
+            Excel attr = (Excel) entry.getValue()[1];
+            // 取得类型,并根据对象类型设置值.
+            Class<?> fieldType = field.getType();
+            if (String.class == fieldType)
+            {
+                String s = Convert.toStr(val);
+                if (INTEGRAL_DECIMAL.matcher(s).matches())
+                {
+                    val = StringUtils.substringBefore(s, ".0");
+                }
+                else
+                {
+                    String dateFormat = field.getAnnotation(Excel.class).dateFormat();
+                    if (StringUtils.isNotEmpty(dateFormat))
                     {
-                        val = Convert.toBigDecimal(val);
+                        val = parseDateToStr(dateFormat, val);
                     }
-                    else if (Date.class == fieldType)
+                    else
                     {
-                        if (val instanceof String)
-                        {
-                            val = DateUtils.parseDate(val);
-                        }
-                        else if (val instanceof Double)
-                        {
-                            val = DateUtil.getJavaDate((Double) val);
-                        }
+                        val = Convert.toStr(val);
                     }
-                    else if (Boolean.TYPE == fieldType || Boolean.class == fieldType)
+                }
+            }
+            else if ((Integer.TYPE == fieldType || Integer.class == fieldType) && StringUtils.isNumeric(Convert.toStr(val)))
+            {
+                val = Convert.toInt(val);
+            }
+            else if ((Long.TYPE == fieldType || Long.class == fieldType) && StringUtils.isNumeric(Convert.toStr(val)))
+            {
+                val = Convert.toLong(val);
+            }
+            else if (Double.TYPE == fieldType || Double.class == fieldType)
+            {
+                val = Convert.toDouble(val);
+            }
+            else if (Float.TYPE == fieldType || Float.class == fieldType)
+            {
+                val = Convert.toFloat(val);
+            }
+            else if (BigDecimal.class == fieldType)
+            {
+                val = Convert.toBigDecimal(val);
+            }
+            else if (Date.class == fieldType)
+            {
+                if (val instanceof String)
+                {
+                    val = DateUtils.parseDate(val);
+                }
+                else if (val instanceof Double)
+                {
+                    val = DateUtil.getJavaDate((Double) val);
+                }
+            }
+            else if (Boolean.TYPE == fieldType || Boolean.class == fieldType)
+            {
+                val = Convert.toBool(val, false);
+            }
+            if (StringUtils.isNotNull(fieldType))
+            {
+                if (StringUtils.isNotEmpty(attr.readConverterExp()))
+                {
+                    val = reverseByExp(Convert.toStr(val), attr.readConverterExp(), attr.separator());
+                }
+                else if (StringUtils.isNotEmpty(attr.dictType()))
+                {
+                    if (!sysDictMap.containsKey(attr.dictType() + val))
                     {
-                        val = Convert.toBool(val, false);
+                        String dictValue = reverseDictByExp(Convert.toStr(val), attr.dictType(), attr.separator());
+                        sysDictMap.put(attr.dictType() + val, dictValue);
                     }
-                    if (StringUtils.isNotNull(fieldType))
+                    val = sysDictMap.get(attr.dictType() + val);
+                }
+                else if (!attr.handler().equals(ExcelHandlerAdapter.class))
+                {
+                    val = dataFormatHandlerAdapter(val, attr, null);
+                }
+                else if (ColumnType.IMAGE == attr.cellType() && StringUtils.isNotEmpty(pictures))
+                {
+                    StringBuilder propertyString = new StringBuilder();
+                    List<PictureData> images = pictures.get(rowNum + "_" + entry.getKey());
+                    for (PictureData picture : images)
                     {
-                        String propertyName = field.getName();
-                        if (StringUtils.isNotEmpty(attr.targetAttr()))
-                        {
-                            propertyName = field.getName() + "." + attr.targetAttr();
-                        }
-                        if (StringUtils.isNotEmpty(attr.readConverterExp()))
-                        {
-                            val = reverseByExp(Convert.toStr(val), attr.readConverterExp(), attr.separator());
-                        }
-                        else if (StringUtils.isNotEmpty(attr.dictType()))
-                        {
-                            if (!sysDictMap.containsKey(attr.dictType() + val))
-                            {
-                                String dictValue = reverseDictByExp(Convert.toStr(val), attr.dictType(), attr.separator());
-                                sysDictMap.put(attr.dictType() + val, dictValue);
-                            }
-                            val = sysDictMap.get(attr.dictType() + val);
-                        }
-                        else if (!attr.handler().equals(ExcelHandlerAdapter.class))
-                        {
-                            val = dataFormatHandlerAdapter(val, attr, null);
-                        }
-                        else if (ColumnType.IMAGE == attr.cellType() && StringUtils.isNotEmpty(pictures))
-                        {
-                            StringBuilder propertyString = new StringBuilder();
-                            List<PictureData> images = pictures.get(row.getRowNum() + "_" + entry.getKey());
-                            for (PictureData picture : images)
-                            {
-                                byte[] data = picture.getData();
-                                String fileName = FileUtils.writeImportBytes(data);
-                                propertyString.append(fileName).append(SEPARATOR);
-                            }
-                            val = StringUtils.stripEnd(propertyString.toString(), SEPARATOR);
-                        }
-                        ReflectUtils.invokeSetter(entity, propertyName, val);
+                        byte[] data = picture.getData();
+                        String fileName = FileUtils.writeImportBytes(data);
+                        propertyString.append(fileName).append(SEPARATOR);
                     }
+                    val = StringUtils.stripEnd(propertyString.toString(), SEPARATOR);
                 }
-                list.add(entity);
+                ExcelFieldAccessor.of(field, attr).set(entity, val);
             }
         }
-        return list;
+        return entity;
     }
 
     /**
@@ -576,6 +720,79 @@ public class ExcelUtil<T>
         exportExcel(response);
     }
 
+    /**
+     * 流式导出数据到响应，不在内存中保存数据列表
+     * 
+     * @param response 返回数据
+     * @param sheetName 工作表的名称
+     * @param rows 数据来源，参数为逐条接收数据的回调
+     */
+    public void exportExcel(HttpServletResponse response, String sheetName, Consumer<Consumer<T>> rows)
+    {
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setCharacterEncoding("utf-8");
+        try
+        {
+            exportExcel(response.getOutputStream(), sheetName, rows);
+        }
+        catch (Exception e)
+        {
+            log.error("导出Excel异常{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 流式导出数据到输出流，不在内存中保存数据列表
+     * 
+     * 数据由 rows 逐条推送并立即写入工作表，SXSSFWorkbook 只在内存中保留最近的行，其余写入压缩的临时文件，
+     * 内存占用与数据量无关；每个工作表写满 sheetSize 行后换下一个工作表。
+     * 
+     * @param out 输出流，由调用方关闭
+     * @param sheetName 工作表的名称
+     * @param rows 数据来源，参数为逐条接收数据的回调
+     * @throws IOException 写入失败
+     */
+    public void exportExcel(OutputStream out, String sheetName, Consumer<Consumer<T>> rows) throws IOException
+    {
+        this.init(null, sheetName, StringUtils.EMPTY, Type.EXPORT);
+        ((SXSSFWorkbook) wb).setCompressTempFiles(true);
+        try
+        {
+            createHeadRow();
+            rows.accept(new Consumer<T>()
+            {
+                private int sheetIndex = 0;
+
+                private int sheetRows = 0;
+
+                private int currentRowNum = rownum + 1;
+
+                @Override
+                public void accept(T vo)
+                {
+                    if (sheetRows == sheetSize)
+                    {
+                        addStatisticsRow();
+                        sheetIndex++;
+                        createSheet(sheetIndex + 1, sheetIndex);
+                        createHeadRow();
+                        sheetRows = 0;
+                        currentRowNum = rownum + 1;
+                    }
+                    currentRowNum += fillRow(vo, currentRowNum);
+                    sheetRows++;
+                }
+            });
+            addStatisticsRow();
+            wb.write(out);
+        }
+        finally
+        {
+            ((SXSSFWorkbook) wb).dispose();
+            IOUtils.closeQuietly(wb);
+        }
+    }
+
     /**
      * 对list数据源将其里面的数据导入到excel表单
      * 
@@ -688,32 +905,42 @@ public class ExcelUtil<T>
             createSheet(sheetNo, index);
 
             // 产生一行
-            Row row = sheet.createRow(rownum);
-            int column = 0;
-            // 写入各个字段的列头名称
-            for (Object[] os : fields)
+            Row row = createHeadRow();
+            if (Type.EXPORT.equals(type))
             {
-                Field field = (Field) os[0];
-                Excel excel = (Excel) os[1];
-                if (Collection.class.isAssignableFrom(field.getType()))
-                {
-                    for (Field subField : subFields)
-                    {
-                        Excel subExcel = subField.getAnnotation(Excel.class);
-                        this.createHeadCell(subExcel, row, column++);
-                    }
-                }
-                else
+                fillExcelData(index, row);
+                addStatisticsRow();
+            }
+        }
+    }
+
+    /**
+     * 写入各个字段的列头名称
+     * 
+     * @return 列头行
+     */
+    public Row createHeadRow()
+    {
+        Row row = sheet.createRow(rownum);
+        int column = 0;
+        for (Object[] os : fields)
+        {
+            Field field = (Field) os[0];
+            Excel excel = (Excel) os[1];
+            if (Collection.class.isAssignableFrom(field.getType()))
+            {
+                for (Field subField : subFields)
                 {
-                    this.createHeadCell(excel, row, column++);
+                    Excel subExcel = subField.getAnnotation(Excel.class);
+                    this.createHeadCell(subExcel, row, column++);
                 }
             }
-            if (Type.EXPORT.equals(type))
+            else
             {
-                fillExcelData(index, row);
-                addStatisticsRow();
+                this.createHeadCell(excel, row, column++);
             }
         }
+        return row;
     }
 
     /**
@@ -731,59 +958,71 @@ public class ExcelUtil<T>
 
         for (int i = startNo; i < endNo; i++)
         {
-            row = sheet.createRow(currentRowNum);
-            T vo = (T) list.get(i);
-            int column = 0;
-            int maxSubListSize = getCurrentMaxSubListSize(vo);
-            for (Object[] os : fields)
+            currentRowNum += fillRow((T) list.get(i), currentRowNum);
+        }
+    }
+
+    /**
+     * 填充一条数据
+     * 
+     * @param vo 数据对象
+     * @param currentRowNum 开始行号
+     * @return 占用的行数
+     */
+    @SuppressWarnings("unchecked")
+    public int fillRow(T vo, int currentRowNum)
+    {
+        Row row = sheet.createRow(currentRowNum);
+        int column = 0;
+        int maxSubListSize = getCurrentMaxSubListSize(vo);
+        for (Object[] os : fields)
+        {
+            Field field = (Field) os[0];
+            Excel excel = (Excel) os[1];
+            if (Collection.class.isAssignableFrom(field.getType()))
             {
-                Field field = (Field) os[0];
-                Excel excel = (Excel) os[1];
-                if (Collection.class.isAssignableFrom(field.getType()))
+                try
                 {
-                    try
+                    Collection<?> subList = (Collection<?>) getTargetValue(vo, field, excel);
+                    if (subList != null && !subList.isEmpty())
                     {
-                        Collection<?> subList = (Collection<?>) getTargetValue(vo, field, excel);
-                        if (subList != null && !subList.isEmpty())
+                        int subIndex = 0;
+                        for (Object subVo : subList)
                         {
-                            int subIndex = 0;
-                            for (Object subVo : subList)
+                            Row subRow = sheet.getRow(currentRowNum + subIndex);
+                            if (subRow == null)
+                            {
+                                subRow = sheet.createRow(currentRowNum + subIndex);
+                            }
+
+                            int subColumn = column;
+                            for (Field subField : subFields)
                             {
-                                Row subRow = sheet.getRow(currentRowNum + subIndex);
-                                if (subRow == null)
-                                {
-                                    subRow = sheet.createRow(currentRowNum + subIndex);
-                                }
-
-                                int subColumn = column;
-                                for (Field subField : subFields)
-                                {
-                                    Excel subExcel = subField.getAnnotation(Excel.class);
-                                    addCell(subExcel, subRow, (T) subVo, subField, subColumn++);
-                                }
-                                subIndex++;
+                                Excel subExcel = subField.getAnnotation(Excel.class);
+                                addCell(subExcel, subRow, (T) subVo, subField, subColumn++);
                             }
-                            column += subFields.size();
+                            subIndex++;
                         }
-                    }
-                    catch (Exception e)
-                    {
-                        log.error("填充集合数据失败", e);
+                        column += subFields.size();
                     }
                 }
-                else
+                catch (Exception e)
                 {
-                    // 创建单元格并设置值
-                    addCell(excel, row, vo, field, column);
-                    if (maxSubListSize > 1 && excel.needMerge())
-                    {
-                        sheet.addMergedRegion(new CellRangeAddress(currentRowNum, currentRowNum + maxSubListSize - 1, column, column));
-                    }
-                    column++;
+                    log.error("填充集合数据失败", e);
                 }
             }
-            currentRowNum += maxSubListSize;
+            else
+            {
+                // 创建单元格并设置值
+                addCell(excel, row, vo, field, column);
+                if (maxSubListSize > 1 && excel.needMerge())
+                {
+                    sheet.addMergedRegion(new CellRangeAddress(currentRowNum, currentRowNum + maxSubListSize - 1, column, column));
+                }
+                column++;
+            }
         }
+        return maxSubListSize;
     }
 
     /**
@@ -992,7 +1231,7 @@ public class ExcelUtil<T>
         if (isSubList())
         {
             // 填充默认样式，防止合并单元格样式失效
-            sheet.setDefaultColumnStyle(column, styles.get(StringUtils.format("data_{}_{}_{}_{}_{}", attr.align(), attr.color(), attr.backgroundColor(), attr.cellType(), attr.wrapText())));
+            sheet.setDefaultColumnStyle(column, styles.get(getDataStyleKey(attr)));
             if (attr.needMerge())
             {
                 sheet.addMergedRegion(new CellRangeAddress(rownum - 1, rownum, column, column));
@@ -1138,7 +1377,7 @@ public class ExcelUtil<T>
                         sheet.addMergedRegion(new CellRangeAddress(subMergedFirstRowNum, subMergedLastRowNum, column, column));
                     }
                 }
-                cell.setCellStyle(styles.get(StringUtils.format("data_{}_{}_{}_{}_{}", attr.align(), attr.color(), attr.backgroundColor(), attr.cellType(), attr.wrapText())));
+                cell.setCellStyle(styles.get(getDataStyleKey(attr)));
 
                 // 用于读取对象中的属性
                 Object value = getTargetValue(vo, field, attr);
@@ -1148,7 +1387,11 @@ public class ExcelUtil<T>
                 String dictType = attr.dictType();
                 if (StringUtils.isNotEmpty(dateFormat) && StringUtils.isNotNull(value))
                 {
-                    cell.getCellStyle().setDataFormat(this.wb.getCreationHelper().createDataFormat().getFormat(dateFormat));
+                    short format = getDataFormat(dateFormat);
+                    if (cell.getCellStyle().getDataFormat() != format)
+                    {
+                        cell.getCellStyle().setDataFormat(format);
+                    }
                     cell.setCellValue(parseDateToStr(dateFormat, value));
                 }
                 else if (StringUtils.isNotEmpty(readConverterExp) && StringUtils.isNotNull(value))
@@ -1177,7 +1420,10 @@ public class ExcelUtil<T>
                     // 设置列类型
                     setCellVo(value, attr, cell);
                 }
-                addStatisticsData(column, Convert.toStr(value), attr);
+                if (attr.isStatistics())
+                {
+                    addStatisticsData(column, Convert.toStr(value), attr);
+                }
             }
         }
         catch (Exception e)
@@ -1479,45 +1725,29 @@ public class ExcelUtil<T>
      */
     private Object getTargetValue(T vo, Field field, Excel excel) throws Exception
     {
-        field.setAccessible(true);
-        Object o = field.get(vo);
-        if (StringUtils.isNotEmpty(excel.targetAttr()))
-        {
-            String target = excel.targetAttr();
-            if (target.contains("."))
-            {
-                String[] targets = target.split("[.]");
-                for (String name : targets)
-                {
-                    o = getValue(o, name);
-                }
-            }
-            else
-            {
-                o = getValue(o, target);
-            }
-        }
-        return o;
+        return ExcelFieldAccessor.of(field, excel).get(vo);
     }
 
     /**
-     * 以类的属性的get方法方法形式获取值
+     * 数据样式键，与 annotationDataStyles 中创建样式时一致
      * 
-     * @param o
-     * @param name
-     * @return value
-     * @throws Exception
+     * @param excel 注解
+     * @return 样式键
      */
-    private Object getValue(Object o, String name) throws Exception
+    private String getDataStyleKey(Excel excel)
     {
-        if (StringUtils.isNotNull(o) && StringUtils.isNotEmpty(name))
-        {
-            Class<?> clazz = o.getClass();
-            Field field = clazz.getDeclaredField(name);
-            field.setAccessible(true);
-            o = field.get(o);
-        }
-        return o;
+        return dataStyleKeys.computeIfAbsent(excel, e -> StringUtils.format("data_{}_{}_{}_{}_{}", e.align(), e.color(), e.backgroundColor(), e.cellType(), e.wrapText()));
+    }
+
+    /**
+     * 日期格式对应的数据格式下标
+     * 
+     * @param dateFormat 日期格式
+     * @return 数据格式下标
+     */
+    private short getDataFormat(String dateFormat)
+    {
+        return dataFormats.computeIfAbsent(dateFormat, f -> wb.getCreationHelper().createDataFormat().getFormat(f));
     }
 
     /**
@@ -1817,15 +2047,15 @@ public class ExcelUtil<T>
         String str;
         if (val instanceof Date)
         {
-            str = DateUtils.parseDateToStr(dateFormat, (Date) val);
+            str = getDateFormat(dateFormat).format((Date) val);
         }
         else if (val instanceof LocalDateTime)
         {
-            str = DateUtils.parseDateToStr(dateFormat, DateUtils.toDate((LocalDateTime) val));
+            str = getDateFormat(dateFormat).format(DateUtils.toDate((LocalDateTime) val));
         }
         else if (val instanceof LocalDate)
         {
-            str = DateUtils.parseDateToStr(dateFormat, DateUtils.toDate((LocalDate) val));
+            str = getDateFormat(dateFormat).format(DateUtils.toDate((LocalDate) val));
         }
         else
         {
@@ -1834,6 +2064,11 @@ public class ExcelUtil<T>
         return str;
     }
 
+    private SimpleDateFormat getDateFormat(String dateFormat)
+    {
+        return dateFormats.computeIfAbsent(dateFormat, SimpleDateFormat::new);
+    }
+
     /**
      * 是否有对象的子列表
      */
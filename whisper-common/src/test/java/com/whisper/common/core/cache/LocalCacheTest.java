@@ -0,0 +1,61 @@
+package com.whisper.common.core.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * LocalCache 条件写入测试
+ *
+ * @author ruoyi
+ */
+public class LocalCacheTest
+{
+    @Test
+    public void putIfSkipsWhenConditionFails()
+    {
+        LocalCache<String, String> cache = new LocalCache<String, String>(10, 1, TimeUnit.MINUTES);
+        assertFalse(cache.putIf("k", "v", () -> false));
+        assertNull(cache.get("k"));
+        assertTrue(cache.putIf("k", "v", () -> true));
+        assertEquals("v", cache.get("k"));
+    }
+
+    @Test
+    public void removeDuringPutIfIsNotLost() throws InterruptedException
+    {
+        LocalCache<String, String> cache = new LocalCache<String, String>(10, 1, TimeUnit.MINUTES);
+        AtomicLong version = new AtomicLong();
+        long startVersion = version.get();
+        Thread[] invalidator = new Thread[1];
+        // 条件判断通过后、写入前发生失效：失效方的删除必须在写入之后生效
+        cache.putIf("k", "stale", () -> {
+            boolean current = version.get() == startVersion;
+            invalidator[0] = new Thread(() -> {
+                version.incrementAndGet();
+                cache.remove("k");
+            });
+            invalidator[0].start();
+            sleep(50);
+            return current;
+        });
+        invalidator[0].join();
+        assertNull(cache.get("k"));
+    }
+
+    private static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
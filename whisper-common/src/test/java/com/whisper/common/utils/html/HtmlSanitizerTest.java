@@ -0,0 +1,152 @@
+package com.whisper.common.utils.html;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * HtmlSanitizer 与 HTMLFilter 默认配置的差分测试
+ *
+ * 已知差异：输入以'>'开头时，HTMLFilter 的正则在首个空匹配后跳过下标0，其后第一个不成对的'>'不会被转义；
+ * HtmlSanitizer 转义所有不成对的'>'。此时以 HTMLFilter 处理前置一个普通字符的输入作为期望值。
+ *
+ * @author ruoyi
+ */
+public class HtmlSanitizerTest
+{
+    /** 典型输入及XSS向量 */
+    private static final String[] CORPUS = {
+            "",
+            "普通文本",
+            "a < b > c",
+            "1 > 0 && 0 < 1",
+            "<b>加粗</b><i>斜体</i><em>强调</em><strong>重要</strong>",
+            "<B>大写</B><STRONG>x</STRONG>",
+            "<b>未闭合<i>嵌套",
+            "</b>多余的结束标签",
+            "<b></b><i> </i><a href=\"http://a\"></a>",
+            "<script>alert(1)</script>",
+            "<SCRIPT SRC=http://xss.rocks/xss.js></SCRIPT>",
+            "<img src=x onerror=alert(1)>",
+            "<img src=\"javascript:alert('XSS')\">",
+            "<img src=javascript:alert(1) width=10 height='20' alt=\"说明\"/>",
+            "<img src=\"&#106;&#97;&#118;&#97;&#115;&#99;&#114;&#105;&#112;&#116;&#58;alert(1)\">",
+            "<img src=\"&#x6a;avascript:alert(1)\">",
+            "<img src=\"%6aavascript%3aalert(1)\">",
+            "<a href=\"javascript:alert(1)\">x</a>",
+            "<a href=\"//evil.com\" target=_blank onclick=\"x()\">link</a>",
+            "<a href='mailto:a@b.com'>mail</a>",
+            "<a href=\"https://example.com/?a=1&b=2&amp;c=3&lt;\">q</a>",
+            "<a href=\"http://a&unknown;b\">e</a>",
+            "<iframe src=\"http://evil.com\"></iframe>",
+            "<svg/onload=alert(1)>",
+            "<body onload=alert(1)>",
+            "<div style=\"background:url(javascript:alert(1))\">x</div>",
+            "<!-- 注释 -->文本",
+            "<!-- <script>alert(1)</script> -->",
+            "<!--a--><!--b-->",
+            "<!-- 未结束的注释 <b>x</b>",
+            "<!--->",
+            "<<script>alert(1)//<</script>",
+            "<b <i>x</i>",
+            "<a href=\"http://a\r\n\">x</a>",
+            "<img src=\"http://a\"\n/>",
+            "{\"content\":\"<b>json</b>\",\"quote\":\"\\\"\"}",
+            "x<",
+            "<",
+            ">",
+            "<>",
+            "><",
+            "<b/>",
+            "<i/ >",
+    };
+
+    private static final String[] TOKENS = {
+            "<", ">", "/", " ", "=", "\"", "'", "&", "#", ";", "-", "\n", "\r", "a", "b", "i", "em", "img", "strong",
+            "script", "href", "src", "target", "alt", "javascript:", "http:", "amp", "lt", "!--", "--", "%3a", "&#106;",
+            "&#x6a;", "<b>", "</b>", "<a href=", "<img src=", "<!--", "-->", "A", "TARGET", "1", "x", "中",
+    };
+
+    @Test
+    public void corpusMatchesHtmlFilter()
+    {
+        for (String input : CORPUS)
+        {
+            assertEquals(expected(input), HtmlSanitizer.clean(input), input);
+        }
+    }
+
+    @Test
+    public void tokenFuzzMatchesHtmlFilter()
+    {
+        Random random = new Random(20240601L);
+        for (int n = 0; n < 50000; n++)
+        {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(16);
+            for (int i = 0; i < length; i++)
+            {
+                sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            String input = sb.toString();
+            assertEquals(expected(input), HtmlSanitizer.clean(input), input);
+        }
+    }
+
+    @Test
+    public void charFuzzMatchesHtmlFilter()
+    {
+        String alphabet = "<>abimgsrcheftA/=\"' &#;!-\n\r:x1%";
+        Random random = new Random(20240602L);
+        for (int n = 0; n < 50000; n++)
+        {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(32);
+            for (int i = 0; i < length; i++)
+            {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String input = sb.toString();
+            assertEquals(expected(input), HtmlSanitizer.clean(input), input);
+        }
+    }
+
+    @Test
+    public void leadingGreaterThanEscapesEveryStrayBracket()
+    {
+        assertEquals("&gt;a>b", new HTMLFilter().filter(">a>b"));
+        assertEquals("&gt;a&gt;b", HtmlSanitizer.clean(">a>b"));
+        assertEquals("&gt;&gt;", HtmlSanitizer.clean(">>"));
+    }
+
+    @Test
+    public void streamMatchesString() throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        Random random = new Random(20240603L);
+        while (sb.length() < 40000)
+        {
+            sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        String input = sb.toString();
+        StringWriter writer = new StringWriter();
+        HtmlSanitizer.clean(new StringReader(input), writer);
+        assertEquals(HtmlSanitizer.clean(input), writer.toString());
+        assertEquals(expected(input), writer.toString());
+    }
+
+    /**
+     * HTMLFilter 的输出，以'>'开头的输入前置普通字符以消除已知差异
+     */
+    private static String expected(String input)
+    {
+        if (input.startsWith(">"))
+        {
+            return new HTMLFilter().filter("x" + input).substring(1);
+        }
+        return new HTMLFilter().filter(input);
+    }
+}
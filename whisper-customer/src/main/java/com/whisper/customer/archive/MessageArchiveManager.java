@@ -0,0 +1,356 @@
+package com.whisper.customer.archive;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import com.alibaba.fastjson2.JSON;
+import com.whisper.common.config.RuoYiConfig;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.exception.ServiceException;
+import com.whisper.common.utils.DateUtils;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.uuid.IdUtils;
+import com.whisper.customer.domain.CsMessage;
+import com.whisper.customer.domain.CsMessageArchive;
+import com.whisper.customer.mapper.CsMessageArchiveMapper;
+
+/**
+ * 消息归档文件
+ *
+ * 每个会话每月一个 gzip 压缩的 NDJSON 文件（每行一条消息），路径为 yyyyMM/会话ID%1000/会话ID.ndjson.gz，
+ * 索引和 SHA-256 校验和保存在 cs_message_archive。追加时把原文件字节和新的 gzip 成员写入临时文件并同步到磁盘，
+ * 先登记新的校验和再原子替换；替换前中断时临时文件与索引一致，读取时以临时文件为准。
+ * 同一消息可能因重试被归档多次，读取时按消息ID去重。
+ * 归档目录不能位于 profile 内（/profile/** 可以匿名访问）；多节点部署时必须是各节点共享的同一目录，
+ * 归档前通过目录中的标识文件检查。追加前校验原文件与索引一致，文件缺失或损坏时停止归档，读取时跳过该文件。
+ *
+ * @author whisper
+ */
+@Component
+public class MessageArchiveManager
+{
+    private static final Logger log = LoggerFactory.getLogger(MessageArchiveManager.class);
+
+    /** 归档文件中的日期格式 */
+    private static final String DATE_FORMAT = DateUtils.YYYY_MM_DD_HH_MM_SS;
+
+    /** 归档月份格式 */
+    private static final String MONTH_FORMAT = "yyyyMM";
+
+    private static final String FILE_SUFFIX = ".ndjson.gz";
+
+    /** 归档目录标识文件，各节点读到同一标识说明使用的是同一个目录 */
+    private static final String VOLUME_FILE = ".volume";
+
+    /** 归档目录，为空时使用与 profile 同级的 data/archive/message */
+    @Value("${customer.message.archive.path:}")
+    private String archivePath;
+
+    @Autowired
+    private CsMessageArchiveMapper csMessageArchiveMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @PostConstruct
+    public void init()
+    {
+        File dir = getArchiveDir();
+        if (RuoYiConfig.isProfilePath(dir))
+        {
+            throw new IllegalStateException("消息归档目录不能位于 whisper.profile 内，否则可以通过 /profile/** 匿名访问：" + dir);
+        }
+    }
+
+    /**
+     * 检查归档目录是各节点共享的同一目录，归档前调用
+     *
+     * 首次检查时在目录中写入随机标识并登记到Redis，之后每个节点的目录中都需要读到相同的标识。
+     */
+    public void checkArchiveDir()
+    {
+        File dir = getArchiveDir();
+        File file = new File(dir, VOLUME_FILE);
+        try
+        {
+            if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+            {
+                throw new IOException("无法创建归档目录 " + dir);
+            }
+            String volume = file.exists() ? Files.readString(file.toPath()).trim() : null;
+            String expected = stringRedisTemplate.opsForValue().get(CacheConstants.MESSAGE_ARCHIVE_VOLUME_KEY);
+            if (expected == null)
+            {
+                if (volume == null)
+                {
+                    volume = IdUtils.fastSimpleUUID();
+                    Files.writeString(file.toPath(), volume);
+                }
+                stringRedisTemplate.opsForValue().setIfAbsent(CacheConstants.MESSAGE_ARCHIVE_VOLUME_KEY, volume);
+                expected = stringRedisTemplate.opsForValue().get(CacheConstants.MESSAGE_ARCHIVE_VOLUME_KEY);
+            }
+            if (!StringUtils.equals(expected, volume))
+            {
+                throw new ServiceException("当前节点的归档目录与其他节点不是同一目录，多节点部署时 customer.message.archive.path 需要配置为共享目录：" + dir);
+            }
+        }
+        catch (IOException e)
+        {
+            log.error("检查消息归档目录失败 {}", dir, e);
+            throw new ServiceException("消息归档目录不可用：" + dir);
+        }
+    }
+
+    /**
+     * 按会话和月份归档消息
+     *
+     * @param messages 消息记录
+     */
+    public void archive(List<CsMessage> messages) throws IOException
+    {
+        Map<String, List<CsMessage>> groups = new LinkedHashMap<String, List<CsMessage>>();
+        for (CsMessage message : messages)
+        {
+            String month = DateUtils.parseDateToStr(MONTH_FORMAT, message.getSendTime());
+            groups.computeIfAbsent(message.getConversationId() + "/" + month, k -> new ArrayList<CsMessage>()).add(message);
+        }
+        for (List<CsMessage> group : groups.values())
+        {
+            CsMessage first = group.get(0);
+            String month = DateUtils.parseDateToStr(MONTH_FORMAT, first.getSendTime());
+            String filePath = month + "/" + (first.getConversationId() % 1000) + "/" + first.getConversationId() + FILE_SUFFIX;
+            File file = new File(getArchiveDir(), filePath);
+            CsMessageArchive current = csMessageArchiveMapper.selectArchive(first.getConversationId(), month);
+            if (current != null)
+            {
+                checkAppendable(file, current);
+            }
+            File temp = tempFile(file);
+            String checksum = writeAppended(file, temp, group);
+
+            CsMessageArchive archive = new CsMessageArchive();
+            archive.setConversationId(first.getConversationId());
+            archive.setArchiveMonth(month);
+            archive.setFilePath(filePath);
+            archive.setMessageCount(group.size());
+            archive.setFirstSendTime(group.stream().map(CsMessage::getSendTime).min(Comparator.naturalOrder()).get());
+            archive.setLastSendTime(group.stream().map(CsMessage::getSendTime).max(Comparator.naturalOrder()).get());
+            archive.setChecksum(checksum);
+            csMessageArchiveMapper.saveArchive(archive);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * 是否有归档
+     *
+     * @param conversationId 会话ID
+     * @return 结果
+     */
+    public boolean hasArchive(Long conversationId)
+    {
+        return !csMessageArchiveMapper.selectArchiveListByConversationId(conversationId).isEmpty();
+    }
+
+    /**
+     * 读取会话的归档消息，不含已删除的消息
+     *
+     * @param conversationId 会话ID
+     * @param startTime 开始时间，为空不限
+     * @param endTime 结束时间，为空不限
+     * @return 按发送时间升序的消息记录
+     */
+    public List<CsMessage> selectArchivedMessages(Long conversationId, Date startTime, Date endTime)
+    {
+        Map<Long, CsMessage> messages = new LinkedHashMap<Long, CsMessage>();
+        for (CsMessageArchive archive : csMessageArchiveMapper.selectArchiveListByConversationId(conversationId))
+        {
+            if ((startTime != null && archive.getLastSendTime().before(startTime))
+                    || (endTime != null && archive.getFirstSendTime().after(endTime)))
+            {
+                continue;
+            }
+            for (CsMessage message : read(archive))
+            {
+                Date sendTime = message.getSendTime();
+                if ("0".equals(message.getDelFlag()) && (startTime == null || !sendTime.before(startTime))
+                        && (endTime == null || !sendTime.after(endTime)))
+                {
+                    messages.put(message.getMessageId(), message);
+                }
+            }
+        }
+        List<CsMessage> list = new ArrayList<CsMessage>(messages.values());
+        list.sort(Comparator.comparing(CsMessage::getSendTime).thenComparing(CsMessage::getMessageId));
+        return list;
+    }
+
+    /**
+     * 读取并校验归档文件，与索引不一致时尝试未完成替换的临时文件，都不可用时跳过该文件
+     */
+    private List<CsMessage> read(CsMessageArchive archive)
+    {
+        File file = new File(getArchiveDir(), archive.getFilePath());
+        List<CsMessage> messages = read(file, archive.getChecksum());
+        if (messages == null && tempFile(file).exists())
+        {
+            messages = read(tempFile(file), archive.getChecksum());
+        }
+        if (messages == null)
+        {
+            log.error("消息归档文件缺失或校验失败，跳过 {}", file);
+            return Collections.emptyList();
+        }
+        return messages;
+    }
+
+    /**
+     * 追加前检查原文件与索引一致，替换前中断的临时文件先完成替换
+     */
+    private void checkAppendable(File file, CsMessageArchive archive) throws IOException
+    {
+        File temp = tempFile(file);
+        if (temp.exists() && archive.getChecksum().equals(checksum(temp)))
+        {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        if (!file.exists())
+        {
+            throw new ServiceException("归档文件不在当前节点的归档目录中，停止归档：" + archive.getFilePath());
+        }
+        if (!archive.getChecksum().equals(checksum(file)))
+        {
+            throw new ServiceException("归档文件与索引不一致，停止归档：" + archive.getFilePath());
+        }
+    }
+
+    /**
+     * 读取归档文件，校验和不一致时返回null
+     */
+    private List<CsMessage> read(File file, String checksum)
+    {
+        List<CsMessage> messages = new ArrayList<CsMessage>();
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(new FileInputStream(file), digest);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(in), StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (StringUtils.isNotEmpty(line))
+                {
+                    messages.add(JSON.parseObject(line, CsMessage.class, DATE_FORMAT));
+                }
+            }
+            // 读完剩余字节，使摘要覆盖整个文件
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1)
+            {
+            }
+        }
+        catch (IOException e)
+        {
+            log.error("读取消息归档失败 {}", file, e);
+            return null;
+        }
+        return HexFormat.of().formatHex(digest.digest()).equals(checksum) ? messages : null;
+    }
+
+    /**
+     * 把原文件内容和新的 gzip 成员写入临时文件
+     *
+     * @return 临时文件的SHA-256
+     */
+    private String writeAppended(File file, File temp, List<CsMessage> messages) throws IOException
+    {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+        {
+            throw new IOException("无法创建归档目录 " + dir);
+        }
+        MessageDigest digest = sha256();
+        try (FileOutputStream fos = new FileOutputStream(temp);
+                OutputStream out = new DigestOutputStream(fos, digest))
+        {
+            if (file.exists())
+            {
+                Files.copy(file.toPath(), out);
+            }
+            GZIPOutputStream gzip = new GZIPOutputStream(out, 8192);
+            Writer writer = new OutputStreamWriter(gzip, StandardCharsets.UTF_8);
+            for (CsMessage message : messages)
+            {
+                writer.write(JSON.toJSONString(message, DATE_FORMAT));
+                writer.write('\n');
+            }
+            writer.flush();
+            gzip.finish();
+            out.flush();
+            fos.getFD().sync();
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String checksum(File file) throws IOException
+    {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(new FileInputStream(file), digest))
+        {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static File tempFile(File file)
+    {
+        return new File(file.getParentFile(), file.getName() + ".tmp");
+    }
+
+    private File getArchiveDir()
+    {
+        return new File(StringUtils.isNotEmpty(archivePath) ? archivePath : RuoYiConfig.getDataPath() + "/archive/message");
+    }
+
+    private static MessageDigest sha256()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.whisper.customer.archive;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.exception.ServiceException;
+import com.whisper.common.utils.uuid.IdUtils;
+import com.whisper.customer.domain.CsMessage;
+import com.whisper.customer.mapper.CsMessageMapper;
+import com.whisper.customer.search.MessageSearchIndex;
+import com.whisper.customer.shard.MessageShardRouter;
+import com.whisper.customer.transcript.MessageTranscriptManager;
+
+/**
+ * 历史消息归档清理
+ *
+ * 按分片表逐批取出保留期之前的消息，写入归档文件后按主键删除，每批之间暂停，避免长事务和大范围锁；
+ * 已结束会话的压缩记录在最后一条消息过期后整条归档。归档的消息同时从搜索索引中删除。
+ * 归档成功但删除前中断时，下次会重复归档这批消息，读取归档时按消息ID去重。
+ * 同一时间只有一个节点执行，消息重新分片期间不执行。
+ *
+ * @author whisper
+ */
+@Component
+public class MessageRetentionTask
+{
+    private static final Logger log = LoggerFactory.getLogger(MessageRetentionTask.class);
+
+    /** 会话压缩记录表 */
+    private static final String TRANSCRIPT_TABLE = "cs_message_transcript";
+
+    /** 任务锁有效期（秒），每批续期 */
+    private static final long LOCK_SECONDS = 600;
+
+    /** 是否每天自动执行 */
+    @Value("${customer.message.archive.enabled:false}")
+    private boolean enabled;
+
+    /** 保留天数 */
+    @Value("${customer.message.archive.retentionDays:90}")
+    private int retentionDays;
+
+    /** 每天执行时间 */
+    @Value("${customer.message.archive.runAt:03:00}")
+    private String runAt;
+
+    /** 每批处理的消息数 */
+    @Value("${customer.message.archive.batchSize:500}")
+    private int batchSize;
+
+    /** 每批之间暂停的毫秒数 */
+    @Value("${customer.message.archive.throttleMillis:200}")
+    private long throttleMillis;
+
+    private final String nodeId = IdUtils.fastSimpleUUID();
+
+    private volatile boolean running;
+
+    private volatile String currentTable;
+
+    private volatile Date beforeTime;
+
+    private volatile Date startTime;
+
+    private volatile Date endTime;
+
+    private volatile String lastError;
+
+    private final LongAdder archivedRows = new LongAdder();
+
+    @Autowired
+    private CsMessageMapper csMessageMapper;
+
+    @Autowired
+    private MessageArchiveManager messageArchiveManager;
+
+    @Autowired
+    private MessageShardRouter messageShardRouter;
+
+    @Autowired
+    private MessageTranscriptManager messageTranscriptManager;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @PostConstruct
+    public void init()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(LocalTime.parse(runAt));
+        if (!next.isAfter(now))
+        {
+            next = next.plusDays(1);
+        }
+        scheduledExecutorService.scheduleAtFixedRate(this::scheduledRun, Duration.between(now, next).toMillis(),
+                TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在后台开始归档清理
+     *
+     * @param beforeDays 保留天数
+     */
+    public synchronized void start(int beforeDays)
+    {
+        if (beforeDays < 1)
+        {
+            throw new ServiceException("保留天数不能小于1");
+        }
+        if (running)
+        {
+            throw new ServiceException("消息归档正在进行中");
+        }
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(CacheConstants.MESSAGE_SHARD_LOCK_KEY)))
+        {
+            throw new ServiceException("消息重新分片正在进行中，请稍后重试");
+        }
+        messageArchiveManager.checkArchiveDir();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(CacheConstants.MESSAGE_ARCHIVE_LOCK_KEY, nodeId,
+                LOCK_SECONDS, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked))
+        {
+            throw new ServiceException("其他节点正在归档消息");
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_MONTH, -beforeDays);
+        Date cutoff = calendar.getTime();
+        this.running = true;
+        this.beforeTime = cutoff;
+        this.startTime = new Date();
+        this.endTime = null;
+        this.lastError = null;
+        archivedRows.reset();
+        Thread worker = new Thread(() -> run(cutoff), "message-archive");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 归档进度
+     */
+    public Map<String, Object> getStatus()
+    {
+        Map<String, Object> status = new LinkedHashMap<String, Object>();
+        status.put("enabled", enabled);
+        status.put("retentionDays", retentionDays);
+        status.put("running", running);
+        status.put("currentTable", currentTable);
+        status.put("beforeTime", beforeTime);
+        status.put("archivedRows", archivedRows.sum());
+        status.put("startTime", startTime);
+        status.put("endTime", endTime);
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    private void scheduledRun()
+    {
+        try
+        {
+            start(retentionDays);
+        }
+        catch (ServiceException e)
+        {
+            log.info("跳过本次消息归档：{}", e.getMessage());
+        }
+        catch (Exception e)
+        {
+            log.error("启动消息归档失败", e);
+        }
+    }
+
+    private void run(Date beforeTime)
+    {
+        try
+        {
+            for (String table : new ArrayList<String>(messageShardRouter.distinctTables()))
+            {
+                currentTable = table;
+                archiveTable(table, beforeTime);
+            }
+            currentTable = TRANSCRIPT_TABLE;
+            archiveTranscripts(beforeTime);
+            log.info("消息归档完成，归档并删除{}条", archivedRows.sum());
+        }
+        catch (Exception e)
+        {
+            lastError = e.getMessage();
+            log.error("消息归档失败，表{}", currentTable, e);
+        }
+        finally
+        {
+            currentTable = null;
+            running = false;
+            endTime = new Date();
+            releaseLock();
+        }
+    }
+
+    /**
+     * 逐批归档并删除一张表中的过期消息
+     */
+    private void archiveTable(String table, Date beforeTime) throws Exception
+    {
+        List<CsMessage> batch;
+        do
+        {
+            batch = csMessageMapper.selectMessagesBefore(table, beforeTime, batchSize);
+            if (batch.isEmpty())
+            {
+                break;
+            }
+            messageArchiveManager.archive(batch);
+            List<Long> messageIds = new ArrayList<Long>(batch.size());
+            for (CsMessage message : batch)
+            {
+                messageIds.add(message.getMessageId());
+            }
+            csMessageMapper.purgeCsMessageByMessageIds(table, messageIds);
+            messageSearchIndex.delete(messageIds);
+            archivedRows.add(batch.size());
+            stringRedisTemplate.expire(CacheConstants.MESSAGE_ARCHIVE_LOCK_KEY, LOCK_SECONDS, TimeUnit.SECONDS);
+            if (throttleMillis > 0)
+            {
+                Thread.sleep(throttleMillis);
+            }
+        }
+        while (batch.size() == batchSize);
+    }
+
+    /**
+     * 逐批归档并删除过期的会话压缩记录
+     */
+    private void archiveTranscripts(Date beforeTime) throws Exception
+    {
+        List<Long> conversationIds;
+        do
+        {
+            conversationIds = messageTranscriptManager.selectExpiredConversationIds(beforeTime, batchSize);
+            for (Long conversationId : conversationIds)
+            {
+                List<CsMessage> messages = messageTranscriptManager.readAllMessages(messageTranscriptManager.selectTranscript(conversationId));
+                if (!messages.isEmpty())
+                {
+                    messageArchiveManager.archive(messages);
+                }
+                messageTranscriptManager.deleteTranscript(conversationId);
+                List<Long> messageIds = new ArrayList<Long>(messages.size());
+                for (CsMessage message : messages)
+                {
+                    messageIds.add(message.getMessageId());
+                }
+                messageSearchIndex.delete(messageIds);
+                archivedRows.add(messages.size());
+            }
+            stringRedisTemplate.expire(CacheConstants.MESSAGE_ARCHIVE_LOCK_KEY, LOCK_SECONDS, TimeUnit.SECONDS);
+            if (throttleMillis > 0 && !conversationIds.isEmpty())
+            {
+                Thread.sleep(throttleMillis);
+            }
+        }
+        while (conversationIds.size() == batchSize);
+    }
+
+    private void releaseLock()
+    {
+        try
+        {
+            if (nodeId.equals(stringRedisTemplate.opsForValue().get(CacheConstants.MESSAGE_ARCHIVE_LOCK_KEY)))
+            {
+                stringRedisTemplate.delete(CacheConstants.MESSAGE_ARCHIVE_LOCK_KEY);
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn("释放消息归档锁失败'{}'", e.getMessage());
+        }
+    }
+}
@@ -12,7 +12,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import com.whisper.common.annotation.Anonymous;
+import com.whisper.common.annotation.RateLimiter;
 import com.whisper.common.core.domain.AjaxResult;
+import com.whisper.common.enums.LimitAlgorithm;
+import com.whisper.common.enums.LimitType;
 import com.whisper.common.utils.StringUtils;
 import com.whisper.common.utils.DateUtils;
 import com.whisper.customer.domain.CsCustomer;
@@ -82,6 +85,7 @@ public class ChatApiController
     /**
      * 初始化客户会话
      */
+    @RateLimiter(time = 60, count = 30, limitType = LimitType.IP)
     @PostMapping("/init")
     public AjaxResult initChat(@RequestBody InitChatRequest request, HttpServletRequest httpRequest)
     {
@@ -164,6 +168,7 @@ public class ChatApiController
     /**
      * 发送消息
      */
+    @RateLimiter(time = 60, count = 120, limitType = LimitType.IP, algorithm = LimitAlgorithm.GCRA)
     @PostMapping("/sendMessage")
     public AjaxResult sendMessage(@RequestBody SendMessageRequest request)
     {
@@ -1,7 +1,6 @@
 package com.whisper.customer.controller;
 
 import java.util.List;
-import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
@@ -22,6 +21,7 @@ import com.whisper.common.enums.BusinessType;
 import com.whisper.common.utils.poi.ExcelUtil;
 import com.whisper.customer.domain.CsConversation;
 import com.whisper.customer.service.ICsConversationService;
+import com.whisper.framework.manager.ExportManager;
 
 /**
  * 会话管理 信息操作处理
@@ -35,6 +35,9 @@ public class CsConversationController extends BaseController
     @Autowired
     private ICsConversationService csConversationService;
 
+    @Autowired
+    private ExportManager exportManager;
+
     /**
      * 查询会话管理列表
      */
@@ -53,11 +56,10 @@ public class CsConversationController extends BaseController
     @PreAuthorize("@ss.hasPermi('customer:conversation:export')")
     @Log(title = "会话管理", businessType = BusinessType.EXPORT)
     @PostMapping("/export")
-    public void export(HttpServletResponse response, CsConversation csConversation)
+    public AjaxResult export(CsConversation csConversation)
     {
-        List<CsConversation> list = csConversationService.selectCsConversationList(csConversation);
         ExcelUtil<CsConversation> util = new ExcelUtil<CsConversation>(CsConversation.class);
-        util.exportExcel(response, list, "会话管理数据");
+        return success(exportManager.submit(util, "会话管理数据", rows -> csConversationService.exportCsConversationList(csConversation, rows)));
     }
 
     /**
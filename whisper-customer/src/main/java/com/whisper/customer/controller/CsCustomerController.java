@@ -1,5 +1,6 @@
 package com.whisper.customer.controller;
 
+import java.io.InputStream;
 import java.util.List;
 import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +23,7 @@ import com.whisper.common.enums.BusinessType;
 import com.whisper.common.utils.poi.ExcelUtil;
 import com.whisper.customer.domain.CsCustomer;
 import com.whisper.customer.service.ICsCustomerService;
+import com.whisper.framework.manager.ExportManager;
 
 /**
  * 客户信息管理 信息操作处理
@@ -32,9 +34,15 @@ import com.whisper.customer.service.ICsCustomerService;
 @RequestMapping("/customer/customer")
 public class CsCustomerController extends BaseController
 {
+    /** 导入时每批处理的条数 */
+    private static final int IMPORT_BATCH_SIZE = 500;
+
     @Autowired
     private ICsCustomerService csCustomerService;
 
+    @Autowired
+    private ExportManager exportManager;
+
     /**
      * 查询客户信息列表
      */
@@ -53,11 +61,10 @@ public class CsCustomerController extends BaseController
     @PreAuthorize("@ss.hasPermi('customer:customer:export')")
     @Log(title = "客户信息管理", businessType = BusinessType.EXPORT)
     @PostMapping("/export")
-    public void export(HttpServletResponse response, CsCustomer csCustomer)
+    public AjaxResult export(CsCustomer csCustomer)
     {
-        List<CsCustomer> list = csCustomerService.selectCsCustomerList(csCustomer);
         ExcelUtil<CsCustomer> util = new ExcelUtil<CsCustomer>(CsCustomer.class);
-        util.exportExcel(response, list, "客户信息数据");
+        return success(exportManager.submit(util, "客户信息数据", rows -> csCustomerService.selectCsCustomerList(csCustomer).forEach(rows)));
     }
 
     /**
@@ -206,9 +213,9 @@ public class CsCustomerController extends BaseController
     public AjaxResult importData(MultipartFile file, boolean updateSupport) throws Exception
     {
         ExcelUtil<CsCustomer> util = new ExcelUtil<CsCustomer>(CsCustomer.class);
-        List<CsCustomer> customerList = util.importExcel(file.getInputStream());
+        InputStream is = file.getInputStream();
         String operName = getUsername();
-        String message = csCustomerService.importCustomer(customerList, updateSupport, operName);
+        String message = csCustomerService.importCustomer(batch -> util.importExcel(is, IMPORT_BATCH_SIZE, batch), updateSupport, operName);
         return success(message);
     }
 
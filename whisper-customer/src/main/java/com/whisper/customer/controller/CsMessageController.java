@@ -1,8 +1,8 @@
 package com.whisper.customer.controller;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Date;
-import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
@@ -15,15 +15,25 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.format.annotation.DateTimeFormat;
 import com.whisper.common.annotation.Log;
 import com.whisper.common.core.controller.BaseController;
 import com.whisper.common.core.domain.AjaxResult;
 import com.whisper.common.core.page.TableDataInfo;
 import com.whisper.common.enums.BusinessType;
+import com.whisper.common.utils.file.FileUtils;
 import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.customer.archive.MessageRetentionTask;
 import com.whisper.customer.domain.CsMessage;
+import com.whisper.customer.search.MessageSearchIndex;
 import com.whisper.customer.service.ICsMessageService;
+import com.whisper.customer.shard.MessageShardMigrator;
+import com.whisper.customer.storage.ChatFileStorage;
+import com.whisper.customer.storage.ChatUploadSession;
+import com.whisper.customer.transcript.MessageCompactionTask;
+import com.whisper.framework.config.ServerConfig;
+import com.whisper.framework.manager.ExportManager;
 
 /**
  * 消息记录管理 信息操作处理
@@ -37,6 +47,27 @@ public class CsMessageController extends BaseController
     @Autowired
     private ICsMessageService csMessageService;
 
+    @Autowired
+    private ExportManager exportManager;
+
+    @Autowired
+    private MessageShardMigrator messageShardMigrator;
+
+    @Autowired
+    private MessageRetentionTask messageRetentionTask;
+
+    @Autowired
+    private MessageCompactionTask messageCompactionTask;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private ChatFileStorage chatFileStorage;
+
+    @Autowired
+    private ServerConfig serverConfig;
+
     /**
      * 查询消息记录列表
      */
@@ -55,11 +86,10 @@ public class CsMessageController extends BaseController
     @PreAuthorize("@ss.hasPermi('customer:message:export')")
     @Log(title = "消息记录管理", businessType = BusinessType.EXPORT)
     @PostMapping("/export")
-    public void export(HttpServletResponse response, CsMessage csMessage)
+    public AjaxResult export(CsMessage csMessage)
     {
-        List<CsMessage> list = csMessageService.selectCsMessageList(csMessage);
         ExcelUtil<CsMessage> util = new ExcelUtil<CsMessage>(CsMessage.class);
-        util.exportExcel(response, list, "消息记录数据");
+        return success(exportManager.submit(util, "消息记录数据", rows -> csMessageService.exportCsMessageList(csMessage, rows)));
     }
 
     /**
@@ -136,7 +166,7 @@ public class CsMessageController extends BaseController
     }
 
     /**
-     * 发送文件消息
+     * 发送文件消息，fileUrl 为 /upload 接口返回的地址时登记引用
      */
     @PostMapping("/sendFile")
     public AjaxResult sendFileMessage(@RequestParam Long conversationId,
@@ -158,6 +188,62 @@ public class CsMessageController extends BaseController
         return error("发送文件消息失败");
     }
 
+    /**
+     * 上传聊天文件（单个请求），相同内容只保存一份，返回的地址用于发送文件消息
+     */
+    @PostMapping("/upload")
+    public AjaxResult uploadFile(MultipartFile file) throws IOException
+    {
+        String fileName = chatFileStorage.store(file);
+        return uploadResult(fileName, file.getOriginalFilename(), file.getSize());
+    }
+
+    /**
+     * 开始分片上传，提供文件SHA-256且内容已存在时直接返回地址（finished 为 true），不需要上传分片
+     */
+    @PostMapping("/upload/init")
+    public AjaxResult initUpload(@RequestParam String fileName, @RequestParam Long fileSize,
+                                 @RequestParam(required = false) String hash)
+    {
+        String url = chatFileStorage.getUrl(hash);
+        if (url != null)
+        {
+            return uploadResult(url, fileName, fileSize).put("finished", true);
+        }
+        return AjaxResult.success().put("finished", false).put("upload", chatFileStorage.init(fileName, fileSize, hash));
+    }
+
+    /**
+     * 查询分片上传任务和已接收的分片，用于断点续传
+     */
+    @GetMapping("/upload/{uploadId}")
+    public AjaxResult getUpload(@PathVariable String uploadId)
+    {
+        return success(chatFileStorage.getUpload(uploadId));
+    }
+
+    /**
+     * 上传一个分片，不同分片可以并行上传
+     */
+    @PostMapping("/upload/{uploadId}/chunk")
+    public AjaxResult uploadChunk(@PathVariable String uploadId, @RequestParam Integer index, MultipartFile file)
+            throws IOException
+    {
+        chatFileStorage.uploadChunk(uploadId, index, file);
+        return success();
+    }
+
+    /**
+     * 完成分片上传
+     */
+    @PostMapping("/upload/{uploadId}/complete")
+    public AjaxResult completeUpload(@PathVariable String uploadId) throws IOException
+    {
+        ChatUploadSession upload = chatFileStorage.getUpload(uploadId);
+        String fileName = chatFileStorage.complete(uploadId);
+        return uploadResult(fileName, upload.getFileName(), upload.getFileSize());
+    }
+
     /**
      * 修改消息记录
      */
@@ -269,7 +355,73 @@ public class CsMessageController extends BaseController
     @PostMapping("/clean")
     public AjaxResult cleanHistoryMessages(@RequestParam(defaultValue = "90") Integer beforeDays)
     {
-        int count = csMessageService.cleanHistoryMessages(beforeDays);
-        return success("清理了 " + count + " 条历史消息");
+        csMessageService.cleanHistoryMessages(beforeDays);
+        return success("已开始归档清理 " + beforeDays + " 天前的历史消息");
+    }
+
+    /**
+     * 查询历史消息归档进度
+     */
+    @PreAuthorize("@ss.hasPermi('customer:message:clean')")
+    @GetMapping("/archive")
+    public AjaxResult archiveStatus()
+    {
+        return success(messageRetentionTask.getStatus());
+    }
+
+    /**
+     * 查询已结束会话的消息压缩进度
+     */
+    @PreAuthorize("@ss.hasPermi('customer:message:clean')")
+    @GetMapping("/compaction")
+    public AjaxResult compactionStatus()
+    {
+        return success(messageCompactionTask.getStatus());
+    }
+
+    /**
+     * 查询本节点消息搜索索引状态
+     */
+    @PreAuthorize("@ss.hasPermi('customer:message:list')")
+    @GetMapping("/searchIndex")
+    public AjaxResult searchIndexStatus()
+    {
+        return success(messageSearchIndex.getStatus());
+    }
+
+    /**
+     * 查询消息分片分布和迁移进度
+     */
+    @PreAuthorize("@ss.hasPermi('customer:message:shard')")
+    @GetMapping("/shard")
+    public AjaxResult shardStatus()
+    {
+        return success(messageShardMigrator.getStatus());
+    }
+
+    /**
+     * 在线重新分片
+     */
+    @PreAuthorize("@ss.hasPermi('customer:message:shard')")
+    @Log(title = "消息分片", businessType = BusinessType.UPDATE)
+    @PostMapping("/shard/{shardCount}")
+    public AjaxResult reshard(@PathVariable Integer shardCount)
+    {
+        messageShardMigrator.reshard(shardCount);
+        return success("已开始重新分片，分片数 " + shardCount);
+    }
+
+    /**
+     * 上传结果，与通用上传接口的字段一致
+     */
+    private AjaxResult uploadResult(String fileName, String originalFilename, Long fileSize)
+    {
+        AjaxResult ajax = AjaxResult.success();
+        ajax.put("url", serverConfig.getUrl() + fileName);
+        ajax.put("fileName", fileName);
+        ajax.put("newFileName", FileUtils.getName(fileName));
+        ajax.put("originalFilename", originalFilename);
+        ajax.put("fileSize", fileSize);
+        return ajax;
     }
 }
@@ -0,0 +1,51 @@
+package com.whisper.customer.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import com.whisper.common.core.controller.BaseController;
+import com.whisper.common.core.domain.AjaxResult;
+import com.whisper.common.exception.ServiceException;
+import com.whisper.customer.metrics.CsMetricsRegistry;
+
+/**
+ * 客服实时运营指标
+ *
+ * @author whisper
+ */
+@RestController
+@RequestMapping("/customer/metrics")
+public class CsMetricsController extends BaseController
+{
+    @Autowired
+    private CsMetricsRegistry csMetricsRegistry;
+
+    /**
+     * 获取指标快照
+     */
+    @PreAuthorize("@ss.hasPermi('customer:conversation:list')")
+    @GetMapping("/snapshot")
+    public AjaxResult snapshot()
+    {
+        return success(csMetricsRegistry.getSnapshot());
+    }
+
+    /**
+     * 订阅指标推送（监控大屏）
+     */
+    @PreAuthorize("@ss.hasPermi('customer:conversation:list')")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream()
+    {
+        SseEmitter emitter = csMetricsRegistry.subscribe();
+        if (emitter == null)
+        {
+            throw new ServiceException("订阅连接数已达上限");
+        }
+        return emitter;
+    }
+}
@@ -0,0 +1,152 @@
+package com.whisper.customer.controller;
+
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import com.whisper.common.annotation.Log;
+import com.whisper.common.core.controller.BaseController;
+import com.whisper.common.core.domain.AjaxResult;
+import com.whisper.common.core.page.TableDataInfo;
+import com.whisper.common.enums.BusinessType;
+import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.customer.domain.CsTicket;
+import com.whisper.customer.service.ICsTicketService;
+import com.whisper.framework.manager.ExportManager;
+
+/**
+ * 工单管理 信息操作处理
+ *
+ * @author whisper
+ */
+@RestController
+@RequestMapping("/customer/ticket")
+public class CsTicketController extends BaseController
+{
+    @Autowired
+    private ICsTicketService csTicketService;
+
+    @Autowired
+    private ExportManager exportManager;
+
+    /**
+     * 查询工单列表
+     */
+    @PreAuthorize("@ss.hasPermi('customer:ticket:list')")
+    @GetMapping("/list")
+    public TableDataInfo list(CsTicket csTicket)
+    {
+        startPage();
+        List<CsTicket> list = csTicketService.selectCsTicketList(csTicket);
+        return getDataTable(list);
+    }
+
+    /**
+     * 导出工单列表
+     */
+    @PreAuthorize("@ss.hasPermi('customer:ticket:export')")
+    @Log(title = "工单管理", businessType = BusinessType.EXPORT)
+    @PostMapping("/export")
+    public AjaxResult export(CsTicket csTicket)
+    {
+        ExcelUtil<CsTicket> util = new ExcelUtil<CsTicket>(CsTicket.class);
+        return success(exportManager.submit(util, "工单数据", rows -> csTicketService.selectCsTicketList(csTicket).forEach(rows)));
+    }
+
+    /**
+     * 获取工单详细信息
+     */
+    @PreAuthorize("@ss.hasPermi('customer:ticket:query')")
+    @GetMapping(value = "/{ticketId}")
+    public AjaxResult getInfo(@PathVariable("ticketId") Long ticketId)
+    {
+        return success(csTicketService.selectCsTicketByTicketId(ticketId));
+    }
+
+    /**
+     * 获取工单处理记录
+     */
+    @PreAuthorize("@ss.hasPermi('customer:ticket:query')")
+    @GetMapping(value = "/logs/{ticketId}")
+    public AjaxResult getLogs(@PathVariable("ticketId") Long ticketId)
+    {
+        return success(csTicketService.selectCsTicketLogByTicketId(ticketId));
+    }
+
+    /**
+     * 新增工单
+     */
+    @PreAuthorize("@ss.hasPermi('customer:ticket:add')")
+    @Log(title = "工单管理", businessType = BusinessType.INSERT)
+    @PostMapping
+    public AjaxResult add(@RequestBody CsTicket csTicket)
+    {
+        csTicket.setCreateBy(getUsername());
+        return toAjax(csTicketService.insertCsTicket(csTicket));
+    }
+
+    /**
+     * 修改工单
+     */
+    @PreAuthorize("@ss.hasPermi('customer:ticket:edit')")
+    @Log(title = "工单管理", businessType = BusinessType.UPDATE)
+    @PutMapping
+    public AjaxResult edit(@RequestBody CsTicket csTicket)
+    {
+        csTicket.setUpdateBy(getUsername());
+        return toAjax(csTicketService.updateCsTicket(csTicket));
+    }
+
+    /**
+     * 分配工单
+     */
+    @PreAuthorize("@ss.hasPermi('customer:ticket:edit')")
+    @Log(title = "工单管理", businessType = BusinessType.UPDATE)
+    @PutMapping("/assign/{ticketId}")
+    public AjaxResult assign(@PathVariable("ticketId") Long ticketId, @RequestParam("assignedTo") Long assignedTo)
+    {
+        return toAjax(csTicketService.assignTicket(ticketId, assignedTo));
+    }
+
+    /**
+     * 解决工单
+     */
+    @PreAuthorize("@ss.hasPermi('customer:ticket:edit')")
+    @Log(title = "工单管理", businessType = BusinessType.UPDATE)
+    @PutMapping("/resolve/{ticketId}")
+    public AjaxResult resolve(@PathVariable("ticketId") Long ticketId, @RequestBody(required = false) Map<String, String> params)
+    {
+        return toAjax(csTicketService.resolveTicket(ticketId, params == null ? null : params.get("content")));
+    }
+
+    /**
+     * 关闭工单
+     */
+    @PreAuthorize("@ss.hasPermi('customer:ticket:edit')")
+    @Log(title = "工单管理", businessType = BusinessType.UPDATE)
+    @PutMapping("/close/{ticketId}")
+    public AjaxResult close(@PathVariable("ticketId") Long ticketId, @RequestBody(required = false) Map<String, String> params)
+    {
+        return toAjax(csTicketService.closeTicket(ticketId, params == null ? null : params.get("content")));
+    }
+
+    /**
+     * 删除工单
+     */
+    @PreAuthorize("@ss.hasPermi('customer:ticket:remove')")
+    @Log(title = "工单管理", businessType = BusinessType.DELETE)
+    @DeleteMapping("/{ticketIds}")
+    public AjaxResult remove(@PathVariable Long[] ticketIds)
+    {
+        return toAjax(csTicketService.deleteCsTicketByTicketIds(ticketIds));
+    }
+}
@@ -0,0 +1,439 @@
+package com.whisper.customer.dispatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.customer.domain.CsAgent;
+import com.whisper.customer.domain.CsConversation;
+import com.whisper.customer.mapper.CsAgentMapper;
+import com.whisper.customer.mapper.CsConversationMapper;
+import com.whisper.customer.websocket.ChatWebSocketHandler;
+
+/**
+ * 客服接待负载
+ *
+ * 每个客服在Redis中维护接待配置（最大并发、工作状态）和占用中的会话集合，占用与释放由Lua脚本原子完成，
+ * 多节点同时分配时不会超出 max_concurrent。负载定期与 cs_conversation 对账，并延迟回写 cs_agent。
+ * 在线客服按最近心跳时间记录，各节点定时为本节点连接的客服续期，节点宕机后其客服在超时后被移出。
+ *
+ * @author whisper
+ */
+@Component
+public class AgentLoadManager
+{
+    private static final Logger log = LoggerFactory.getLogger(AgentLoadManager.class);
+
+    /** 未配置客服信息时的默认最大并发会话数 */
+    private static final int DEFAULT_MAX_CONCURRENT = 5;
+
+    /** 对账周期（秒） */
+    private static final int RECONCILE_INTERVAL_SECONDS = 60;
+
+    /** 回写周期（秒） */
+    private static final int FLUSH_INTERVAL_SECONDS = 10;
+
+    /** 在线心跳周期（秒） */
+    private static final int HEARTBEAT_INTERVAL_SECONDS = 15;
+
+    /** 超过该时间未收到心跳的客服视为离线 */
+    private static final long HEARTBEAT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(HEARTBEAT_INTERVAL_SECONDS * 3);
+
+    /** 对账时忽略最近占用的会话，避免与尚未提交的分配冲突 */
+    private static final long RECONCILE_GRACE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /** 单次回写的客服数量上限 */
+    private static final int FLUSH_BATCH = 200;
+
+    /** 占用成功 */
+    private static final long CLAIM_OK = 1;
+
+    /** 接待量已满 */
+    private static final long CLAIM_FULL = 0;
+
+    /** 客服配置未加载 */
+    private static final long CLAIM_UNLOADED = -1;
+
+    /** 客服配置（hash: max, status） */
+    private static final String INFO_KEY = CacheConstants.AGENT_LOAD_KEY + "info:";
+
+    /** 客服占用的会话（zset: 会话ID -> 占用时间） */
+    private static final String CONV_KEY = CacheConstants.AGENT_LOAD_KEY + "conv:";
+
+    /** 在线客服（zset: 客服ID -> 最近心跳时间） */
+    private static final String ONLINE_KEY = CacheConstants.AGENT_LOAD_KEY + "heartbeat";
+
+    /** 已加载配置的客服 */
+    private static final String AGENTS_KEY = CacheConstants.AGENT_LOAD_KEY + "agents";
+
+    /** 待回写的客服 */
+    private static final String DIRTY_KEY = CacheConstants.AGENT_LOAD_KEY + "dirty";
+
+    /** 对账锁 */
+    private static final String RECONCILE_LOCK_KEY = CacheConstants.AGENT_LOAD_KEY + "reconcile";
+
+    private static final DefaultRedisScript<Long> CLAIM_SCRIPT = script(
+            "if redis.call('zscore', KEYS[2], ARGV[1]) then\n" +
+            "    return 1\n" +
+            "end\n" +
+            "local max = tonumber(redis.call('hget', KEYS[1], 'max'))\n" +
+            "if not max then\n" +
+            "    return -1\n" +
+            "end\n" +
+            "if redis.call('zcard', KEYS[2]) >= max then\n" +
+            "    return 0\n" +
+            "end\n" +
+            "redis.call('zadd', KEYS[2], ARGV[2], ARGV[1])\n" +
+            "redis.call('sadd', KEYS[3], ARGV[3])\n" +
+            "return 1");
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = script(
+            "local removed = redis.call('zrem', KEYS[1], ARGV[1])\n" +
+            "if removed == 1 then\n" +
+            "    redis.call('sadd', KEYS[2], ARGV[2])\n" +
+            "end\n" +
+            "return removed");
+
+    private static final DefaultRedisScript<Long> RECONCILE_SCRIPT = script(
+            "local active = {}\n" +
+            "for i = 4, #ARGV do\n" +
+            "    active[ARGV[i]] = true\n" +
+            "    redis.call('zadd', KEYS[1], 'NX', ARGV[2], ARGV[i])\n" +
+            "end\n" +
+            "local stale = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[3])\n" +
+            "for _, id in ipairs(stale) do\n" +
+            "    if not active[id] then\n" +
+            "        redis.call('zrem', KEYS[1], id)\n" +
+            "    end\n" +
+            "end\n" +
+            "redis.call('sadd', KEYS[2], ARGV[1])\n" +
+            "return redis.call('zcard', KEYS[1])");
+
+    private static final DefaultRedisScript<Long> HEARTBEAT_SCRIPT = script(
+            "for i = 2, #ARGV do\n" +
+            "    redis.call('zadd', KEYS[1], 'XX', ARGV[1], ARGV[i])\n" +
+            "end\n" +
+            "return #ARGV - 1");
+
+    private static final DefaultRedisScript<Long> PRUNE_SCRIPT = script(
+            "local stale = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1])\n" +
+            "for _, id in ipairs(stale) do\n" +
+            "    redis.call('zrem', KEYS[1], id)\n" +
+            "    redis.call('hset', ARGV[2] .. id, 'status', '0')\n" +
+            "    redis.call('sadd', KEYS[2], id)\n" +
+            "end\n" +
+            "return #stale");
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CsAgentMapper csAgentMapper;
+
+    @Autowired
+    private CsConversationMapper csConversationMapper;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @PostConstruct
+    public void init()
+    {
+        scheduledExecutorService.scheduleWithFixedDelay(this::reconcile, 5, RECONCILE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        scheduledExecutorService.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        scheduledExecutorService.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_INTERVAL_SECONDS, HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 为客服占用一个接待名额，重复占用同一会话视为成功
+     *
+     * @param agentId 客服ID
+     * @param conversationId 会话ID
+     * @return 是否占用成功
+     */
+    public boolean claim(Long agentId, Long conversationId)
+    {
+        long result = executeClaim(agentId, conversationId);
+        if (result == CLAIM_UNLOADED)
+        {
+            loadAgent(agentId);
+            result = executeClaim(agentId, conversationId);
+        }
+        return result == CLAIM_OK;
+    }
+
+    /**
+     * 释放客服占用的接待名额
+     *
+     * @param agentId 客服ID
+     * @param conversationId 会话ID
+     */
+    public void release(Long agentId, Long conversationId)
+    {
+        if (agentId == null || conversationId == null)
+        {
+            return;
+        }
+        stringRedisTemplate.execute(RELEASE_SCRIPT, Arrays.asList(CONV_KEY + agentId, DIRTY_KEY),
+                String.valueOf(conversationId), String.valueOf(agentId));
+    }
+
+    /**
+     * 在在线客服中按负载率从低到高依次尝试占用
+     *
+     * @param conversationId 会话ID
+     * @return 占用成功的客服ID，无可用客服返回null
+     */
+    public Long claimLeastLoaded(Long conversationId)
+    {
+        pruneOffline();
+        Set<String> online = stringRedisTemplate.opsForZSet().range(ONLINE_KEY, 0, -1);
+        if (online == null || online.isEmpty())
+        {
+            return null;
+        }
+        List<long[]> candidates = new ArrayList<long[]>(online.size());
+        for (String member : online)
+        {
+            Long agentId = Long.valueOf(member);
+            long max = getMaxConcurrent(agentId);
+            long load = getLoad(agentId);
+            if (load < max)
+            {
+                // 按千分比负载率排序，同负载率时优先空位更多的客服
+                candidates.add(new long[] { agentId, load * 1000 / Math.max(max, 1), load - max });
+            }
+        }
+        candidates.sort(Comparator.<long[]>comparingLong(c -> c[1]).thenComparingLong(c -> c[2]));
+        for (long[] candidate : candidates)
+        {
+            if (claim(candidate[0], conversationId))
+            {
+                return candidate[0];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 更新客服工作状态
+     *
+     * @param agentId 客服ID
+     * @param workStatus 工作状态（0离线 1在线 2忙碌 3离开）
+     */
+    public void setWorkStatus(Long agentId, String workStatus)
+    {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(INFO_KEY + agentId)))
+        {
+            loadAgent(agentId);
+        }
+        stringRedisTemplate.opsForHash().put(INFO_KEY + agentId, "status", workStatus);
+        if ("1".equals(workStatus))
+        {
+            stringRedisTemplate.opsForZSet().add(ONLINE_KEY, String.valueOf(agentId), System.currentTimeMillis());
+        }
+        else
+        {
+            stringRedisTemplate.opsForZSet().remove(ONLINE_KEY, String.valueOf(agentId));
+        }
+        stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(agentId));
+    }
+
+    /**
+     * 获取客服当前负载
+     *
+     * @param agentId 客服ID
+     * @return 占用中的会话数
+     */
+    public int getLoad(Long agentId)
+    {
+        Long load = stringRedisTemplate.opsForZSet().zCard(CONV_KEY + agentId);
+        return load == null ? 0 : load.intValue();
+    }
+
+    /**
+     * 与 cs_conversation 对账，修正遗漏释放或遗漏占用的会话
+     */
+    public void reconcile()
+    {
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(RECONCILE_LOCK_KEY, "1",
+                RECONCILE_INTERVAL_SECONDS - 10, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked))
+        {
+            return;
+        }
+        try
+        {
+            pruneOffline();
+
+            Map<Long, List<String>> occupied = new HashMap<Long, List<String>>();
+            for (CsConversation conversation : csConversationMapper.selectOccupiedConversations())
+            {
+                occupied.computeIfAbsent(conversation.getAgentId(), k -> new ArrayList<String>())
+                        .add(String.valueOf(conversation.getConversationId()));
+            }
+            Map<Long, CsAgent> agents = new HashMap<Long, CsAgent>();
+            for (CsAgent agent : csAgentMapper.selectCsAgentCapacityList())
+            {
+                agents.put(agent.getAgentId(), agent);
+            }
+
+            Set<Long> agentIds = new HashSet<Long>(occupied.keySet());
+            Set<String> loaded = stringRedisTemplate.opsForSet().members(AGENTS_KEY);
+            if (loaded != null)
+            {
+                for (String member : loaded)
+                {
+                    agentIds.add(Long.valueOf(member));
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            for (Long agentId : agentIds)
+            {
+                // 同步后台修改的最大并发数
+                CsAgent agent = agents.get(agentId);
+                stringRedisTemplate.opsForHash().put(INFO_KEY + agentId, "max", String.valueOf(maxConcurrentOf(agent)));
+                stringRedisTemplate.opsForSet().add(AGENTS_KEY, String.valueOf(agentId));
+
+                List<String> args = new ArrayList<String>();
+                args.add(String.valueOf(agentId));
+                args.add(String.valueOf(now));
+                args.add(String.valueOf(now - RECONCILE_GRACE_MILLIS));
+                args.addAll(occupied.getOrDefault(agentId, Collections.<String>emptyList()));
+                stringRedisTemplate.execute(RECONCILE_SCRIPT, Arrays.asList(CONV_KEY + agentId, DIRTY_KEY), args.toArray());
+            }
+        }
+        catch (Exception e)
+        {
+            log.error("客服接待负载对账异常", e);
+        }
+    }
+
+    /**
+     * 将有变化的客服负载和工作状态回写 cs_agent
+     */
+    public void flush()
+    {
+        try
+        {
+            List<String> dirty;
+            while ((dirty = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, FLUSH_BATCH)) != null && !dirty.isEmpty())
+            {
+                for (String member : dirty)
+                {
+                    Long agentId = Long.valueOf(member);
+                    Object workStatus = stringRedisTemplate.opsForHash().get(INFO_KEY + agentId, "status");
+                    csAgentMapper.updateAgentLoad(agentId, getLoad(agentId), workStatus == null ? null : workStatus.toString());
+                }
+                if (dirty.size() < FLUSH_BATCH)
+                {
+                    break;
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            log.error("回写客服接待负载异常", e);
+        }
+    }
+
+    /**
+     * 为本节点连接中的在线客服续期心跳，已离线或忙碌的客服不会被重新加入
+     */
+    public void heartbeat()
+    {
+        try
+        {
+            List<String> agentIds = ChatWebSocketHandler.getOnlineUserIds("agent");
+            if (agentIds.isEmpty())
+            {
+                return;
+            }
+            List<String> args = new ArrayList<String>(agentIds.size() + 1);
+            args.add(String.valueOf(System.currentTimeMillis()));
+            args.addAll(agentIds);
+            stringRedisTemplate.execute(HEARTBEAT_SCRIPT, Collections.singletonList(ONLINE_KEY), args.toArray());
+        }
+        catch (Exception e)
+        {
+            log.error("客服在线心跳异常", e);
+        }
+    }
+
+    /**
+     * 移出心跳超时的客服（所在节点已宕机或断网），并将其工作状态置为离线
+     */
+    private void pruneOffline()
+    {
+        Long pruned = stringRedisTemplate.execute(PRUNE_SCRIPT, Arrays.asList(ONLINE_KEY, DIRTY_KEY),
+                String.valueOf(System.currentTimeMillis() - HEARTBEAT_TIMEOUT_MILLIS), INFO_KEY);
+        if (pruned != null && pruned > 0)
+        {
+            log.info("移出心跳超时的在线客服{}个", pruned);
+        }
+    }
+
+    private long executeClaim(Long agentId, Long conversationId)
+    {
+        Long result = stringRedisTemplate.execute(CLAIM_SCRIPT,
+                Arrays.asList(INFO_KEY + agentId, CONV_KEY + agentId, DIRTY_KEY),
+                String.valueOf(conversationId), String.valueOf(System.currentTimeMillis()), String.valueOf(agentId));
+        return StringUtils.isNull(result) ? CLAIM_FULL : result;
+    }
+
+    /**
+     * 从 cs_agent 加载客服接待配置，已加载的配置不覆盖
+     */
+    private void loadAgent(Long agentId)
+    {
+        CsAgent agent = csAgentMapper.selectCsAgentByAgentId(agentId);
+        String infoKey = INFO_KEY + agentId;
+        stringRedisTemplate.opsForHash().putIfAbsent(infoKey, "max", String.valueOf(maxConcurrentOf(agent)));
+        stringRedisTemplate.opsForHash().putIfAbsent(infoKey, "status",
+                agent == null || StringUtils.isEmpty(agent.getWorkStatus()) ? "0" : agent.getWorkStatus());
+        stringRedisTemplate.opsForSet().add(AGENTS_KEY, String.valueOf(agentId));
+    }
+
+    private long getMaxConcurrent(Long agentId)
+    {
+        Object max = stringRedisTemplate.opsForHash().get(INFO_KEY + agentId, "max");
+        if (max == null)
+        {
+            loadAgent(agentId);
+            max = stringRedisTemplate.opsForHash().get(INFO_KEY + agentId, "max");
+        }
+        return max == null ? DEFAULT_MAX_CONCURRENT : Long.parseLong(max.toString());
+    }
+
+    private static int maxConcurrentOf(CsAgent agent)
+    {
+        return agent == null || agent.getMaxConcurrent() == null ? DEFAULT_MAX_CONCURRENT : agent.getMaxConcurrent();
+    }
+
+    private static DefaultRedisScript<Long> script(String text)
+    {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptText(text);
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+}
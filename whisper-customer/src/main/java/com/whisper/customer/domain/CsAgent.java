@@ -0,0 +1,193 @@
+package com.whisper.customer.domain;
+
+import java.util.Date;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.whisper.common.annotation.Excel;
+import com.whisper.common.annotation.Excel.ColumnType;
+import com.whisper.common.core.domain.BaseEntity;
+
+/**
+ * 客服人员扩展信息表 cs_agent
+ * 
+ * @author whisper
+ */
+public class CsAgent extends BaseEntity
+{
+    private static final long serialVersionUID = 1L;
+
+    /** 客服ID（关联sys_user.user_id） */
+    @Excel(name = "客服ID", cellType = ColumnType.NUMERIC)
+    private Long agentId;
+
+    /** 客服工号 */
+    @Excel(name = "客服工号")
+    private String agentNo;
+
+    /** 技能标签（JSON格式） */
+    private String skillTags;
+
+    /** 服务类型（售前,售后,技术支持等） */
+    @Excel(name = "服务类型")
+    private String serviceType;
+
+    /** 最大并发会话数 */
+    @Excel(name = "最大并发会话数", cellType = ColumnType.NUMERIC)
+    private Integer maxConcurrent;
+
+    /** 当前负载 */
+    @Excel(name = "当前负载", cellType = ColumnType.NUMERIC)
+    private Integer currentLoad;
+
+    /** 工作状态（0离线 1在线 2忙碌 3离开） */
+    @Excel(name = "工作状态", readConverterExp = "0=离线,1=在线,2=忙碌,3=离开")
+    private String workStatus;
+
+    /** 自动接受会话（0否 1是） */
+    private String autoAccept;
+
+    /** 最后在线时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @Excel(name = "最后在线时间", width = 30, dateFormat = "yyyy-MM-dd HH:mm:ss")
+    private Date lastOnlineTime;
+
+    /** 状态（0正常 1停用） */
+    @Excel(name = "状态", readConverterExp = "0=正常,1=停用")
+    private String status;
+
+    /** 删除标志（0存在 2删除） */
+    private String delFlag;
+
+    public void setAgentId(Long agentId)
+    {
+        this.agentId = agentId;
+    }
+
+    public Long getAgentId()
+    {
+        return agentId;
+    }
+
+    public void setAgentNo(String agentNo)
+    {
+        this.agentNo = agentNo;
+    }
+
+    public String getAgentNo()
+    {
+        return agentNo;
+    }
+
+    public void setSkillTags(String skillTags)
+    {
+        this.skillTags = skillTags;
+    }
+
+    public String getSkillTags()
+    {
+        return skillTags;
+    }
+
+    public void setServiceType(String serviceType)
+    {
+        this.serviceType = serviceType;
+    }
+
+    public String getServiceType()
+    {
+        return serviceType;
+    }
+
+    public void setMaxConcurrent(Integer maxConcurrent)
+    {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public Integer getMaxConcurrent()
+    {
+        return maxConcurrent;
+    }
+
+    public void setCurrentLoad(Integer currentLoad)
+    {
+        this.currentLoad = currentLoad;
+    }
+
+    public Integer getCurrentLoad()
+    {
+        return currentLoad;
+    }
+
+    public void setWorkStatus(String workStatus)
+    {
+        this.workStatus = workStatus;
+    }
+
+    public String getWorkStatus()
+    {
+        return workStatus;
+    }
+
+    public void setAutoAccept(String autoAccept)
+    {
+        this.autoAccept = autoAccept;
+    }
+
+    public String getAutoAccept()
+    {
+        return autoAccept;
+    }
+
+    public void setLastOnlineTime(Date lastOnlineTime)
+    {
+        this.lastOnlineTime = lastOnlineTime;
+    }
+
+    public Date getLastOnlineTime()
+    {
+        return lastOnlineTime;
+    }
+
+    public void setStatus(String status)
+    {
+        this.status = status;
+    }
+
+    public String getStatus()
+    {
+        return status;
+    }
+
+    public void setDelFlag(String delFlag)
+    {
+        this.delFlag = delFlag;
+    }
+
+    public String getDelFlag()
+    {
+        return delFlag;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this,ToStringStyle.MULTI_LINE_STYLE)
+            .append("agentId", getAgentId())
+            .append("agentNo", getAgentNo())
+            .append("skillTags", getSkillTags())
+            .append("serviceType", getServiceType())
+            .append("maxConcurrent", getMaxConcurrent())
+            .append("currentLoad", getCurrentLoad())
+            .append("workStatus", getWorkStatus())
+            .append("autoAccept", getAutoAccept())
+            .append("lastOnlineTime", getLastOnlineTime())
+            .append("status", getStatus())
+            .append("delFlag", getDelFlag())
+            .append("createBy", getCreateBy())
+            .append("createTime", getCreateTime())
+            .append("updateBy", getUpdateBy())
+            .append("updateTime", getUpdateTime())
+            .append("remark", getRemark())
+            .toString();
+    }
+}
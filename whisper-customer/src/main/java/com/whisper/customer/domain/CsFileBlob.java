@@ -0,0 +1,106 @@
+package com.whisper.customer.domain;
+
+import java.util.Date;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * 聊天文件内容存储表 cs_file_blob
+ *
+ * @author whisper
+ */
+public class CsFileBlob
+{
+    /** 文件内容SHA-256 */
+    private String hash;
+
+    /** 文件扩展名 */
+    private String fileExt;
+
+    /** 文件大小（字节） */
+    private Long fileSize;
+
+    /** 引用该文件的消息数量 */
+    private Integer refCount;
+
+    /** 创建时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+
+    /** 最后上传或引用变化时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date updateTime;
+
+    public String getHash()
+    {
+        return hash;
+    }
+
+    public void setHash(String hash)
+    {
+        this.hash = hash;
+    }
+
+    public String getFileExt()
+    {
+        return fileExt;
+    }
+
+    public void setFileExt(String fileExt)
+    {
+        this.fileExt = fileExt;
+    }
+
+    public Long getFileSize()
+    {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize)
+    {
+        this.fileSize = fileSize;
+    }
+
+    public Integer getRefCount()
+    {
+        return refCount;
+    }
+
+    public void setRefCount(Integer refCount)
+    {
+        this.refCount = refCount;
+    }
+
+    public Date getCreateTime()
+    {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime)
+    {
+        this.createTime = createTime;
+    }
+
+    public Date getUpdateTime()
+    {
+        return updateTime;
+    }
+
+    public void setUpdateTime(Date updateTime)
+    {
+        this.updateTime = updateTime;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this,ToStringStyle.MULTI_LINE_STYLE)
+            .append("hash", getHash())
+            .append("fileExt", getFileExt())
+            .append("fileSize", getFileSize())
+            .append("refCount", getRefCount())
+            .append("createTime", getCreateTime())
+            .append("updateTime", getUpdateTime())
+            .toString();
+    }
+}
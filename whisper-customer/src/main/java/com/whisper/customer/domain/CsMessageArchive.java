@@ -0,0 +1,164 @@
+package com.whisper.customer.domain;
+
+import java.util.Date;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * 消息归档索引表 cs_message_archive
+ * 
+ * @author whisper
+ */
+public class CsMessageArchive
+{
+    /** 归档ID */
+    private Long archiveId;
+
+    /** 会话ID */
+    private Long conversationId;
+
+    /** 归档月份（yyyyMM） */
+    private String archiveMonth;
+
+    /** 归档文件路径（相对归档目录） */
+    private String filePath;
+
+    /** 消息数量 */
+    private Integer messageCount;
+
+    /** 最早发送时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date firstSendTime;
+
+    /** 最晚发送时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date lastSendTime;
+
+    /** 文件SHA-256 */
+    private String checksum;
+
+    /** 创建时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+
+    /** 更新时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date updateTime;
+
+    public void setArchiveId(Long archiveId)
+    {
+        this.archiveId = archiveId;
+    }
+
+    public Long getArchiveId()
+    {
+        return archiveId;
+    }
+
+    public void setConversationId(Long conversationId)
+    {
+        this.conversationId = conversationId;
+    }
+
+    public Long getConversationId()
+    {
+        return conversationId;
+    }
+
+    public void setArchiveMonth(String archiveMonth)
+    {
+        this.archiveMonth = archiveMonth;
+    }
+
+    public String getArchiveMonth()
+    {
+        return archiveMonth;
+    }
+
+    public void setFilePath(String filePath)
+    {
+        this.filePath = filePath;
+    }
+
+    public String getFilePath()
+    {
+        return filePath;
+    }
+
+    public void setMessageCount(Integer messageCount)
+    {
+        this.messageCount = messageCount;
+    }
+
+    public Integer getMessageCount()
+    {
+        return messageCount;
+    }
+
+    public void setFirstSendTime(Date firstSendTime)
+    {
+        this.firstSendTime = firstSendTime;
+    }
+
+    public Date getFirstSendTime()
+    {
+        return firstSendTime;
+    }
+
+    public void setLastSendTime(Date lastSendTime)
+    {
+        this.lastSendTime = lastSendTime;
+    }
+
+    public Date getLastSendTime()
+    {
+        return lastSendTime;
+    }
+
+    public void setChecksum(String checksum)
+    {
+        this.checksum = checksum;
+    }
+
+    public String getChecksum()
+    {
+        return checksum;
+    }
+
+    public void setCreateTime(Date createTime)
+    {
+        this.createTime = createTime;
+    }
+
+    public Date getCreateTime()
+    {
+        return createTime;
+    }
+
+    public void setUpdateTime(Date updateTime)
+    {
+        this.updateTime = updateTime;
+    }
+
+    public Date getUpdateTime()
+    {
+        return updateTime;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this,ToStringStyle.MULTI_LINE_STYLE)
+            .append("archiveId", getArchiveId())
+            .append("conversationId", getConversationId())
+            .append("archiveMonth", getArchiveMonth())
+            .append("filePath", getFilePath())
+            .append("messageCount", getMessageCount())
+            .append("firstSendTime", getFirstSendTime())
+            .append("lastSendTime", getLastSendTime())
+            .append("checksum", getChecksum())
+            .append("createTime", getCreateTime())
+            .append("updateTime", getUpdateTime())
+            .toString();
+    }
+}
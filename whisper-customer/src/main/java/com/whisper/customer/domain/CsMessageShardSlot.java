@@ -0,0 +1,86 @@
+package com.whisper.customer.domain;
+
+import java.util.Date;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * 消息分片槽位表 cs_message_shard_slot
+ * 
+ * @author whisper
+ */
+public class CsMessageShardSlot
+{
+    /** 槽位号 */
+    private Integer slotId;
+
+    /** 所在物理表 */
+    private String tableName;
+
+    /** 迁移目标表，未迁移时为空 */
+    private String targetTable;
+
+    /** 更新时间 */
+    private Date updateTime;
+
+    public CsMessageShardSlot()
+    {
+    }
+
+    public CsMessageShardSlot(Integer slotId, String tableName, String targetTable)
+    {
+        this.slotId = slotId;
+        this.tableName = tableName;
+        this.targetTable = targetTable;
+    }
+
+    public void setSlotId(Integer slotId)
+    {
+        this.slotId = slotId;
+    }
+
+    public Integer getSlotId()
+    {
+        return slotId;
+    }
+
+    public void setTableName(String tableName)
+    {
+        this.tableName = tableName;
+    }
+
+    public String getTableName()
+    {
+        return tableName;
+    }
+
+    public void setTargetTable(String targetTable)
+    {
+        this.targetTable = targetTable;
+    }
+
+    public String getTargetTable()
+    {
+        return targetTable;
+    }
+
+    public void setUpdateTime(Date updateTime)
+    {
+        this.updateTime = updateTime;
+    }
+
+    public Date getUpdateTime()
+    {
+        return updateTime;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this,ToStringStyle.MULTI_LINE_STYLE)
+            .append("slotId", getSlotId())
+            .append("tableName", getTableName())
+            .append("targetTable", getTargetTable())
+            .append("updateTime", getUpdateTime())
+            .toString();
+    }
+}
@@ -0,0 +1,164 @@
+package com.whisper.customer.domain;
+
+import java.util.Date;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * 会话消息压缩记录表 cs_message_transcript
+ * 
+ * @author whisper
+ */
+public class CsMessageTranscript
+{
+    /** 会话ID */
+    private Long conversationId;
+
+    /** 未删除的消息数量 */
+    private Integer messageCount;
+
+    /** 全部消息数量（含已删除） */
+    private Integer totalCount;
+
+    /** 最小消息ID */
+    private Long minMessageId;
+
+    /** 最大消息ID */
+    private Long maxMessageId;
+
+    /** 最早发送时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date firstSendTime;
+
+    /** 最晚发送时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date lastSendTime;
+
+    /** gzip 压缩的 NDJSON 消息记录 */
+    @JsonIgnore
+    private byte[] content;
+
+    /** 行索引，每条消息依次为 消息ID(8字节)、行偏移(4字节)、删除标志(1字节) */
+    @JsonIgnore
+    private byte[] lineIndex;
+
+    /** 创建时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+
+    public void setConversationId(Long conversationId)
+    {
+        this.conversationId = conversationId;
+    }
+
+    public Long getConversationId()
+    {
+        return conversationId;
+    }
+
+    public void setMessageCount(Integer messageCount)
+    {
+        this.messageCount = messageCount;
+    }
+
+    public Integer getMessageCount()
+    {
+        return messageCount;
+    }
+
+    public void setTotalCount(Integer totalCount)
+    {
+        this.totalCount = totalCount;
+    }
+
+    public Integer getTotalCount()
+    {
+        return totalCount;
+    }
+
+    public void setMinMessageId(Long minMessageId)
+    {
+        this.minMessageId = minMessageId;
+    }
+
+    public Long getMinMessageId()
+    {
+        return minMessageId;
+    }
+
+    public void setMaxMessageId(Long maxMessageId)
+    {
+        this.maxMessageId = maxMessageId;
+    }
+
+    public Long getMaxMessageId()
+    {
+        return maxMessageId;
+    }
+
+    public void setFirstSendTime(Date firstSendTime)
+    {
+        this.firstSendTime = firstSendTime;
+    }
+
+    public Date getFirstSendTime()
+    {
+        return firstSendTime;
+    }
+
+    public void setLastSendTime(Date lastSendTime)
+    {
+        this.lastSendTime = lastSendTime;
+    }
+
+    public Date getLastSendTime()
+    {
+        return lastSendTime;
+    }
+
+    public void setContent(byte[] content)
+    {
+        this.content = content;
+    }
+
+    public byte[] getContent()
+    {
+        return content;
+    }
+
+    public void setLineIndex(byte[] lineIndex)
+    {
+        this.lineIndex = lineIndex;
+    }
+
+    public byte[] getLineIndex()
+    {
+        return lineIndex;
+    }
+
+    public void setCreateTime(Date createTime)
+    {
+        this.createTime = createTime;
+    }
+
+    public Date getCreateTime()
+    {
+        return createTime;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this,ToStringStyle.MULTI_LINE_STYLE)
+            .append("conversationId", getConversationId())
+            .append("messageCount", getMessageCount())
+            .append("totalCount", getTotalCount())
+            .append("minMessageId", getMinMessageId())
+            .append("maxMessageId", getMaxMessageId())
+            .append("firstSendTime", getFirstSendTime())
+            .append("lastSendTime", getLastSendTime())
+            .append("createTime", getCreateTime())
+            .toString();
+    }
+}
@@ -0,0 +1,328 @@
+package com.whisper.customer.domain;
+
+import java.util.Date;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.whisper.common.annotation.Excel;
+import com.whisper.common.annotation.Excel.ColumnType;
+import com.whisper.common.core.domain.BaseEntity;
+
+/**
+ * 工单系统表 cs_ticket
+ * 
+ * @author whisper
+ */
+public class CsTicket extends BaseEntity
+{
+    private static final long serialVersionUID = 1L;
+
+    /** 工单ID */
+    @Excel(name = "工单ID", cellType = ColumnType.NUMERIC)
+    private Long ticketId;
+
+    /** 工单编号 */
+    @Excel(name = "工单编号")
+    private String ticketNo;
+
+    /** 客户ID */
+    @Excel(name = "客户ID", cellType = ColumnType.NUMERIC)
+    private Long customerId;
+
+    /** 关联会话ID */
+    @Excel(name = "关联会话ID", cellType = ColumnType.NUMERIC)
+    private Long conversationId;
+
+    /** 工单标题 */
+    @Excel(name = "工单标题")
+    private String title;
+
+    /** 工单内容 */
+    private String content;
+
+    /** 工单分类 */
+    @Excel(name = "工单分类")
+    private String category;
+
+    /** 优先级（1低 2中 3高 4紧急） */
+    @Excel(name = "优先级", readConverterExp = "1=低,2=中,3=高,4=紧急")
+    private String priority;
+
+    /** 状态（0待处理 1处理中 2待回复 3已解决 4已关闭） */
+    @Excel(name = "状态", readConverterExp = "0=待处理,1=处理中,2=待回复,3=已解决,4=已关闭")
+    private String status;
+
+    /** 分配给（用户ID） */
+    @Excel(name = "处理人ID", cellType = ColumnType.NUMERIC)
+    private Long assignedTo;
+
+    /** 分配部门 */
+    private Long assignedDept;
+
+    /** 来源渠道 */
+    @Excel(name = "来源渠道")
+    private String source;
+
+    /** 标签（JSON格式） */
+    private String tags;
+
+    /** 截止时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @Excel(name = "截止时间", width = 30, dateFormat = "yyyy-MM-dd HH:mm:ss")
+    private Date dueTime;
+
+    /** 下次SLA检查时间（为空表示不再检查） */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date slaTime;
+
+    /** 解决时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @Excel(name = "解决时间", width = 30, dateFormat = "yyyy-MM-dd HH:mm:ss")
+    private Date resolveTime;
+
+    /** 关闭时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @Excel(name = "关闭时间", width = 30, dateFormat = "yyyy-MM-dd HH:mm:ss")
+    private Date closeTime;
+
+    /** 满意度（1-5分） */
+    @Excel(name = "满意度")
+    private String satisfaction;
+
+    /** 客户反馈 */
+    private String feedback;
+
+    /** 删除标志（0存在 2删除） */
+    private String delFlag;
+
+    public void setTicketId(Long ticketId)
+    {
+        this.ticketId = ticketId;
+    }
+
+    public Long getTicketId()
+    {
+        return ticketId;
+    }
+
+    public void setTicketNo(String ticketNo)
+    {
+        this.ticketNo = ticketNo;
+    }
+
+    public String getTicketNo()
+    {
+        return ticketNo;
+    }
+
+    public void setCustomerId(Long customerId)
+    {
+        this.customerId = customerId;
+    }
+
+    public Long getCustomerId()
+    {
+        return customerId;
+    }
+
+    public void setConversationId(Long conversationId)
+    {
+        this.conversationId = conversationId;
+    }
+
+    public Long getConversationId()
+    {
+        return conversationId;
+    }
+
+    public void setTitle(String title)
+    {
+        this.title = title;
+    }
+
+    public String getTitle()
+    {
+        return title;
+    }
+
+    public void setContent(String content)
+    {
+        this.content = content;
+    }
+
+    public String getContent()
+    {
+        return content;
+    }
+
+    public void setCategory(String category)
+    {
+        this.category = category;
+    }
+
+    public String getCategory()
+    {
+        return category;
+    }
+
+    public void setPriority(String priority)
+    {
+        this.priority = priority;
+    }
+
+    public String getPriority()
+    {
+        return priority;
+    }
+
+    public void setStatus(String status)
+    {
+        this.status = status;
+    }
+
+    public String getStatus()
+    {
+        return status;
+    }
+
+    public void setAssignedTo(Long assignedTo)
+    {
+        this.assignedTo = assignedTo;
+    }
+
+    public Long getAssignedTo()
+    {
+        return assignedTo;
+    }
+
+    public void setAssignedDept(Long assignedDept)
+    {
+        this.assignedDept = assignedDept;
+    }
+
+    public Long getAssignedDept()
+    {
+        return assignedDept;
+    }
+
+    public void setSource(String source)
+    {
+        this.source = source;
+    }
+
+    public String getSource()
+    {
+        return source;
+    }
+
+    public void setTags(String tags)
+    {
+        this.tags = tags;
+    }
+
+    public String getTags()
+    {
+        return tags;
+    }
+
+    public void setDueTime(Date dueTime)
+    {
+        this.dueTime = dueTime;
+    }
+
+    public Date getDueTime()
+    {
+        return dueTime;
+    }
+
+    public void setSlaTime(Date slaTime)
+    {
+        this.slaTime = slaTime;
+    }
+
+    public Date getSlaTime()
+    {
+        return slaTime;
+    }
+
+    public void setResolveTime(Date resolveTime)
+    {
+        this.resolveTime = resolveTime;
+    }
+
+    public Date getResolveTime()
+    {
+        return resolveTime;
+    }
+
+    public void setCloseTime(Date closeTime)
+    {
+        this.closeTime = closeTime;
+    }
+
+    public Date getCloseTime()
+    {
+        return closeTime;
+    }
+
+    public void setSatisfaction(String satisfaction)
+    {
+        this.satisfaction = satisfaction;
+    }
+
+    public String getSatisfaction()
+    {
+        return satisfaction;
+    }
+
+    public void setFeedback(String feedback)
+    {
+        this.feedback = feedback;
+    }
+
+    public String getFeedback()
+    {
+        return feedback;
+    }
+
+    public void setDelFlag(String delFlag)
+    {
+        this.delFlag = delFlag;
+    }
+
+    public String getDelFlag()
+    {
+        return delFlag;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this,ToStringStyle.MULTI_LINE_STYLE)
+            .append("ticketId", getTicketId())
+            .append("ticketNo", getTicketNo())
+            .append("customerId", getCustomerId())
+            .append("conversationId", getConversationId())
+            .append("title", getTitle())
+            .append("content", getContent())
+            .append("category", getCategory())
+            .append("priority", getPriority())
+            .append("status", getStatus())
+            .append("assignedTo", getAssignedTo())
+            .append("assignedDept", getAssignedDept())
+            .append("source", getSource())
+            .append("tags", getTags())
+            .append("dueTime", getDueTime())
+            .append("slaTime", getSlaTime())
+            .append("resolveTime", getResolveTime())
+            .append("closeTime", getCloseTime())
+            .append("satisfaction", getSatisfaction())
+            .append("feedback", getFeedback())
+            .append("delFlag", getDelFlag())
+            .append("createBy", getCreateBy())
+            .append("createTime", getCreateTime())
+            .append("updateBy", getUpdateBy())
+            .append("updateTime", getUpdateTime())
+            .append("remark", getRemark())
+            .toString();
+    }
+}
@@ -0,0 +1,194 @@
+package com.whisper.customer.domain;
+
+import java.util.Date;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.whisper.common.core.domain.BaseEntity;
+
+/**
+ * 工单处理记录表 cs_ticket_log
+ * 
+ * @author whisper
+ */
+public class CsTicketLog extends BaseEntity
+{
+    private static final long serialVersionUID = 1L;
+
+    /** 记录ID */
+    private Long logId;
+
+    /** 工单ID */
+    private Long ticketId;
+
+    /** 操作类型（create创建 assign分配 reply回复 resolve解决 close关闭 escalate升级） */
+    private String actionType;
+
+    /** 操作人员ID（系统操作为0） */
+    private Long actionUser;
+
+    /** 操作人员姓名 */
+    private String actionUserName;
+
+    /** 原值 */
+    private String oldValue;
+
+    /** 新值 */
+    private String newValue;
+
+    /** 处理内容 */
+    private String content;
+
+    /** 附件列表（JSON格式） */
+    private String attachments;
+
+    /** 操作时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date actionTime;
+
+    /** 耗时（分钟） */
+    private Integer timeSpent;
+
+    /** 删除标志（0存在 2删除） */
+    private String delFlag;
+
+    public void setLogId(Long logId)
+    {
+        this.logId = logId;
+    }
+
+    public Long getLogId()
+    {
+        return logId;
+    }
+
+    public void setTicketId(Long ticketId)
+    {
+        this.ticketId = ticketId;
+    }
+
+    public Long getTicketId()
+    {
+        return ticketId;
+    }
+
+    public void setActionType(String actionType)
+    {
+        this.actionType = actionType;
+    }
+
+    public String getActionType()
+    {
+        return actionType;
+    }
+
+    public void setActionUser(Long actionUser)
+    {
+        this.actionUser = actionUser;
+    }
+
+    public Long getActionUser()
+    {
+        return actionUser;
+    }
+
+    public void setActionUserName(String actionUserName)
+    {
+        this.actionUserName = actionUserName;
+    }
+
+    public String getActionUserName()
+    {
+        return actionUserName;
+    }
+
+    public void setOldValue(String oldValue)
+    {
+        this.oldValue = oldValue;
+    }
+
+    public String getOldValue()
+    {
+        return oldValue;
+    }
+
+    public void setNewValue(String newValue)
+    {
+        this.newValue = newValue;
+    }
+
+    public String getNewValue()
+    {
+        return newValue;
+    }
+
+    public void setContent(String content)
+    {
+        this.content = content;
+    }
+
+    public String getContent()
+    {
+        return content;
+    }
+
+    public void setAttachments(String attachments)
+    {
+        this.attachments = attachments;
+    }
+
+    public String getAttachments()
+    {
+        return attachments;
+    }
+
+    public void setActionTime(Date actionTime)
+    {
+        this.actionTime = actionTime;
+    }
+
+    public Date getActionTime()
+    {
+        return actionTime;
+    }
+
+    public void setTimeSpent(Integer timeSpent)
+    {
+        this.timeSpent = timeSpent;
+    }
+
+    public Integer getTimeSpent()
+    {
+        return timeSpent;
+    }
+
+    public void setDelFlag(String delFlag)
+    {
+        this.delFlag = delFlag;
+    }
+
+    public String getDelFlag()
+    {
+        return delFlag;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this,ToStringStyle.MULTI_LINE_STYLE)
+            .append("logId", getLogId())
+            .append("ticketId", getTicketId())
+            .append("actionType", getActionType())
+            .append("actionUser", getActionUser())
+            .append("actionUserName", getActionUserName())
+            .append("oldValue", getOldValue())
+            .append("newValue", getNewValue())
+            .append("content", getContent())
+            .append("attachments", getAttachments())
+            .append("actionTime", getActionTime())
+            .append("timeSpent", getTimeSpent())
+            .append("delFlag", getDelFlag())
+            .append("createBy", getCreateBy())
+            .append("createTime", getCreateTime())
+            .toString();
+    }
+}
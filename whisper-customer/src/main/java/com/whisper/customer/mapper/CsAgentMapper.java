@@ -0,0 +1,39 @@
+package com.whisper.customer.mapper;
+
+import java.util.List;
+import org.apache.ibatis.annotations.Param;
+import com.whisper.customer.domain.CsAgent;
+
+/**
+ * 客服人员扩展信息表 数据层
+ * 
+ * @author whisper
+ */
+public interface CsAgentMapper
+{
+    /**
+     * 查询客服信息
+     * 
+     * @param agentId 客服ID
+     * @return 客服信息
+     */
+    public CsAgent selectCsAgentByAgentId(Long agentId);
+
+    /**
+     * 查询全部有效客服的接待配置
+     * 
+     * @return 客服信息集合
+     */
+    public List<CsAgent> selectCsAgentCapacityList();
+
+    /**
+     * 回写客服当前负载和工作状态
+     * 
+     * @param agentId 客服ID
+     * @param currentLoad 当前负载
+     * @param workStatus 工作状态
+     * @return 结果
+     */
+    public int updateAgentLoad(@Param("agentId") Long agentId, @Param("currentLoad") Integer currentLoad,
+                               @Param("workStatus") String workStatus);
+}
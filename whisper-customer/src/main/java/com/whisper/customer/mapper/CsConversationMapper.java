@@ -2,6 +2,7 @@ package com.whisper.customer.mapper;
 
 import java.util.List;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 import com.whisper.customer.domain.CsConversation;
 
 /**
@@ -35,6 +36,14 @@ public interface CsConversationMapper
      */
     public List<CsConversation> selectCsConversationList(CsConversation csConversation);
 
+    /**
+     * 逐行读取会话管理列表，用于导出
+     * 
+     * @param csConversation 会话管理
+     * @param handler 逐行处理结果
+     */
+    public void selectCsConversationListForExport(CsConversation csConversation, ResultHandler<CsConversation> handler);
+
     /**
      * 根据客户ID查询会话列表
      * 
@@ -150,6 +159,13 @@ public interface CsConversationMapper
     public int updateConversationSatisfaction(@Param("conversationId") Long conversationId, 
                                              @Param("satisfaction") String satisfaction);
 
+    /**
+     * 查询占用客服接待量的会话（进行中和已转接），仅返回会话ID和客服ID
+     * 
+     * @return 会话集合
+     */
+    public List<CsConversation> selectOccupiedConversations();
+
     /**
      * 统计客服当前活跃会话数
      * 
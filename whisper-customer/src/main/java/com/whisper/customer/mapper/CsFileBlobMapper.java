@@ -0,0 +1,80 @@
+package com.whisper.customer.mapper;
+
+import java.util.Date;
+import java.util.List;
+import org.apache.ibatis.annotations.Param;
+import com.whisper.customer.domain.CsFileBlob;
+
+/**
+ * 聊天文件内容存储 数据层
+ *
+ * @author whisper
+ */
+public interface CsFileBlobMapper
+{
+    /**
+     * 查询文件内容记录
+     *
+     * @param hash 文件内容SHA-256
+     * @return 文件内容记录
+     */
+    public CsFileBlob selectBlobByHash(String hash);
+
+    /**
+     * 登记文件内容，已存在时只更新最后上传时间，同时锁定该行
+     *
+     * @param blob 文件内容记录
+     * @return 结果
+     */
+    public int saveBlob(CsFileBlob blob);
+
+    /**
+     * 更新最后上传时间，避免未引用的文件在发送前被清理
+     *
+     * @param hash 文件内容SHA-256
+     * @return 结果
+     */
+    public int touchBlob(String hash);
+
+    /**
+     * 引用计数加一
+     *
+     * @param hash 文件内容SHA-256
+     * @return 结果
+     */
+    public int incrementRefCount(String hash);
+
+    /**
+     * 引用计数减一
+     *
+     * @param hash 文件内容SHA-256
+     * @return 结果
+     */
+    public int decrementRefCount(String hash);
+
+    /**
+     * 查询没有引用且超过保留时间的文件
+     *
+     * @param beforeTime 最后上传或引用变化时间上限
+     * @param limit 限制数量
+     * @return 文件内容SHA-256集合
+     */
+    public List<String> selectOrphanHashes(@Param("beforeTime") Date beforeTime, @Param("limit") Integer limit);
+
+    /**
+     * 锁定并查询没有引用且超过保留时间的文件
+     *
+     * @param hash 文件内容SHA-256
+     * @param beforeTime 最后上传或引用变化时间上限
+     * @return 文件内容记录，已被引用或重新上传时为null
+     */
+    public CsFileBlob selectOrphanBlobForUpdate(@Param("hash") String hash, @Param("beforeTime") Date beforeTime);
+
+    /**
+     * 删除文件内容记录
+     *
+     * @param hash 文件内容SHA-256
+     * @return 结果
+     */
+    public int deleteBlobByHash(String hash);
+}
@@ -0,0 +1,38 @@
+package com.whisper.customer.mapper;
+
+import java.util.List;
+import org.apache.ibatis.annotations.Param;
+import com.whisper.customer.domain.CsMessageArchive;
+
+/**
+ * 消息归档索引 数据层
+ * 
+ * @author whisper
+ */
+public interface CsMessageArchiveMapper
+{
+    /**
+     * 查询会话的归档索引，按月份升序
+     * 
+     * @param conversationId 会话ID
+     * @return 归档索引集合
+     */
+    public List<CsMessageArchive> selectArchiveListByConversationId(Long conversationId);
+
+    /**
+     * 查询会话某月的归档索引
+     * 
+     * @param conversationId 会话ID
+     * @param archiveMonth 归档月份
+     * @return 归档索引
+     */
+    public CsMessageArchive selectArchive(@Param("conversationId") Long conversationId, @Param("archiveMonth") String archiveMonth);
+
+    /**
+     * 新增或追加归档索引，已存在时累加消息数量并更新校验和
+     * 
+     * @param archive 归档索引
+     * @return 结果
+     */
+    public int saveArchive(CsMessageArchive archive);
+}
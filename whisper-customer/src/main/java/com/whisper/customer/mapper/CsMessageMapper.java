@@ -2,6 +2,7 @@ package com.whisper.customer.mapper;
 
 import java.util.List;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 import com.whisper.customer.domain.CsMessage;
 
 /**
@@ -14,53 +15,65 @@ public interface CsMessageMapper
     /**
      * 查询消息记录
      * 
+     * @param table 表名
      * @param messageId 消息记录主键
      * @return 消息记录
      */
-    public CsMessage selectCsMessageByMessageId(Long messageId);
+    public CsMessage selectCsMessageByMessageId(@Param("table") String table, @Param("messageId") Long messageId);
 
     /**
      * 查询消息记录列表
      * 
-     * @param csMessage 消息记录
+     * @param csMessage 消息记录（表名在 params.table）
      * @return 消息记录集合
      */
     public List<CsMessage> selectCsMessageList(CsMessage csMessage);
 
+    /**
+     * 逐行读取消息记录列表，用于导出
+     * 
+     * @param csMessage 消息记录（表名在 params.table）
+     * @param handler 逐行处理结果
+     */
+    public void selectCsMessageListForExport(CsMessage csMessage, ResultHandler<CsMessage> handler);
+
     /**
      * 根据会话ID查询消息列表
      * 
+     * @param table 表名
      * @param conversationId 会话ID
      * @return 消息记录集合
      */
-    public List<CsMessage> selectCsMessageByConversationId(Long conversationId);
+    public List<CsMessage> selectCsMessageByConversationId(@Param("table") String table, @Param("conversationId") Long conversationId);
 
     /**
      * 根据会话ID分页查询消息列表
      * 
+     * @param table 表名
      * @param conversationId 会话ID
      * @param offset 偏移量
      * @param limit 限制数量
      * @return 消息记录集合
      */
-    public List<CsMessage> selectCsMessageByConversationIdWithPage(@Param("conversationId") Long conversationId, 
+    public List<CsMessage> selectCsMessageByConversationIdWithPage(@Param("table") String table, @Param("conversationId") Long conversationId, 
                                                                    @Param("offset") Integer offset, 
                                                                    @Param("limit") Integer limit);
 
     /**
      * 根据发送者查询消息列表
      * 
+     * @param table 表名
      * @param senderType 发送者类型
      * @param senderId 发送者ID
      * @return 消息记录集合
      */
-    public List<CsMessage> selectCsMessageBySender(@Param("senderType") String senderType, 
+    public List<CsMessage> selectCsMessageBySender(@Param("table") String table, @Param("senderType") String senderType, 
                                                    @Param("senderId") Long senderId);
 
     /**
      * 新增消息记录
      * 
-     * @param csMessage 消息记录
+     * @param csMessage 消息记录（表名在 params.table）
      * @return 结果
      */
     public int insertCsMessage(CsMessage csMessage);
@@ -68,7 +81,7 @@ public interface CsMessageMapper
     /**
      * 修改消息记录
      * 
-     * @param csMessage 消息记录
+     * @param csMessage 消息记录（表名在 params.table）
      * @return 结果
      */
     public int updateCsMessage(CsMessage csMessage);
@@ -76,104 +89,165 @@ public interface CsMessageMapper
     /**
      * 删除消息记录
      * 
+     * @param table 表名
      * @param messageId 消息记录主键
      * @return 结果
      */
-    public int deleteCsMessageByMessageId(Long messageId);
+    public int deleteCsMessageByMessageId(@Param("table") String table, @Param("messageId") Long messageId);
 
     /**
      * 批量删除消息记录
      * 
+     * @param table 表名
      * @param messageIds 需要删除的数据主键集合
      * @return 结果
      */
-    public int deleteCsMessageByMessageIds(Long[] messageIds);
+    public int deleteCsMessageByMessageIds(@Param("table") String table, @Param("messageIds") List<Long> messageIds);
 
     /**
      * 标记消息为已读
      * 
+     * @param table 表名
      * @param messageId 消息ID
      * @param readTime 阅读时间
      * @return 结果
      */
-    public int markMessageAsRead(@Param("messageId") Long messageId, 
+    public int markMessageAsRead(@Param("table") String table, @Param("messageId") Long messageId, 
                                 @Param("readTime") java.util.Date readTime);
 
     /**
      * 批量标记消息为已读
      * 
+     * @param table 表名
      * @param conversationId 会话ID
      * @param senderType 发送者类型
      * @param readTime 阅读时间
      * @return 结果
      */
-    public int markMessagesAsReadByConversation(@Param("conversationId") Long conversationId, 
+    public int markMessagesAsReadByConversation(@Param("table") String table, @Param("conversationId") Long conversationId, 
                                                @Param("senderType") String senderType, 
                                                @Param("readTime") java.util.Date readTime);
 
     /**
      * 撤回消息
      * 
+     * @param table 表名
      * @param messageId 消息ID
      * @param recallTime 撤回时间
      * @return 结果
      */
-    public int recallMessage(@Param("messageId") Long messageId, 
+    public int recallMessage(@Param("table") String table, @Param("messageId") Long messageId, 
                             @Param("recallTime") java.util.Date recallTime);
 
     /**
      * 查询会话中未读消息数量
      * 
+     * @param table 表名
      * @param conversationId 会话ID
      * @param senderType 发送者类型
      * @return 未读消息数量
      */
-    public int countUnreadMessagesByConversation(@Param("conversationId") Long conversationId, 
+    public int countUnreadMessagesByConversation(@Param("table") String table, @Param("conversationId") Long conversationId, 
                                                 @Param("senderType") String senderType);
 
     /**
      * 查询会话中最后一条消息
      * 
+     * @param table 表名
      * @param conversationId 会话ID
      * @return 最后一条消息
      */
-    public CsMessage selectLastMessageByConversationId(Long conversationId);
+    public CsMessage selectLastMessageByConversationId(@Param("table") String table, @Param("conversationId") Long conversationId);
 
     /**
      * 统计会话消息总数
      * 
+     * @param table 表名
      * @param conversationId 会话ID
      * @return 消息总数
      */
-    public int countMessagesByConversationId(Long conversationId);
+    public int countMessagesByConversationId(@Param("table") String table, @Param("conversationId") Long conversationId);
 
     /**
      * 根据消息类型统计消息数量
      * 
+     * @param table 表名
      * @param conversationId 会话ID
      * @param messageType 消息类型
      * @return 消息数量
      */
-    public int countMessagesByType(@Param("conversationId") Long conversationId, 
+    public int countMessagesByType(@Param("table") String table, @Param("conversationId") Long conversationId, 
                                   @Param("messageType") String messageType);
 
     /**
      * 查询指定时间范围内的消息
      * 
+     * @param table 表名
      * @param conversationId 会话ID
      * @param startTime 开始时间
      * @param endTime 结束时间
      * @return 消息记录集合
      */
-    public List<CsMessage> selectMessagesByTimeRange(@Param("conversationId") Long conversationId, 
+    public List<CsMessage> selectMessagesByTimeRange(@Param("table") String table, @Param("conversationId") Long conversationId, 
                                                     @Param("startTime") java.util.Date startTime, 
                                                     @Param("endTime") java.util.Date endTime);
 
     /**
-     * 删除指定时间之前的消息
+     * 查询指定时间之前的一批消息（含已删除），按发送时间升序
      * 
+     * @param table 表名
      * @param beforeTime 时间点
-     * @return 删除的消息数量
+     * @param limit 限制数量
+     * @return 消息记录集合
+     */
+    public List<CsMessage> selectMessagesBefore(@Param("table") String table, @Param("beforeTime") java.util.Date beforeTime, 
+                                               @Param("limit") Integer limit);
+
+    /**
+     * 查询发送时间和消息ID在指定位置之后的一批消息，按发送时间、消息ID升序
+     * 
+     * @param table 表名
+     * @param sendTime 上一批最后一条的发送时间
+     * @param messageId 上一批最后一条的消息ID
+     * @param limit 限制数量
+     * @return 消息记录集合
+     */
+    public List<CsMessage> selectMessagesAfter(@Param("table") String table, @Param("sendTime") java.util.Date sendTime, 
+                                              @Param("messageId") Long messageId, @Param("limit") Integer limit);
+
+    /**
+     * 批量查询消息记录
+     * 
+     * @param table 表名
+     * @param messageIds 消息ID集合
+     * @return 消息记录集合
+     */
+    public List<CsMessage> selectCsMessageByMessageIds(@Param("table") String table, @Param("messageIds") List<Long> messageIds);
+
+    /**
+     * 锁定并查询会话的全部消息（含已删除），按发送时间升序
+     * 
+     * @param table 表名，不能是迁移期间的派生表
+     * @param conversationId 会话ID
+     * @return 消息记录集合
+     */
+    public List<CsMessage> selectAllMessagesForUpdate(@Param("table") String table, @Param("conversationId") Long conversationId);
+
+    /**
+     * 按原消息ID批量写入消息记录
+     * 
+     * @param table 表名
+     * @param messages 消息记录集合
+     * @return 结果
+     */
+    public int batchInsertCsMessage(@Param("table") String table, @Param("messages") List<CsMessage> messages);
+
+    /**
+     * 物理删除消息记录
+     * 
+     * @param table 表名
+     * @param messageIds 需要删除的数据主键集合
+     * @return 结果
      */
-    public int deleteMessagesBefore(@Param("beforeTime") java.util.Date beforeTime);
+    public int purgeCsMessageByMessageIds(@Param("table") String table, @Param("messageIds") List<Long> messageIds);
 }
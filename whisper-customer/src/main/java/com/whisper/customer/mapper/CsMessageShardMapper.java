@@ -0,0 +1,79 @@
+package com.whisper.customer.mapper;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.ibatis.annotations.Param;
+import com.whisper.customer.domain.CsMessageShardSlot;
+
+/**
+ * 消息分片 数据层
+ * 
+ * @author whisper
+ */
+public interface CsMessageShardMapper
+{
+    /**
+     * 查询已分配的槽位
+     * 
+     * @return 槽位集合
+     */
+    public List<CsMessageShardSlot> selectShardSlotList();
+
+    /**
+     * 保存槽位所在表及迁移目标
+     * 
+     * @param slot 槽位
+     * @return 结果
+     */
+    public int saveShardSlot(CsMessageShardSlot slot);
+
+    /**
+     * 分配消息ID号段，号段上限写回 params.maxId
+     * 
+     * @param params 参数（step号段长度）
+     * @return 结果
+     */
+    public int allocateIdSegment(Map<String, Object> params);
+
+    /**
+     * 按 cs_message 结构创建分片表
+     * 
+     * @param tableName 表名
+     * @return 结果
+     */
+    public int createShardTable(@Param("tableName") String tableName);
+
+    /**
+     * 加共享锁读取槽位的一批消息ID，需在事务中执行
+     * 
+     * @param tableName 表名
+     * @param slotId 槽位号
+     * @param lastId 上一批最大消息ID
+     * @param limit 批大小
+     * @return 消息ID集合
+     */
+    public List<Long> selectSlotMessageIdsForShare(@Param("tableName") String tableName, @Param("slotId") Integer slotId,
+                                                   @Param("lastId") Long lastId, @Param("limit") Integer limit);
+
+    /**
+     * 复制消息到目标表，已存在的跳过
+     * 
+     * @param sourceTable 源表
+     * @param targetTable 目标表
+     * @param messageIds 消息ID集合
+     * @return 复制的行数
+     */
+    public int copyMessages(@Param("sourceTable") String sourceTable, @Param("targetTable") String targetTable,
+                            @Param("messageIds") List<Long> messageIds);
+
+    /**
+     * 删除表中属于槽位的一批消息
+     * 
+     * @param tableName 表名
+     * @param slotId 槽位号
+     * @param limit 批大小
+     * @return 删除的行数
+     */
+    public int deleteSlotMessages(@Param("tableName") String tableName, @Param("slotId") Integer slotId,
+                                  @Param("limit") Integer limit);
+}
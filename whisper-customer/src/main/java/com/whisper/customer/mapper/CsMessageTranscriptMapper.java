@@ -0,0 +1,87 @@
+package com.whisper.customer.mapper;
+
+import java.util.Date;
+import java.util.List;
+import org.apache.ibatis.annotations.Param;
+import com.whisper.customer.domain.CsConversation;
+import com.whisper.customer.domain.CsMessageTranscript;
+
+/**
+ * 会话消息压缩记录 数据层
+ * 
+ * @author whisper
+ */
+public interface CsMessageTranscriptMapper
+{
+    /**
+     * 查询会话的压缩记录
+     * 
+     * @param conversationId 会话ID
+     * @return 压缩记录
+     */
+    public CsMessageTranscript selectTranscriptByConversationId(Long conversationId);
+
+    /**
+     * 查询消息ID范围覆盖指定消息的会话
+     * 
+     * @param shardSlot 消息所在槽位，历史ID为空
+     * @param messageId 消息ID
+     * @return 会话ID集合
+     */
+    public List<Long> selectConversationIdsByMessageId(@Param("shardSlot") Integer shardSlot, @Param("messageId") Long messageId);
+
+    /**
+     * 查询可以压缩的已结束会话，按结束时间升序
+     * 
+     * @param afterTime 结束时间下限（包含）
+     * @param beforeTime 结束时间上限
+     * @param limit 限制数量
+     * @return 会话集合（只含会话ID和结束时间）
+     */
+    public List<CsConversation> selectCompactableConversations(@Param("afterTime") Date afterTime, @Param("beforeTime") Date beforeTime, 
+                                                              @Param("limit") Integer limit);
+
+    /**
+     * 锁定并查询会话状态
+     * 
+     * @param conversationId 会话ID
+     * @return 会话状态
+     */
+    public String selectConversationStatusForUpdate(Long conversationId);
+
+    /**
+     * 查询最晚消息早于指定时间的压缩记录
+     * 
+     * @param beforeTime 时间点
+     * @param limit 限制数量
+     * @return 会话ID集合
+     */
+    public List<Long> selectExpiredConversationIds(@Param("beforeTime") Date beforeTime, @Param("limit") Integer limit);
+
+    /**
+     * 查询最晚消息时间和会话ID在指定位置之后的一批压缩记录，按最晚消息时间、会话ID升序
+     * 
+     * @param lastSendTime 上一批最后一条的最晚消息时间
+     * @param conversationId 上一批最后一条的会话ID
+     * @param limit 限制数量
+     * @return 压缩记录集合（只含会话ID和最晚消息时间）
+     */
+    public List<CsMessageTranscript> selectTranscriptsAfter(@Param("lastSendTime") Date lastSendTime, @Param("conversationId") Long conversationId, 
+                                                           @Param("limit") Integer limit);
+
+    /**
+     * 新增压缩记录
+     * 
+     * @param transcript 压缩记录
+     * @return 结果
+     */
+    public int insertTranscript(CsMessageTranscript transcript);
+
+    /**
+     * 删除压缩记录
+     * 
+     * @param conversationId 会话ID
+     * @return 结果
+     */
+    public int deleteTranscriptByConversationId(Long conversationId);
+}
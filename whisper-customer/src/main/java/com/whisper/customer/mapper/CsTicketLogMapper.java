@@ -0,0 +1,36 @@
+package com.whisper.customer.mapper;
+
+import java.util.List;
+import com.whisper.customer.domain.CsTicketLog;
+
+/**
+ * 工单处理记录表 数据层
+ * 
+ * @author whisper
+ */
+public interface CsTicketLogMapper
+{
+    /**
+     * 根据工单ID查询处理记录
+     * 
+     * @param ticketId 工单ID
+     * @return 处理记录集合
+     */
+    public List<CsTicketLog> selectCsTicketLogByTicketId(Long ticketId);
+
+    /**
+     * 新增处理记录
+     * 
+     * @param csTicketLog 处理记录
+     * @return 结果
+     */
+    public int insertCsTicketLog(CsTicketLog csTicketLog);
+
+    /**
+     * 批量新增处理记录
+     * 
+     * @param logList 处理记录集合
+     * @return 结果
+     */
+    public int batchInsertCsTicketLog(List<CsTicketLog> logList);
+}
@@ -0,0 +1,116 @@
+package com.whisper.customer.mapper;
+
+import java.util.Date;
+import java.util.List;
+import org.apache.ibatis.annotations.Param;
+import com.whisper.customer.domain.CsTicket;
+
+/**
+ * 工单系统表 数据层
+ * 
+ * @author whisper
+ */
+public interface CsTicketMapper
+{
+    /**
+     * 查询工单
+     * 
+     * @param ticketId 工单主键
+     * @return 工单
+     */
+    public CsTicket selectCsTicketByTicketId(Long ticketId);
+
+    /**
+     * 查询工单列表
+     * 
+     * @param csTicket 工单
+     * @return 工单集合
+     */
+    public List<CsTicket> selectCsTicketList(CsTicket csTicket);
+
+    /**
+     * 查询指定时间之前需要SLA检查的工单（按分区过滤）
+     * 
+     * @param deadline 截止时间（不含）
+     * @param partitionCount 分区总数
+     * @param partitions 本节点持有的分区
+     * @param limit 最大条数
+     * @return 工单集合（仅包含ID、优先级、处理人、截止时间与SLA时间）
+     */
+    public List<CsTicket> selectSlaTicketsBefore(@Param("deadline") Date deadline,
+                                                 @Param("partitionCount") Integer partitionCount,
+                                                 @Param("partitions") List<Integer> partitions,
+                                                 @Param("limit") Integer limit);
+
+    /**
+     * 新增工单
+     * 
+     * @param csTicket 工单
+     * @return 结果
+     */
+    public int insertCsTicket(CsTicket csTicket);
+
+    /**
+     * 修改工单
+     * 
+     * @param csTicket 工单
+     * @return 结果
+     */
+    public int updateCsTicket(CsTicket csTicket);
+
+    /**
+     * 工单超时升级（仅当SLA时间未被其他操作修改时生效）
+     * 
+     * @param ticketId 工单ID
+     * @param priority 升级后的优先级
+     * @param slaTime 下次SLA检查时间
+     * @param expectedSlaTime 当前SLA检查时间
+     * @return 结果
+     */
+    public int escalateTicket(@Param("ticketId") Long ticketId,
+                              @Param("priority") String priority,
+                              @Param("slaTime") Date slaTime,
+                              @Param("expectedSlaTime") Date expectedSlaTime);
+
+    /**
+     * 清除SLA检查时间，工单不再参与超时升级
+     * 
+     * @param ticketId 工单ID
+     * @return 结果
+     */
+    public int clearTicketSla(Long ticketId);
+
+    /**
+     * 解决工单
+     * 
+     * @param ticketId 工单ID
+     * @param resolveTime 解决时间
+     * @return 结果
+     */
+    public int resolveTicket(@Param("ticketId") Long ticketId, @Param("resolveTime") Date resolveTime);
+
+    /**
+     * 关闭工单
+     * 
+     * @param ticketId 工单ID
+     * @param closeTime 关闭时间
+     * @return 结果
+     */
+    public int closeTicket(@Param("ticketId") Long ticketId, @Param("closeTime") Date closeTime);
+
+    /**
+     * 删除工单
+     * 
+     * @param ticketId 工单主键
+     * @return 结果
+     */
+    public int deleteCsTicketByTicketId(Long ticketId);
+
+    /**
+     * 批量删除工单
+     * 
+     * @param ticketIds 需要删除的数据主键集合
+     * @return 结果
+     */
+    public int deleteCsTicketByTicketIds(Long[] ticketIds);
+}
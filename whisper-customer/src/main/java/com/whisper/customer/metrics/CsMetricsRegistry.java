@@ -0,0 +1,438 @@
+package com.whisper.customer.metrics;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.utils.uuid.IdUtils;
+import com.whisper.customer.mapper.CsConversationMapper;
+import com.whisper.customer.websocket.ChatWebSocketHandler;
+
+/**
+ * 客服实时运营指标
+ *
+ * 延迟类指标记录在本节点直方图中，按滑动窗口输出分位数；计数类指标由本节点定时刷新一次，
+ * 监控大屏读取快照或订阅SSE推送，不再各自触发统计查询。
+ *
+ * 会话的入队时间和待首次响应时间保存在Redis中，在A节点入队、B节点分配的会话也能被统计；
+ * 各节点每个周期把本节点的窗口计数和连接数写入Redis，快照汇总所有存活节点的数据。
+ *
+ * @author whisper
+ */
+@Component
+public class CsMetricsRegistry
+{
+    private static final Logger log = LoggerFactory.getLogger(CsMetricsRegistry.class);
+
+    /** 刷新周期（秒） */
+    private static final int REFRESH_SECONDS = 5;
+
+    /** 滑动窗口包含的周期数（1分钟） */
+    private static final int WINDOW_TICKS = 12;
+
+    /** 直方图可记录的最大延迟（毫秒），超出按最大值计 */
+    private static final long MAX_LATENCY_MILLIS = TimeUnit.HOURS.toMillis(2);
+
+    /** 跟踪记录的最长保留时间（小时） */
+    private static final int TRACK_EXPIRE_HOURS = 24;
+
+    /** 节点数据的保留时间（秒），超过未刷新视为节点下线 */
+    private static final int NODE_EXPIRE_SECONDS = REFRESH_SECONDS * 3;
+
+    /** 等待分配的会话（会话ID -> 入队时间） */
+    private static final String QUEUED_KEY = CacheConstants.CS_METRICS_KEY + "queued:";
+
+    /** 等待客服首次响应的会话（会话ID -> 开始时间） */
+    private static final String AWAITING_KEY = CacheConstants.CS_METRICS_KEY + "awaiting:";
+
+    /** 存活节点（zset: 节点ID -> 最近刷新时间） */
+    private static final String NODES_KEY = CacheConstants.CS_METRICS_KEY + "nodes";
+
+    /** 节点窗口数据（hash: 指标名称 -> 计数） */
+    private static final String NODE_KEY = CacheConstants.CS_METRICS_KEY + "node:";
+
+    /** 节点上报的连接数指标 */
+    private static final String[] NODE_GAUGES = { "connections", "onlineAgents", "onlineCustomers" };
+
+    /** 读取并删除跟踪记录，多节点并发时只有一个节点拿到起始时间 */
+    private static final DefaultRedisScript<String> TAKE_SCRIPT = new DefaultRedisScript<String>(
+            "local value = redis.call('get', KEYS[1])\n" +
+            "if value then\n" +
+            "    redis.call('del', KEYS[1])\n" +
+            "end\n" +
+            "return value", String.class);
+
+    /** SSE订阅上限 */
+    private static final int MAX_SUBSCRIBERS = 200;
+
+    /** SSE连接超时（毫秒） */
+    private static final long SSE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    /** 首次响应时长 */
+    public static final String FIRST_RESPONSE = "firstResponse";
+
+    /** 排队等待时长 */
+    public static final String QUEUE_WAIT = "queueWait";
+
+    /** 消息转发延迟 */
+    public static final String FANOUT = "fanout";
+
+    /** 数据库写入延迟 */
+    public static final String DB_WRITE = "dbWrite";
+
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<String, LatencyHistogram>();
+
+    /** 各直方图最近若干周期的累计计数，用于计算窗口差值 */
+    private final Map<String, Deque<long[]>> windows = new ConcurrentHashMap<String, Deque<long[]>>();
+
+    private final String nodeId = IdUtils.fastSimpleUUID();
+
+    private final CopyOnWriteArrayList<SseEmitter> subscribers = new CopyOnWriteArrayList<SseEmitter>();
+
+    private volatile Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CsConversationMapper csConversationMapper;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    public CsMetricsRegistry()
+    {
+        histograms.put(FIRST_RESPONSE, new LatencyHistogram(MAX_LATENCY_MILLIS));
+        histograms.put(QUEUE_WAIT, new LatencyHistogram(MAX_LATENCY_MILLIS));
+        histograms.put(FANOUT, new LatencyHistogram(MAX_LATENCY_MILLIS));
+        histograms.put(DB_WRITE, new LatencyHistogram(MAX_LATENCY_MILLIS));
+    }
+
+    /**
+     * 启动定时刷新
+     */
+    @PostConstruct
+    public void init()
+    {
+        scheduledExecutorService.scheduleWithFixedDelay(this::refresh, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 记录延迟
+     *
+     * @param name 指标名称
+     * @param millis 延迟（毫秒）
+     */
+    public void record(String name, long millis)
+    {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram != null)
+        {
+            histogram.record(millis);
+        }
+    }
+
+    /**
+     * 记录自startNanos起的耗时
+     *
+     * @param name 指标名称
+     * @param startNanos System.nanoTime()起点
+     */
+    public void recordSince(String name, long startNanos)
+    {
+        record(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * 会话进入待分配队列
+     *
+     * @param conversationId 会话ID
+     * @param startMillis 会话开始时间
+     */
+    public void conversationQueued(Long conversationId, long startMillis)
+    {
+        if (conversationId == null)
+        {
+            return;
+        }
+        try
+        {
+            String start = String.valueOf(startMillis);
+            stringRedisTemplate.opsForValue().set(QUEUED_KEY + conversationId, start, TRACK_EXPIRE_HOURS, TimeUnit.HOURS);
+            stringRedisTemplate.opsForValue().set(AWAITING_KEY + conversationId, start, TRACK_EXPIRE_HOURS, TimeUnit.HOURS);
+        }
+        catch (Exception e)
+        {
+            log.warn("记录会话入队时间失败 conversationId={}", conversationId, e);
+        }
+    }
+
+    /**
+     * 会话分配给客服，记录排队时长
+     *
+     * @param conversationId 会话ID
+     */
+    public void conversationAssigned(Long conversationId)
+    {
+        recordTracked(QUEUE_WAIT, QUEUED_KEY, conversationId);
+    }
+
+    /**
+     * 客服发出消息，若为首次响应则记录首次响应时长
+     *
+     * @param conversationId 会话ID
+     */
+    public void agentReplied(Long conversationId)
+    {
+        recordTracked(FIRST_RESPONSE, AWAITING_KEY, conversationId);
+    }
+
+    /**
+     * 会话结束，清理跟踪记录
+     *
+     * @param conversationId 会话ID
+     */
+    public void conversationEnded(Long conversationId)
+    {
+        if (conversationId == null)
+        {
+            return;
+        }
+        try
+        {
+            stringRedisTemplate.delete(Arrays.asList(QUEUED_KEY + conversationId, AWAITING_KEY + conversationId));
+        }
+        catch (Exception e)
+        {
+            log.warn("清理会话跟踪记录失败 conversationId={}", conversationId, e);
+        }
+    }
+
+    /**
+     * 获取最近一次刷新的快照
+     */
+    public Map<String, Object> getSnapshot()
+    {
+        return snapshot;
+    }
+
+    /**
+     * 订阅指标推送
+     *
+     * @return SSE连接，超过订阅上限时返回null
+     */
+    public SseEmitter subscribe()
+    {
+        if (subscribers.size() >= MAX_SUBSCRIBERS)
+        {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.add(emitter);
+        try
+        {
+            emitter.send(SseEmitter.event().name("metrics").data(snapshot));
+        }
+        catch (IOException e)
+        {
+            subscribers.remove(emitter);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * 刷新快照并推送给订阅者
+     */
+    private void refresh()
+    {
+        try
+        {
+            long now = System.currentTimeMillis();
+            Map<String, long[]> merged = new LinkedHashMap<String, long[]>();
+            Map<String, String> local = new LinkedHashMap<String, String>();
+            local.put("connections", String.valueOf(ChatWebSocketHandler.getOnlineCount()));
+            local.put("onlineAgents", String.valueOf(ChatWebSocketHandler.getOnlineCount("agent")));
+            local.put("onlineCustomers", String.valueOf(ChatWebSocketHandler.getOnlineCount("customer")));
+            for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+            {
+                long[] counts = windowCounts(entry.getKey(), entry.getValue());
+                merged.put(entry.getKey(), new long[counts.length]);
+                local.put(entry.getKey(), encode(counts));
+            }
+            String nodeKey = NODE_KEY + nodeId;
+            stringRedisTemplate.opsForHash().putAll(nodeKey, local);
+            stringRedisTemplate.expire(nodeKey, NODE_EXPIRE_SECONDS, TimeUnit.SECONDS);
+            stringRedisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+            stringRedisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now - TimeUnit.SECONDS.toMillis(NODE_EXPIRE_SECONDS));
+
+            // 汇总所有存活节点，节点数据过期后不再计入
+            long[] nodeGauges = new long[NODE_GAUGES.length];
+            int nodes = 0;
+            Set<String> members = stringRedisTemplate.opsForZSet().range(NODES_KEY, 0, -1);
+            for (String member : members == null ? Collections.<String>emptySet() : members)
+            {
+                Map<Object, Object> values = stringRedisTemplate.opsForHash().entries(NODE_KEY + member);
+                if (values == null || values.isEmpty())
+                {
+                    continue;
+                }
+                nodes++;
+                for (int i = 0; i < NODE_GAUGES.length; i++)
+                {
+                    Object value = values.get(NODE_GAUGES[i]);
+                    nodeGauges[i] += value == null ? 0 : Long.parseLong(value.toString());
+                }
+                for (Map.Entry<String, long[]> entry : merged.entrySet())
+                {
+                    decodeInto(values.get(entry.getKey()), entry.getValue());
+                }
+            }
+
+            Map<String, Object> gauges = new LinkedHashMap<String, Object>();
+            for (int i = 0; i < NODE_GAUGES.length; i++)
+            {
+                gauges.put(NODE_GAUGES[i], nodeGauges[i]);
+            }
+            gauges.put("queueDepth", csConversationMapper.countPendingConversations());
+            gauges.put("todayConversations", csConversationMapper.countTodayConversations());
+
+            Map<String, Object> latencies = new LinkedHashMap<String, Object>();
+            for (Map.Entry<String, long[]> entry : merged.entrySet())
+            {
+                latencies.put(entry.getKey(), LatencyHistogram.summarize(entry.getValue()));
+            }
+
+            Map<String, Object> current = new LinkedHashMap<String, Object>();
+            current.put("timestamp", now);
+            current.put("windowSeconds", REFRESH_SECONDS * WINDOW_TICKS);
+            current.put("nodes", nodes);
+            current.put("gauges", gauges);
+            current.put("latencies", latencies);
+            snapshot = current;
+            publish(current);
+        }
+        catch (Exception e)
+        {
+            log.error("刷新客服运营指标异常", e);
+        }
+    }
+
+    /**
+     * 计算滑动窗口内的计数（当前累计值减去窗口起点的累计值）
+     */
+    private long[] windowCounts(String name, LatencyHistogram histogram)
+    {
+        long[] current = histogram.copyCounts();
+        Deque<long[]> window = windows.computeIfAbsent(name, k -> new ArrayDeque<long[]>());
+        window.addLast(current);
+        long[] oldest = window.size() > WINDOW_TICKS ? window.removeFirst() : null;
+        long[] delta = new long[current.length];
+        for (int i = 0; i < current.length; i++)
+        {
+            delta[i] = oldest == null ? current[i] : current[i] - oldest[i];
+        }
+        return delta;
+    }
+
+    private void publish(Map<String, Object> current)
+    {
+        for (SseEmitter emitter : subscribers)
+        {
+            try
+            {
+                emitter.send(SseEmitter.event().name("metrics").data(current));
+            }
+            catch (Exception e)
+            {
+                subscribers.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * 取出会话的跟踪起点并记录耗时
+     */
+    private void recordTracked(String name, String keyPrefix, Long conversationId)
+    {
+        if (conversationId == null)
+        {
+            return;
+        }
+        try
+        {
+            String start = stringRedisTemplate.execute(TAKE_SCRIPT, Collections.singletonList(keyPrefix + conversationId));
+            if (start != null)
+            {
+                record(name, System.currentTimeMillis() - Long.parseLong(start));
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn("记录会话{}失败 conversationId={}", name, conversationId, e);
+        }
+    }
+
+    /**
+     * 计数数组编码为稀疏文本（分桶序号:计数,...）
+     */
+    private static String encode(long[] counts)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] != 0)
+            {
+                if (sb.length() > 0)
+                {
+                    sb.append(',');
+                }
+                sb.append(i).append(':').append(counts[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 稀疏文本解码并累加到计数数组，超出范围的分桶忽略
+     */
+    private static void decodeInto(Object encoded, long[] counts)
+    {
+        if (encoded == null || encoded.toString().isEmpty())
+        {
+            return;
+        }
+        for (String pair : encoded.toString().split(","))
+        {
+            int sep = pair.indexOf(':');
+            int index = Integer.parseInt(pair.substring(0, sep));
+            if (index >= 0 && index < counts.length)
+            {
+                counts[index] += Long.parseLong(pair.substring(sep + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.whisper.customer.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图（HDR风格对数-线性分桶）
+ *
+ * 每个2的幂区间划分为16个线性子桶，相对误差约3%，记录为无锁的原子自增，
+ * 读取时复制计数数组，由调用方按时间窗口做差计算分位数。
+ *
+ * @author whisper
+ */
+public class LatencyHistogram
+{
+    /** 子桶位数 */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** 每个区间的子桶数量 */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** 线性区间上限（小于该值的数值精确计数） */
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+
+    /** 可记录的最大值，超过按最大值计 */
+    private final long highestTrackableValue;
+
+    /** 各分桶计数 */
+    private final AtomicLongArray counts;
+
+    public LatencyHistogram(long highestTrackableValue)
+    {
+        this.highestTrackableValue = Math.max(highestTrackableValue, LINEAR_LIMIT);
+        this.counts = new AtomicLongArray(bucketIndex(this.highestTrackableValue) + 1);
+    }
+
+    /**
+     * 记录一个数值
+     *
+     * @param value 数值（负数按0计）
+     */
+    public void record(long value)
+    {
+        long v = value < 0 ? 0 : Math.min(value, highestTrackableValue);
+        counts.incrementAndGet(bucketIndex(v));
+    }
+
+    /**
+     * 复制当前累计计数
+     *
+     * @return 计数数组
+     */
+    public long[] copyCounts()
+    {
+        long[] copy = new long[counts.length()];
+        for (int i = 0; i < copy.length; i++)
+        {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * 计算数值所在分桶
+     */
+    static int bucketIndex(long value)
+    {
+        if (value < LINEAR_LIMIT)
+        {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * 分桶的最大值（分位数按桶上界报告）
+     */
+    static long highestEquivalentValue(int index)
+    {
+        if (index < LINEAR_LIMIT)
+        {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long sub = (index % SUB_BUCKET_COUNT) + SUB_BUCKET_COUNT;
+        return (sub << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * 汇总计数数组为统计摘要
+     *
+     * @param counts 计数数组
+     * @return 数量、平均值、p50/p90/p99、最大值
+     */
+    public static Map<String, Object> summarize(long[] counts)
+    {
+        long total = 0;
+        double sum = 0;
+        int maxIndex = -1;
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] > 0)
+            {
+                total += counts[i];
+                sum += (double) counts[i] * highestEquivalentValue(i);
+                maxIndex = i;
+            }
+        }
+        Map<String, Object> summary = new LinkedHashMap<String, Object>();
+        summary.put("count", total);
+        summary.put("mean", total == 0 ? 0 : Math.round(sum / total));
+        summary.put("p50", percentile(counts, total, 50.0));
+        summary.put("p90", percentile(counts, total, 90.0));
+        summary.put("p99", percentile(counts, total, 99.0));
+        summary.put("max", maxIndex < 0 ? 0 : highestEquivalentValue(maxIndex));
+        return summary;
+    }
+
+    /**
+     * 计算分位数
+     */
+    private static long percentile(long[] counts, long total, double percentile)
+    {
+        if (total == 0)
+        {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+            if (seen >= target)
+            {
+                return highestEquivalentValue(i);
+            }
+        }
+        return highestEquivalentValue(counts.length - 1);
+    }
+}
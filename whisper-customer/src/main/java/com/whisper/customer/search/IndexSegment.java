@@ -0,0 +1,473 @@
+package com.whisper.customer.search;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 只读索引段
+ *
+ * 每个段由三个文件组成，写入后不再修改，以内存映射方式读取：
+ * .doc 按消息ID升序的文档表，每条为 消息ID、会话ID、发送时间（各8字节），序号即文档在段内的编号；
+ * .tim 按UTF-8字节序排列的词典，每个词为 词偏移(4)、倒排偏移(8)、文档数(4)，之后是全部词的字节；
+ * .pst 倒排表，每个词的文档编号按升序以变长整数差值存储。
+ * 被删除或被更新版本取代的文档记在内存中的删除位图里，保存为 .del 文件，合并时丢弃。
+ *
+ * @author whisper
+ */
+final class IndexSegment
+{
+    private static final int MAGIC = 0x4D534731;
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final int DOC_BYTES = 24;
+
+    private static final int TERM_ENTRY_BYTES = 16;
+
+    private final File dir;
+
+    private final String name;
+
+    private final ByteBuffer docs;
+
+    private final ByteBuffer terms;
+
+    private final ByteBuffer postings;
+
+    private final int docCount;
+
+    private final int termCount;
+
+    private final int termBytesStart;
+
+    /** 已删除的文档，读写由索引的读写锁保护 */
+    private final BitSet deleted = new BitSet();
+
+    /** 删除位图是否有未保存的修改 */
+    private boolean deletesDirty;
+
+    private IndexSegment(File dir, String name) throws IOException
+    {
+        this.dir = dir;
+        this.name = name;
+        this.docs = map(new File(dir, name + ".doc"));
+        this.terms = map(new File(dir, name + ".tim"));
+        this.postings = map(new File(dir, name + ".pst"));
+        if (docs.getInt(0) != MAGIC || terms.getInt(0) != MAGIC)
+        {
+            throw new IOException("索引段格式错误 " + name);
+        }
+        this.docCount = docs.getInt(4);
+        this.termCount = terms.getInt(4);
+        this.termBytesStart = HEADER_BYTES + termCount * TERM_ENTRY_BYTES;
+        File del = new File(dir, name + ".del");
+        if (del.exists())
+        {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(del)))
+            {
+                long[] words = new long[in.readInt()];
+                for (int i = 0; i < words.length; i++)
+                {
+                    words[i] = in.readLong();
+                }
+                deleted.or(BitSet.valueOf(words));
+            }
+        }
+    }
+
+    /**
+     * 打开索引段
+     */
+    static IndexSegment open(File dir, String name) throws IOException
+    {
+        return new IndexSegment(dir, name);
+    }
+
+    String getName()
+    {
+        return name;
+    }
+
+    int getDocCount()
+    {
+        return docCount;
+    }
+
+    int getTermCount()
+    {
+        return termCount;
+    }
+
+    /**
+     * 未删除的文档数
+     */
+    int liveDocCount()
+    {
+        return docCount - deleted.cardinality();
+    }
+
+    boolean isDeleted(int doc)
+    {
+        return deleted.get(doc);
+    }
+
+    /**
+     * 删除位图的副本，合并时使用
+     */
+    BitSet deletedDocs()
+    {
+        return (BitSet) deleted.clone();
+    }
+
+    /**
+     * 标记消息为已删除
+     *
+     * @return 段中是否有该消息的未删除文档
+     */
+    boolean delete(long messageId)
+    {
+        int doc = find(messageId);
+        if (doc < 0 || deleted.get(doc))
+        {
+            return false;
+        }
+        deleted.set(doc);
+        deletesDirty = true;
+        return true;
+    }
+
+    /**
+     * 保存删除位图，先写临时文件再替换
+     */
+    void writeDeletes() throws IOException
+    {
+        if (!deletesDirty)
+        {
+            return;
+        }
+        File temp = new File(dir, name + ".del.tmp");
+        long[] words = deleted.toLongArray();
+        try (FileOutputStream fos = new FileOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos)))
+        {
+            out.writeInt(words.length);
+            for (long word : words)
+            {
+                out.writeLong(word);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(temp.toPath(), new File(dir, name + ".del").toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        deletesDirty = false;
+    }
+
+    long messageId(int doc)
+    {
+        return docs.getLong(HEADER_BYTES + doc * DOC_BYTES);
+    }
+
+    long conversationId(int doc)
+    {
+        return docs.getLong(HEADER_BYTES + doc * DOC_BYTES + 8);
+    }
+
+    long sendTime(int doc)
+    {
+        return docs.getLong(HEADER_BYTES + doc * DOC_BYTES + 16);
+    }
+
+    /**
+     * 按消息ID查找文档编号
+     *
+     * @return 文档编号，不存在时为-1
+     */
+    int find(long messageId)
+    {
+        int lo = 0;
+        int hi = docCount - 1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            long id = messageId(mid);
+            if (id < messageId)
+            {
+                lo = mid + 1;
+            }
+            else if (id > messageId)
+            {
+                hi = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 把匹配词的文档编号加入集合
+     *
+     * @param term 词
+     * @param prefix 是否按前缀匹配
+     * @param out 文档编号集合
+     */
+    void collect(byte[] term, boolean prefix, BitSet out)
+    {
+        int i = lowerBound(term);
+        if (!prefix)
+        {
+            if (i < termCount && compareTerm(i, term) == 0)
+            {
+                readPostings(i, out);
+            }
+            return;
+        }
+        for (; i < termCount && startsWith(i, term); i++)
+        {
+            readPostings(i, out);
+        }
+    }
+
+    /**
+     * 第 i 个词
+     */
+    byte[] term(int i)
+    {
+        int start = termStart(i);
+        byte[] bytes = new byte[termEnd(i) - start];
+        terms.get(termBytesStart + start, bytes);
+        return bytes;
+    }
+
+    /**
+     * 第 i 个词的文档编号，升序
+     */
+    int[] postings(int i)
+    {
+        int[] docIds = new int[terms.getInt(HEADER_BYTES + i * TERM_ENTRY_BYTES + 12)];
+        ByteBuffer in = postings.duplicate();
+        in.position((int) postingOffset(i));
+        int doc = 0;
+        for (int n = 0; n < docIds.length; n++)
+        {
+            doc += readVarInt(in);
+            docIds[n] = doc;
+        }
+        return docIds;
+    }
+
+    /**
+     * 删除段文件
+     */
+    void delete()
+    {
+        for (String suffix : new String[] { ".doc", ".tim", ".pst", ".del" })
+        {
+            new File(dir, name + suffix).delete();
+        }
+    }
+
+    /**
+     * 写入索引段
+     *
+     * @param dir 索引目录
+     * @param name 段名称
+     * @param ids 消息ID，升序
+     * @param conversationIds 会话ID
+     * @param sendTimes 发送时间
+     * @param termSource 按UTF-8字节序排列的词及其升序文档编号
+     */
+    static void write(File dir, String name, long[] ids, long[] conversationIds, long[] sendTimes,
+            Iterator<Map.Entry<byte[], int[]>> termSource) throws IOException
+    {
+        try (FileOutputStream fos = new FileOutputStream(new File(dir, name + ".doc"));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(ids.length);
+            for (int i = 0; i < ids.length; i++)
+            {
+                out.writeLong(ids[i]);
+                out.writeLong(conversationIds[i]);
+                out.writeLong(sendTimes[i]);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        DataOutputStream entryOut = new DataOutputStream(entries);
+        int termCount = 0;
+        try (FileOutputStream fos = new FileOutputStream(new File(dir, name + ".pst"));
+                BufferedOutputStream out = new BufferedOutputStream(fos))
+        {
+            long offset = 0;
+            while (termSource.hasNext())
+            {
+                Map.Entry<byte[], int[]> entry = termSource.next();
+                int[] docIds = entry.getValue();
+                if (docIds.length == 0)
+                {
+                    continue;
+                }
+                entryOut.writeInt(termBytes.size());
+                entryOut.writeLong(offset);
+                entryOut.writeInt(docIds.length);
+                termBytes.write(entry.getKey());
+                int previous = 0;
+                for (int doc : docIds)
+                {
+                    offset += writeVarInt(out, doc - previous);
+                    previous = doc;
+                }
+                termCount++;
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        try (FileOutputStream fos = new FileOutputStream(new File(dir, name + ".tim"));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(termCount);
+            entries.writeTo(out);
+            termBytes.writeTo(out);
+            out.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    private int lowerBound(byte[] key)
+    {
+        int lo = 0;
+        int hi = termCount;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (compareTerm(mid, key) < 0)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int compareTerm(int i, byte[] key)
+    {
+        int start = termBytesStart + termStart(i);
+        int length = termEnd(i) - termStart(i);
+        int n = Math.min(length, key.length);
+        for (int k = 0; k < n; k++)
+        {
+            int c = Byte.compareUnsigned(terms.get(start + k), key[k]);
+            if (c != 0)
+            {
+                return c;
+            }
+        }
+        return length - key.length;
+    }
+
+    private boolean startsWith(int i, byte[] prefix)
+    {
+        int start = termBytesStart + termStart(i);
+        if (termEnd(i) - termStart(i) < prefix.length)
+        {
+            return false;
+        }
+        for (int k = 0; k < prefix.length; k++)
+        {
+            if (terms.get(start + k) != prefix[k])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int termStart(int i)
+    {
+        return terms.getInt(HEADER_BYTES + i * TERM_ENTRY_BYTES);
+    }
+
+    private int termEnd(int i)
+    {
+        return i + 1 < termCount ? termStart(i + 1) : terms.capacity() - termBytesStart;
+    }
+
+    private long postingOffset(int i)
+    {
+        return terms.getLong(HEADER_BYTES + i * TERM_ENTRY_BYTES + 4);
+    }
+
+    private void readPostings(int i, BitSet out)
+    {
+        int count = terms.getInt(HEADER_BYTES + i * TERM_ENTRY_BYTES + 12);
+        ByteBuffer in = postings.duplicate();
+        in.position((int) postingOffset(i));
+        int doc = 0;
+        for (int n = 0; n < count; n++)
+        {
+            doc += readVarInt(in);
+            out.set(doc);
+        }
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel())
+        {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static int readVarInt(ByteBuffer in)
+    {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (b < 0);
+        return value;
+    }
+
+    private static int writeVarInt(BufferedOutputStream out, int value) throws IOException
+    {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0)
+        {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+            bytes++;
+        }
+        out.write(value);
+        return bytes;
+    }
+}
@@ -0,0 +1,79 @@
+package com.whisper.customer.search;
+
+import java.util.Locale;
+import org.springframework.web.util.HtmlUtils;
+import com.whisper.common.utils.StringUtils;
+
+/**
+ * 搜索结果摘要
+ *
+ * 截取关键字第一次出现位置前后的一段文本，转义HTML后用 &lt;em&gt; 标出其中所有的关键字。
+ *
+ * @author whisper
+ */
+public final class MessageHighlighter
+{
+    /** 关键字前后保留的字符数 */
+    private static final int CONTEXT_CHARS = 30;
+
+    private static final String ELLIPSIS = "…";
+
+    private MessageHighlighter()
+    {
+    }
+
+    /**
+     * 生成摘要
+     *
+     * @param text 消息内容
+     * @param keyword 关键字，不区分大小写
+     * @return 摘要，内容中没有关键字时为null
+     */
+    public static String snippet(String text, String keyword)
+    {
+        if (StringUtils.isEmpty(text) || StringUtils.isEmpty(keyword))
+        {
+            return null;
+        }
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        String lowerKeyword = keyword.toLowerCase(Locale.ROOT);
+        // 大小写转换可能改变长度，此时无法按位置对应原文
+        if (lowerText.length() != text.length() || lowerKeyword.length() != keyword.length())
+        {
+            return null;
+        }
+        int first = lowerText.indexOf(lowerKeyword);
+        if (first < 0)
+        {
+            return null;
+        }
+        int start = Math.max(0, first - CONTEXT_CHARS);
+        int end = Math.min(text.length(), first + keyword.length() + CONTEXT_CHARS);
+        if (start > 0 && Character.isLowSurrogate(text.charAt(start)))
+        {
+            start--;
+        }
+        if (end < text.length() && Character.isLowSurrogate(text.charAt(end)))
+        {
+            end++;
+        }
+        StringBuilder snippet = new StringBuilder();
+        if (start > 0)
+        {
+            snippet.append(ELLIPSIS);
+        }
+        int from = start;
+        for (int index = first; index >= 0 && index + keyword.length() <= end; index = lowerText.indexOf(lowerKeyword, index + keyword.length()))
+        {
+            snippet.append(HtmlUtils.htmlEscape(text.substring(from, index)));
+            snippet.append("<em>").append(HtmlUtils.htmlEscape(text.substring(index, index + keyword.length()))).append("</em>");
+            from = index + keyword.length();
+        }
+        snippet.append(HtmlUtils.htmlEscape(text.substring(from, end)));
+        if (end < text.length())
+        {
+            snippet.append(ELLIPSIS);
+        }
+        return snippet.toString();
+    }
+}
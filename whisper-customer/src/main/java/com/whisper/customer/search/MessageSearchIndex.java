@@ -0,0 +1,1219 @@
+package com.whisper.customer.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.whisper.common.config.RuoYiConfig;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.uuid.IdUtils;
+import com.whisper.customer.domain.CsMessage;
+import com.whisper.customer.domain.CsMessageTranscript;
+import com.whisper.customer.mapper.CsMessageMapper;
+import com.whisper.customer.mapper.CsMessageTranscriptMapper;
+import com.whisper.customer.search.MessageSearchResult.Hit;
+import com.whisper.customer.search.MessageTokenizer.QueryTerm;
+import com.whisper.customer.shard.MessageShardRouter;
+import com.whisper.customer.transcript.MessageTranscriptManager;
+
+/**
+ * 消息全文索引
+ *
+ * 每个节点在本地磁盘维护一份倒排索引，代替消息内容和发送者名称上的 like '%...%' 全表扫描。
+ * 新消息先进入内存缓冲区，定期或缓冲区满时写成只读段（见 IndexSegment），段数过多时合并最小的几个段，
+ * 删除较多的段单独重写。消息被删除或重新写入时在旧段的删除位图中标记，同一条消息只有最新的一份可见。
+ * 本节点写入的消息通过Redis广播给其他节点；启动时从上次提交的时间往前回退一段重新扫描消息表和压缩记录，
+ * 补齐停机期间的消息，补齐完成前不提供搜索。
+ * 索引只用于找出候选消息，调用方需要回表校验。
+ *
+ * @author whisper
+ */
+@Component
+public class MessageSearchIndex
+{
+    private static final Logger log = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+    /** 提交文件标识，索引格式或分词规则变化时修改，旧索引在启动时校验失败后重建 */
+    private static final int COMMIT_MAGIC = 0x4D534744;
+
+    /** 提交文件，记录当前的段和已提交的时间点 */
+    private static final String COMMIT_FILE = "segments";
+
+    private static final String SEGMENT_PREFIX = "seg_";
+
+    /** 补齐时从提交时间往前回退的毫秒数，覆盖广播延迟和各节点的时钟偏差 */
+    private static final long CATCH_UP_OVERLAP_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /** 段数超过该值时合并 */
+    private static final int MAX_SEGMENTS = 10;
+
+    /** 每次合并的段数 */
+    private static final int MERGE_FACTOR = 4;
+
+    /** 合并后的段最多包含的文档数 */
+    private static final int MAX_MERGE_DOCS = 5_000_000;
+
+    /** 删除比例超过该值的段单独重写 */
+    private static final double MAX_DELETED_RATIO = 0.3;
+
+    /** 命中排序：发送时间倒序，再按消息ID倒序 */
+    private static final Comparator<Hit> HIT_ORDER = Comparator.comparingLong(Hit::getSendTime).reversed()
+            .thenComparing(Comparator.comparingLong(Hit::getMessageId).reversed());
+
+    /** 是否启用索引，未启用时搜索走数据库 */
+    @Value("${customer.message.search.enabled:false}")
+    private boolean enabled;
+
+    /** 索引目录，为空时使用与 profile 同级的 data/index/message */
+    @Value("${customer.message.search.path:}")
+    private String indexPath;
+
+    /** 缓冲区写入磁盘的间隔（秒） */
+    @Value("${customer.message.search.flushSeconds:30}")
+    private int flushSeconds;
+
+    /** 缓冲区达到该文档数时立即写入磁盘 */
+    @Value("${customer.message.search.flushDocs:50000}")
+    private int flushDocs;
+
+    /** 补齐时每批读取的消息数 */
+    @Value("${customer.message.search.catchUpBatchSize:1000}")
+    private int catchUpBatchSize;
+
+    private final String nodeId = IdUtils.fastSimpleUUID();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** 写段、合并只在一个线程中进行 */
+    private final ReentrantLock maintenanceLock = new ReentrantLock();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private File dir;
+
+    private final List<IndexSegment> segments = new ArrayList<IndexSegment>();
+
+    private Buffer buffer = new Buffer();
+
+    /** 正在写入磁盘的缓冲区，写完前仍参与搜索 */
+    private Buffer flushing;
+
+    /** 写段或合并期间被删除或重新写入的消息，完成后在新段中标记删除 */
+    private Set<Long> pendingDeletes;
+
+    /** 已提交的时间点，此前写入的消息都已在段中 */
+    private long watermark;
+
+    private int nextGeneration;
+
+    private volatile boolean ready;
+
+    private volatile boolean catchingUp;
+
+    private volatile Date lastFlushTime;
+
+    private volatile String lastError;
+
+    private final LongAdder flushCount = new LongAdder();
+
+    private final LongAdder mergeCount = new LongAdder();
+
+    @Autowired
+    private CsMessageMapper csMessageMapper;
+
+    @Autowired
+    private CsMessageTranscriptMapper csMessageTranscriptMapper;
+
+    @Autowired
+    private MessageTranscriptManager messageTranscriptManager;
+
+    @Autowired
+    private MessageShardRouter messageShardRouter;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @PostConstruct
+    public void init()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        dir = new File(StringUtils.isNotEmpty(indexPath) ? indexPath : RuoYiConfig.getDataPath() + "/index/message");
+        if (RuoYiConfig.isProfilePath(dir))
+        {
+            throw new IllegalStateException("消息索引目录不能位于 whisper.profile 内，否则可以通过 /profile/** 匿名访问：" + dir);
+        }
+        dir.mkdirs();
+        try
+        {
+            load();
+        }
+        catch (IOException e)
+        {
+            log.error("消息索引无法打开，重新建立索引", e);
+            reset();
+        }
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> receive(message.getBody()),
+                new ChannelTopic(CacheConstants.MESSAGE_SEARCH_CHANNEL));
+        scheduledExecutorService.scheduleWithFixedDelay(this::maintain, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+        startCatchUp();
+    }
+
+    @PreDestroy
+    public void destroy()
+    {
+        if (enabled)
+        {
+            maintenanceLock.lock();
+            try
+            {
+                flush();
+            }
+            catch (Exception e)
+            {
+                log.warn("关闭时写入消息索引失败'{}'", e.getMessage());
+            }
+            finally
+            {
+                maintenanceLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 索引是否可用于搜索
+     */
+    public boolean isReady()
+    {
+        return enabled && ready;
+    }
+
+    /**
+     * 索引新写入或修改后的消息，并通知其他节点
+     *
+     * @param messages 消息记录集合
+     */
+    public void index(List<CsMessage> messages)
+    {
+        if (!enabled || messages.isEmpty())
+        {
+            return;
+        }
+        add(messages);
+        JSONArray docs = new JSONArray();
+        for (CsMessage message : messages)
+        {
+            docs.add(toJson(message));
+        }
+        JSONObject payload = new JSONObject();
+        payload.put("node", nodeId);
+        payload.put("add", docs);
+        publish(payload);
+    }
+
+    /**
+     * 从索引中删除消息，并通知其他节点
+     *
+     * @param messageIds 消息ID集合
+     */
+    public void delete(Collection<Long> messageIds)
+    {
+        if (!enabled || messageIds.isEmpty())
+        {
+            return;
+        }
+        remove(messageIds);
+        JSONObject payload = new JSONObject();
+        payload.put("node", nodeId);
+        payload.put("delete", new ArrayList<Long>(messageIds));
+        publish(payload);
+    }
+
+    /**
+     * 搜索消息
+     *
+     * @param query 搜索条件
+     * @param offset 跳过的命中数
+     * @param limit 返回的命中数
+     * @return 搜索结果，关键字和发送者名称中没有可检索的词时为null
+     */
+    public MessageSearchResult search(MessageSearchQuery query, int offset, int limit)
+    {
+        List<QueryTerm> terms = new ArrayList<QueryTerm>();
+        MessageTokenizer.analyzeQuery(query.getKeyword(), "", terms);
+        MessageTokenizer.analyzeQuery(query.getSenderName(), MessageTokenizer.FIELD_SENDER_NAME, terms);
+        if (terms.isEmpty())
+        {
+            return null;
+        }
+        MessageTokenizer.fieldQuery(MessageTokenizer.FIELD_SENDER_TYPE, query.getSenderType(), terms);
+        MessageTokenizer.fieldQuery(MessageTokenizer.FIELD_SENDER_ID, query.getSenderId(), terms);
+        MessageTokenizer.fieldQuery(MessageTokenizer.FIELD_MESSAGE_TYPE, query.getMessageType(), terms);
+        MessageTokenizer.fieldQuery(MessageTokenizer.FIELD_REPLY_TO, query.getReplyToId(), terms);
+        // 保留前 offset + limit 个命中，堆顶是其中排序最靠后的
+        int keep = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        PriorityQueue<Hit> top = new PriorityQueue<Hit>(HIT_ORDER.reversed());
+        long total = 0;
+        lock.readLock().lock();
+        try
+        {
+            for (IndexSegment segment : segments)
+            {
+                BitSet docs = match(terms, (term, out) -> segment.collect(term.getTerm().getBytes(StandardCharsets.UTF_8), term.isPrefix(), out));
+                for (int doc = docs.nextSetBit(0); doc >= 0; doc = docs.nextSetBit(doc + 1))
+                {
+                    if (!segment.isDeleted(doc) && accept(query, segment.conversationId(doc), segment.sendTime(doc)))
+                    {
+                        total++;
+                        offer(top, keep, new Hit(segment.messageId(doc), segment.conversationId(doc), segment.sendTime(doc)));
+                    }
+                }
+            }
+            for (Buffer source : flushing != null ? Arrays.asList(flushing, buffer) : Collections.singletonList(buffer))
+            {
+                BitSet docs = match(terms, source::collect);
+                for (int doc = docs.nextSetBit(0); doc >= 0; doc = docs.nextSetBit(doc + 1))
+                {
+                    long[] fields = source.docs.get(doc);
+                    if (source.isLive(doc) && (source == buffer || !pendingDeletes.contains(fields[0]))
+                            && accept(query, fields[1], fields[2]))
+                    {
+                        total++;
+                        offer(top, keep, new Hit(fields[0], fields[1], fields[2]));
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        List<Hit> hits = new ArrayList<Hit>(top);
+        hits.sort(HIT_ORDER);
+        return new MessageSearchResult(total, hits.subList(Math.min(offset, hits.size()), hits.size()));
+    }
+
+    /**
+     * 索引状态
+     */
+    public Map<String, Object> getStatus()
+    {
+        Map<String, Object> status = new LinkedHashMap<String, Object>();
+        status.put("enabled", enabled);
+        status.put("ready", ready);
+        status.put("catchingUp", catchingUp);
+        lock.readLock().lock();
+        try
+        {
+            long docs = 0;
+            for (IndexSegment segment : segments)
+            {
+                docs += segment.liveDocCount();
+            }
+            status.put("segments", segments.size());
+            status.put("segmentDocs", docs);
+            status.put("bufferDocs", buffer.latest.size() + (flushing != null ? flushing.latest.size() : 0));
+            status.put("watermark", watermark > 0 ? new Date(watermark) : null);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        status.put("flushes", flushCount.sum());
+        status.put("merges", mergeCount.sum());
+        status.put("lastFlushTime", lastFlushTime);
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    private static BitSet match(List<QueryTerm> terms, BiConsumer<QueryTerm, BitSet> source)
+    {
+        BitSet result = null;
+        for (QueryTerm term : terms)
+        {
+            BitSet docs = new BitSet();
+            source.accept(term, docs);
+            if (result == null)
+            {
+                result = docs;
+            }
+            else
+            {
+                result.and(docs);
+            }
+            if (result.isEmpty())
+            {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static boolean accept(MessageSearchQuery query, long conversationId, long sendTime)
+    {
+        return (query.getConversationId() == null || query.getConversationId() == conversationId)
+                && (query.getBeginTime() == null || sendTime >= query.getBeginTime())
+                && (query.getEndTime() == null || sendTime < query.getEndTime());
+    }
+
+    private static void offer(PriorityQueue<Hit> top, int keep, Hit hit)
+    {
+        if (keep <= 0)
+        {
+            return;
+        }
+        if (top.size() < keep)
+        {
+            top.add(hit);
+        }
+        else if (HIT_ORDER.compare(hit, top.peek()) < 0)
+        {
+            top.poll();
+            top.add(hit);
+        }
+    }
+
+    /**
+     * 加入缓冲区，同一消息的旧版本标记删除
+     */
+    private void add(List<CsMessage> messages)
+    {
+        boolean full;
+        lock.writeLock().lock();
+        try
+        {
+            for (CsMessage message : messages)
+            {
+                if (message.getMessageId() == null || message.getConversationId() == null)
+                {
+                    continue;
+                }
+                long messageId = message.getMessageId();
+                supersede(messageId);
+                buffer.add(messageId, message.getConversationId(),
+                        message.getSendTime() != null ? message.getSendTime().getTime() : 0L, MessageTokenizer.documentTerms(message));
+            }
+            full = buffer.docs.size() >= flushDocs;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        if (full && !catchingUp && flushRequested.compareAndSet(false, true))
+        {
+            scheduledExecutorService.execute(this::maintain);
+        }
+    }
+
+    private void remove(Collection<Long> messageIds)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            for (Long messageId : messageIds)
+            {
+                supersede(messageId);
+                buffer.latest.remove(messageId);
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 标记消息在段和正在写入的缓冲区中的旧版本为已删除，调用方持有写锁
+     */
+    private void supersede(long messageId)
+    {
+        for (IndexSegment segment : segments)
+        {
+            segment.delete(messageId);
+        }
+        if (pendingDeletes != null)
+        {
+            pendingDeletes.add(messageId);
+        }
+    }
+
+    private void publish(JSONObject payload)
+    {
+        try
+        {
+            stringRedisTemplate.convertAndSend(CacheConstants.MESSAGE_SEARCH_CHANNEL, payload.toJSONString());
+        }
+        catch (Exception e)
+        {
+            log.warn("广播消息索引变更失败'{}'", e.getMessage());
+        }
+    }
+
+    /**
+     * 处理其他节点的索引变更
+     */
+    private void receive(byte[] body)
+    {
+        try
+        {
+            JSONObject payload = JSON.parseObject(new String(body, StandardCharsets.UTF_8));
+            if (nodeId.equals(payload.getString("node")))
+            {
+                return;
+            }
+            JSONArray docs = payload.getJSONArray("add");
+            if (docs != null)
+            {
+                List<CsMessage> messages = new ArrayList<CsMessage>(docs.size());
+                for (int i = 0; i < docs.size(); i++)
+                {
+                    messages.add(fromJson(docs.getJSONObject(i)));
+                }
+                add(messages);
+            }
+            JSONArray deletes = payload.getJSONArray("delete");
+            if (deletes != null)
+            {
+                List<Long> messageIds = new ArrayList<Long>(deletes.size());
+                for (int i = 0; i < deletes.size(); i++)
+                {
+                    messageIds.add(deletes.getLong(i));
+                }
+                remove(messageIds);
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn("处理消息索引同步失败'{}'", e.getMessage());
+        }
+    }
+
+    private static JSONObject toJson(CsMessage message)
+    {
+        JSONObject doc = new JSONObject();
+        doc.put("messageId", message.getMessageId());
+        doc.put("conversationId", message.getConversationId());
+        doc.put("sendTime", message.getSendTime() != null ? message.getSendTime().getTime() : null);
+        doc.put("senderType", message.getSenderType());
+        doc.put("senderId", message.getSenderId());
+        doc.put("senderName", message.getSenderName());
+        doc.put("messageType", message.getMessageType());
+        doc.put("content", message.getContent());
+        doc.put("replyToId", message.getReplyToId());
+        return doc;
+    }
+
+    private static CsMessage fromJson(JSONObject doc)
+    {
+        CsMessage message = new CsMessage();
+        message.setMessageId(doc.getLong("messageId"));
+        message.setConversationId(doc.getLong("conversationId"));
+        Long sendTime = doc.getLong("sendTime");
+        message.setSendTime(sendTime != null ? new Date(sendTime) : null);
+        message.setSenderType(doc.getString("senderType"));
+        message.setSenderId(doc.getLong("senderId"));
+        message.setSenderName(doc.getString("senderName"));
+        message.setMessageType(doc.getString("messageType"));
+        message.setContent(doc.getString("content"));
+        message.setReplyToId(doc.getLong("replyToId"));
+        return message;
+    }
+
+    /**
+     * 在后台补齐上次提交之后的消息
+     */
+    private synchronized void startCatchUp()
+    {
+        if (catchingUp || ready)
+        {
+            return;
+        }
+        catchingUp = true;
+        Thread worker = new Thread(this::catchUp, "message-index-catch-up");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void catchUp()
+    {
+        try
+        {
+            long startMillis;
+            lock.readLock().lock();
+            try
+            {
+                startMillis = watermark > 0 ? watermark - CATCH_UP_OVERLAP_MILLIS : 0L;
+            }
+            finally
+            {
+                lock.readLock().unlock();
+            }
+            long added = 0;
+            for (String table : new ArrayList<String>(messageShardRouter.distinctTables()))
+            {
+                Date sendTime = new Date(startMillis);
+                long messageId = 0;
+                List<CsMessage> batch;
+                do
+                {
+                    batch = csMessageMapper.selectMessagesAfter(table, sendTime, messageId, catchUpBatchSize);
+                    if (batch.isEmpty())
+                    {
+                        break;
+                    }
+                    add(batch);
+                    added += batch.size();
+                    CsMessage last = batch.get(batch.size() - 1);
+                    sendTime = last.getSendTime();
+                    messageId = last.getMessageId();
+                    flushIfFull();
+                }
+                while (batch.size() == catchUpBatchSize);
+            }
+            // 停机期间被压缩的会话，消息已不在消息表中
+            Date lastSendTime = new Date(startMillis);
+            long conversationId = 0;
+            List<CsMessageTranscript> transcripts;
+            do
+            {
+                transcripts = csMessageTranscriptMapper.selectTranscriptsAfter(lastSendTime, conversationId, catchUpBatchSize);
+                for (CsMessageTranscript transcript : transcripts)
+                {
+                    List<CsMessage> messages = messageTranscriptManager.readMessages(messageTranscriptManager.selectTranscript(transcript.getConversationId()));
+                    add(messages);
+                    added += messages.size();
+                    lastSendTime = transcript.getLastSendTime();
+                    conversationId = transcript.getConversationId();
+                }
+                flushIfFull();
+            }
+            while (transcripts.size() == catchUpBatchSize);
+            ready = true;
+            log.info("消息索引补齐完成，从{}开始补齐{}条", new Date(startMillis), added);
+        }
+        catch (Exception e)
+        {
+            lastError = e.getMessage();
+            log.error("补齐消息索引失败，稍后重试", e);
+        }
+        finally
+        {
+            catchingUp = false;
+        }
+    }
+
+    private void flushIfFull()
+    {
+        boolean full;
+        lock.readLock().lock();
+        try
+        {
+            full = buffer.docs.size() >= flushDocs;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        if (full)
+        {
+            maintain();
+        }
+    }
+
+    /**
+     * 写入缓冲区、按需合并段，补齐失败时重新补齐
+     */
+    private void maintain()
+    {
+        if (!maintenanceLock.tryLock())
+        {
+            return;
+        }
+        try
+        {
+            flushRequested.set(false);
+            flush();
+            merge();
+        }
+        catch (Exception e)
+        {
+            lastError = e.getMessage();
+            log.error("维护消息索引失败", e);
+        }
+        finally
+        {
+            maintenanceLock.unlock();
+        }
+        if (!ready)
+        {
+            startCatchUp();
+        }
+    }
+
+    /**
+     * 把缓冲区写成新段并提交，调用方持有维护锁
+     */
+    private void flush() throws IOException
+    {
+        long committedTime;
+        lock.writeLock().lock();
+        try
+        {
+            if (buffer.docs.isEmpty())
+            {
+                return;
+            }
+            flushing = buffer;
+            buffer = new Buffer();
+            pendingDeletes = new HashSet<Long>();
+            // 补齐完成前提交时间不前移，重启后仍从原位置补齐
+            committedTime = ready ? System.currentTimeMillis() : watermark;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        String name = SEGMENT_PREFIX + nextGeneration++;
+        IndexSegment segment = null;
+        try
+        {
+            writeBuffer(flushing, name);
+            segment = IndexSegment.open(dir, name);
+        }
+        finally
+        {
+            lock.writeLock().lock();
+            try
+            {
+                if (segment != null)
+                {
+                    for (Long messageId : pendingDeletes)
+                    {
+                        segment.delete(messageId);
+                    }
+                    segments.add(segment);
+                    watermark = committedTime;
+                }
+                else
+                {
+                    // 写入失败，未写入的文档放回缓冲区，下次重试
+                    buffer.addOlder(flushing, pendingDeletes);
+                }
+                flushing = null;
+                pendingDeletes = null;
+                if (segment != null)
+                {
+                    commit();
+                }
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+        }
+        flushCount.increment();
+        lastFlushTime = new Date();
+    }
+
+    private void writeBuffer(Buffer source, String name) throws IOException
+    {
+        List<Integer> live = new ArrayList<Integer>();
+        for (int ord = 0; ord < source.docs.size(); ord++)
+        {
+            if (source.isLive(ord))
+            {
+                live.add(ord);
+            }
+        }
+        live.sort(Comparator.comparingLong(ord -> source.docs.get(ord)[0]));
+        int[] newOrd = new int[source.docs.size()];
+        Arrays.fill(newOrd, -1);
+        long[] ids = new long[live.size()];
+        long[] conversationIds = new long[live.size()];
+        long[] sendTimes = new long[live.size()];
+        for (int i = 0; i < live.size(); i++)
+        {
+            long[] fields = source.docs.get(live.get(i));
+            newOrd[live.get(i)] = i;
+            ids[i] = fields[0];
+            conversationIds[i] = fields[1];
+            sendTimes[i] = fields[2];
+        }
+        List<Map.Entry<byte[], int[]>> terms = new ArrayList<Map.Entry<byte[], int[]>>(source.postings.size());
+        for (Map.Entry<String, IntList> entry : source.postings.entrySet())
+        {
+            IntList docs = new IntList();
+            entry.getValue().mapTo(newOrd, docs);
+            terms.add(new AbstractMap.SimpleEntry<byte[], int[]>(entry.getKey().getBytes(StandardCharsets.UTF_8), docs.sorted()));
+        }
+        terms.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+        IndexSegment.write(dir, name, ids, conversationIds, sendTimes, terms.iterator());
+    }
+
+    /**
+     * 段数过多时合并文档最少的几个段，否则重写删除比例过高的段，调用方持有维护锁
+     */
+    private void merge() throws IOException
+    {
+        List<IndexSegment> sources = new ArrayList<IndexSegment>();
+        List<BitSet> deleted = new ArrayList<BitSet>();
+        lock.writeLock().lock();
+        try
+        {
+            if (segments.size() > MAX_SEGMENTS)
+            {
+                List<IndexSegment> smallest = new ArrayList<IndexSegment>(segments);
+                smallest.sort(Comparator.comparingInt(IndexSegment::liveDocCount));
+                long docs = 0;
+                for (IndexSegment segment : smallest)
+                {
+                    if (sources.size() == MERGE_FACTOR || (sources.size() >= 2 && docs + segment.liveDocCount() > MAX_MERGE_DOCS))
+                    {
+                        break;
+                    }
+                    sources.add(segment);
+                    docs += segment.liveDocCount();
+                }
+            }
+            else
+            {
+                for (IndexSegment segment : segments)
+                {
+                    if (segment.getDocCount() - segment.liveDocCount() > segment.getDocCount() * MAX_DELETED_RATIO)
+                    {
+                        sources.add(segment);
+                        break;
+                    }
+                }
+            }
+            if (sources.isEmpty())
+            {
+                return;
+            }
+            for (IndexSegment segment : sources)
+            {
+                deleted.add(segment.deletedDocs());
+            }
+            pendingDeletes = new HashSet<Long>();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        String name = SEGMENT_PREFIX + nextGeneration++;
+        IndexSegment merged = null;
+        try
+        {
+            writeMerged(sources, deleted, name);
+            merged = IndexSegment.open(dir, name);
+        }
+        finally
+        {
+            lock.writeLock().lock();
+            try
+            {
+                if (merged != null)
+                {
+                    for (Long messageId : pendingDeletes)
+                    {
+                        merged.delete(messageId);
+                    }
+                    segments.removeAll(sources);
+                    segments.add(merged);
+                }
+                pendingDeletes = null;
+                if (merged != null)
+                {
+                    commit();
+                }
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+        }
+        // 进行中的搜索仍可读取已映射的旧段
+        for (IndexSegment segment : sources)
+        {
+            segment.delete();
+        }
+        mergeCount.increment();
+    }
+
+    /**
+     * 按消息ID多路归并各段未删除的文档，再按词多路归并词典
+     */
+    private void writeMerged(List<IndexSegment> sources, List<BitSet> deleted, String name) throws IOException
+    {
+        int count = 0;
+        for (int s = 0; s < sources.size(); s++)
+        {
+            count += sources.get(s).getDocCount() - deleted.get(s).cardinality();
+        }
+        long[] ids = new long[count];
+        long[] conversationIds = new long[count];
+        long[] sendTimes = new long[count];
+        int[][] newOrd = new int[sources.size()][];
+        int[] next = new int[sources.size()];
+        for (int s = 0; s < sources.size(); s++)
+        {
+            newOrd[s] = new int[sources.get(s).getDocCount()];
+            Arrays.fill(newOrd[s], -1);
+            next[s] = deleted.get(s).nextClearBit(0);
+        }
+        for (int i = 0; i < count; i++)
+        {
+            int min = -1;
+            for (int s = 0; s < sources.size(); s++)
+            {
+                if (next[s] < sources.get(s).getDocCount()
+                        && (min < 0 || sources.get(s).messageId(next[s]) < sources.get(min).messageId(next[min])))
+                {
+                    min = s;
+                }
+            }
+            IndexSegment source = sources.get(min);
+            int doc = next[min];
+            newOrd[min][doc] = i;
+            ids[i] = source.messageId(doc);
+            conversationIds[i] = source.conversationId(doc);
+            sendTimes[i] = source.sendTime(doc);
+            next[min] = deleted.get(min).nextClearBit(doc + 1);
+        }
+        PriorityQueue<TermCursor> queue = new PriorityQueue<TermCursor>();
+        for (int s = 0; s < sources.size(); s++)
+        {
+            TermCursor cursor = new TermCursor(sources.get(s), s);
+            if (cursor.advance())
+            {
+                queue.add(cursor);
+            }
+        }
+        Iterator<Map.Entry<byte[], int[]>> terms = new Iterator<Map.Entry<byte[], int[]>>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<byte[], int[]> next()
+            {
+                byte[] term = queue.peek().term;
+                IntList docs = new IntList();
+                while (!queue.isEmpty() && Arrays.equals(queue.peek().term, term))
+                {
+                    TermCursor cursor = queue.poll();
+                    for (int doc : cursor.segment.postings(cursor.index))
+                    {
+                        int ord = newOrd[cursor.source][doc];
+                        if (ord >= 0)
+                        {
+                            docs.add(ord);
+                        }
+                    }
+                    if (cursor.advance())
+                    {
+                        queue.add(cursor);
+                    }
+                }
+                return new AbstractMap.SimpleEntry<byte[], int[]>(term, docs.sorted());
+            }
+        };
+        IndexSegment.write(dir, name, ids, conversationIds, sendTimes, terms);
+    }
+
+    /**
+     * 保存删除位图后写入提交文件，调用方持有写锁
+     */
+    private void commit() throws IOException
+    {
+        List<String> names = new ArrayList<String>();
+        for (IndexSegment segment : segments)
+        {
+            segment.writeDeletes();
+            names.add(segment.getName());
+        }
+        File temp = new File(dir, COMMIT_FILE + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos)))
+        {
+            out.writeInt(COMMIT_MAGIC);
+            out.writeLong(watermark);
+            out.writeInt(nextGeneration);
+            out.writeInt(names.size());
+            for (String name : names)
+            {
+                out.writeUTF(name);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(temp.toPath(), new File(dir, COMMIT_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 打开上次提交的段，删除未提交的段文件
+     */
+    private void load() throws IOException
+    {
+        Set<String> names = new HashSet<String>();
+        File commitFile = new File(dir, COMMIT_FILE);
+        if (commitFile.exists())
+        {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(commitFile)))
+            {
+                if (in.readInt() != COMMIT_MAGIC)
+                {
+                    throw new IOException("提交文件格式错误");
+                }
+                watermark = in.readLong();
+                nextGeneration = in.readInt();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++)
+                {
+                    String name = in.readUTF();
+                    names.add(name);
+                    segments.add(IndexSegment.open(dir, name));
+                }
+            }
+        }
+        File[] files = dir.listFiles();
+        for (File file : files != null ? files : new File[0])
+        {
+            String name = file.getName();
+            if (name.endsWith(".tmp") || (name.startsWith(SEGMENT_PREFIX) && !names.contains(name.substring(0, name.indexOf('.')))))
+            {
+                file.delete();
+            }
+        }
+    }
+
+    private void reset()
+    {
+        segments.clear();
+        watermark = 0;
+        nextGeneration = 0;
+        File[] files = dir.listFiles();
+        for (File file : files != null ? files : new File[0])
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * 内存缓冲区，文档编号为加入顺序，同一消息以最后加入的为准
+     */
+    private static class Buffer
+    {
+        /** 消息ID、会话ID、发送时间 */
+        private final List<long[]> docs = new ArrayList<long[]>();
+
+        /** 消息ID到最新文档编号 */
+        private final Map<Long, Integer> latest = new HashMap<Long, Integer>();
+
+        private final TreeMap<String, IntList> postings = new TreeMap<String, IntList>();
+
+        void add(long messageId, long conversationId, long sendTime, Collection<String> terms)
+        {
+            int ord = docs.size();
+            docs.add(new long[] { messageId, conversationId, sendTime });
+            latest.put(messageId, ord);
+            for (String term : terms)
+            {
+                postings.computeIfAbsent(term, k -> new IntList()).add(ord);
+            }
+        }
+
+        boolean isLive(int ord)
+        {
+            Integer current = latest.get(docs.get(ord)[0]);
+            return current != null && current == ord;
+        }
+
+        void collect(QueryTerm term, BitSet out)
+        {
+            if (!term.isPrefix())
+            {
+                IntList docIds = postings.get(term.getTerm());
+                if (docIds != null)
+                {
+                    docIds.setAll(out);
+                }
+                return;
+            }
+            for (Map.Entry<String, IntList> entry : postings.tailMap(term.getTerm(), true).entrySet())
+            {
+                if (!entry.getKey().startsWith(term.getTerm()))
+                {
+                    break;
+                }
+                entry.getValue().setAll(out);
+            }
+        }
+
+        /**
+         * 放回写入失败的旧缓冲区中未被取代的文档
+         */
+        void addOlder(Buffer older, Set<Long> superseded)
+        {
+            int[] newOrd = new int[older.docs.size()];
+            Arrays.fill(newOrd, -1);
+            for (int ord = 0; ord < older.docs.size(); ord++)
+            {
+                long messageId = older.docs.get(ord)[0];
+                if (older.isLive(ord) && !latest.containsKey(messageId) && !superseded.contains(messageId))
+                {
+                    newOrd[ord] = docs.size();
+                    latest.put(messageId, docs.size());
+                    docs.add(older.docs.get(ord));
+                }
+            }
+            for (Map.Entry<String, IntList> entry : older.postings.entrySet())
+            {
+                entry.getValue().mapTo(newOrd, postings.computeIfAbsent(entry.getKey(), k -> new IntList()));
+            }
+        }
+    }
+
+    /**
+     * 合并时逐个读取段中的词
+     */
+    private static class TermCursor implements Comparable<TermCursor>
+    {
+        private final IndexSegment segment;
+
+        private final int source;
+
+        private int index = -1;
+
+        private byte[] term;
+
+        TermCursor(IndexSegment segment, int source)
+        {
+            this.segment = segment;
+            this.source = source;
+        }
+
+        boolean advance()
+        {
+            if (++index >= segment.getTermCount())
+            {
+                return false;
+            }
+            term = segment.term(index);
+            return true;
+        }
+
+        @Override
+        public int compareTo(TermCursor other)
+        {
+            int c = Arrays.compareUnsigned(term, other.term);
+            return c != 0 ? c : Integer.compare(source, other.source);
+        }
+    }
+
+    /**
+     * 可增长的int数组
+     */
+    private static class IntList
+    {
+        private int[] values = new int[4];
+
+        private int size;
+
+        void add(int value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void setAll(BitSet out)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                out.set(values[i]);
+            }
+        }
+
+        /**
+         * 按映射转换编号后加入目标，映射为-1的丢弃
+         */
+        void mapTo(int[] mapping, IntList target)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (mapping[values[i]] >= 0)
+                {
+                    target.add(mapping[values[i]]);
+                }
+            }
+        }
+
+        int[] sorted()
+        {
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
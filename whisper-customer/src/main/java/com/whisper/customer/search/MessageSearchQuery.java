@@ -0,0 +1,128 @@
+package com.whisper.customer.search;
+
+/**
+ * 消息搜索条件
+ *
+ * 关键字和发送者名称分词后全部命中才算匹配，其余条件精确匹配，时间范围为 [beginTime, endTime)。
+ *
+ * @author whisper
+ */
+public class MessageSearchQuery
+{
+    /** 内容关键字 */
+    private String keyword;
+
+    /** 发送者名称 */
+    private String senderName;
+
+    /** 会话ID，为空时搜索全部会话 */
+    private Long conversationId;
+
+    /** 发送者类型 */
+    private String senderType;
+
+    /** 发送者ID */
+    private Long senderId;
+
+    /** 消息类型 */
+    private String messageType;
+
+    /** 回复的消息ID */
+    private Long replyToId;
+
+    /** 发送时间下限（毫秒，包含） */
+    private Long beginTime;
+
+    /** 发送时间上限（毫秒，不包含） */
+    private Long endTime;
+
+    public String getKeyword()
+    {
+        return keyword;
+    }
+
+    public void setKeyword(String keyword)
+    {
+        this.keyword = keyword;
+    }
+
+    public String getSenderName()
+    {
+        return senderName;
+    }
+
+    public void setSenderName(String senderName)
+    {
+        this.senderName = senderName;
+    }
+
+    public Long getConversationId()
+    {
+        return conversationId;
+    }
+
+    public void setConversationId(Long conversationId)
+    {
+        this.conversationId = conversationId;
+    }
+
+    public String getSenderType()
+    {
+        return senderType;
+    }
+
+    public void setSenderType(String senderType)
+    {
+        this.senderType = senderType;
+    }
+
+    public Long getSenderId()
+    {
+        return senderId;
+    }
+
+    public void setSenderId(Long senderId)
+    {
+        this.senderId = senderId;
+    }
+
+    public String getMessageType()
+    {
+        return messageType;
+    }
+
+    public void setMessageType(String messageType)
+    {
+        this.messageType = messageType;
+    }
+
+    public Long getReplyToId()
+    {
+        return replyToId;
+    }
+
+    public void setReplyToId(Long replyToId)
+    {
+        this.replyToId = replyToId;
+    }
+
+    public Long getBeginTime()
+    {
+        return beginTime;
+    }
+
+    public void setBeginTime(Long beginTime)
+    {
+        this.beginTime = beginTime;
+    }
+
+    public Long getEndTime()
+    {
+        return endTime;
+    }
+
+    public void setEndTime(Long endTime)
+    {
+        this.endTime = endTime;
+    }
+}
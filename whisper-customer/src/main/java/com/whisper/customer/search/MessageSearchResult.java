@@ -0,0 +1,67 @@
+package com.whisper.customer.search;
+
+import java.util.List;
+
+/**
+ * 消息搜索结果，命中按发送时间倒序
+ *
+ * @author whisper
+ */
+public class MessageSearchResult
+{
+    /** 命中总数 */
+    private final long total;
+
+    /** 当前页的命中 */
+    private final List<Hit> hits;
+
+    public MessageSearchResult(long total, List<Hit> hits)
+    {
+        this.total = total;
+        this.hits = hits;
+    }
+
+    public long getTotal()
+    {
+        return total;
+    }
+
+    public List<Hit> getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * 命中的消息
+     */
+    public static class Hit
+    {
+        private final long messageId;
+
+        private final long conversationId;
+
+        private final long sendTime;
+
+        public Hit(long messageId, long conversationId, long sendTime)
+        {
+            this.messageId = messageId;
+            this.conversationId = conversationId;
+            this.sendTime = sendTime;
+        }
+
+        public long getMessageId()
+        {
+            return messageId;
+        }
+
+        public long getConversationId()
+        {
+            return conversationId;
+        }
+
+        public long getSendTime()
+        {
+            return sendTime;
+        }
+    }
+}
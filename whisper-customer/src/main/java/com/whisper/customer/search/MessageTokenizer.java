@@ -0,0 +1,222 @@
+package com.whisper.customer.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.customer.domain.CsMessage;
+
+/**
+ * 消息分词
+ *
+ * 文本转为小写后按字符类别切分：中日韩字符连续段切为重叠的二元组，并额外输出最后一个字符，
+ * 使单字查询可以按前缀匹配到所有位置；字母数字连续段建索引时输出它的每个后缀（如 hello 输出 hello、ello、llo、lo、o），
+ * 查询词按前缀匹配后缀即可命中词中间的任意位置，与 LIKE '%x%' 一致。
+ * 查询时中日韩二元组精确匹配，单字和字母数字词按前缀匹配，多个词同时命中才算匹配。
+ * 内容以外的字段加控制字符开头的前缀区分，不会被内容词的前缀匹配到；精确匹配的过滤字段（发送者、类型等）也作为词写入索引。
+ *
+ * @author whisper
+ */
+public final class MessageTokenizer
+{
+    /** 发送者名称 */
+    public static final String FIELD_SENDER_NAME = "\u0001n";
+
+    /** 发送者类型 */
+    public static final String FIELD_SENDER_TYPE = "\u0001t";
+
+    /** 发送者ID */
+    public static final String FIELD_SENDER_ID = "\u0001s";
+
+    /** 消息类型 */
+    public static final String FIELD_MESSAGE_TYPE = "\u0001m";
+
+    /** 回复的消息ID */
+    public static final String FIELD_REPLY_TO = "\u0001r";
+
+    /** 词的最大长度，超出部分截断 */
+    private static final int MAX_WORD_LENGTH = 32;
+
+    private MessageTokenizer()
+    {
+    }
+
+    /**
+     * 查询词
+     */
+    public static class QueryTerm
+    {
+        private final String term;
+
+        private final boolean prefix;
+
+        public QueryTerm(String term, boolean prefix)
+        {
+            this.term = term;
+            this.prefix = prefix;
+        }
+
+        public String getTerm()
+        {
+            return term;
+        }
+
+        public boolean isPrefix()
+        {
+            return prefix;
+        }
+    }
+
+    /**
+     * 消息写入索引的词
+     *
+     * @param message 消息
+     * @return 词集合
+     */
+    public static Set<String> documentTerms(CsMessage message)
+    {
+        Set<String> terms = new LinkedHashSet<String>();
+        analyze(message.getContent(), "", terms, null);
+        analyze(message.getSenderName(), FIELD_SENDER_NAME, terms, null);
+        addField(terms, FIELD_SENDER_TYPE, message.getSenderType());
+        addField(terms, FIELD_SENDER_ID, message.getSenderId());
+        addField(terms, FIELD_MESSAGE_TYPE, message.getMessageType());
+        addField(terms, FIELD_REPLY_TO, message.getReplyToId());
+        return terms;
+    }
+
+    /**
+     * 解析查询文本
+     *
+     * @param text 查询文本
+     * @param field 字段前缀，内容为空字符串
+     * @param terms 输出的查询词
+     */
+    public static void analyzeQuery(String text, String field, List<QueryTerm> terms)
+    {
+        analyze(text, field, null, terms);
+    }
+
+    /**
+     * 精确匹配的字段查询词
+     *
+     * @param field 字段前缀
+     * @param value 字段值，为空时不加入
+     * @param terms 输出的查询词
+     */
+    public static void fieldQuery(String field, Object value, List<QueryTerm> terms)
+    {
+        if (value != null && StringUtils.isNotEmpty(value.toString()))
+        {
+            terms.add(new QueryTerm(field + value, false));
+        }
+    }
+
+    private static void addField(Set<String> terms, String field, Object value)
+    {
+        if (value != null && StringUtils.isNotEmpty(value.toString()))
+        {
+            terms.add(field + value);
+        }
+    }
+
+    /**
+     * 切分文本，建索引时输出到 terms，查询时输出到 queryTerms
+     */
+    private static void analyze(String text, String field, Set<String> terms, List<QueryTerm> queryTerms)
+    {
+        if (StringUtils.isEmpty(text))
+        {
+            return;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT);
+        List<Integer> cjk = new ArrayList<Integer>();
+        StringBuilder word = new StringBuilder();
+        int i = 0;
+        while (i < normalized.length())
+        {
+            int cp = normalized.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp))
+            {
+                flushWord(word, field, terms, queryTerms);
+                cjk.add(cp);
+            }
+            else if (Character.isLetterOrDigit(cp))
+            {
+                flushCjk(cjk, field, terms, queryTerms);
+                if (word.length() < MAX_WORD_LENGTH)
+                {
+                    word.appendCodePoint(cp);
+                }
+            }
+            else
+            {
+                flushWord(word, field, terms, queryTerms);
+                flushCjk(cjk, field, terms, queryTerms);
+            }
+        }
+        flushWord(word, field, terms, queryTerms);
+        flushCjk(cjk, field, terms, queryTerms);
+    }
+
+    private static void flushWord(StringBuilder word, String field, Set<String> terms, List<QueryTerm> queryTerms)
+    {
+        if (word.length() == 0)
+        {
+            return;
+        }
+        if (terms != null)
+        {
+            for (int i = 0; i < word.length(); i = word.offsetByCodePoints(i, 1))
+            {
+                terms.add(field + word.substring(i));
+            }
+        }
+        else
+        {
+            queryTerms.add(new QueryTerm(field + word, true));
+        }
+        word.setLength(0);
+    }
+
+    private static void flushCjk(List<Integer> cjk, String field, Set<String> terms, List<QueryTerm> queryTerms)
+    {
+        if (cjk.isEmpty())
+        {
+            return;
+        }
+        for (int i = 0; i + 1 < cjk.size(); i++)
+        {
+            String bigram = field + new String(new int[] { cjk.get(i), cjk.get(i + 1) }, 0, 2);
+            if (terms != null)
+            {
+                terms.add(bigram);
+            }
+            else
+            {
+                queryTerms.add(new QueryTerm(bigram, false));
+            }
+        }
+        String last = field + new String(new int[] { cjk.get(cjk.size() - 1) }, 0, 1);
+        if (terms != null)
+        {
+            terms.add(last);
+        }
+        else if (cjk.size() == 1)
+        {
+            // 单字匹配以它开头的二元组和段尾单字
+            queryTerms.add(new QueryTerm(last, true));
+        }
+        cjk.clear();
+    }
+
+    private static boolean isCjk(int cp)
+    {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -1,6 +1,7 @@
 package com.whisper.customer.service;
 
 import java.util.List;
+import java.util.function.Consumer;
 import com.whisper.customer.domain.CsConversation;
 
 /**
@@ -34,6 +35,14 @@ public interface ICsConversationService
      */
     public List<CsConversation> selectCsConversationList(CsConversation csConversation);
 
+    /**
+     * 逐条读取会话管理列表，用于导出
+     * 
+     * @param csConversation 会话管理
+     * @param consumer 逐条接收会话
+     */
+    public void exportCsConversationList(CsConversation csConversation, Consumer<CsConversation> consumer);
+
     /**
      * 根据客户ID查询会话列表
      * 
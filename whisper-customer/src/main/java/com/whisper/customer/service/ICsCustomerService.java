@@ -1,6 +1,7 @@
 package com.whisper.customer.service;
 
 import java.util.List;
+import java.util.function.Consumer;
 import com.whisper.customer.domain.CsCustomer;
 
 /**
@@ -155,6 +156,16 @@ public interface ICsCustomerService
      */
     public String importCustomer(List<CsCustomer> customerList, Boolean isUpdateSupport, String operName);
 
+    /**
+     * 分批导入客户数据，适用于数据量较大、需要边读取边导入的文件
+     * 
+     * @param batches 数据来源，参数为逐批接收数据的回调
+     * @param isUpdateSupport 是否更新支持，如果已存在，则进行更新数据
+     * @param operName 操作用户
+     * @return 结果
+     */
+    public String importCustomer(Consumer<Consumer<List<CsCustomer>>> batches, Boolean isUpdateSupport, String operName);
+
     /**
      * 生成客户编号
      *
@@ -2,6 +2,7 @@ package com.whisper.customer.service;
 
 import java.util.List;
 import java.util.Date;
+import java.util.function.Consumer;
 import com.whisper.customer.domain.CsMessage;
 
 /**
@@ -27,6 +28,14 @@ public interface ICsMessageService
      */
     public List<CsMessage> selectCsMessageList(CsMessage csMessage);
 
+    /**
+     * 逐条读取消息记录列表，用于导出
+     * 
+     * @param csMessage 消息记录
+     * @param consumer 逐条接收消息记录
+     */
+    public void exportCsMessageList(CsMessage csMessage, Consumer<CsMessage> consumer);
+
     /**
      * 根据会话ID查询消息列表
      * 
@@ -188,10 +197,9 @@ public interface ICsMessageService
     public List<CsMessage> selectMessagesByTimeRange(Long conversationId, Date startTime, Date endTime);
 
     /**
-     * 清理历史消息
+     * 在后台把历史消息归档后清理
      * 
      * @param beforeDays 保留天数
-     * @return 删除的消息数量
      */
-    public int cleanHistoryMessages(Integer beforeDays);
+    public void cleanHistoryMessages(Integer beforeDays);
 }
@@ -0,0 +1,95 @@
+package com.whisper.customer.service;
+
+import java.util.List;
+import com.whisper.customer.domain.CsTicket;
+import com.whisper.customer.domain.CsTicketLog;
+
+/**
+ * 工单系统表 服务层
+ * 
+ * @author whisper
+ */
+public interface ICsTicketService
+{
+    /**
+     * 查询工单
+     * 
+     * @param ticketId 工单主键
+     * @return 工单
+     */
+    public CsTicket selectCsTicketByTicketId(Long ticketId);
+
+    /**
+     * 查询工单列表
+     * 
+     * @param csTicket 工单
+     * @return 工单集合
+     */
+    public List<CsTicket> selectCsTicketList(CsTicket csTicket);
+
+    /**
+     * 查询工单处理记录
+     * 
+     * @param ticketId 工单ID
+     * @return 处理记录集合
+     */
+    public List<CsTicketLog> selectCsTicketLogByTicketId(Long ticketId);
+
+    /**
+     * 新增工单
+     * 
+     * @param csTicket 工单
+     * @return 结果
+     */
+    public int insertCsTicket(CsTicket csTicket);
+
+    /**
+     * 修改工单
+     * 
+     * @param csTicket 工单
+     * @return 结果
+     */
+    public int updateCsTicket(CsTicket csTicket);
+
+    /**
+     * 分配工单
+     * 
+     * @param ticketId 工单ID
+     * @param assignedTo 处理人ID
+     * @return 结果
+     */
+    public int assignTicket(Long ticketId, Long assignedTo);
+
+    /**
+     * 解决工单
+     * 
+     * @param ticketId 工单ID
+     * @param content 处理内容
+     * @return 结果
+     */
+    public int resolveTicket(Long ticketId, String content);
+
+    /**
+     * 关闭工单
+     * 
+     * @param ticketId 工单ID
+     * @param content 处理内容
+     * @return 结果
+     */
+    public int closeTicket(Long ticketId, String content);
+
+    /**
+     * 批量删除工单
+     * 
+     * @param ticketIds 需要删除的工单主键集合
+     * @return 结果
+     */
+    public int deleteCsTicketByTicketIds(Long[] ticketIds);
+
+    /**
+     * 生成工单编号
+     * 
+     * @return 工单编号
+     */
+    public String generateTicketNo();
+}
@@ -3,6 +3,7 @@ package com.whisper.customer.service.impl;
 import java.util.List;
 import java.util.Date;
 import java.util.UUID;
+import java.util.function.Consumer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import com.whisper.common.annotation.DataSource;
@@ -13,24 +14,41 @@ import com.whisper.common.utils.DateUtils;
 import com.whisper.common.utils.StringUtils;
 import com.whisper.common.utils.uuid.IdUtils;
 import com.whisper.customer.domain.CsConversation;
+import com.whisper.customer.dispatch.AgentLoadManager;
 import com.whisper.customer.domain.CsMessage;
 import com.whisper.customer.mapper.CsConversationMapper;
-import com.whisper.customer.mapper.CsMessageMapper;
+import com.whisper.customer.metrics.CsMetricsRegistry;
 import com.whisper.customer.service.ICsConversationService;
+import com.whisper.customer.service.ICsMessageService;
+import com.whisper.customer.transcript.MessageTranscriptManager;
 
 /**
  * 会话管理表 服务层实现
  * 
+ * 已结束会话的消息可能已压缩，会话重新打开（改为其他状态、分配或转接）时恢复到消息表。
+ * 
  * @author whisper
  */
 @Service
 public class CsConversationServiceImpl implements ICsConversationService
 {
+    /** 已结束的会话状态 */
+    private static final String STATUS_ENDED = "2";
+
     @Autowired
     private CsConversationMapper csConversationMapper;
 
     @Autowired
-    private CsMessageMapper csMessageMapper;
+    private ICsMessageService csMessageService;
+
+    @Autowired
+    private CsMetricsRegistry csMetricsRegistry;
+
+    @Autowired
+    private AgentLoadManager agentLoadManager;
+
+    @Autowired
+    private MessageTranscriptManager messageTranscriptManager;
 
     /**
      * 查询会话管理
@@ -68,6 +86,18 @@ public class CsConversationServiceImpl implements ICsConversationService
         return csConversationMapper.selectCsConversationList(csConversation);
     }
 
+    /**
+     * 逐条读取会话管理列表，用于导出
+     * 
+     * @param csConversation 会话管理
+     * @param consumer 逐条接收会话
+     */
+    @Override
+    public void exportCsConversationList(CsConversation csConversation, Consumer<CsConversation> consumer)
+    {
+        csConversationMapper.selectCsConversationListForExport(csConversation, context -> consumer.accept(context.getResultObject()));
+    }
+
     /**
      * 根据客户ID查询会话列表
      * 
@@ -174,7 +204,12 @@ public class CsConversationServiceImpl implements ICsConversationService
     public int updateCsConversation(CsConversation csConversation)
     {
         csConversation.setUpdateTime(DateUtils.getNowDate());
-        return csConversationMapper.updateCsConversation(csConversation);
+        int result = csConversationMapper.updateCsConversation(csConversation);
+        if (result > 0 && StringUtils.isNotEmpty(csConversation.getStatus()) && !STATUS_ENDED.equals(csConversation.getStatus()))
+        {
+            messageTranscriptManager.restore(csConversation.getConversationId());
+        }
+        return result;
     }
 
     /**
@@ -228,6 +263,7 @@ public class CsConversationServiceImpl implements ICsConversationService
         int result = csConversationMapper.insertCsConversation(conversation);
         if (result > 0)
         {
+            csMetricsRegistry.conversationQueued(conversation.getConversationId(), conversation.getStartTime().getTime());
             return conversation;
         }
         return null;
@@ -243,11 +279,26 @@ public class CsConversationServiceImpl implements ICsConversationService
     @Override
     public int assignConversationToAgent(Long conversationId, Long agentId)
     {
+        CsConversation conversation = csConversationMapper.selectCsConversationByConversationId(conversationId);
+        if (!agentLoadManager.claim(agentId, conversationId))
+        {
+            throw new ServiceException("客服接待量已达上限");
+        }
         int result = csConversationMapper.assignConversationToAgent(conversationId, agentId);
         if (result > 0)
         {
             // 更新会话状态为进行中
             csConversationMapper.updateConversationStatus(conversationId, "1");
+            messageTranscriptManager.restore(conversationId);
+            csMetricsRegistry.conversationAssigned(conversationId);
+            if (conversation != null && conversation.getAgentId() != null && !conversation.getAgentId().equals(agentId))
+            {
+                agentLoadManager.release(conversation.getAgentId(), conversationId);
+            }
+        }
+        else if (conversation == null || !agentId.equals(conversation.getAgentId()))
+        {
+            agentLoadManager.release(agentId, conversationId);
         }
         return result;
     }
@@ -261,11 +312,19 @@ public class CsConversationServiceImpl implements ICsConversationService
     @Override
     public Long autoAssignConversation(Long conversationId)
     {
-        // TODO: 实现自动分配逻辑
-        // 1. 查询在线客服
-        // 2. 按负载均衡分配
-        // 3. 考虑技能匹配
-        // 暂时返回null，表示没有可用客服
+        // 在线客服按负载率占用名额，占用由Redis原子完成，无需查询数据库
+        // 会话未记录所需技能，客服技能标签暂不参与分配
+        Long agentId = agentLoadManager.claimLeastLoaded(conversationId);
+        if (agentId == null)
+        {
+            return null;
+        }
+        if (csConversationMapper.assignConversationToAgent(conversationId, agentId) > 0)
+        {
+            csMetricsRegistry.conversationAssigned(conversationId);
+            return agentId;
+        }
+        agentLoadManager.release(agentId, conversationId);
         return null;
     }
 
@@ -279,7 +338,12 @@ public class CsConversationServiceImpl implements ICsConversationService
     @Override
     public int updateConversationStatus(Long conversationId, String status)
     {
-        return csConversationMapper.updateConversationStatus(conversationId, status);
+        int result = csConversationMapper.updateConversationStatus(conversationId, status);
+        if (result > 0 && !STATUS_ENDED.equals(status))
+        {
+            messageTranscriptManager.restore(conversationId);
+        }
+        return result;
     }
 
     /**
@@ -296,7 +360,10 @@ public class CsConversationServiceImpl implements ICsConversationService
         {
             Date endTime = DateUtils.getNowDate();
             int duration = (int) ((endTime.getTime() - conversation.getStartTime().getTime()) / 1000);
-            return csConversationMapper.endConversation(conversationId, endTime, duration);
+            csMetricsRegistry.conversationEnded(conversationId);
+            int result = csConversationMapper.endConversation(conversationId, endTime, duration);
+            agentLoadManager.release(conversation.getAgentId(), conversationId);
+            return result;
         }
         return 0;
     }
@@ -315,6 +382,11 @@ public class CsConversationServiceImpl implements ICsConversationService
         CsConversation conversation = csConversationMapper.selectCsConversationByConversationId(conversationId);
         if (conversation != null)
         {
+            if (!agentLoadManager.claim(toAgentId, conversationId))
+            {
+                throw new ServiceException("目标客服接待量已达上限");
+            }
+            Long previousAgentId = conversation.getAgentId();
             // 增加转接次数
             int transferCount = conversation.getTransferCount() == null ? 0 : conversation.getTransferCount();
             conversation.setTransferCount(transferCount + 1);
@@ -322,7 +394,20 @@ public class CsConversationServiceImpl implements ICsConversationService
             conversation.setStatus("3"); // 已转接状态
             conversation.setUpdateTime(DateUtils.getNowDate());
             
-            return csConversationMapper.updateCsConversation(conversation);
+            int result = csConversationMapper.updateCsConversation(conversation);
+            if (result > 0)
+            {
+                messageTranscriptManager.restore(conversationId);
+                if (previousAgentId != null && !previousAgentId.equals(toAgentId))
+                {
+                    agentLoadManager.release(previousAgentId, conversationId);
+                }
+            }
+            else if (!toAgentId.equals(previousAgentId))
+            {
+                agentLoadManager.release(toAgentId, conversationId);
+            }
+            return result;
         }
         return 0;
     }
@@ -336,7 +421,7 @@ public class CsConversationServiceImpl implements ICsConversationService
     @Override
     public int updateConversationStats(Long conversationId)
     {
-        int messageCount = csMessageMapper.countMessagesByConversationId(conversationId);
+        int messageCount = csMessageService.countMessagesByConversationId(conversationId);
         // TODO: 计算平均响应时间
         int avgResponseTime = 0;
         return csConversationMapper.updateConversationStats(conversationId, messageCount, avgResponseTime);
@@ -364,7 +449,7 @@ public class CsConversationServiceImpl implements ICsConversationService
     @Override
     public int countActiveConversationsByAgentId(Long agentId)
     {
-        return csConversationMapper.countActiveConversationsByAgentId(agentId);
+        return agentLoadManager.getLoad(agentId);
     }
 
     /**
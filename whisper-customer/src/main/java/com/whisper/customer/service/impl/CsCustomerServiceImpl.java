@@ -1,6 +1,8 @@
 package com.whisper.customer.service.impl;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.Date;
 import javax.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -294,54 +296,70 @@ public class CsCustomerServiceImpl implements ICsCustomerService
         {
             throw new ServiceException("导入客户数据不能为空！");
         }
-        int successNum = 0;
-        int failureNum = 0;
+        return importCustomer(consumer -> consumer.accept(customerList), isUpdateSupport, operName);
+    }
+
+    /**
+     * 分批导入客户数据
+     * 
+     * @param batches 数据来源，参数为逐批接收数据的回调
+     * @param isUpdateSupport 是否更新支持，如果已存在，则进行更新数据
+     * @param operName 操作用户
+     * @return 结果
+     */
+    @Override
+    public String importCustomer(Consumer<Consumer<List<CsCustomer>>> batches, Boolean isUpdateSupport, String operName)
+    {
+        AtomicInteger successNum = new AtomicInteger();
+        AtomicInteger failureNum = new AtomicInteger();
         StringBuilder successMsg = new StringBuilder();
         StringBuilder failureMsg = new StringBuilder();
-        for (CsCustomer customer : customerList)
-        {
-            try
+        batches.accept(customerList -> {
+            for (CsCustomer customer : customerList)
             {
-                // 验证是否存在这个客户
-                CsCustomer c = csCustomerMapper.selectCsCustomerByCustomerNo(customer.getCustomerNo());
-                if (StringUtils.isNull(c))
-                {
-                    BeanValidators.validateWithException(validator, customer);
-                    customer.setCreateBy(operName);
-                    this.insertCsCustomer(customer);
-                    successNum++;
-                    successMsg.append("<br/>" + successNum + "、客户 " + customer.getCustomerName() + " 导入成功");
-                }
-                else if (isUpdateSupport)
+                try
                 {
-                    BeanValidators.validateWithException(validator, customer);
-                    customer.setCustomerId(c.getCustomerId());
-                    customer.setUpdateBy(operName);
-                    this.updateCsCustomer(customer);
-                    successNum++;
-                    successMsg.append("<br/>" + successNum + "、客户 " + customer.getCustomerName() + " 更新成功");
+                    // 验证是否存在这个客户
+                    CsCustomer c = csCustomerMapper.selectCsCustomerByCustomerNo(customer.getCustomerNo());
+                    if (StringUtils.isNull(c))
+                    {
+                        BeanValidators.validateWithException(validator, customer);
+                        customer.setCreateBy(operName);
+                        this.insertCsCustomer(customer);
+                        successMsg.append("<br/>" + successNum.incrementAndGet() + "、客户 " + customer.getCustomerName() + " 导入成功");
+                    }
+                    else if (isUpdateSupport)
+                    {
+                        BeanValidators.validateWithException(validator, customer);
+                        customer.setCustomerId(c.getCustomerId());
+                        customer.setUpdateBy(operName);
+                        this.updateCsCustomer(customer);
+                        successMsg.append("<br/>" + successNum.incrementAndGet() + "、客户 " + customer.getCustomerName() + " 更新成功");
+                    }
+                    else
+                    {
+                        failureMsg.append("<br/>" + failureNum.incrementAndGet() + "、客户 " + customer.getCustomerName() + " 已存在");
+                    }
                 }
-                else
+                catch (Exception e)
                 {
-                    failureNum++;
-                    failureMsg.append("<br/>" + failureNum + "、客户 " + customer.getCustomerName() + " 已存在");
+                    String msg = "<br/>" + failureNum.incrementAndGet() + "、客户 " + customer.getCustomerName() + " 导入失败：";
+                    failureMsg.append(msg + e.getMessage());
                 }
             }
-            catch (Exception e)
-            {
-                failureNum++;
-                String msg = "<br/>" + failureNum + "、客户 " + customer.getCustomerName() + " 导入失败：";
-                failureMsg.append(msg + e.getMessage());
-            }
+        });
+        if (successNum.get() + failureNum.get() == 0)
+        {
+            throw new ServiceException("导入客户数据不能为空！");
         }
-        if (failureNum > 0)
+        if (failureNum.get() > 0)
         {
-            failureMsg.insert(0, "很抱歉，导入失败！共 " + failureNum + " 条数据格式不正确，错误如下：");
+            failureMsg.insert(0, "很抱歉，导入失败！共 " + failureNum.get() + " 条数据格式不正确，错误如下：");
             throw new ServiceException(failureMsg.toString());
         }
         else
         {
-            successMsg.insert(0, "恭喜您，数据已全部导入成功！共 " + successNum + " 条，数据如下：");
+            successMsg.insert(0, "恭喜您，数据已全部导入成功！共 " + successNum.get() + " 条，数据如下：");
         }
         return successMsg.toString();
     }
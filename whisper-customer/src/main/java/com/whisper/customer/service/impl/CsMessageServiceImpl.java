@@ -1,31 +1,90 @@
 package com.whisper.customer.service.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Date;
-import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
 import com.whisper.common.annotation.DataSource;
 import com.whisper.common.core.text.Convert;
 import com.whisper.common.enums.DataSourceType;
 import com.whisper.common.exception.ServiceException;
 import com.whisper.common.utils.DateUtils;
 import com.whisper.common.utils.StringUtils;
+import com.whisper.customer.archive.MessageArchiveManager;
+import com.whisper.customer.archive.MessageRetentionTask;
 import com.whisper.customer.domain.CsMessage;
+import com.whisper.customer.domain.CsMessageTranscript;
 import com.whisper.customer.mapper.CsMessageMapper;
+import com.whisper.customer.metrics.CsMetricsRegistry;
+import com.whisper.customer.search.MessageHighlighter;
+import com.whisper.customer.search.MessageSearchIndex;
+import com.whisper.customer.search.MessageSearchQuery;
+import com.whisper.customer.search.MessageSearchResult;
 import com.whisper.customer.service.ICsMessageService;
+import com.whisper.customer.shard.MessageShardRouter;
+import com.whisper.customer.shard.MessageShardRouter.Route;
+import com.whisper.customer.storage.ChatFileStorage;
+import com.whisper.customer.transcript.MessageTranscriptManager;
 
 /**
  * 消息记录表 服务层实现
  * 
+ * 消息按会话分片存储（见 MessageShardRouter），会话内的查询、分页和统计只访问所在分片；
+ * 不带会话条件的管理查询在所有分片上执行后合并。
+ * 已结束会话的消息压缩为一条记录（见 MessageTranscriptManager），超过保留期的消息归档到文件（见 MessageArchiveManager），
+ * 会话记录、分页和时间范围查询透明合并这两部分，管理查询只包含消息表。按ID修改已压缩的消息时先恢复会话再修改。
+ * 按内容或发送者名称搜索时使用本地全文索引（见 MessageSearchIndex）找出候选消息，回表校验后返回，索引不可用时退回 like 查询。
+ * 消息引用的聊天文件（见 ChatFileStorage）在写入消息时增加引用计数，删除消息或更换文件时释放。
+ * 
  * @author whisper
  */
 @Service
 public class CsMessageServiceImpl implements ICsMessageService
 {
+    /** 表名参数，放在 params 中供 mapper 使用 */
+    private static final String TABLE_PARAM = "table";
+
+    /** 搜索结果摘要，放在 params 中返回 */
+    private static final String HIGHLIGHT_PARAM = "highlight";
+
     @Autowired
     private CsMessageMapper csMessageMapper;
 
+    @Autowired
+    private CsMetricsRegistry csMetricsRegistry;
+
+    @Autowired
+    private MessageShardRouter messageShardRouter;
+
+    @Autowired
+    private MessageArchiveManager messageArchiveManager;
+
+    @Autowired
+    private MessageRetentionTask messageRetentionTask;
+
+    @Autowired
+    private MessageTranscriptManager messageTranscriptManager;
+
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private ChatFileStorage chatFileStorage;
+
     /**
      * 查询消息记录
      * 
@@ -35,7 +94,21 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public CsMessage selectCsMessageByMessageId(Long messageId)
     {
-        return csMessageMapper.selectCsMessageByMessageId(messageId);
+        Route route = messageShardRouter.routeByMessageId(messageId);
+        if (route != null)
+        {
+            CsMessage message = csMessageMapper.selectCsMessageByMessageId(route.getReadTable(), messageId);
+            return message != null ? message : messageTranscriptManager.selectMessage(messageId);
+        }
+        for (String table : messageShardRouter.distinctTables())
+        {
+            CsMessage message = csMessageMapper.selectCsMessageByMessageId(table, messageId);
+            if (message != null)
+            {
+                return message;
+            }
+        }
+        return messageTranscriptManager.selectMessage(messageId);
     }
 
     /**
@@ -47,7 +120,54 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public List<CsMessage> selectCsMessageList(CsMessage csMessage)
     {
-        return csMessageMapper.selectCsMessageList(csMessage);
+        if ((StringUtils.isNotEmpty(csMessage.getContent()) || StringUtils.isNotEmpty(csMessage.getSenderName()))
+                && messageSearchIndex.isReady())
+        {
+            List<CsMessage> list = searchCsMessageList(csMessage);
+            if (list != null)
+            {
+                return list;
+            }
+        }
+        if (csMessage.getConversationId() != null)
+        {
+            return selectListFromTable(csMessage, messageShardRouter.route(csMessage.getConversationId()).getReadTable());
+        }
+        List<String> tables = messageShardRouter.distinctTables();
+        if (tables.size() == 1)
+        {
+            return selectListFromTable(csMessage, tables.get(0));
+        }
+        return selectFromAllTables(tables, table -> selectListFromTable(csMessage, table));
+    }
+
+    /**
+     * 逐条读取消息记录列表，用于导出
+     * 
+     * 按 like 条件在消息表上逐行读取，不经过全文索引，也不包含压缩记录和归档；
+     * 不带会话条件时依次读取各分片表，每张表内按发送时间倒序，重新分片期间已复制的消息可能导出两次。
+     * 
+     * @param csMessage 消息记录
+     * @param consumer 逐条接收消息记录
+     */
+    @Override
+    public void exportCsMessageList(CsMessage csMessage, Consumer<CsMessage> consumer)
+    {
+        List<String> tables = csMessage.getConversationId() != null
+                ? Collections.singletonList(messageShardRouter.route(csMessage.getConversationId()).getReadTable())
+                : messageShardRouter.distinctTables();
+        for (String table : tables)
+        {
+            csMessage.getParams().put(TABLE_PARAM, table);
+            try
+            {
+                csMessageMapper.selectCsMessageListForExport(csMessage, context -> consumer.accept(context.getResultObject()));
+            }
+            finally
+            {
+                csMessage.getParams().remove(TABLE_PARAM);
+            }
+        }
     }
 
     /**
@@ -59,7 +179,9 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public List<CsMessage> selectCsMessageByConversationId(Long conversationId)
     {
-        return csMessageMapper.selectCsMessageByConversationId(conversationId);
+        List<CsMessage> list = csMessageMapper.selectCsMessageByConversationId(messageShardRouter.route(conversationId).getReadTable(), conversationId);
+        List<CsMessage> compacted = messageTranscriptManager.readMessages(messageTranscriptManager.selectTranscript(conversationId));
+        return withHistory(messageArchiveManager.selectArchivedMessages(conversationId, null, null), compacted, list);
     }
 
     /**
@@ -74,7 +196,36 @@ public class CsMessageServiceImpl implements ICsMessageService
     public List<CsMessage> selectCsMessageByConversationIdWithPage(Long conversationId, Integer pageNum, Integer pageSize)
     {
         int offset = (pageNum - 1) * pageSize;
-        return csMessageMapper.selectCsMessageByConversationIdWithPage(conversationId, offset, pageSize);
+        String table = messageShardRouter.route(conversationId).getReadTable();
+        List<CsMessage> list = csMessageMapper.selectCsMessageByConversationIdWithPage(table, conversationId, offset, pageSize);
+        if (list.size() >= pageSize)
+        {
+            return list;
+        }
+        CsMessageTranscript transcript = messageTranscriptManager.selectTranscript(conversationId);
+        boolean archived = messageArchiveManager.hasArchive(conversationId);
+        if (transcript == null && !archived)
+        {
+            return list;
+        }
+        // 消息表不足一页时依次从压缩记录和归档中接着取，它们的消息都更早
+        int liveCount = list.isEmpty() ? csMessageMapper.countMessagesByConversationId(table, conversationId) : offset + list.size();
+        int skip = Math.max(0, offset - liveCount);
+        List<CsMessage> result = new ArrayList<CsMessage>(list);
+        if (transcript != null)
+        {
+            result.addAll(messageTranscriptManager.readPage(transcript, skip, pageSize - result.size()));
+            skip = Math.max(0, skip - transcript.getMessageCount());
+        }
+        if (archived && result.size() < pageSize)
+        {
+            List<CsMessage> archivedList = messageArchiveManager.selectArchivedMessages(conversationId, null, null);
+            for (int index = archivedList.size() - 1 - skip; index >= 0 && result.size() < pageSize; index--)
+            {
+                result.add(archivedList.get(index));
+            }
+        }
+        return result;
     }
 
     /**
@@ -87,7 +238,8 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public List<CsMessage> selectCsMessageBySender(String senderType, Long senderId)
     {
-        return csMessageMapper.selectCsMessageBySender(senderType, senderId);
+        return selectFromAllTables(messageShardRouter.distinctTables(),
+                table -> csMessageMapper.selectCsMessageBySender(table, senderType, senderId));
     }
 
     /**
@@ -122,7 +274,20 @@ public class CsMessageServiceImpl implements ICsMessageService
         }
         
         csMessage.setCreateTime(DateUtils.getNowDate());
-        return csMessageMapper.insertCsMessage(csMessage);
+        chatFileStorage.acquire(csMessage.getFileUrl());
+        int rows = 0;
+        try
+        {
+            rows = insertIntoShard(csMessage);
+        }
+        finally
+        {
+            if (rows == 0)
+            {
+                chatFileStorage.release(csMessage.getFileUrl());
+            }
+        }
+        return rows;
     }
 
     /**
@@ -135,7 +300,43 @@ public class CsMessageServiceImpl implements ICsMessageService
     public int updateCsMessage(CsMessage csMessage)
     {
         csMessage.setUpdateTime(DateUtils.getNowDate());
-        return csMessageMapper.updateCsMessage(csMessage);
+        String oldFileUrl = null;
+        if (csMessage.getFileUrl() != null)
+        {
+            // 更换文件时先引用新文件，修改成功后释放原文件
+            CsMessage old = selectCsMessageByMessageId(csMessage.getMessageId());
+            oldFileUrl = old != null ? old.getFileUrl() : null;
+            if (!csMessage.getFileUrl().equals(oldFileUrl))
+            {
+                chatFileStorage.acquire(csMessage.getFileUrl());
+            }
+        }
+        int rows = writeByMessageId(csMessage.getMessageId(), table -> {
+            csMessage.getParams().put(TABLE_PARAM, table);
+            try
+            {
+                return csMessageMapper.updateCsMessage(csMessage);
+            }
+            finally
+            {
+                csMessage.getParams().remove(TABLE_PARAM);
+            }
+        });
+        if (csMessage.getFileUrl() != null && !csMessage.getFileUrl().equals(oldFileUrl))
+        {
+            chatFileStorage.release(rows > 0 ? oldFileUrl : csMessage.getFileUrl());
+        }
+        if (rows > 0 && (csMessage.getContent() != null || csMessage.getSenderName() != null || csMessage.getSenderType() != null
+                || csMessage.getSenderId() != null || csMessage.getMessageType() != null || csMessage.getReplyToId() != null))
+        {
+            // 索引字段有变化时按修改后的完整记录重新索引
+            CsMessage updated = selectCsMessageByMessageId(csMessage.getMessageId());
+            if (updated != null)
+            {
+                messageSearchIndex.index(Collections.singletonList(updated));
+            }
+        }
+        return rows;
     }
 
     /**
@@ -147,7 +348,43 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public int deleteCsMessageByMessageIds(Long[] messageIds)
     {
-        return csMessageMapper.deleteCsMessageByMessageIds(messageIds);
+        Map<Long, String> fileUrls = selectFileUrls(Arrays.asList(messageIds));
+        // 按写入的表分组，每组一条语句
+        Map<List<String>, List<Long>> groups = new LinkedHashMap<List<String>, List<Long>>();
+        for (Long messageId : messageIds)
+        {
+            groups.computeIfAbsent(writeTables(messageId), k -> new ArrayList<Long>()).add(messageId);
+        }
+        int rows = 0;
+        for (Map.Entry<List<String>, List<Long>> group : groups.entrySet())
+        {
+            int groupRows = 0;
+            for (String table : group.getKey())
+            {
+                groupRows = Math.max(groupRows, csMessageMapper.deleteCsMessageByMessageIds(table, group.getValue()));
+            }
+            rows += groupRows;
+        }
+        if (rows < messageIds.length)
+        {
+            // 其余消息可能在已压缩的会话中
+            for (Long messageId : messageIds)
+            {
+                rows += writeCompacted(messageId, table -> csMessageMapper.deleteCsMessageByMessageId(table, messageId));
+            }
+        }
+        messageSearchIndex.delete(Arrays.asList(messageIds));
+        if (rows > 0)
+        {
+            // 部分删除时只释放确实已删除的消息引用的文件
+            fileUrls.forEach((messageId, fileUrl) -> {
+                if (selectCsMessageByMessageId(messageId) == null)
+                {
+                    chatFileStorage.release(fileUrl);
+                }
+            });
+        }
+        return rows;
     }
 
     /**
@@ -159,7 +396,14 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public int deleteCsMessageByMessageId(Long messageId)
     {
-        return csMessageMapper.deleteCsMessageByMessageId(messageId);
+        Map<Long, String> fileUrls = selectFileUrls(Collections.singletonList(messageId));
+        int rows = writeByMessageId(messageId, table -> csMessageMapper.deleteCsMessageByMessageId(table, messageId));
+        messageSearchIndex.delete(Collections.singletonList(messageId));
+        if (rows > 0)
+        {
+            fileUrls.values().forEach(chatFileStorage::release);
+        }
+        return rows;
     }
 
     /**
@@ -189,7 +433,7 @@ public class CsMessageServiceImpl implements ICsMessageService
         message.setIsRecall("0");
         message.setCreateTime(DateUtils.getNowDate());
         
-        int result = csMessageMapper.insertCsMessage(message);
+        int result = saveMessage(message);
         if (result > 0)
         {
             return message;
@@ -231,7 +475,19 @@ public class CsMessageServiceImpl implements ICsMessageService
         message.setIsRecall("0");
         message.setCreateTime(DateUtils.getNowDate());
         
-        int result = csMessageMapper.insertCsMessage(message);
+        chatFileStorage.acquire(fileUrl);
+        int result = 0;
+        try
+        {
+            result = saveMessage(message);
+        }
+        finally
+        {
+            if (result == 0)
+            {
+                chatFileStorage.release(fileUrl);
+            }
+        }
         if (result > 0)
         {
             return message;
@@ -239,6 +495,51 @@ public class CsMessageServiceImpl implements ICsMessageService
         return null;
     }
 
+    /**
+     * 写入消息并记录写入延迟，客服消息同时计入首次响应时长
+     * 
+     * @param message 消息记录
+     * @return 结果
+     */
+    private int saveMessage(CsMessage message)
+    {
+        long startNanos = System.nanoTime();
+        int result = insertIntoShard(message);
+        csMetricsRegistry.recordSince(CsMetricsRegistry.DB_WRITE, startNanos);
+        if (result > 0 && "2".equals(message.getSenderType()))
+        {
+            csMetricsRegistry.agentReplied(message.getConversationId());
+        }
+        return result;
+    }
+
+    /**
+     * 分配消息ID并写入会话所在分片
+     * 
+     * @param message 消息记录
+     * @return 结果
+     */
+    private int insertIntoShard(CsMessage message)
+    {
+        Route route = messageShardRouter.route(message.getConversationId());
+        message.setMessageId(messageShardRouter.nextId(message.getConversationId()));
+        message.getParams().put(TABLE_PARAM, route.getInsertTable());
+        int rows;
+        try
+        {
+            rows = csMessageMapper.insertCsMessage(message);
+        }
+        finally
+        {
+            message.getParams().remove(TABLE_PARAM);
+        }
+        if (rows > 0)
+        {
+            messageSearchIndex.index(Collections.singletonList(message));
+        }
+        return rows;
+    }
+
     /**
      * 标记消息为已读
      * 
@@ -248,7 +549,8 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public int markMessageAsRead(Long messageId)
     {
-        return csMessageMapper.markMessageAsRead(messageId, DateUtils.getNowDate());
+        Date readTime = DateUtils.getNowDate();
+        return writeByMessageId(messageId, table -> csMessageMapper.markMessageAsRead(table, messageId, readTime));
     }
 
     /**
@@ -261,7 +563,27 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public int markMessagesAsReadByConversation(Long conversationId, String senderType)
     {
-        return csMessageMapper.markMessagesAsReadByConversation(conversationId, senderType, DateUtils.getNowDate());
+        Date readTime = DateUtils.getNowDate();
+        int rows = markMessagesAsRead(conversationId, senderType, readTime);
+        CsMessageTranscript transcript = messageTranscriptManager.selectTranscript(conversationId);
+        if (transcript != null && messageTranscriptManager.readMessages(transcript).stream()
+                .anyMatch(m -> "0".equals(m.getIsRead()) && StringUtils.equals(senderType, m.getSenderType())))
+        {
+            messageTranscriptManager.restore(conversationId);
+            rows = markMessagesAsRead(conversationId, senderType, readTime);
+            messageTranscriptManager.compact(conversationId);
+        }
+        return rows;
+    }
+
+    private int markMessagesAsRead(Long conversationId, String senderType, Date readTime)
+    {
+        int rows = 0;
+        for (String table : messageShardRouter.route(conversationId).getWriteTables())
+        {
+            rows = Math.max(rows, csMessageMapper.markMessagesAsReadByConversation(table, conversationId, senderType, readTime));
+        }
+        return rows;
     }
 
     /**
@@ -273,7 +595,8 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public int recallMessage(Long messageId)
     {
-        return csMessageMapper.recallMessage(messageId, DateUtils.getNowDate());
+        Date recallTime = DateUtils.getNowDate();
+        return writeByMessageId(messageId, table -> csMessageMapper.recallMessage(table, messageId, recallTime));
     }
 
     /**
@@ -286,7 +609,9 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public int countUnreadMessagesByConversation(Long conversationId, String senderType)
     {
-        return csMessageMapper.countUnreadMessagesByConversation(conversationId, senderType);
+        int count = csMessageMapper.countUnreadMessagesByConversation(messageShardRouter.route(conversationId).getReadTable(), conversationId, senderType);
+        return count + (int) compactedMessages(conversationId).stream()
+                .filter(m -> "0".equals(m.getIsRead()) && StringUtils.equals(senderType, m.getSenderType())).count();
     }
 
     /**
@@ -298,7 +623,13 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public CsMessage selectLastMessageByConversationId(Long conversationId)
     {
-        return csMessageMapper.selectLastMessageByConversationId(conversationId);
+        CsMessage message = csMessageMapper.selectLastMessageByConversationId(messageShardRouter.route(conversationId).getReadTable(), conversationId);
+        if (message != null)
+        {
+            return message;
+        }
+        List<CsMessage> last = messageTranscriptManager.readPage(messageTranscriptManager.selectTranscript(conversationId), 0, 1);
+        return last.isEmpty() ? null : last.get(0);
     }
 
     /**
@@ -310,7 +641,9 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public int countMessagesByConversationId(Long conversationId)
     {
-        return csMessageMapper.countMessagesByConversationId(conversationId);
+        int count = csMessageMapper.countMessagesByConversationId(messageShardRouter.route(conversationId).getReadTable(), conversationId);
+        CsMessageTranscript transcript = messageTranscriptManager.selectTranscript(conversationId);
+        return transcript != null ? count + transcript.getMessageCount() : count;
     }
 
     /**
@@ -323,7 +656,9 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public int countMessagesByType(Long conversationId, String messageType)
     {
-        return csMessageMapper.countMessagesByType(conversationId, messageType);
+        int count = csMessageMapper.countMessagesByType(messageShardRouter.route(conversationId).getReadTable(), conversationId, messageType);
+        return count + (int) compactedMessages(conversationId).stream()
+                .filter(m -> StringUtils.equals(messageType, m.getMessageType())).count();
     }
 
     /**
@@ -337,21 +672,333 @@ public class CsMessageServiceImpl implements ICsMessageService
     @Override
     public List<CsMessage> selectMessagesByTimeRange(Long conversationId, Date startTime, Date endTime)
     {
-        return csMessageMapper.selectMessagesByTimeRange(conversationId, startTime, endTime);
+        String table = messageShardRouter.route(conversationId).getReadTable();
+        List<CsMessage> list = csMessageMapper.selectMessagesByTimeRange(table, conversationId, startTime, endTime);
+        List<CsMessage> compacted = new ArrayList<CsMessage>();
+        for (CsMessage message : compactedMessages(conversationId))
+        {
+            if (!message.getSendTime().before(startTime) && !message.getSendTime().after(endTime))
+            {
+                compacted.add(message);
+            }
+        }
+        return withHistory(messageArchiveManager.selectArchivedMessages(conversationId, startTime, endTime), compacted, list);
     }
 
     /**
-     * 清理历史消息
+     * 在后台把历史消息归档后清理
      * 
      * @param beforeDays 保留天数
-     * @return 删除的消息数量
      */
     @Override
-    public int cleanHistoryMessages(Integer beforeDays)
+    public void cleanHistoryMessages(Integer beforeDays)
+    {
+        messageRetentionTask.start(beforeDays);
+    }
+
+    /**
+     * 会话中已压缩的未删除消息
+     */
+    private List<CsMessage> compactedMessages(Long conversationId)
+    {
+        return messageTranscriptManager.readMessages(messageTranscriptManager.selectTranscript(conversationId));
+    }
+
+    /**
+     * 按 归档、压缩记录、消息表 的顺序合并，任务中断或并发恢复时同一条消息可能出现在多处，以较新的一处为准
+     * 
+     * @param archived 归档消息，按发送时间升序
+     * @param compacted 压缩记录中的消息，按发送时间升序
+     * @param live 消息表中的消息，按发送时间升序
+     * @return 消息记录集合
+     */
+    private List<CsMessage> withHistory(List<CsMessage> archived, List<CsMessage> compacted, List<CsMessage> live)
+    {
+        if (archived.isEmpty() && compacted.isEmpty())
+        {
+            return live;
+        }
+        Set<Long> seen = new HashSet<Long>();
+        for (CsMessage message : live)
+        {
+            seen.add(message.getMessageId());
+        }
+        List<CsMessage> newer = new ArrayList<CsMessage>();
+        for (CsMessage message : compacted)
+        {
+            if (seen.add(message.getMessageId()))
+            {
+                newer.add(message);
+            }
+        }
+        List<CsMessage> list = new ArrayList<CsMessage>();
+        for (CsMessage message : archived)
+        {
+            if (seen.add(message.getMessageId()))
+            {
+                list.add(message);
+            }
+        }
+        list.addAll(newer);
+        list.addAll(live);
+        return list;
+    }
+
+    /**
+     * 通过全文索引查询消息列表
+     * 
+     * 索引命中后回表读取，按原 like 条件和索引外的条件（已读、撤回）校验，不满足的丢弃，因此一页可能不足 pageSize 条；
+     * 总数为索引命中数。关键字只包含标点等无法检索的字符时返回null，由调用方走数据库查询。
+     * 
+     * @param csMessage 查询条件
+     * @return 消息记录集合
+     */
+    private List<CsMessage> searchCsMessageList(CsMessage csMessage)
+    {
+        MessageSearchQuery query = new MessageSearchQuery();
+        query.setKeyword(csMessage.getContent());
+        query.setSenderName(csMessage.getSenderName());
+        query.setConversationId(csMessage.getConversationId());
+        query.setSenderType(StringUtils.isNotEmpty(csMessage.getSenderType()) ? csMessage.getSenderType() : null);
+        query.setSenderId(csMessage.getSenderId());
+        query.setMessageType(StringUtils.isNotEmpty(csMessage.getMessageType()) ? csMessage.getMessageType() : null);
+        query.setReplyToId(csMessage.getReplyToId());
+        // 与数据库查询一致按天比较，结束日期包含当天
+        Date beginDay = DateUtils.parseDate(csMessage.getParams().get("beginTime"));
+        if (beginDay != null)
+        {
+            query.setBeginTime(DateUtils.truncate(beginDay, Calendar.DAY_OF_MONTH).getTime());
+        }
+        Date endDay = DateUtils.parseDate(csMessage.getParams().get("endTime"));
+        if (endDay != null)
+        {
+            query.setEndTime(DateUtils.addDays(DateUtils.truncate(endDay, Calendar.DAY_OF_MONTH), 1).getTime());
+        }
+        Page<Object> page = PageHelper.getLocalPage();
+        boolean paged = page != null && page.getPageSize() > 0;
+        MessageSearchResult result = messageSearchIndex.search(query, paged ? (int) page.getStartRow() : 0,
+                paged ? page.getPageSize() : Integer.MAX_VALUE);
+        if (result == null)
+        {
+            return null;
+        }
+        PageHelper.clearPage();
+        List<CsMessage> list = new ArrayList<CsMessage>();
+        for (CsMessage message : selectSearchHits(result.getHits()))
+        {
+            if (matchesFilter(csMessage, message))
+            {
+                String highlight = MessageHighlighter.snippet(message.getContent(), csMessage.getContent());
+                if (highlight != null)
+                {
+                    message.getParams().put(HIGHLIGHT_PARAM, highlight);
+                }
+                list.add(message);
+            }
+        }
+        if (!paged)
+        {
+            return list;
+        }
+        Page<CsMessage> pageResult = new Page<CsMessage>(page.getPageNum(), page.getPageSize());
+        pageResult.setTotal(result.getTotal());
+        pageResult.addAll(list);
+        return pageResult;
+    }
+
+    /**
+     * 按命中顺序读取消息，消息表中没有的再到所在会话的压缩记录中查找
+     */
+    private List<CsMessage> selectSearchHits(List<MessageSearchResult.Hit> hits)
+    {
+        Map<String, List<Long>> byTable = new LinkedHashMap<String, List<Long>>();
+        for (MessageSearchResult.Hit hit : hits)
+        {
+            Route route = messageShardRouter.routeByMessageId(hit.getMessageId());
+            for (String table : route != null ? Collections.singletonList(route.getReadTable()) : messageShardRouter.distinctTables())
+            {
+                byTable.computeIfAbsent(table, k -> new ArrayList<Long>()).add(hit.getMessageId());
+            }
+        }
+        Map<Long, CsMessage> found = new HashMap<Long, CsMessage>();
+        for (Map.Entry<String, List<Long>> group : byTable.entrySet())
+        {
+            for (CsMessage message : csMessageMapper.selectCsMessageByMessageIds(group.getKey(), group.getValue()))
+            {
+                found.putIfAbsent(message.getMessageId(), message);
+            }
+        }
+        Map<Long, Set<Long>> missing = new LinkedHashMap<Long, Set<Long>>();
+        for (MessageSearchResult.Hit hit : hits)
+        {
+            if (!found.containsKey(hit.getMessageId()))
+            {
+                missing.computeIfAbsent(hit.getConversationId(), k -> new HashSet<Long>()).add(hit.getMessageId());
+            }
+        }
+        for (Map.Entry<Long, Set<Long>> group : missing.entrySet())
+        {
+            for (CsMessage message : compactedMessages(group.getKey()))
+            {
+                if (group.getValue().contains(message.getMessageId()))
+                {
+                    found.put(message.getMessageId(), message);
+                }
+            }
+        }
+        List<CsMessage> list = new ArrayList<CsMessage>(hits.size());
+        for (MessageSearchResult.Hit hit : hits)
+        {
+            CsMessage message = found.get(hit.getMessageId());
+            if (message != null)
+            {
+                list.add(message);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 按 selectCsMessageList 的条件校验索引命中的消息，内容和发送者名称与 like 一样按子串不区分大小写匹配
+     */
+    private boolean matchesFilter(CsMessage filter, CsMessage message)
+    {
+        return (StringUtils.isEmpty(filter.getContent()) || StringUtils.containsIgnoreCase(message.getContent(), filter.getContent()))
+                && (StringUtils.isEmpty(filter.getSenderName()) || StringUtils.containsIgnoreCase(message.getSenderName(), filter.getSenderName()))
+                && (filter.getConversationId() == null || filter.getConversationId().equals(message.getConversationId()))
+                && (StringUtils.isEmpty(filter.getSenderType()) || filter.getSenderType().equals(message.getSenderType()))
+                && (filter.getSenderId() == null || filter.getSenderId().equals(message.getSenderId()))
+                && (StringUtils.isEmpty(filter.getMessageType()) || filter.getMessageType().equals(message.getMessageType()))
+                && (StringUtils.isEmpty(filter.getIsRead()) || filter.getIsRead().equals(message.getIsRead()))
+                && (StringUtils.isEmpty(filter.getIsRecall()) || filter.getIsRecall().equals(message.getIsRecall()))
+                && (filter.getReplyToId() == null || filter.getReplyToId().equals(message.getReplyToId()));
+    }
+
+    /**
+     * 在指定表上查询消息列表
+     */
+    private List<CsMessage> selectListFromTable(CsMessage csMessage, String table)
+    {
+        csMessage.getParams().put(TABLE_PARAM, table);
+        try
+        {
+            return csMessageMapper.selectCsMessageList(csMessage);
+        }
+        finally
+        {
+            csMessage.getParams().remove(TABLE_PARAM);
+        }
+    }
+
+    /**
+     * 在所有分片上查询并按发送时间倒序合并，迁移中同时存在于两张表的消息只保留一条。
+     * 当前线程设置了分页时每张表取前 pageNum * pageSize 条再截取，总数为各表之和（迁移期间可能略大）。
+     * 
+     * @param tables 分片表
+     * @param query 单表查询
+     * @return 消息记录集合
+     */
+    private List<CsMessage> selectFromAllTables(List<String> tables, Function<String, List<CsMessage>> query)
+    {
+        Page<Object> page = PageHelper.getLocalPage();
+        PageHelper.clearPage();
+        boolean paged = page != null && page.getPageSize() > 0;
+        Map<Long, CsMessage> merged = new LinkedHashMap<Long, CsMessage>();
+        long total = 0;
+        for (String table : tables)
+        {
+            if (paged)
+            {
+                PageHelper.startPage(1, page.getPageNum() * page.getPageSize());
+            }
+            List<CsMessage> rows = query.apply(table);
+            total += rows instanceof Page ? ((Page<?>) rows).getTotal() : rows.size();
+            for (CsMessage row : rows)
+            {
+                merged.putIfAbsent(row.getMessageId(), row);
+            }
+        }
+        List<CsMessage> list = new ArrayList<CsMessage>(merged.values());
+        list.sort(Comparator.comparing(CsMessage::getSendTime, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(CsMessage::getMessageId, Comparator.reverseOrder()));
+        if (!paged)
+        {
+            return list;
+        }
+        Page<CsMessage> result = new Page<CsMessage>(page.getPageNum(), page.getPageSize());
+        result.setTotal(total);
+        int fromIndex = (int) Math.min(page.getStartRow(), list.size());
+        result.addAll(list.subList(fromIndex, Math.min(fromIndex + page.getPageSize(), list.size())));
+        return result;
+    }
+
+    /**
+     * 查询未删除消息引用的文件地址
+     * 
+     * @param messageIds 消息ID集合
+     * @return 消息ID到文件地址
+     */
+    private Map<Long, String> selectFileUrls(List<Long> messageIds)
+    {
+        Map<Long, String> fileUrls = new LinkedHashMap<Long, String>();
+        for (Long messageId : messageIds)
+        {
+            CsMessage message = selectCsMessageByMessageId(messageId);
+            if (message != null && StringUtils.isNotEmpty(message.getFileUrl()))
+            {
+                fileUrls.put(messageId, message.getFileUrl());
+            }
+        }
+        return fileUrls;
+    }
+
+    /**
+     * 按消息ID更新，迁移中的槽位依次写源表和目标表，历史ID写所有表，消息表中没有时再查找压缩记录
+     * 
+     * @param messageId 消息ID
+     * @param update 单表更新
+     * @return 结果
+     */
+    private int writeByMessageId(Long messageId, Function<String, Integer> update)
+    {
+        int rows = 0;
+        for (String table : writeTables(messageId))
+        {
+            rows = Math.max(rows, update.apply(table));
+        }
+        return rows > 0 ? rows : writeCompacted(messageId, update);
+    }
+
+    /**
+     * 修改已压缩会话中的消息：恢复会话后修改，再重新压缩
+     * 
+     * @param messageId 消息ID
+     * @param update 单表更新
+     * @return 结果，消息不在压缩记录中时为0
+     */
+    private int writeCompacted(Long messageId, Function<String, Integer> update)
+    {
+        Long conversationId = messageTranscriptManager.findConversationId(messageId);
+        if (conversationId == null)
+        {
+            return 0;
+        }
+        messageTranscriptManager.restore(conversationId);
+        int rows = 0;
+        for (String table : writeTables(messageId))
+        {
+            rows = Math.max(rows, update.apply(table));
+        }
+        messageTranscriptManager.compact(conversationId);
+        return rows;
+    }
+
+    /**
+     * 消息ID对应的写入表
+     */
+    private List<String> writeTables(Long messageId)
     {
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_MONTH, -beforeDays);
-        Date beforeTime = calendar.getTime();
-        return csMessageMapper.deleteMessagesBefore(beforeTime);
+        Route route = messageShardRouter.routeByMessageId(messageId);
+        return route != null ? route.getWriteTables() : messageShardRouter.allTables();
     }
 }
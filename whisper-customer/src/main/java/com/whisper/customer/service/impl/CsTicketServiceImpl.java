@@ -0,0 +1,310 @@
+package com.whisper.customer.service.impl;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import com.whisper.common.exception.ServiceException;
+import com.whisper.common.utils.DateUtils;
+import com.whisper.common.utils.SecurityUtils;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.uuid.IdUtils;
+import com.whisper.customer.domain.CsTicket;
+import com.whisper.customer.domain.CsTicketLog;
+import com.whisper.customer.mapper.CsTicketLogMapper;
+import com.whisper.customer.mapper.CsTicketMapper;
+import com.whisper.customer.service.ICsTicketService;
+import com.whisper.customer.sla.TicketSlaScheduler;
+
+/**
+ * 工单系统表 服务层实现
+ *
+ * @author whisper
+ */
+@Service
+public class CsTicketServiceImpl implements ICsTicketService
+{
+    @Autowired
+    private CsTicketMapper csTicketMapper;
+
+    @Autowired
+    private CsTicketLogMapper csTicketLogMapper;
+
+    @Autowired
+    private TicketSlaScheduler ticketSlaScheduler;
+
+    /**
+     * 查询工单
+     *
+     * @param ticketId 工单主键
+     * @return 工单
+     */
+    @Override
+    public CsTicket selectCsTicketByTicketId(Long ticketId)
+    {
+        return csTicketMapper.selectCsTicketByTicketId(ticketId);
+    }
+
+    /**
+     * 查询工单列表
+     *
+     * @param csTicket 工单
+     * @return 工单
+     */
+    @Override
+    public List<CsTicket> selectCsTicketList(CsTicket csTicket)
+    {
+        return csTicketMapper.selectCsTicketList(csTicket);
+    }
+
+    /**
+     * 查询工单处理记录
+     *
+     * @param ticketId 工单ID
+     * @return 处理记录集合
+     */
+    @Override
+    public List<CsTicketLog> selectCsTicketLogByTicketId(Long ticketId)
+    {
+        return csTicketLogMapper.selectCsTicketLogByTicketId(ticketId);
+    }
+
+    /**
+     * 新增工单
+     *
+     * @param csTicket 工单
+     * @return 结果
+     */
+    @Override
+    @Transactional
+    public int insertCsTicket(CsTicket csTicket)
+    {
+        if (StringUtils.isEmpty(csTicket.getTicketNo()))
+        {
+            csTicket.setTicketNo(generateTicketNo());
+        }
+        if (StringUtils.isEmpty(csTicket.getPriority()))
+        {
+            csTicket.setPriority("2"); // 默认中等优先级
+        }
+        if (StringUtils.isEmpty(csTicket.getStatus()))
+        {
+            csTicket.setStatus("0"); // 默认待处理
+        }
+        Date now = DateUtils.getNowDate();
+        if (csTicket.getDueTime() == null)
+        {
+            csTicket.setDueTime(new Date(now.getTime() + defaultSlaMillis(csTicket.getPriority())));
+        }
+        csTicket.setDueTime(TicketSlaScheduler.truncate(csTicket.getDueTime()));
+        csTicket.setSlaTime(isOpen(csTicket.getStatus()) ? csTicket.getDueTime() : null);
+        csTicket.setCreateTime(now);
+        int rows = csTicketMapper.insertCsTicket(csTicket);
+        if (rows > 0)
+        {
+            csTicketLogMapper.insertCsTicketLog(buildLog(csTicket.getTicketId(), "create", null, csTicket.getStatus(), csTicket.getTitle()));
+            ticketSlaScheduler.schedule(csTicket);
+        }
+        return rows;
+    }
+
+    /**
+     * 修改工单，截止时间变更或重新打开时重新排期，改为解决或关闭时取消排期
+     *
+     * @param csTicket 工单
+     * @return 结果
+     */
+    @Override
+    @Transactional
+    public int updateCsTicket(CsTicket csTicket)
+    {
+        CsTicket current = checkTicketExists(csTicket.getTicketId());
+        String status = StringUtils.isNotEmpty(csTicket.getStatus()) ? csTicket.getStatus() : current.getStatus();
+        csTicket.setSlaTime(null);
+        if (csTicket.getDueTime() != null)
+        {
+            csTicket.setDueTime(TicketSlaScheduler.truncate(csTicket.getDueTime()));
+        }
+        if (isOpen(status))
+        {
+            Date dueTime = csTicket.getDueTime() != null ? csTicket.getDueTime() : current.getDueTime();
+            boolean dueChanged = current.getDueTime() == null || dueTime.getTime() != current.getDueTime().getTime();
+            if (dueTime != null && (dueChanged || !isOpen(current.getStatus())))
+            {
+                csTicket.setSlaTime(dueTime);
+            }
+        }
+        csTicket.setUpdateTime(DateUtils.getNowDate());
+        int rows = csTicketMapper.updateCsTicket(csTicket);
+        if (rows > 0)
+        {
+            if (!isOpen(status))
+            {
+                csTicketMapper.clearTicketSla(csTicket.getTicketId());
+                ticketSlaScheduler.cancel(csTicket.getTicketId());
+            }
+            else if (csTicket.getSlaTime() != null)
+            {
+                ticketSlaScheduler.schedule(csTicket);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 分配工单
+     *
+     * @param ticketId 工单ID
+     * @param assignedTo 处理人ID
+     * @return 结果
+     */
+    @Override
+    @Transactional
+    public int assignTicket(Long ticketId, Long assignedTo)
+    {
+        CsTicket current = checkTicketExists(ticketId);
+        if (!isOpen(current.getStatus()))
+        {
+            throw new ServiceException("工单已解决或关闭，不允许分配");
+        }
+        CsTicket ticket = new CsTicket();
+        ticket.setTicketId(ticketId);
+        ticket.setAssignedTo(assignedTo);
+        ticket.setStatus("1");
+        ticket.setUpdateTime(DateUtils.getNowDate());
+        int rows = csTicketMapper.updateCsTicket(ticket);
+        if (rows > 0)
+        {
+            csTicketLogMapper.insertCsTicketLog(buildLog(ticketId, "assign",
+                    current.getAssignedTo() == null ? null : String.valueOf(current.getAssignedTo()), String.valueOf(assignedTo), null));
+        }
+        return rows;
+    }
+
+    /**
+     * 解决工单
+     *
+     * @param ticketId 工单ID
+     * @param content 处理内容
+     * @return 结果
+     */
+    @Override
+    @Transactional
+    public int resolveTicket(Long ticketId, String content)
+    {
+        CsTicket current = checkTicketExists(ticketId);
+        int rows = csTicketMapper.resolveTicket(ticketId, DateUtils.getNowDate());
+        if (rows > 0)
+        {
+            csTicketLogMapper.insertCsTicketLog(buildLog(ticketId, "resolve", current.getStatus(), "3", content));
+            ticketSlaScheduler.cancel(ticketId);
+        }
+        return rows;
+    }
+
+    /**
+     * 关闭工单
+     *
+     * @param ticketId 工单ID
+     * @param content 处理内容
+     * @return 结果
+     */
+    @Override
+    @Transactional
+    public int closeTicket(Long ticketId, String content)
+    {
+        CsTicket current = checkTicketExists(ticketId);
+        int rows = csTicketMapper.closeTicket(ticketId, DateUtils.getNowDate());
+        if (rows > 0)
+        {
+            csTicketLogMapper.insertCsTicketLog(buildLog(ticketId, "close", current.getStatus(), "4", content));
+            ticketSlaScheduler.cancel(ticketId);
+        }
+        return rows;
+    }
+
+    /**
+     * 批量删除工单
+     *
+     * @param ticketIds 需要删除的工单主键
+     * @return 结果
+     */
+    @Override
+    @Transactional
+    public int deleteCsTicketByTicketIds(Long[] ticketIds)
+    {
+        int rows = csTicketMapper.deleteCsTicketByTicketIds(ticketIds);
+        for (Long ticketId : ticketIds)
+        {
+            ticketSlaScheduler.cancel(ticketId);
+        }
+        return rows;
+    }
+
+    /**
+     * 生成工单编号
+     *
+     * @return 工单编号
+     */
+    @Override
+    public String generateTicketNo()
+    {
+        return "TK" + DateUtils.dateTimeNow("yyyyMMddHHmmss") + IdUtils.fastSimpleUUID().substring(0, 6);
+    }
+
+    /**
+     * 按优先级计算默认处理时限（1低72小时 2中24小时 3高8小时 4紧急2小时）
+     */
+    private long defaultSlaMillis(String priority)
+    {
+        switch (priority)
+        {
+            case "1":
+                return TimeUnit.HOURS.toMillis(72);
+            case "3":
+                return TimeUnit.HOURS.toMillis(8);
+            case "4":
+                return TimeUnit.HOURS.toMillis(2);
+            default:
+                return TimeUnit.HOURS.toMillis(24);
+        }
+    }
+
+    /**
+     * 是否为未完结状态（0待处理 1处理中 2待回复）
+     */
+    private boolean isOpen(String status)
+    {
+        return "0".equals(status) || "1".equals(status) || "2".equals(status);
+    }
+
+    private CsTicket checkTicketExists(Long ticketId)
+    {
+        CsTicket ticket = csTicketMapper.selectCsTicketByTicketId(ticketId);
+        if (ticket == null)
+        {
+            throw new ServiceException("工单不存在");
+        }
+        return ticket;
+    }
+
+    private CsTicketLog buildLog(Long ticketId, String actionType, String oldValue, String newValue, String content)
+    {
+        Date now = DateUtils.getNowDate();
+        CsTicketLog ticketLog = new CsTicketLog();
+        ticketLog.setTicketId(ticketId);
+        ticketLog.setActionType(actionType);
+        ticketLog.setActionUser(SecurityUtils.getUserId());
+        ticketLog.setActionUserName(SecurityUtils.getUsername());
+        ticketLog.setOldValue(oldValue);
+        ticketLog.setNewValue(newValue);
+        ticketLog.setContent(content);
+        ticketLog.setActionTime(now);
+        ticketLog.setTimeSpent(0);
+        ticketLog.setCreateBy(SecurityUtils.getUsername());
+        ticketLog.setCreateTime(now);
+        return ticketLog;
+    }
+}
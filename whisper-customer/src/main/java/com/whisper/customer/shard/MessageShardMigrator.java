@@ -0,0 +1,337 @@
+package com.whisper.customer.shard;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.exception.ServiceException;
+import com.whisper.common.utils.uuid.IdUtils;
+import com.whisper.customer.domain.CsMessageShardSlot;
+import com.whisper.customer.mapper.CsMessageShardMapper;
+import com.whisper.customer.transcript.MessageCompactionTask;
+
+/**
+ * 消息在线重新分片
+ *
+ * 槽位 s 的目标表为 cs_message_(s % 分片数)，需要移动的槽位按以下阶段迁移，服务不停：
+ * 1. 创建分片表并登记迁移目标，等待各节点刷新映射，此后新消息写入目标表，更新先源表后目标表；
+ * 2. 按消息ID分批复制，每批先加共享锁读取源表，与先写源表的更新互斥，复制结果不会落后于源表；
+ * 3. 切换槽位到目标表并等待各节点刷新；
+ * 4. 逐个槽位检查涉及的所有表，把不在所属表中的残留消息补复制后删除。
+ * 迁移期间同时持有归档锁和压缩锁，切换后不会有消息被物理删除，补复制不会恢复已删除的消息。
+ * 中断后以相同分片数重新执行即可继续。
+ *
+ * @author whisper
+ */
+@Component
+public class MessageShardMigrator
+{
+    private static final Logger log = LoggerFactory.getLogger(MessageShardMigrator.class);
+
+    /** 最大分片数 */
+    public static final int MAX_SHARD_COUNT = 64;
+
+    /** 每批复制或删除的行数 */
+    private static final int BATCH_SIZE = 1000;
+
+    /** 映射变更后等待各节点生效的时间（毫秒），覆盖定期刷新间隔 */
+    private static final long GRACE_MILLIS = TimeUnit.SECONDS.toMillis(MessageShardRouter.REFRESH_INTERVAL_SECONDS + 5);
+
+    /** 迁移锁有效期（秒），每处理一个槽位续期 */
+    private static final long LOCK_SECONDS = 600;
+
+    /** 迁移期间持有的锁：迁移锁、归档锁、压缩锁 */
+    private static final String[] LOCK_KEYS = { CacheConstants.MESSAGE_SHARD_LOCK_KEY, CacheConstants.MESSAGE_ARCHIVE_LOCK_KEY,
+            MessageCompactionTask.LOCK_KEY };
+
+    private final String nodeId = IdUtils.fastSimpleUUID();
+
+    private volatile boolean running;
+
+    private volatile String phase;
+
+    private volatile int shardCount;
+
+    private volatile int totalSlots;
+
+    private volatile int completedSlots;
+
+    private volatile Date startTime;
+
+    private volatile Date endTime;
+
+    private volatile String lastError;
+
+    private final LongAdder copiedRows = new LongAdder();
+
+    private final LongAdder deletedRows = new LongAdder();
+
+    @Autowired
+    private MessageShardRouter messageShardRouter;
+
+    @Autowired
+    private CsMessageShardMapper csMessageShardMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 在后台开始重新分片
+     *
+     * @param shardCount 分片数
+     */
+    public synchronized void reshard(int shardCount)
+    {
+        if (shardCount < 1 || shardCount > MAX_SHARD_COUNT)
+        {
+            throw new ServiceException("分片数需在1到" + MAX_SHARD_COUNT + "之间");
+        }
+        messageShardRouter.refresh();
+        for (int slot = 0; slot < MessageShardRouter.SLOT_COUNT; slot++)
+        {
+            String target = messageShardRouter.targetOf(slot);
+            if (target != null && !target.equals(shardTable(slot, shardCount)))
+            {
+                throw new ServiceException("存在未完成的迁移（目标表" + target + "），请以原分片数重新执行");
+            }
+        }
+        if (!tryLock(CacheConstants.MESSAGE_SHARD_LOCK_KEY))
+        {
+            throw new ServiceException("已有分片迁移在进行中");
+        }
+        // 归档和压缩会物理删除消息，迁移期间持有它们的锁，否则清理阶段补复制会把切换后删除的消息复制回来
+        if (!tryLock(CacheConstants.MESSAGE_ARCHIVE_LOCK_KEY))
+        {
+            releaseLock();
+            throw new ServiceException("消息归档正在进行中，请稍后重试");
+        }
+        if (!tryLock(MessageCompactionTask.LOCK_KEY))
+        {
+            releaseLock();
+            throw new ServiceException("会话消息压缩正在进行中，请稍后重试");
+        }
+        this.running = true;
+        this.shardCount = shardCount;
+        this.totalSlots = 0;
+        this.completedSlots = 0;
+        this.startTime = new Date();
+        this.endTime = null;
+        this.lastError = null;
+        copiedRows.reset();
+        deletedRows.reset();
+        Thread worker = new Thread(() -> run(shardCount), "message-reshard");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 迁移进度
+     */
+    public Map<String, Object> getStatus()
+    {
+        Map<String, Object> status = new LinkedHashMap<String, Object>();
+        status.put("running", running);
+        status.put("phase", phase);
+        status.put("shardCount", shardCount);
+        status.put("totalSlots", totalSlots);
+        status.put("completedSlots", completedSlots);
+        status.put("copiedRows", copiedRows.sum());
+        status.put("deletedRows", deletedRows.sum());
+        status.put("startTime", startTime);
+        status.put("endTime", endTime);
+        status.put("lastError", lastError);
+        status.put("distribution", messageShardRouter.getSlotDistribution());
+        return status;
+    }
+
+    private void run(int shardCount)
+    {
+        try
+        {
+            Set<String> involved = new LinkedHashSet<String>(messageShardRouter.distinctTables());
+            Map<Integer, String> moving = prepare(shardCount, involved);
+            awaitRefresh();
+
+            phase = "copy";
+            totalSlots = moving.size();
+            completedSlots = 0;
+            for (Map.Entry<Integer, String> entry : moving.entrySet())
+            {
+                copySlot(entry.getKey(), messageShardRouter.tableOf(entry.getKey()), entry.getValue());
+                completedSlots++;
+                renewLock();
+            }
+
+            phase = "switch";
+            for (Map.Entry<Integer, String> entry : moving.entrySet())
+            {
+                csMessageShardMapper.saveShardSlot(new CsMessageShardSlot(entry.getKey(), entry.getValue(), null));
+            }
+            awaitRefresh();
+
+            phase = "cleanup";
+            totalSlots = MessageShardRouter.SLOT_COUNT;
+            completedSlots = 0;
+            for (int slot = 0; slot < MessageShardRouter.SLOT_COUNT; slot++)
+            {
+                cleanupSlot(slot, involved);
+                completedSlots++;
+                renewLock();
+            }
+            phase = "done";
+            log.info("消息重新分片完成，分片数{}，复制{}条，删除{}条", shardCount, copiedRows.sum(), deletedRows.sum());
+        }
+        catch (Exception e)
+        {
+            lastError = e.getMessage();
+            log.error("消息重新分片失败，阶段{}", phase, e);
+        }
+        finally
+        {
+            running = false;
+            endTime = new Date();
+            releaseLock();
+        }
+    }
+
+    /**
+     * 创建分片表并登记需要移动的槽位
+     *
+     * @return 槽位 -> 目标表
+     */
+    private Map<Integer, String> prepare(int shardCount, Set<String> involved)
+    {
+        phase = "prepare";
+        for (int i = 0; i < shardCount; i++)
+        {
+            String table = MessageShardRouter.SHARD_TABLE_PREFIX + i;
+            csMessageShardMapper.createShardTable(table);
+            involved.add(table);
+        }
+        Map<Integer, String> moving = new LinkedHashMap<Integer, String>();
+        for (int slot = 0; slot < MessageShardRouter.SLOT_COUNT; slot++)
+        {
+            String table = messageShardRouter.tableOf(slot);
+            String desired = shardTable(slot, shardCount);
+            if (!desired.equals(table))
+            {
+                csMessageShardMapper.saveShardSlot(new CsMessageShardSlot(slot, table, desired));
+                moving.put(slot, desired);
+            }
+        }
+        return moving;
+    }
+
+    /**
+     * 把槽位的消息从源表复制到目标表
+     */
+    private void copySlot(int slot, String source, String target)
+    {
+        long lastId = 0;
+        List<Long> batch;
+        do
+        {
+            batch = copyBatch(slot, source, target, lastId);
+            if (!batch.isEmpty())
+            {
+                lastId = batch.get(batch.size() - 1);
+            }
+        }
+        while (batch.size() == BATCH_SIZE);
+    }
+
+    private List<Long> copyBatch(int slot, String source, String target, long lastId)
+    {
+        return transactionTemplate.execute(status -> {
+            List<Long> messageIds = csMessageShardMapper.selectSlotMessageIdsForShare(source, slot, lastId, BATCH_SIZE);
+            if (!messageIds.isEmpty())
+            {
+                copiedRows.add(csMessageShardMapper.copyMessages(source, target, messageIds));
+            }
+            return messageIds;
+        });
+    }
+
+    /**
+     * 槽位不在所属表中的残留消息（迁移前未生效节点的写入、中断的迁移）补复制后删除
+     */
+    private void cleanupSlot(int slot, Set<String> involved)
+    {
+        String owner = messageShardRouter.tableOf(slot);
+        for (String table : involved)
+        {
+            if (table.equals(owner))
+            {
+                continue;
+            }
+            copySlot(slot, table, owner);
+            int rows;
+            do
+            {
+                rows = csMessageShardMapper.deleteSlotMessages(table, slot, BATCH_SIZE);
+                deletedRows.add(rows);
+            }
+            while (rows == BATCH_SIZE);
+        }
+    }
+
+    /**
+     * 广播映射变更并等待各节点生效
+     */
+    private void awaitRefresh() throws InterruptedException
+    {
+        messageShardRouter.publishRefresh();
+        Thread.sleep(GRACE_MILLIS);
+        messageShardRouter.refresh();
+    }
+
+    private boolean tryLock(String key)
+    {
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key, nodeId, LOCK_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private void renewLock()
+    {
+        for (String key : LOCK_KEYS)
+        {
+            stringRedisTemplate.expire(key, LOCK_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void releaseLock()
+    {
+        for (String key : LOCK_KEYS)
+        {
+            try
+            {
+                if (nodeId.equals(stringRedisTemplate.opsForValue().get(key)))
+                {
+                    stringRedisTemplate.delete(key);
+                }
+            }
+            catch (Exception e)
+            {
+                log.warn("释放锁{}失败'{}'", key, e.getMessage());
+            }
+        }
+    }
+
+    private static String shardTable(int slot, int shardCount)
+    {
+        return MessageShardRouter.SHARD_TABLE_PREFIX + (slot % shardCount);
+    }
+}
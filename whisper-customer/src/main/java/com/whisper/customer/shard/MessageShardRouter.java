@@ -0,0 +1,328 @@
+package com.whisper.customer.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.exception.ServiceException;
+import com.whisper.customer.domain.CsMessageShardSlot;
+import com.whisper.customer.mapper.CsMessageShardMapper;
+
+/**
+ * 消息分片路由
+ *
+ * cs_message 按 conversation_id 取模划分为固定的 SLOT_COUNT 个槽位，每个槽位映射到一张物理表，未分配的槽位仍在
+ * cs_message。映射保存在 cs_message_shard_slot 并缓存在各节点，变更后广播刷新。槽位迁移期间新消息写入目标表，
+ * 更新先写源表再写目标表，查询合并两张表。
+ * 消息ID由号段分配，低位为槽位号，按ID的操作可以直接定位；分片前的历史ID不含槽位号，按ID操作时查询所有表。
+ *
+ * @author whisper
+ */
+@Component
+public class MessageShardRouter
+{
+    private static final Logger log = LoggerFactory.getLogger(MessageShardRouter.class);
+
+    /** 槽位数量，固定不变，重新分片只改变槽位到物理表的映射 */
+    public static final int SLOT_COUNT = 1024;
+
+    /** 消息ID中槽位号的位数 */
+    private static final int SLOT_BITS = 10;
+
+    /** 含槽位号的消息ID下限（号段从 2^30 开始），小于该值的是分片前的历史ID */
+    public static final long SHARDED_ID_MIN = 1L << 40;
+
+    /** 未分片的原始表 */
+    public static final String LEGACY_TABLE = "cs_message";
+
+    /** 分片表前缀 */
+    public static final String SHARD_TABLE_PREFIX = "cs_message_";
+
+    /** 映射变更通知 */
+    public static final String REFRESH_CHANNEL = CacheConstants.CACHE_EVICT_CHANNEL + "message_shard";
+
+    /** 映射定期刷新间隔（秒），用于兜底错过的通知 */
+    public static final int REFRESH_INTERVAL_SECONDS = 30;
+
+    /** 每次分配的号段长度 */
+    private static final int ID_STEP = 1000;
+
+    /** 槽位映射快照 */
+    private volatile Layout layout = new Layout(new String[SLOT_COUNT], new String[SLOT_COUNT]);
+
+    /** 当前号段中下一个可用序号 */
+    private long nextSeq;
+
+    /** 当前号段上限（包含） */
+    private long maxSeq = -1;
+
+    @Autowired
+    private CsMessageShardMapper csMessageShardMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @PostConstruct
+    public void init()
+    {
+        refresh();
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> refresh(), new ChannelTopic(REFRESH_CHANNEL));
+        scheduledExecutorService.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 从数据库重新加载槽位映射，失败时保留原映射
+     */
+    public void refresh()
+    {
+        try
+        {
+            String[] tables = new String[SLOT_COUNT];
+            String[] targets = new String[SLOT_COUNT];
+            for (CsMessageShardSlot slot : csMessageShardMapper.selectShardSlotList())
+            {
+                tables[slot.getSlotId()] = slot.getTableName();
+                targets[slot.getSlotId()] = slot.getTargetTable();
+            }
+            layout = new Layout(tables, targets);
+        }
+        catch (Exception e)
+        {
+            log.warn("加载消息分片映射失败'{}'", e.getMessage());
+        }
+    }
+
+    /**
+     * 通知所有节点重新加载映射
+     */
+    public void publishRefresh()
+    {
+        refresh();
+        try
+        {
+            stringRedisTemplate.convertAndSend(REFRESH_CHANNEL, "*");
+        }
+        catch (Exception e)
+        {
+            log.warn("发布消息分片映射变更失败'{}'", e.getMessage());
+        }
+    }
+
+    /**
+     * 会话所在槽位
+     */
+    public static int slotOf(Long conversationId)
+    {
+        if (conversationId == null)
+        {
+            throw new ServiceException("会话ID不能为空");
+        }
+        return (int) Math.floorMod(conversationId, (long) SLOT_COUNT);
+    }
+
+    /**
+     * 按会话路由
+     *
+     * @param conversationId 会话ID
+     * @return 路由
+     */
+    public Route route(Long conversationId)
+    {
+        return layout.route(slotOf(conversationId));
+    }
+
+    /**
+     * 按消息ID路由
+     *
+     * @param messageId 消息ID
+     * @return 路由，历史ID无法定位时为null
+     */
+    public Route routeByMessageId(Long messageId)
+    {
+        if (messageId == null || messageId < SHARDED_ID_MIN)
+        {
+            return null;
+        }
+        return layout.route((int) (messageId & (SLOT_COUNT - 1)));
+    }
+
+    /**
+     * 当前使用中的全部物理表，源表在前、迁移目标表在后，同一张表可能同时出现在两部分
+     */
+    public List<String> allTables()
+    {
+        return layout.allTables;
+    }
+
+    /**
+     * 当前使用中的不重复物理表
+     */
+    public List<String> distinctTables()
+    {
+        return layout.distinctTables;
+    }
+
+    /**
+     * 槽位当前所在表
+     */
+    public String tableOf(int slot)
+    {
+        return layout.route(slot).table;
+    }
+
+    /**
+     * 槽位迁移目标表，未迁移时为null
+     */
+    public String targetOf(int slot)
+    {
+        return layout.route(slot).target;
+    }
+
+    /**
+     * 为会话中的新消息生成ID
+     *
+     * @param conversationId 会话ID
+     * @return 消息ID
+     */
+    public long nextId(Long conversationId)
+    {
+        return (nextSeq() << SLOT_BITS) | slotOf(conversationId);
+    }
+
+    /**
+     * 各物理表承载的槽位数量
+     */
+    public Map<String, Integer> getSlotDistribution()
+    {
+        Map<String, Integer> distribution = new TreeMap<String, Integer>();
+        Layout current = layout;
+        for (int slot = 0; slot < SLOT_COUNT; slot++)
+        {
+            distribution.merge(current.route(slot).table, 1, Integer::sum);
+        }
+        return distribution;
+    }
+
+    private synchronized long nextSeq()
+    {
+        if (nextSeq > maxSeq)
+        {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("step", ID_STEP);
+            if (csMessageShardMapper.allocateIdSegment(params) == 0)
+            {
+                throw new ServiceException("消息ID号段未初始化");
+            }
+            maxSeq = ((Number) params.get("maxId")).longValue();
+            nextSeq = maxSeq - ID_STEP + 1;
+        }
+        return nextSeq++;
+    }
+
+    /**
+     * 槽位路由结果
+     */
+    public static class Route
+    {
+        private final String table;
+
+        private final String target;
+
+        private Route(String table, String target)
+        {
+            this.table = table;
+            this.target = target;
+        }
+
+        /**
+         * 新消息写入的表
+         */
+        public String getInsertTable()
+        {
+            return target != null ? target : table;
+        }
+
+        /**
+         * 更新需要写入的表，源表在前
+         */
+        public List<String> getWriteTables()
+        {
+            return target != null ? Arrays.asList(table, target) : Collections.singletonList(table);
+        }
+
+        /**
+         * 查询使用的表，迁移期间为两张表合并去重后的派生表
+         */
+        public String getReadTable()
+        {
+            if (target == null)
+            {
+                return table;
+            }
+            return "(select * from " + table + " union all select * from " + target
+                    + " t where not exists (select 1 from " + table + " s where s.message_id = t.message_id)) m";
+        }
+    }
+
+    /**
+     * 槽位映射的不可变快照
+     */
+    private static class Layout
+    {
+        private final Route[] routes = new Route[SLOT_COUNT];
+
+        private final List<String> allTables;
+
+        private final List<String> distinctTables;
+
+        private Layout(String[] tables, String[] targets)
+        {
+            Set<String> sources = new LinkedHashSet<String>();
+            Set<String> targetSet = new LinkedHashSet<String>();
+            for (int slot = 0; slot < SLOT_COUNT; slot++)
+            {
+                String table = tables[slot] != null ? tables[slot] : LEGACY_TABLE;
+                routes[slot] = new Route(table, targets[slot]);
+                sources.add(table);
+                if (targets[slot] != null)
+                {
+                    targetSet.add(targets[slot]);
+                }
+            }
+            List<String> all = new ArrayList<String>(sources);
+            all.addAll(targetSet);
+            Set<String> distinct = new LinkedHashSet<String>(all);
+            this.allTables = Collections.unmodifiableList(all);
+            this.distinctTables = Collections.unmodifiableList(new ArrayList<String>(distinct));
+        }
+
+        private Route route(int slot)
+        {
+            return routes[slot];
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.whisper.customer.sla;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import com.whisper.customer.domain.CsTicketLog;
+import com.whisper.customer.mapper.CsTicketLogMapper;
+
+/**
+ * 工单处理记录批量写入
+ *
+ * 记录先进入有界队列，每秒或积累到一批时以多行insert写入cs_ticket_log。
+ *
+ * @author whisper
+ */
+@Component
+public class TicketLogBatchWriter
+{
+    private static final Logger log = LoggerFactory.getLogger(TicketLogBatchWriter.class);
+
+    /** 队列容量 */
+    private static final int QUEUE_CAPACITY = 10000;
+
+    /** 单批最大条数 */
+    private static final int BATCH_SIZE = 200;
+
+    /** 刷新周期（毫秒） */
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final BlockingQueue<CsTicketLog> queue = new LinkedBlockingQueue<CsTicketLog>(QUEUE_CAPACITY);
+
+    @Autowired
+    private CsTicketLogMapper csTicketLogMapper;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @PostConstruct
+    public void init()
+    {
+        scheduledExecutorService.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交一条处理记录，队列已满时直接写入
+     *
+     * @param ticketLog 处理记录
+     */
+    public void submit(CsTicketLog ticketLog)
+    {
+        if (!queue.offer(ticketLog))
+        {
+            csTicketLogMapper.insertCsTicketLog(ticketLog);
+        }
+    }
+
+    /**
+     * 写出队列中的全部记录
+     */
+    @PreDestroy
+    public synchronized void flush()
+    {
+        try
+        {
+            List<CsTicketLog> batch = new ArrayList<CsTicketLog>(BATCH_SIZE);
+            while (queue.drainTo(batch, BATCH_SIZE) > 0)
+            {
+                csTicketLogMapper.batchInsertCsTicketLog(batch);
+                batch.clear();
+            }
+        }
+        catch (Exception e)
+        {
+            log.error("批量写入工单处理记录异常", e);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.whisper.customer.sla;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import com.alibaba.fastjson2.JSON;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.core.text.Convert;
+import com.whisper.common.utils.DateUtils;
+import com.whisper.common.utils.uuid.IdUtils;
+import com.whisper.customer.domain.CsTicket;
+import com.whisper.customer.domain.CsTicketLog;
+import com.whisper.customer.mapper.CsTicketMapper;
+import com.whisper.customer.websocket.ChatWebSocketHandler;
+
+/**
+ * 工单SLA定时器
+ *
+ * 工单按 ticket_id 取模划分为固定分区，各节点通过Redis租约均分持有；每个节点只按 sla_time
+ * 索引加载自己分区内即将到期的一个时间窗口放入延迟队列，到期后升级优先级并批量写入处理记录，
+ * 不做全表扫描。
+ *
+ * @author whisper
+ */
+@Component
+public class TicketSlaScheduler
+{
+    private static final Logger log = LoggerFactory.getLogger(TicketSlaScheduler.class);
+
+    /** 分区数量 */
+    public static final int PARTITION_COUNT = 16;
+
+    /** 预加载窗口（毫秒） */
+    private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /** 窗口加载周期（秒） */
+    private static final int LOAD_INTERVAL_SECONDS = 30;
+
+    /** 单次加载上限 */
+    private static final int LOAD_LIMIT = 5000;
+
+    /** 租约有效期（秒） */
+    private static final int LEASE_SECONDS = 30;
+
+    /** 租约续期周期（秒） */
+    private static final int RENEW_INTERVAL_SECONDS = 10;
+
+    /** 超时升级后再次检查的间隔（毫秒） */
+    private static final long ESCALATE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    /** 最低优先级 */
+    private static final int MIN_PRIORITY = 1;
+
+    /** 最高优先级 */
+    private static final int MAX_PRIORITY = 4;
+
+    /** 优先级为空或无法识别时按中等优先级处理 */
+    private static final int DEFAULT_PRIORITY = 2;
+
+    private static final String PARTITION_KEY = CacheConstants.TICKET_SLA_KEY + "partition:";
+
+    private static final String NODES_KEY = CacheConstants.TICKET_SLA_KEY + "nodes";
+
+    /** 当前节点标识 */
+    private final String nodeId = IdUtils.fastSimpleUUID();
+
+    /** 当前节点持有的分区 */
+    private final Set<Integer> ownedPartitions = ConcurrentHashMap.newKeySet();
+
+    private final DelayQueue<SlaTimer> queue = new DelayQueue<SlaTimer>();
+
+    /** 已排期的定时器（工单ID -> 定时器） */
+    private final Map<Long, SlaTimer> timers = new ConcurrentHashMap<Long, SlaTimer>();
+
+    private volatile boolean running = true;
+
+    private Thread worker;
+
+    @Autowired
+    private RedisTemplate<Object, Object> redisTemplate;
+
+    @Autowired
+    private CsTicketMapper csTicketMapper;
+
+    @Autowired
+    private TicketLogBatchWriter ticketLogBatchWriter;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @PostConstruct
+    public void init()
+    {
+        worker = new Thread(this::consume, "ticket-sla-timer");
+        worker.setDaemon(true);
+        worker.start();
+        scheduledExecutorService.scheduleWithFixedDelay(this::rebalance, 0, RENEW_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        scheduledExecutorService.scheduleWithFixedDelay(this::loadWindow, 1, LOAD_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy()
+    {
+        running = false;
+        if (worker != null)
+        {
+            worker.interrupt();
+        }
+        for (Integer partition : ownedPartitions)
+        {
+            releasePartition(partition);
+        }
+        try
+        {
+            redisTemplate.opsForZSet().remove(NODES_KEY, nodeId);
+        }
+        catch (Exception e)
+        {
+            log.warn("注销工单SLA节点失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 工单新增或变更后排期，不属于本节点或不在窗口内的由持有节点下次加载时处理
+     *
+     * @param ticket 工单（需包含ticketId与slaTime）
+     */
+    public void schedule(CsTicket ticket)
+    {
+        if (ticket.getTicketId() == null)
+        {
+            return;
+        }
+        if (ticket.getSlaTime() == null)
+        {
+            cancel(ticket.getTicketId());
+            return;
+        }
+        int partition = partitionOf(ticket.getTicketId());
+        if (ownedPartitions.contains(partition) && ticket.getSlaTime().getTime() < System.currentTimeMillis() + WINDOW_MILLIS)
+        {
+            enqueue(ticket.getTicketId(), truncate(ticket.getSlaTime()), partition);
+        }
+    }
+
+    /**
+     * 取消工单定时器
+     *
+     * @param ticketId 工单ID
+     */
+    public void cancel(Long ticketId)
+    {
+        SlaTimer timer = timers.remove(ticketId);
+        if (timer != null)
+        {
+            queue.remove(timer);
+        }
+    }
+
+    /**
+     * 当前节点持有的分区
+     */
+    public Set<Integer> getOwnedPartitions()
+    {
+        return ownedPartitions;
+    }
+
+    /**
+     * 已排期的定时器数量
+     */
+    public int getScheduledCount()
+    {
+        return timers.size();
+    }
+
+    /**
+     * 计算工单所属分区
+     */
+    public static int partitionOf(Long ticketId)
+    {
+        return (int) (ticketId % PARTITION_COUNT);
+    }
+
+    /**
+     * SLA时间按秒截断，与数据库datetime精度一致
+     *
+     * @param time 时间
+     * @return 截断后的时间
+     */
+    public static Date truncate(Date time)
+    {
+        return time == null ? null : new Date(time.getTime() - Math.floorMod(time.getTime(), 1000L));
+    }
+
+    private void enqueue(Long ticketId, Date slaTime, int partition)
+    {
+        SlaTimer previous = timers.get(ticketId);
+        if (previous != null && previous.slaTime.getTime() == slaTime.getTime())
+        {
+            return;
+        }
+        SlaTimer timer = new SlaTimer(ticketId, slaTime, partition);
+        timers.put(ticketId, timer);
+        if (previous != null)
+        {
+            queue.remove(previous);
+        }
+        queue.put(timer);
+    }
+
+    /**
+     * 加载本节点分区内下一个窗口到期的工单
+     */
+    private void loadWindow()
+    {
+        try
+        {
+            if (ownedPartitions.isEmpty())
+            {
+                return;
+            }
+            Date deadline = new Date(System.currentTimeMillis() + WINDOW_MILLIS);
+            List<CsTicket> tickets = csTicketMapper.selectSlaTicketsBefore(deadline, PARTITION_COUNT,
+                    new ArrayList<Integer>(ownedPartitions), LOAD_LIMIT);
+            for (CsTicket ticket : tickets)
+            {
+                int partition = partitionOf(ticket.getTicketId());
+                if (ownedPartitions.contains(partition))
+                {
+                    enqueue(ticket.getTicketId(), ticket.getSlaTime(), partition);
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            log.error("加载工单SLA窗口异常", e);
+        }
+    }
+
+    /**
+     * 续约已持有的分区，并按存活节点数均分空闲分区
+     */
+    private void rebalance()
+    {
+        try
+        {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now - TimeUnit.SECONDS.toMillis(LEASE_SECONDS));
+            Long nodes = redisTemplate.opsForZSet().zCard(NODES_KEY);
+            int fairShare = (int) Math.ceil((double) PARTITION_COUNT / Math.max(1, nodes == null ? 1 : nodes));
+
+            for (Integer partition : new ArrayList<Integer>(ownedPartitions))
+            {
+                String key = PARTITION_KEY + partition;
+                if (!nodeId.equals(redisTemplate.opsForValue().get(key)))
+                {
+                    dropPartition(partition);
+                }
+                else if (ownedPartitions.size() > fairShare)
+                {
+                    releasePartition(partition);
+                }
+                else
+                {
+                    redisTemplate.expire(key, LEASE_SECONDS, TimeUnit.SECONDS);
+                }
+            }
+            boolean acquired = false;
+            for (int partition = 0; partition < PARTITION_COUNT && ownedPartitions.size() < fairShare; partition++)
+            {
+                if (!ownedPartitions.contains(partition) && Boolean.TRUE.equals(redisTemplate.opsForValue()
+                        .setIfAbsent(PARTITION_KEY + partition, nodeId, LEASE_SECONDS, TimeUnit.SECONDS)))
+                {
+                    ownedPartitions.add(partition);
+                    acquired = true;
+                }
+            }
+            if (acquired)
+            {
+                loadWindow();
+            }
+        }
+        catch (Exception e)
+        {
+            log.error("工单SLA分区续约异常", e);
+        }
+    }
+
+    private void releasePartition(Integer partition)
+    {
+        try
+        {
+            String key = PARTITION_KEY + partition;
+            if (nodeId.equals(redisTemplate.opsForValue().get(key)))
+            {
+                redisTemplate.delete(key);
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn("释放工单SLA分区{}失败: {}", partition, e.getMessage());
+        }
+        dropPartition(partition);
+    }
+
+    private void dropPartition(Integer partition)
+    {
+        ownedPartitions.remove(partition);
+        Iterator<SlaTimer> it = timers.values().iterator();
+        while (it.hasNext())
+        {
+            SlaTimer timer = it.next();
+            if (timer.partition == partition)
+            {
+                it.remove();
+                queue.remove(timer);
+            }
+        }
+    }
+
+    private void consume()
+    {
+        while (running)
+        {
+            try
+            {
+                SlaTimer timer = queue.take();
+                if (timers.remove(timer.ticketId, timer) && ownedPartitions.contains(timer.partition))
+                {
+                    escalate(timer);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (Exception e)
+            {
+                log.error("处理工单SLA超时异常", e);
+            }
+        }
+    }
+
+    /**
+     * 工单超时：提升优先级，已是最高优先级时不再检查
+     */
+    private void escalate(SlaTimer timer)
+    {
+        CsTicket ticket = csTicketMapper.selectCsTicketByTicketId(timer.ticketId);
+        if (ticket == null || ticket.getSlaTime() == null || ticket.getSlaTime().getTime() != timer.slaTime.getTime())
+        {
+            return;
+        }
+        if (!isOpen(ticket.getStatus()))
+        {
+            csTicketMapper.clearTicketSla(ticket.getTicketId());
+            return;
+        }
+        int priority = Math.max(MIN_PRIORITY, Math.min(MAX_PRIORITY, Convert.toInt(ticket.getPriority(), DEFAULT_PRIORITY)));
+        int newPriority = Math.min(MAX_PRIORITY, priority + 1);
+        Date now = DateUtils.getNowDate();
+        Date nextSlaTime = priority < MAX_PRIORITY ? truncate(new Date(now.getTime() + ESCALATE_INTERVAL_MILLIS)) : null;
+        if (csTicketMapper.escalateTicket(ticket.getTicketId(), String.valueOf(newPriority), nextSlaTime, timer.slaTime) == 0)
+        {
+            return;
+        }
+
+        CsTicketLog ticketLog = new CsTicketLog();
+        ticketLog.setTicketId(ticket.getTicketId());
+        ticketLog.setActionType("escalate");
+        ticketLog.setActionUser(0L);
+        ticketLog.setActionUserName("系统");
+        ticketLog.setOldValue(String.valueOf(priority));
+        ticketLog.setNewValue(String.valueOf(newPriority));
+        ticketLog.setContent("工单超过SLA时间未处理，优先级由" + priority + "升级为" + newPriority);
+        ticketLog.setActionTime(now);
+        ticketLog.setTimeSpent(0);
+        ticketLog.setCreateBy("system");
+        ticketLog.setCreateTime(now);
+        ticketLogBatchWriter.submit(ticketLog);
+
+        if (nextSlaTime != null)
+        {
+            ticket.setSlaTime(nextSlaTime);
+            schedule(ticket);
+        }
+        if (ticket.getAssignedTo() != null)
+        {
+            ticket.setPriority(String.valueOf(newPriority));
+            ChatWebSocketHandler.sendMessageToUser("agent", ticket.getAssignedTo().toString(),
+                    JSON.toJSONString(new ChatWebSocketHandler.WebSocketMessage("ticket_sla", "工单已超时升级", ticket)));
+        }
+    }
+
+    /**
+     * 是否为未完结状态（0待处理 1处理中 2待回复）
+     */
+    private static boolean isOpen(String status)
+    {
+        return "0".equals(status) || "1".equals(status) || "2".equals(status);
+    }
+
+    /**
+     * SLA定时器
+     */
+    private static class SlaTimer implements Delayed
+    {
+        private final Long ticketId;
+
+        private final Date slaTime;
+
+        private final int partition;
+
+        SlaTimer(Long ticketId, Date slaTime, int partition)
+        {
+            this.ticketId = ticketId;
+            this.slaTime = slaTime;
+            this.partition = partition;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return unit.convert(slaTime.getTime() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other)
+        {
+            return Long.compare(slaTime.getTime(), ((SlaTimer) other).slaTime.getTime());
+        }
+    }
+}
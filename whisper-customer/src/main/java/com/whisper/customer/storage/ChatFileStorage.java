@@ -0,0 +1,521 @@
+package com.whisper.customer.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import com.whisper.common.config.RuoYiConfig;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.constant.Constants;
+import com.whisper.common.core.redis.RedisCache;
+import com.whisper.common.core.text.Convert;
+import com.whisper.common.exception.ServiceException;
+import com.whisper.common.utils.DateUtils;
+import com.whisper.common.utils.SecurityUtils;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.file.FileUploadUtils;
+import com.whisper.common.utils.file.MimeTypeUtils;
+import com.whisper.common.utils.uuid.IdUtils;
+import com.whisper.customer.domain.CsFileBlob;
+import com.whisper.customer.mapper.CsFileBlobMapper;
+
+/**
+ * 聊天文件内容存储
+ *
+ * 文件按内容SHA-256存放在 profile/blob/哈希前两位/哈希三四位/哈希.扩展名，同样的内容只保存一份，
+ * 通过 /profile/blob/... 访问，内容不变可以长期缓存。cs_file_blob 记录每份内容被多少条消息引用，
+ * 发送文件消息时加一、删除消息时减一，没有引用且超过保留时间的内容定期删除。
+ * 登记内容和清理都先锁定 cs_file_blob 中的行，同一内容的写入和删除不会交错。
+ *
+ * 大文件分片上传：初始化后各分片可以并行、乱序上传，每个分片直接写入临时文件中的对应位置，
+ * 全部到达后顺序计算一次SHA-256再登记，不需要额外合并。已接收的分片记录在Redis中，中断后可以查询并只补传缺少的分片。
+ * 临时文件在接收分片的节点上，多节点部署时同一上传任务需要路由到同一节点或使用共享的 profile 目录。
+ *
+ * @author whisper
+ */
+@Component
+public class ChatFileStorage
+{
+    private static final Logger log = LoggerFactory.getLogger(ChatFileStorage.class);
+
+    /** 内容存储相对 profile 的目录 */
+    private static final String BLOB_DIR = "/blob/";
+
+    /** 分片临时文件相对内容存储的目录 */
+    private static final String TEMP_DIR = "tmp/";
+
+    /** 内容存储的访问地址，提取SHA-256 */
+    private static final Pattern BLOB_URL = Pattern.compile(Constants.RESOURCE_PREFIX + BLOB_DIR + "[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64})\\.");
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    /** 计算SHA-256的读取缓冲区大小 */
+    private static final int DIGEST_BUFFER_SIZE = 1024 * 1024;
+
+    /** 写入分片的缓冲区大小 */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /** 清理间隔（分钟） */
+    private static final int CLEAN_INTERVAL_MINUTES = 60;
+
+    /** 每批清理的文件数 */
+    private static final int CLEAN_BATCH_SIZE = 200;
+
+    /** 分片大小 */
+    @Value("${customer.upload.chunkSize:5MB}")
+    private String chunkSize;
+
+    /** 文件大小上限 */
+    @Value("${customer.upload.maxSize:512MB}")
+    private String maxSize;
+
+    /** 分片上传任务的保留时间（小时） */
+    @Value("${customer.upload.expireHours:24}")
+    private int expireHours;
+
+    /** 没有引用的文件的保留时间（小时），上传后需要在该时间内发送 */
+    @Value("${customer.upload.orphanHours:24}")
+    private int orphanHours;
+
+    @Autowired
+    private CsFileBlobMapper csFileBlobMapper;
+
+    @Autowired
+    private RedisCache redisCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    private long chunkBytes;
+
+    private long maxBytes;
+
+    @PostConstruct
+    public void init()
+    {
+        chunkBytes = DataSize.parse(chunkSize).toBytes();
+        maxBytes = DataSize.parse(maxSize).toBytes();
+        scheduledExecutorService.scheduleWithFixedDelay(this::clean, CLEAN_INTERVAL_MINUTES, CLEAN_INTERVAL_MINUTES,
+                TimeUnit.MINUTES);
+    }
+
+    /**
+     * 保存单个请求上传的文件，边接收边计算SHA-256
+     *
+     * @param file 上传的文件
+     * @return 访问地址（/profile/blob/...）
+     */
+    public String store(MultipartFile file) throws IOException
+    {
+        String extension = checkFile(FileUploadUtils.getExtension(file), file.getSize());
+        File temp = tempFile(IdUtils.fastSimpleUUID());
+        try
+        {
+            MessageDigest digest = newDigest();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest))
+            {
+                Files.copy(in, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return commit(temp, HexFormat.of().formatHex(digest.digest()), extension, file.getSize());
+        }
+        finally
+        {
+            temp.delete();
+        }
+    }
+
+    /**
+     * 开始分片上传
+     *
+     * @param fileName 原始文件名
+     * @param fileSize 文件大小（字节）
+     * @param hash 文件SHA-256，可以为空，不为空时完成上传后校验
+     * @return 上传任务
+     */
+    public ChatUploadSession init(String fileName, Long fileSize, String hash)
+    {
+        String extension = checkFile(FilenameUtils.getExtension(fileName), fileSize == null ? 0 : fileSize);
+        hash = StringUtils.lowerCase(StringUtils.trimToNull(hash));
+        if (hash != null && !SHA256.matcher(hash).matches())
+        {
+            throw new ServiceException("文件SHA-256格式错误");
+        }
+        ChatUploadSession session = new ChatUploadSession();
+        session.setUploadId(IdUtils.fastSimpleUUID());
+        session.setUserId(SecurityUtils.getUserId());
+        session.setFileName(fileName);
+        session.setFileExt(extension);
+        session.setFileSize(fileSize);
+        session.setHash(hash);
+        session.setChunkSize(chunkBytes);
+        session.setChunkCount((int) ((fileSize + chunkBytes - 1) / chunkBytes));
+        session.setCreateTime(DateUtils.getNowDate());
+        redisCache.setCacheObject(CacheConstants.CHAT_UPLOAD_KEY + session.getUploadId(), session, expireHours, TimeUnit.HOURS);
+        session.setUploadedChunks(Collections.emptyList());
+        return session;
+    }
+
+    /**
+     * 已存在的内容的访问地址，同时延后清理时间，用于内容已上传过时跳过上传
+     *
+     * @param hash 文件SHA-256
+     * @return 访问地址，不存在时为null
+     */
+    public String getUrl(String hash)
+    {
+        hash = StringUtils.lowerCase(StringUtils.trimToNull(hash));
+        if (hash == null || !SHA256.matcher(hash).matches() || csFileBlobMapper.touchBlob(hash) == 0)
+        {
+            return null;
+        }
+        CsFileBlob blob = csFileBlobMapper.selectBlobByHash(hash);
+        return blob != null ? blobUrl(blob) : null;
+    }
+
+    /**
+     * 查询上传任务及已接收的分片，用于断点续传
+     *
+     * @param uploadId 上传ID
+     * @return 上传任务
+     */
+    public ChatUploadSession getUpload(String uploadId)
+    {
+        ChatUploadSession session = getSession(uploadId);
+        session.setUploadedChunks(uploadedChunks(uploadId));
+        return session;
+    }
+
+    /**
+     * 接收一个分片，写入临时文件中的对应位置，不同分片可以并行上传
+     *
+     * @param uploadId 上传ID
+     * @param index 分片序号，从0开始
+     * @param chunk 分片内容
+     */
+    public void uploadChunk(String uploadId, int index, MultipartFile chunk) throws IOException
+    {
+        ChatUploadSession session = getSession(uploadId);
+        if (index < 0 || index >= session.getChunkCount())
+        {
+            throw new ServiceException("分片序号错误");
+        }
+        long offset = index * session.getChunkSize();
+        long length = Math.min(session.getChunkSize(), session.getFileSize() - offset);
+        if (chunk.getSize() != length)
+        {
+            throw new ServiceException(StringUtils.format("分片{}大小应为{}字节", index, length));
+        }
+        File temp = tempFile(uploadId);
+        // 按位置写入，超出当前文件长度时自动扩展，先到达的后面分片不需要等待前面的分片
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                ReadableByteChannel in = Channels.newChannel(chunk.getInputStream()))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            long position = offset;
+            while (in.read(buffer) >= 0 || buffer.position() > 0)
+            {
+                buffer.flip();
+                position += channel.write(buffer, position);
+                buffer.compact();
+            }
+        }
+        String chunksKey = CacheConstants.CHAT_UPLOAD_CHUNKS_KEY + uploadId;
+        redisCache.setCacheSetMember(chunksKey, index);
+        redisCache.expire(chunksKey, expireHours, TimeUnit.HOURS);
+    }
+
+    /**
+     * 完成分片上传，校验并登记文件内容
+     *
+     * @param uploadId 上传ID
+     * @return 访问地址（/profile/blob/...）
+     */
+    public String complete(String uploadId) throws IOException
+    {
+        ChatUploadSession session = getSession(uploadId);
+        int received = uploadedChunks(uploadId).size();
+        if (received < session.getChunkCount())
+        {
+            throw new ServiceException(StringUtils.format("还有{}个分片未上传", session.getChunkCount() - received));
+        }
+        File temp = tempFile(uploadId);
+        try
+        {
+            if (temp.length() != session.getFileSize())
+            {
+                throw new ServiceException("文件大小不一致，请重新上传");
+            }
+            String hash = digest(temp);
+            if (session.getHash() != null && !session.getHash().equals(hash))
+            {
+                throw new ServiceException("文件校验失败，请重新上传");
+            }
+            return commit(temp, hash, session.getFileExt(), session.getFileSize());
+        }
+        finally
+        {
+            temp.delete();
+            redisCache.deleteObject(CacheConstants.CHAT_UPLOAD_KEY + uploadId);
+            redisCache.deleteObject(CacheConstants.CHAT_UPLOAD_CHUNKS_KEY + uploadId);
+        }
+    }
+
+    /**
+     * 消息引用文件，不是内容存储的地址时忽略
+     *
+     * @param fileUrl 文件地址
+     */
+    public void acquire(String fileUrl)
+    {
+        String hash = parseHash(fileUrl);
+        if (hash != null && csFileBlobMapper.incrementRefCount(hash) == 0)
+        {
+            throw new ServiceException("文件不存在或已过期，请重新上传");
+        }
+    }
+
+    /**
+     * 消息不再引用文件，不是内容存储的地址时忽略
+     *
+     * @param fileUrl 文件地址
+     */
+    public void release(String fileUrl)
+    {
+        String hash = parseHash(fileUrl);
+        if (hash != null)
+        {
+            csFileBlobMapper.decrementRefCount(hash);
+        }
+    }
+
+    /**
+     * 登记内容并放入存储目录，内容已存在时丢弃临时文件
+     */
+    private String commit(File temp, String hash, String extension, long size)
+    {
+        CsFileBlob blob = new CsFileBlob();
+        blob.setHash(hash);
+        blob.setFileExt(extension);
+        blob.setFileSize(size);
+        return transactionTemplate.execute(status -> {
+            // 插入或更新时锁定该行，清理同一内容时会等待
+            csFileBlobMapper.saveBlob(blob);
+            CsFileBlob saved = csFileBlobMapper.selectBlobByHash(hash);
+            File file = blobFile(saved);
+            if (!file.isFile())
+            {
+                file.getParentFile().mkdirs();
+                try
+                {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return blobUrl(saved);
+        });
+    }
+
+    /**
+     * 删除没有引用且超过保留时间的内容和过期的分片临时文件
+     */
+    private void clean()
+    {
+        try
+        {
+            Date beforeTime = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(orphanHours));
+            List<String> hashes;
+            do
+            {
+                hashes = csFileBlobMapper.selectOrphanHashes(beforeTime, CLEAN_BATCH_SIZE);
+                for (String hash : hashes)
+                {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        CsFileBlob blob = csFileBlobMapper.selectOrphanBlobForUpdate(hash, beforeTime);
+                        if (blob == null)
+                        {
+                            return;
+                        }
+                        File file = blobFile(blob);
+                        if (file.exists() && !file.delete())
+                        {
+                            log.warn("删除聊天文件失败 {}", file.getPath());
+                            status.setRollbackOnly();
+                            return;
+                        }
+                        csFileBlobMapper.deleteBlobByHash(hash);
+                    });
+                }
+            }
+            while (hashes.size() == CLEAN_BATCH_SIZE);
+
+            File[] temps = new File(getBlobDir(), TEMP_DIR).listFiles();
+            long expireBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(expireHours);
+            for (File temp : temps != null ? temps : new File[0])
+            {
+                if (temp.lastModified() < expireBefore && !temp.delete())
+                {
+                    log.warn("删除过期分片文件失败 {}", temp.getName());
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            log.error("清理聊天文件失败", e);
+        }
+    }
+
+    /**
+     * 校验扩展名和大小
+     *
+     * @return 小写的扩展名
+     */
+    private String checkFile(String extension, long size)
+    {
+        if (StringUtils.isEmpty(extension) || !FileUploadUtils.isAllowedExtension(extension, MimeTypeUtils.DEFAULT_ALLOWED_EXTENSION))
+        {
+            throw new ServiceException(StringUtils.format("不支持上传{}格式的文件", extension));
+        }
+        if (size <= 0)
+        {
+            throw new ServiceException("文件不能为空");
+        }
+        if (size > maxBytes)
+        {
+            throw new ServiceException(StringUtils.format("文件大小不能超过{}MB", maxBytes / 1024 / 1024));
+        }
+        return extension.toLowerCase();
+    }
+
+    /**
+     * 查询当前用户的上传任务
+     */
+    private ChatUploadSession getSession(String uploadId)
+    {
+        ChatUploadSession session = StringUtils.isNotEmpty(uploadId) && StringUtils.isAlphanumeric(uploadId)
+                ? redisCache.getCacheObject(CacheConstants.CHAT_UPLOAD_KEY + uploadId) : null;
+        if (session == null || !session.getUserId().equals(SecurityUtils.getUserId()))
+        {
+            throw new ServiceException("上传任务不存在或已过期");
+        }
+        return session;
+    }
+
+    private List<Integer> uploadedChunks(String uploadId)
+    {
+        Set<Object> members = redisCache.getCacheSet(CacheConstants.CHAT_UPLOAD_CHUNKS_KEY + uploadId);
+        List<Integer> chunks = new ArrayList<Integer>();
+        if (members != null)
+        {
+            for (Object member : members)
+            {
+                chunks.add(Convert.toInt(member));
+            }
+        }
+        Collections.sort(chunks);
+        return chunks;
+    }
+
+    private String parseHash(String fileUrl)
+    {
+        if (StringUtils.isEmpty(fileUrl))
+        {
+            return null;
+        }
+        Matcher matcher = BLOB_URL.matcher(fileUrl);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String digest(File file) throws IOException
+    {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DIGEST_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            while (channel.read(buffer) >= 0)
+            {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String blobPath(CsFileBlob blob)
+    {
+        String hash = blob.getHash();
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + blob.getFileExt();
+    }
+
+    private static String blobUrl(CsFileBlob blob)
+    {
+        return Constants.RESOURCE_PREFIX + BLOB_DIR + blobPath(blob);
+    }
+
+    private static File getBlobDir()
+    {
+        return new File(RuoYiConfig.getProfile() + BLOB_DIR);
+    }
+
+    private static File blobFile(CsFileBlob blob)
+    {
+        return new File(getBlobDir(), blobPath(blob));
+    }
+
+    private static File tempFile(String uploadId)
+    {
+        File temp = new File(getBlobDir(), TEMP_DIR + uploadId + ".part");
+        temp.getParentFile().mkdirs();
+        return temp;
+    }
+}
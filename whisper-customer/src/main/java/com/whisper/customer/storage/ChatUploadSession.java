@@ -0,0 +1,144 @@
+package com.whisper.customer.storage;
+
+import java.util.Date;
+import java.util.List;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * 聊天文件分片上传任务
+ *
+ * @author whisper
+ */
+public class ChatUploadSession
+{
+    /** 上传ID */
+    private String uploadId;
+
+    /** 上传用户ID */
+    private Long userId;
+
+    /** 原始文件名 */
+    private String fileName;
+
+    /** 文件扩展名 */
+    private String fileExt;
+
+    /** 文件大小（字节） */
+    private Long fileSize;
+
+    /** 客户端声明的文件SHA-256，为空时不校验 */
+    private String hash;
+
+    /** 分片大小（字节），最后一片可以较小 */
+    private Long chunkSize;
+
+    /** 分片数量 */
+    private Integer chunkCount;
+
+    /** 已接收的分片序号，只在返回时填充 */
+    private List<Integer> uploadedChunks;
+
+    /** 创建时间 */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+
+    public String getUploadId()
+    {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId)
+    {
+        this.uploadId = uploadId;
+    }
+
+    public Long getUserId()
+    {
+        return userId;
+    }
+
+    public void setUserId(Long userId)
+    {
+        this.userId = userId;
+    }
+
+    public String getFileName()
+    {
+        return fileName;
+    }
+
+    public void setFileName(String fileName)
+    {
+        this.fileName = fileName;
+    }
+
+    public String getFileExt()
+    {
+        return fileExt;
+    }
+
+    public void setFileExt(String fileExt)
+    {
+        this.fileExt = fileExt;
+    }
+
+    public Long getFileSize()
+    {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize)
+    {
+        this.fileSize = fileSize;
+    }
+
+    public String getHash()
+    {
+        return hash;
+    }
+
+    public void setHash(String hash)
+    {
+        this.hash = hash;
+    }
+
+    public Long getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    public void setChunkSize(Long chunkSize)
+    {
+        this.chunkSize = chunkSize;
+    }
+
+    public Integer getChunkCount()
+    {
+        return chunkCount;
+    }
+
+    public void setChunkCount(Integer chunkCount)
+    {
+        this.chunkCount = chunkCount;
+    }
+
+    public List<Integer> getUploadedChunks()
+    {
+        return uploadedChunks;
+    }
+
+    public void setUploadedChunks(List<Integer> uploadedChunks)
+    {
+        this.uploadedChunks = uploadedChunks;
+    }
+
+    public Date getCreateTime()
+    {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime)
+    {
+        this.createTime = createTime;
+    }
+}
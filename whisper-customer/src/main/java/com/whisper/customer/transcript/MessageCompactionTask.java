@@ -0,0 +1,194 @@
+package com.whisper.customer.transcript;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.utils.uuid.IdUtils;
+import com.whisper.customer.domain.CsConversation;
+import com.whisper.customer.mapper.CsMessageTranscriptMapper;
+
+/**
+ * 已结束会话消息压缩
+ *
+ * 定期按结束时间顺序取出结束超过一段时间的会话逐个压缩，处理到的结束时间保存在Redis中，下次从该位置继续，
+ * 不重复扫描已压缩的会话。同一时间只有一个节点执行，消息重新分片期间不执行。
+ *
+ * @author whisper
+ */
+@Component
+public class MessageCompactionTask
+{
+    private static final Logger log = LoggerFactory.getLogger(MessageCompactionTask.class);
+
+    /** 任务锁 */
+    public static final String LOCK_KEY = CacheConstants.MESSAGE_COMPACTION_KEY + "lock";
+
+    /** 已处理到的会话结束时间（毫秒） */
+    private static final String MARK_KEY = CacheConstants.MESSAGE_COMPACTION_KEY + "mark";
+
+    /** 任务锁有效期（秒），每批续期 */
+    private static final long LOCK_SECONDS = 300;
+
+    /** 是否定期压缩 */
+    @Value("${customer.message.transcript.enabled:false}")
+    private boolean enabled;
+
+    /** 会话结束多少分钟后压缩，期间的已读回执等更新仍直接写消息表 */
+    @Value("${customer.message.transcript.idleMinutes:60}")
+    private int idleMinutes;
+
+    /** 执行间隔（秒） */
+    @Value("${customer.message.transcript.intervalSeconds:300}")
+    private int intervalSeconds;
+
+    /** 每批压缩的会话数 */
+    @Value("${customer.message.transcript.batchSize:100}")
+    private int batchSize;
+
+    /** 每批之间暂停的毫秒数 */
+    @Value("${customer.message.transcript.throttleMillis:200}")
+    private long throttleMillis;
+
+    private final String nodeId = IdUtils.fastSimpleUUID();
+
+    private volatile boolean running;
+
+    private volatile Date lastRunTime;
+
+    private volatile String lastError;
+
+    private final LongAdder compactedConversations = new LongAdder();
+
+    private final LongAdder compactedMessages = new LongAdder();
+
+    @Autowired
+    private MessageTranscriptManager messageTranscriptManager;
+
+    @Autowired
+    private CsMessageTranscriptMapper csMessageTranscriptMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @PostConstruct
+    public void init()
+    {
+        if (enabled)
+        {
+            scheduledExecutorService.scheduleWithFixedDelay(this::run, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 压缩进度
+     */
+    public Map<String, Object> getStatus()
+    {
+        Map<String, Object> status = new LinkedHashMap<String, Object>();
+        status.put("enabled", enabled);
+        status.put("running", running);
+        status.put("mark", readMark());
+        status.put("compactedConversations", compactedConversations.sum());
+        status.put("compactedMessages", compactedMessages.sum());
+        status.put("lastRunTime", lastRunTime);
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    private void run()
+    {
+        try
+        {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(CacheConstants.MESSAGE_SHARD_LOCK_KEY)))
+            {
+                return;
+            }
+            Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeId, LOCK_SECONDS, TimeUnit.SECONDS);
+            if (!Boolean.TRUE.equals(locked))
+            {
+                return;
+            }
+            running = true;
+            lastRunTime = new Date();
+            try
+            {
+                compactEnded();
+                lastError = null;
+            }
+            finally
+            {
+                running = false;
+                releaseLock();
+            }
+        }
+        catch (Exception e)
+        {
+            lastError = e.getMessage();
+            log.error("压缩会话消息失败", e);
+        }
+    }
+
+    private void compactEnded() throws InterruptedException
+    {
+        Date beforeTime = new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes));
+        List<CsConversation> batch;
+        do
+        {
+            batch = csMessageTranscriptMapper.selectCompactableConversations(readMark(), beforeTime, batchSize);
+            for (CsConversation conversation : batch)
+            {
+                int rows = messageTranscriptManager.compact(conversation.getConversationId());
+                if (rows >= 0)
+                {
+                    compactedConversations.increment();
+                    compactedMessages.add(rows);
+                }
+                stringRedisTemplate.opsForValue().set(MARK_KEY, String.valueOf(conversation.getEndTime().getTime()));
+            }
+            stringRedisTemplate.expire(LOCK_KEY, LOCK_SECONDS, TimeUnit.SECONDS);
+            if (throttleMillis > 0 && !batch.isEmpty())
+            {
+                Thread.sleep(throttleMillis);
+            }
+        }
+        while (batch.size() == batchSize);
+    }
+
+    private Date readMark()
+    {
+        String mark = stringRedisTemplate.opsForValue().get(MARK_KEY);
+        return new Date(mark != null ? Long.parseLong(mark) : 0L);
+    }
+
+    private void releaseLock()
+    {
+        try
+        {
+            if (nodeId.equals(stringRedisTemplate.opsForValue().get(LOCK_KEY)))
+            {
+                stringRedisTemplate.delete(LOCK_KEY);
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn("释放会话压缩锁失败'{}'", e.getMessage());
+        }
+    }
+}
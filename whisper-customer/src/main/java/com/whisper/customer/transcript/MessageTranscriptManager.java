@@ -0,0 +1,376 @@
+package com.whisper.customer.transcript;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.alibaba.fastjson2.JSON;
+import com.whisper.common.exception.ServiceException;
+import com.whisper.common.utils.DateUtils;
+import com.whisper.customer.domain.CsMessage;
+import com.whisper.customer.domain.CsMessageTranscript;
+import com.whisper.customer.mapper.CsMessageMapper;
+import com.whisper.customer.mapper.CsMessageTranscriptMapper;
+import com.whisper.customer.shard.MessageShardRouter;
+import com.whisper.customer.shard.MessageShardRouter.Route;
+
+/**
+ * 会话消息压缩记录
+ *
+ * 已结束会话的全部消息按发送时间压缩为一条 cs_message_transcript 记录（gzip 压缩的 NDJSON），
+ * 行索引记录每条消息的ID、解压后的行偏移和删除标志，查看历史只需一次主键查询，分页和按ID读取只解析需要的行。
+ * 会话重新打开时恢复到消息表；按ID修改已压缩的消息时先恢复会话，修改后重新压缩。
+ *
+ * @author whisper
+ */
+@Component
+public class MessageTranscriptManager
+{
+    private static final Logger log = LoggerFactory.getLogger(MessageTranscriptManager.class);
+
+    /** 压缩记录中的日期格式 */
+    private static final String DATE_FORMAT = DateUtils.YYYY_MM_DD_HH_MM_SS;
+
+    /** 行索引中每条消息的字节数：消息ID + 行偏移 + 删除标志 */
+    private static final int INDEX_ENTRY_BYTES = 13;
+
+    /** 已结束的会话状态 */
+    private static final String STATUS_ENDED = "2";
+
+    /** 恢复时每条语句写入的消息数 */
+    private static final int RESTORE_BATCH_SIZE = 500;
+
+    @Autowired
+    private CsMessageTranscriptMapper csMessageTranscriptMapper;
+
+    @Autowired
+    private CsMessageMapper csMessageMapper;
+
+    @Autowired
+    private MessageShardRouter messageShardRouter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 查询会话的压缩记录
+     *
+     * @param conversationId 会话ID
+     * @return 压缩记录，未压缩时为null
+     */
+    public CsMessageTranscript selectTranscript(Long conversationId)
+    {
+        return csMessageTranscriptMapper.selectTranscriptByConversationId(conversationId);
+    }
+
+    /**
+     * 读取压缩记录中未删除的消息
+     *
+     * @param transcript 压缩记录，可为null
+     * @return 按发送时间升序的消息记录
+     */
+    public List<CsMessage> readMessages(CsMessageTranscript transcript)
+    {
+        return read(transcript, false);
+    }
+
+    /**
+     * 按发送时间倒序读取压缩记录中未删除的消息，只解析需要的行
+     *
+     * @param transcript 压缩记录，可为null
+     * @param skip 跳过的条数
+     * @param limit 最多返回的条数
+     * @return 消息记录集合
+     */
+    public List<CsMessage> readPage(CsMessageTranscript transcript, int skip, int limit)
+    {
+        if (transcript == null || limit <= 0)
+        {
+            return Collections.emptyList();
+        }
+        byte[] lines = inflate(transcript);
+        ByteBuffer index = ByteBuffer.wrap(transcript.getLineIndex());
+        List<CsMessage> messages = new ArrayList<CsMessage>();
+        for (int i = transcript.getTotalCount() - 1; i >= 0 && messages.size() < limit; i--)
+        {
+            if (index.get(i * INDEX_ENTRY_BYTES + 12) != 0)
+            {
+                continue;
+            }
+            if (skip > 0)
+            {
+                skip--;
+                continue;
+            }
+            messages.add(parseLine(lines, index, i, transcript.getTotalCount()));
+        }
+        return messages;
+    }
+
+    /**
+     * 按消息ID读取压缩记录中未删除的消息
+     *
+     * @param messageId 消息ID
+     * @return 消息记录，不存在时为null
+     */
+    public CsMessage selectMessage(Long messageId)
+    {
+        for (Long conversationId : selectCandidates(messageId))
+        {
+            CsMessageTranscript transcript = selectTranscript(conversationId);
+            int line = transcript != null ? indexOf(transcript, messageId) : -1;
+            if (line >= 0)
+            {
+                ByteBuffer index = ByteBuffer.wrap(transcript.getLineIndex());
+                CsMessage message = parseLine(inflate(transcript), index, line, transcript.getTotalCount());
+                return "0".equals(message.getDelFlag()) ? message : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 查找包含指定消息的压缩会话
+     *
+     * @param messageId 消息ID
+     * @return 会话ID，不存在时为null
+     */
+    public Long findConversationId(Long messageId)
+    {
+        for (Long conversationId : selectCandidates(messageId))
+        {
+            CsMessageTranscript transcript = selectTranscript(conversationId);
+            if (transcript != null && indexOf(transcript, messageId) >= 0)
+            {
+                return conversationId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 压缩已结束会话的消息，会话未结束或所在槽位正在迁移时跳过
+     *
+     * @param conversationId 会话ID
+     * @return 压缩的消息数量，跳过时为-1
+     */
+    public int compact(Long conversationId)
+    {
+        Route route = messageShardRouter.route(conversationId);
+        if (route.getWriteTables().size() > 1)
+        {
+            return -1;
+        }
+        String table = route.getInsertTable();
+        Integer rows = transactionTemplate.execute(status -> {
+            // 锁定会话行，重新打开会话的状态更新在压缩提交后才执行，随后的恢复能看到压缩记录
+            if (!STATUS_ENDED.equals(csMessageTranscriptMapper.selectConversationStatusForUpdate(conversationId))
+                    || csMessageTranscriptMapper.selectTranscriptByConversationId(conversationId) != null)
+            {
+                return -1;
+            }
+            // 锁定消息行，压缩提交前的并发修改会等待，提交后修改找不到行，转为恢复后修改
+            List<CsMessage> messages = csMessageMapper.selectAllMessagesForUpdate(table, conversationId);
+            csMessageTranscriptMapper.insertTranscript(encode(conversationId, messages));
+            List<Long> messageIds = new ArrayList<Long>(messages.size());
+            for (CsMessage message : messages)
+            {
+                messageIds.add(message.getMessageId());
+            }
+            if (!messageIds.isEmpty())
+            {
+                csMessageMapper.purgeCsMessageByMessageIds(table, messageIds);
+            }
+            return messages.size();
+        });
+        return rows;
+    }
+
+    /**
+     * 把压缩的消息恢复到消息表
+     *
+     * @param conversationId 会话ID
+     * @return 恢复的消息数量，未压缩时为0
+     */
+    public int restore(Long conversationId)
+    {
+        Integer rows = transactionTemplate.execute(status -> {
+            CsMessageTranscript transcript = csMessageTranscriptMapper.selectTranscriptByConversationId(conversationId);
+            // 删除成功才恢复，并发恢复时只有一方写入
+            if (transcript == null || csMessageTranscriptMapper.deleteTranscriptByConversationId(conversationId) == 0)
+            {
+                return 0;
+            }
+            List<CsMessage> messages = read(transcript, true);
+            String table = messageShardRouter.route(conversationId).getInsertTable();
+            for (int from = 0; from < messages.size(); from += RESTORE_BATCH_SIZE)
+            {
+                csMessageMapper.batchInsertCsMessage(table, messages.subList(from, Math.min(from + RESTORE_BATCH_SIZE, messages.size())));
+            }
+            return messages.size();
+        });
+        if (rows > 0)
+        {
+            log.info("会话{}的{}条消息已恢复到消息表", conversationId, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * 读取压缩记录中的全部消息（含已删除），供归档使用
+     *
+     * @param transcript 压缩记录
+     * @return 按发送时间升序的消息记录
+     */
+    public List<CsMessage> readAllMessages(CsMessageTranscript transcript)
+    {
+        return read(transcript, true);
+    }
+
+    /**
+     * 查询最晚消息早于指定时间的压缩会话
+     *
+     * @param beforeTime 时间点
+     * @param limit 限制数量
+     * @return 会话ID集合
+     */
+    public List<Long> selectExpiredConversationIds(Date beforeTime, int limit)
+    {
+        return csMessageTranscriptMapper.selectExpiredConversationIds(beforeTime, limit);
+    }
+
+    /**
+     * 删除压缩记录
+     *
+     * @param conversationId 会话ID
+     * @return 结果
+     */
+    public int deleteTranscript(Long conversationId)
+    {
+        return csMessageTranscriptMapper.deleteTranscriptByConversationId(conversationId);
+    }
+
+    private List<Long> selectCandidates(Long messageId)
+    {
+        if (messageId == null)
+        {
+            return Collections.emptyList();
+        }
+        Integer slot = messageId >= MessageShardRouter.SHARDED_ID_MIN ? (int) (messageId & (MessageShardRouter.SLOT_COUNT - 1)) : null;
+        return csMessageTranscriptMapper.selectConversationIdsByMessageId(slot, messageId);
+    }
+
+    private List<CsMessage> read(CsMessageTranscript transcript, boolean includeDeleted)
+    {
+        if (transcript == null || transcript.getTotalCount() == 0)
+        {
+            return Collections.emptyList();
+        }
+        byte[] lines = inflate(transcript);
+        ByteBuffer index = ByteBuffer.wrap(transcript.getLineIndex());
+        List<CsMessage> messages = new ArrayList<CsMessage>(transcript.getTotalCount());
+        for (int i = 0; i < transcript.getTotalCount(); i++)
+        {
+            if (includeDeleted || index.get(i * INDEX_ENTRY_BYTES + 12) == 0)
+            {
+                messages.add(parseLine(lines, index, i, transcript.getTotalCount()));
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 行号，不存在时为-1
+     */
+    private static int indexOf(CsMessageTranscript transcript, Long messageId)
+    {
+        ByteBuffer index = ByteBuffer.wrap(transcript.getLineIndex());
+        for (int i = 0; i < transcript.getTotalCount(); i++)
+        {
+            if (index.getLong(i * INDEX_ENTRY_BYTES) == messageId)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static CsMessage parseLine(byte[] lines, ByteBuffer index, int line, int totalCount)
+    {
+        int from = index.getInt(line * INDEX_ENTRY_BYTES + 8);
+        int to = line + 1 < totalCount ? index.getInt((line + 1) * INDEX_ENTRY_BYTES + 8) : lines.length;
+        // 去掉行尾换行
+        return JSON.parseObject(new String(lines, from, to - from - 1, StandardCharsets.UTF_8), CsMessage.class, DATE_FORMAT);
+    }
+
+    private static CsMessageTranscript encode(Long conversationId, List<CsMessage> messages)
+    {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        ByteBuffer index = ByteBuffer.allocate(messages.size() * INDEX_ENTRY_BYTES);
+        CsMessageTranscript transcript = new CsMessageTranscript();
+        int visible = 0;
+        for (CsMessage message : messages)
+        {
+            boolean deleted = !"0".equals(message.getDelFlag());
+            index.putLong(message.getMessageId()).putInt(lines.size()).put((byte) (deleted ? 1 : 0));
+            lines.writeBytes(JSON.toJSONString(message, DATE_FORMAT).getBytes(StandardCharsets.UTF_8));
+            lines.write('\n');
+            visible += deleted ? 0 : 1;
+            if (transcript.getMinMessageId() == null || message.getMessageId() < transcript.getMinMessageId())
+            {
+                transcript.setMinMessageId(message.getMessageId());
+            }
+            if (transcript.getMaxMessageId() == null || message.getMessageId() > transcript.getMaxMessageId())
+            {
+                transcript.setMaxMessageId(message.getMessageId());
+            }
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(content))
+        {
+            lines.writeTo(out);
+        }
+        catch (IOException e)
+        {
+            throw new ServiceException("压缩会话消息失败：" + e.getMessage());
+        }
+        transcript.setConversationId(conversationId);
+        transcript.setMessageCount(visible);
+        transcript.setTotalCount(messages.size());
+        if (!messages.isEmpty())
+        {
+            transcript.setFirstSendTime(messages.get(0).getSendTime());
+            transcript.setLastSendTime(messages.get(messages.size() - 1).getSendTime());
+        }
+        transcript.setContent(content.toByteArray());
+        transcript.setLineIndex(index.array());
+        return transcript;
+    }
+
+    private static byte[] inflate(CsMessageTranscript transcript)
+    {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(transcript.getContent())))
+        {
+            return in.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            log.error("解压会话{}的消息失败", transcript.getConversationId(), e);
+            throw new ServiceException("会话消息记录已损坏：" + transcript.getConversationId());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.whisper.customer.websocket;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import javax.websocket.OnClose;
@@ -20,7 +22,9 @@ import org.springframework.stereotype.Component;
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
 import com.whisper.common.utils.spring.SpringUtils;
+import com.whisper.customer.dispatch.AgentLoadManager;
 import com.whisper.customer.domain.CsMessage;
+import com.whisper.customer.metrics.CsMetricsRegistry;
 import com.whisper.customer.service.ICsMessageService;
 import com.whisper.customer.service.ICsConversationService;
 import com.whisper.customer.domain.CsConversation;
@@ -91,6 +95,8 @@ public class ChatWebSocketHandler
 
             log.info("用户{}连接WebSocket成功，当前在线人数为：{}", userKey, getOnlineCount());
 
+            updateAgentWorkStatus("1");
+
             // 简化连接成功消息发送
             try {
                 // 不延迟，直接发送连接成功消息
@@ -114,9 +120,12 @@ public class ChatWebSocketHandler
         // 从set中删除
         webSocketSet.remove(this);
         
-        // 从用户连接映射中删除
+        // 从用户连接映射中删除，重连时旧连接关闭不影响新连接
         String userKey = userType + "_" + userId;
-        userConnections.remove(userKey);
+        if (userConnections.remove(userKey, this))
+        {
+            updateAgentWorkStatus("0");
+        }
         
         // 在线数减1
         subOnlineCount();
@@ -124,6 +133,25 @@ public class ChatWebSocketHandler
         log.info("用户{}断开WebSocket连接，当前在线人数为：{}", userKey, getOnlineCount());
     }
 
+    /**
+     * 客服上下线时同步工作状态，供自动分配选择在线客服
+     */
+    private void updateAgentWorkStatus(String workStatus)
+    {
+        if (!"agent".equals(userType))
+        {
+            return;
+        }
+        try
+        {
+            SpringUtils.getBean(AgentLoadManager.class).setWorkStatus(Long.valueOf(userId), workStatus);
+        }
+        catch (Exception e)
+        {
+            log.warn("更新客服{}工作状态失败: {}", userId, e.getMessage());
+        }
+    }
+
     /**
      * 收到客户端消息后调用的方法
      *
@@ -325,6 +353,7 @@ public class ChatWebSocketHandler
      */
     private void forwardMessageToTarget(Long conversationId, CsMessage message)
     {
+        long startNanos = System.nanoTime();
         try {
             // 获取会话信息，确定目标用户
             ICsConversationService conversationService = SpringUtils.getBean(ICsConversationService.class);
@@ -344,6 +373,7 @@ public class ChatWebSocketHandler
                     sendMessageToUser("customer", conversation.getCustomerId().toString(), messageJson);
                 }
             }
+            SpringUtils.getBean(CsMetricsRegistry.class).recordSince(CsMetricsRegistry.FANOUT, startNanos);
         } catch (Exception e) {
             log.error("转发消息异常", e);
         }
@@ -394,6 +424,40 @@ public class ChatWebSocketHandler
         return onlineCount;
     }
 
+    /**
+     * 获取指定类型的在线用户数
+     *
+     * @param userType 用户类型：customer-客户，agent-客服
+     */
+    public static int getOnlineCount(String userType)
+    {
+        String prefix = userType + "_";
+        int count = 0;
+        for (String userKey : userConnections.keySet()) {
+            if (userKey.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取本节点连接中的指定类型用户ID
+     *
+     * @param userType 用户类型：customer-客户，agent-客服
+     */
+    public static List<String> getOnlineUserIds(String userType)
+    {
+        String prefix = userType + "_";
+        List<String> userIds = new ArrayList<String>();
+        for (String userKey : userConnections.keySet()) {
+            if (userKey.startsWith(prefix)) {
+                userIds.add(userKey.substring(prefix.length()));
+            }
+        }
+        return userIds;
+    }
+
     /**
      * 在线数加1
      */
@@ -34,3 +34,79 @@ ORDER BY
 
 -- 显示表结构
 SHOW CREATE TABLE cs_customer;
+
+-- 工单SLA检查时间（调度器只按索引加载即将到期的工单）
+ALTER TABLE cs_ticket ADD COLUMN sla_time DATETIME DEFAULT NULL COMMENT '下次SLA检查时间' AFTER due_time;
+CREATE INDEX idx_sla_time ON cs_ticket(sla_time);
+UPDATE cs_ticket SET sla_time = due_time WHERE status IN ('0', '1', '2') AND del_flag = '0';
+
+-- 部门层级关系表（数据权限和下级部门查询走索引，替代find_in_set(ancestors)）
+CREATE TABLE IF NOT EXISTS sys_dept_closure (
+  ancestor_id bigint NOT NULL COMMENT '祖先部门id',
+  descendant_id bigint NOT NULL COMMENT '后代部门id',
+  depth int NOT NULL DEFAULT 0 COMMENT '层级距离（0为自身）',
+  PRIMARY KEY (ancestor_id, descendant_id),
+  INDEX idx_descendant_id (descendant_id)
+) ENGINE = InnoDB COMMENT = '部门层级关系表';
+INSERT IGNORE INTO sys_dept_closure (ancestor_id, descendant_id, depth)
+WITH RECURSIVE t (ancestor_id, descendant_id, depth) AS (
+  SELECT dept_id, dept_id, 0 FROM sys_dept
+  UNION ALL
+  SELECT t.ancestor_id, d.dept_id, t.depth + 1 FROM t JOIN sys_dept d ON d.parent_id = t.descendant_id
+)
+SELECT ancestor_id, descendant_id, depth FROM t;
+
+-- 消息按会话分片：虚拟列和索引为在线DDL，不重建表
+ALTER TABLE cs_message ADD COLUMN shard_slot SMALLINT AS (conversation_id % 1024) VIRTUAL COMMENT '分片槽位', ALGORITHM = INPLACE, LOCK = NONE;
+ALTER TABLE cs_message ADD INDEX idx_shard_slot (shard_slot, message_id), ALGORITHM = INPLACE, LOCK = NONE;
+CREATE TABLE IF NOT EXISTS cs_message_shard_slot (
+  slot_id int NOT NULL COMMENT '槽位号（conversation_id % 1024）',
+  table_name varchar(64) NOT NULL COMMENT '所在物理表',
+  target_table varchar(64) DEFAULT NULL COMMENT '迁移目标表',
+  update_time datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (slot_id)
+) ENGINE = InnoDB COMMENT = '消息分片槽位表';
+CREATE TABLE IF NOT EXISTS cs_id_segment (
+  biz_tag varchar(64) NOT NULL COMMENT '业务标识',
+  max_id bigint NOT NULL COMMENT '已分配的最大序号',
+  update_time datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (biz_tag)
+) ENGINE = InnoDB COMMENT = 'ID号段表';
+-- 新消息ID从 2^40 开始，与历史自增ID不重叠
+INSERT IGNORE INTO cs_id_segment (biz_tag, max_id) VALUES ('cs_message', 1073741823);
+
+-- 历史消息归档索引
+CREATE TABLE IF NOT EXISTS cs_message_archive (
+  archive_id bigint NOT NULL AUTO_INCREMENT COMMENT '归档ID',
+  conversation_id bigint NOT NULL COMMENT '会话ID',
+  archive_month char(6) NOT NULL COMMENT '归档月份（yyyyMM）',
+  file_path varchar(255) NOT NULL COMMENT '归档文件相对路径',
+  message_count int NOT NULL DEFAULT 0 COMMENT '累计归档消息数',
+  first_send_time datetime DEFAULT NULL COMMENT '最早发送时间',
+  last_send_time datetime DEFAULT NULL COMMENT '最晚发送时间',
+  checksum char(64) NOT NULL COMMENT '文件SHA-256',
+  create_time datetime DEFAULT NULL COMMENT '创建时间',
+  update_time datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (archive_id),
+  UNIQUE KEY uk_conversation_month (conversation_id, archive_month)
+) ENGINE = InnoDB COMMENT = '消息归档索引表';
+
+-- 已结束会话的消息压缩记录
+ALTER TABLE cs_conversation ADD INDEX idx_status_end_time (status, end_time), ALGORITHM = INPLACE, LOCK = NONE;
+CREATE TABLE IF NOT EXISTS cs_message_transcript (
+  conversation_id bigint NOT NULL COMMENT '会话ID',
+  shard_slot smallint AS (conversation_id % 1024) VIRTUAL COMMENT '分片槽位',
+  message_count int NOT NULL DEFAULT 0 COMMENT '未删除的消息数量',
+  total_count int NOT NULL DEFAULT 0 COMMENT '全部消息数量（含已删除）',
+  min_message_id bigint DEFAULT NULL COMMENT '最小消息ID',
+  max_message_id bigint DEFAULT NULL COMMENT '最大消息ID',
+  first_send_time datetime DEFAULT NULL COMMENT '最早发送时间',
+  last_send_time datetime DEFAULT NULL COMMENT '最晚发送时间',
+  content longblob NOT NULL COMMENT 'gzip压缩的NDJSON消息记录',
+  line_index longblob NOT NULL COMMENT '行索引（消息ID、行偏移、删除标志）',
+  create_time datetime DEFAULT NULL COMMENT '创建时间',
+  PRIMARY KEY (conversation_id),
+  KEY idx_shard_slot (shard_slot, min_message_id),
+  KEY idx_min_message_id (min_message_id),
+  KEY idx_last_send_time (last_send_time)
+) ENGINE = InnoDB COMMENT = '会话消息压缩记录表';
@@ -142,7 +142,8 @@ CREATE TABLE `cs_conversation`  (
   INDEX `idx_agent_id`(`agent_id` ASC) USING BTREE,
   INDEX `idx_status`(`status` ASC) USING BTREE,
   INDEX `idx_start_time`(`start_time` ASC) USING BTREE,
-  INDEX `idx_channel`(`channel` ASC) USING BTREE
+  INDEX `idx_channel`(`channel` ASC) USING BTREE,
+  INDEX `idx_status_end_time`(`status` ASC, `end_time` ASC) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 100025 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_bin COMMENT = '会话管理表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -445,17 +446,88 @@ CREATE TABLE `cs_message`  (
   `reserved1` varchar(100) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL DEFAULT '' COMMENT '预留字段1',
   `reserved2` varchar(100) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL DEFAULT '' COMMENT '预留字段2',
   `ext_field1` text CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL COMMENT '扩展字段1',
+  `shard_slot` smallint GENERATED ALWAYS AS ((`conversation_id` % 1024)) VIRTUAL NULL COMMENT '分片槽位',
   PRIMARY KEY (`message_id`) USING BTREE,
   INDEX `idx_conversation_id`(`conversation_id` ASC) USING BTREE,
   INDEX `idx_sender_type_id`(`sender_type` ASC, `sender_id` ASC) USING BTREE,
   INDEX `idx_send_time`(`send_time` ASC) USING BTREE,
-  INDEX `idx_message_type`(`message_type` ASC) USING BTREE
+  INDEX `idx_message_type`(`message_type` ASC) USING BTREE,
+  INDEX `idx_shard_slot`(`shard_slot` ASC, `message_id` ASC) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 1000000 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_bin COMMENT = '消息记录表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
 -- Records of cs_message
 -- ----------------------------
 
+-- ----------------------------
+-- Table structure for cs_message_shard_slot
+-- ----------------------------
+DROP TABLE IF EXISTS `cs_message_shard_slot`;
+CREATE TABLE `cs_message_shard_slot`  (
+  `slot_id` int NOT NULL COMMENT '槽位号（conversation_id % 1024）',
+  `table_name` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '所在物理表',
+  `target_table` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL DEFAULT NULL COMMENT '迁移目标表',
+  `update_time` datetime NULL DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`slot_id`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_bin COMMENT = '消息分片槽位表' ROW_FORMAT = Dynamic;
+
+-- ----------------------------
+-- Table structure for cs_id_segment
+-- ----------------------------
+DROP TABLE IF EXISTS `cs_id_segment`;
+CREATE TABLE `cs_id_segment`  (
+  `biz_tag` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '业务标识',
+  `max_id` bigint NOT NULL COMMENT '已分配的最大序号',
+  `update_time` datetime NULL DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`biz_tag`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_bin COMMENT = 'ID号段表' ROW_FORMAT = Dynamic;
+
+-- ----------------------------
+-- Records of cs_id_segment
+-- ----------------------------
+INSERT INTO `cs_id_segment` VALUES ('cs_message', 1073741823, NULL);
+
+-- ----------------------------
+-- Table structure for cs_message_archive
+-- ----------------------------
+DROP TABLE IF EXISTS `cs_message_archive`;
+CREATE TABLE `cs_message_archive`  (
+  `archive_id` bigint NOT NULL AUTO_INCREMENT COMMENT '归档ID',
+  `conversation_id` bigint NOT NULL COMMENT '会话ID',
+  `archive_month` char(6) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '归档月份（yyyyMM）',
+  `file_path` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '归档文件相对路径',
+  `message_count` int NOT NULL DEFAULT 0 COMMENT '累计归档消息数',
+  `first_send_time` datetime NULL DEFAULT NULL COMMENT '最早发送时间',
+  `last_send_time` datetime NULL DEFAULT NULL COMMENT '最晚发送时间',
+  `checksum` char(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '文件SHA-256',
+  `create_time` datetime NULL DEFAULT NULL COMMENT '创建时间',
+  `update_time` datetime NULL DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`archive_id`) USING BTREE,
+  UNIQUE INDEX `uk_conversation_month`(`conversation_id` ASC, `archive_month` ASC) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_bin COMMENT = '消息归档索引表' ROW_FORMAT = Dynamic;
+
+-- ----------------------------
+-- Table structure for cs_message_transcript
+-- ----------------------------
+DROP TABLE IF EXISTS `cs_message_transcript`;
+CREATE TABLE `cs_message_transcript`  (
+  `conversation_id` bigint NOT NULL COMMENT '会话ID',
+  `shard_slot` smallint GENERATED ALWAYS AS ((`conversation_id` % 1024)) VIRTUAL NULL COMMENT '分片槽位',
+  `message_count` int NOT NULL DEFAULT 0 COMMENT '未删除的消息数量',
+  `total_count` int NOT NULL DEFAULT 0 COMMENT '全部消息数量（含已删除）',
+  `min_message_id` bigint NULL DEFAULT NULL COMMENT '最小消息ID',
+  `max_message_id` bigint NULL DEFAULT NULL COMMENT '最大消息ID',
+  `first_send_time` datetime NULL DEFAULT NULL COMMENT '最早发送时间',
+  `last_send_time` datetime NULL DEFAULT NULL COMMENT '最晚发送时间',
+  `content` longblob NOT NULL COMMENT 'gzip压缩的NDJSON消息记录',
+  `line_index` longblob NOT NULL COMMENT '行索引（消息ID、行偏移、删除标志）',
+  `create_time` datetime NULL DEFAULT NULL COMMENT '创建时间',
+  PRIMARY KEY (`conversation_id`) USING BTREE,
+  INDEX `idx_shard_slot`(`shard_slot` ASC, `min_message_id` ASC) USING BTREE,
+  INDEX `idx_min_message_id`(`min_message_id` ASC) USING BTREE,
+  INDEX `idx_last_send_time`(`last_send_time` ASC) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_bin COMMENT = '会话消息压缩记录表' ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for cs_robot_config
 -- ----------------------------
@@ -591,6 +663,7 @@ CREATE TABLE `cs_ticket`  (
   `source` varchar(20) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL DEFAULT '' COMMENT '来源渠道',
   `tags` varchar(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL DEFAULT '' COMMENT '标签（JSON格式）',
   `due_time` datetime NULL DEFAULT NULL COMMENT '截止时间',
+  `sla_time` datetime NULL DEFAULT NULL COMMENT '下次SLA检查时间',
   `resolve_time` datetime NULL DEFAULT NULL COMMENT '解决时间',
   `close_time` datetime NULL DEFAULT NULL COMMENT '关闭时间',
   `satisfaction` char(1) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL DEFAULT NULL COMMENT '满意度（1-5分）',
@@ -612,7 +685,8 @@ CREATE TABLE `cs_ticket`  (
   INDEX `idx_assigned_to`(`assigned_to` ASC) USING BTREE,
   INDEX `idx_status`(`status` ASC) USING BTREE,
   INDEX `idx_priority`(`priority` ASC) USING BTREE,
-  INDEX `idx_create_time`(`create_time` ASC) USING BTREE
+  INDEX `idx_create_time`(`create_time` ASC) USING BTREE,
+  INDEX `idx_sla_time`(`sla_time` ASC) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 100000 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_bin COMMENT = '工单系统表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -1002,6 +1076,48 @@ INSERT INTO `sys_dept` VALUES (107, 101, '0,100,101', '运维部门', 5, '若依
 INSERT INTO `sys_dept` VALUES (108, 102, '0,100,102', '市场部门', 1, '若依', '15888888888', 'ry@qq.com', '0', '0', 'admin', '2025-08-06 15:40:29', '', NULL);
 INSERT INTO `sys_dept` VALUES (109, 102, '0,100,102', '财务部门', 2, '若依', '15888888888', 'ry@qq.com', '0', '0', 'admin', '2025-08-06 15:40:29', '', NULL);
 
+-- ----------------------------
+-- Table structure for sys_dept_closure
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_dept_closure`;
+CREATE TABLE `sys_dept_closure`  (
+  `ancestor_id` bigint NOT NULL COMMENT '祖先部门id',
+  `descendant_id` bigint NOT NULL COMMENT '后代部门id',
+  `depth` int NOT NULL DEFAULT 0 COMMENT '层级距离（0为自身）',
+  PRIMARY KEY (`ancestor_id`, `descendant_id`) USING BTREE,
+  INDEX `idx_descendant_id`(`descendant_id`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_bin COMMENT = '部门层级关系表' ROW_FORMAT = Dynamic;
+
+-- ----------------------------
+-- Records of sys_dept_closure
+-- ----------------------------
+INSERT INTO `sys_dept_closure` VALUES (100, 100, 0);
+INSERT INTO `sys_dept_closure` VALUES (100, 101, 1);
+INSERT INTO `sys_dept_closure` VALUES (100, 102, 1);
+INSERT INTO `sys_dept_closure` VALUES (100, 103, 2);
+INSERT INTO `sys_dept_closure` VALUES (100, 104, 2);
+INSERT INTO `sys_dept_closure` VALUES (100, 105, 2);
+INSERT INTO `sys_dept_closure` VALUES (100, 106, 2);
+INSERT INTO `sys_dept_closure` VALUES (100, 107, 2);
+INSERT INTO `sys_dept_closure` VALUES (100, 108, 2);
+INSERT INTO `sys_dept_closure` VALUES (100, 109, 2);
+INSERT INTO `sys_dept_closure` VALUES (101, 101, 0);
+INSERT INTO `sys_dept_closure` VALUES (101, 103, 1);
+INSERT INTO `sys_dept_closure` VALUES (101, 104, 1);
+INSERT INTO `sys_dept_closure` VALUES (101, 105, 1);
+INSERT INTO `sys_dept_closure` VALUES (101, 106, 1);
+INSERT INTO `sys_dept_closure` VALUES (101, 107, 1);
+INSERT INTO `sys_dept_closure` VALUES (102, 102, 0);
+INSERT INTO `sys_dept_closure` VALUES (102, 108, 1);
+INSERT INTO `sys_dept_closure` VALUES (102, 109, 1);
+INSERT INTO `sys_dept_closure` VALUES (103, 103, 0);
+INSERT INTO `sys_dept_closure` VALUES (104, 104, 0);
+INSERT INTO `sys_dept_closure` VALUES (105, 105, 0);
+INSERT INTO `sys_dept_closure` VALUES (106, 106, 0);
+INSERT INTO `sys_dept_closure` VALUES (107, 107, 0);
+INSERT INTO `sys_dept_closure` VALUES (108, 108, 0);
+INSERT INTO `sys_dept_closure` VALUES (109, 109, 0);
+
 -- ----------------------------
 -- Table structure for sys_dict_data
 -- ----------------------------
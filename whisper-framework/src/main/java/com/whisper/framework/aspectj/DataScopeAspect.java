@@ -1,13 +1,23 @@
 package com.whisper.framework.aspectj;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 import com.whisper.common.annotation.DataScope;
+import com.whisper.common.constant.CacheConstants;
 import com.whisper.common.constant.UserConstants;
+import com.whisper.common.core.cache.LocalCache;
 import com.whisper.common.core.domain.BaseEntity;
 import com.whisper.common.core.domain.entity.SysRole;
 import com.whisper.common.core.domain.entity.SysUser;
@@ -15,11 +25,16 @@ import com.whisper.common.core.domain.model.LoginUser;
 import com.whisper.common.core.text.Convert;
 import com.whisper.common.utils.SecurityUtils;
 import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.spring.SpringUtils;
 import com.whisper.framework.security.context.PermissionContextHolder;
+import com.whisper.system.service.ISysDeptService;
 
 /**
  * 数据过滤处理
  *
+ * 同一用户、角色集合、权限字符和别名生成的SQL相同，编译后缓存在本节点；角色、角色部门或部门变更时
+ * 经Redis通知各节点清空缓存。
+ *
  * @author ruoyi
  */
 @Aspect
@@ -56,6 +71,42 @@ public class DataScopeAspect
      */
     public static final String DATA_SCOPE = "dataScope";
 
+    /**
+     * 部门及以下数据权限直接展开为IN列表的最大部门数，超过时使用闭包表子查询
+     */
+    private static final int DATA_SCOPE_IN_LIMIT = 500;
+
+    /** 缓存最大条目数 */
+    private static final int CACHE_SIZE = 5000;
+
+    /** 缓存过期时间（分钟），失效通知丢失时兜底 */
+    private static final int CACHE_MINUTES = 30;
+
+    /** (用户, 角色集合指纹, 权限字符, 别名) -> 数据权限SQL */
+    private final LocalCache<String, String> sqlCache = new LocalCache<String, String>(CACHE_SIZE, CACHE_MINUTES,
+            TimeUnit.MINUTES);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 订阅角色、角色部门和部门变更通知，本节点发布的通知同样经Redis回送
+     */
+    @PostConstruct
+    public void init()
+    {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            sqlCache.clear();
+            evictions.increment();
+        }, new ChannelTopic(CacheConstants.DATA_SCOPE_EVICT_CHANNEL));
+    }
+
     @Before("@annotation(controllerDataScope)")
     public void doBefore(JoinPoint point, DataScope controllerDataScope) throws Throwable
     {
@@ -74,11 +125,57 @@ public class DataScopeAspect
             if (StringUtils.isNotNull(currentUser) && !currentUser.isAdmin())
             {
                 String permission = StringUtils.defaultIfEmpty(controllerDataScope.permission(), PermissionContextHolder.getContext());
-                dataScopeFilter(joinPoint, currentUser, controllerDataScope.deptAlias(), controllerDataScope.userAlias(), permission);
+                String cacheKey = cacheKey(currentUser, controllerDataScope.deptAlias(), controllerDataScope.userAlias(), permission);
+                String sql = sqlCache.get(cacheKey);
+                if (sql == null)
+                {
+                    misses.increment();
+                    sql = buildDataScopeSql(currentUser, controllerDataScope.deptAlias(), controllerDataScope.userAlias(), permission);
+                    sqlCache.put(cacheKey, sql);
+                }
+                else
+                {
+                    hits.increment();
+                }
+                applyDataScope(joinPoint, sql);
             }
         }
     }
 
+    /**
+     * 获取数据权限SQL缓存统计
+     */
+    public Map<String, Object> getStatistics()
+    {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+        statistics.put("size", sqlCache.size());
+        statistics.put("hits", hitCount);
+        statistics.put("misses", missCount);
+        statistics.put("hitRate", total == 0 ? 0D : (double) hitCount / total);
+        statistics.put("evictions", evictions.sum());
+        return statistics;
+    }
+
+    /**
+     * 缓存key，包含用户和部门（本部门及仅本人范围依赖）以及每个角色的ID、范围、状态和权限集合摘要
+     */
+    private static String cacheKey(SysUser user, String deptAlias, String userAlias, String permission)
+    {
+        StringBuilder key = new StringBuilder(64);
+        key.append(user.getUserId()).append('|').append(user.getDeptId()).append('|').append(permission)
+                .append('|').append(deptAlias).append('|').append(userAlias);
+        for (SysRole role : user.getRoles())
+        {
+            key.append('|').append(role.getRoleId()).append(',').append(role.getDataScope())
+                    .append(',').append(role.getStatus()).append(',')
+                    .append(role.getPermissions() == null ? 0 : role.getPermissions().hashCode());
+        }
+        return key.toString();
+    }
+
     /**
      * 数据范围过滤
      *
@@ -89,12 +186,27 @@ public class DataScopeAspect
      * @param permission 权限字符
      */
     public static void dataScopeFilter(JoinPoint joinPoint, SysUser user, String deptAlias, String userAlias, String permission)
+    {
+        applyDataScope(joinPoint, buildDataScopeSql(user, deptAlias, userAlias, permission));
+    }
+
+    /**
+     * 生成数据范围过滤SQL
+     *
+     * @param user 用户
+     * @param deptAlias 部门别名
+     * @param userAlias 用户别名
+     * @param permission 权限字符
+     * @return 以 AND 开头的过滤条件，无需过滤时为空字符串
+     */
+    public static String buildDataScopeSql(SysUser user, String deptAlias, String userAlias, String permission)
     {
         StringBuilder sqlString = new StringBuilder();
         List<String> conditions = new ArrayList<String>();
         List<String> scopeCustomIds = new ArrayList<String>();
+        String[] permissions = Convert.toStrArray(permission);
         user.getRoles().forEach(role -> {
-            if (DATA_SCOPE_CUSTOM.equals(role.getDataScope()) && StringUtils.equals(role.getStatus(), UserConstants.ROLE_NORMAL) && StringUtils.containsAny(role.getPermissions(), Convert.toStrArray(permission)))
+            if (DATA_SCOPE_CUSTOM.equals(role.getDataScope()) && StringUtils.equals(role.getStatus(), UserConstants.ROLE_NORMAL) && StringUtils.containsAny(role.getPermissions(), permissions))
             {
                 scopeCustomIds.add(Convert.toStr(role.getRoleId()));
             }
@@ -107,7 +219,7 @@ public class DataScopeAspect
             {
                 continue;
             }
-            if (!StringUtils.containsAny(role.getPermissions(), Convert.toStrArray(permission)))
+            if (!StringUtils.containsAny(role.getPermissions(), permissions))
             {
                 continue;
             }
@@ -135,7 +247,19 @@ public class DataScopeAspect
             }
             else if (DATA_SCOPE_DEPT_AND_CHILD.equals(dataScope))
             {
-                sqlString.append(StringUtils.format(" OR {}.dept_id IN ( SELECT dept_id FROM sys_dept WHERE dept_id = {} or find_in_set( {} , ancestors ) )", deptAlias, user.getDeptId(), user.getDeptId()));
+                List<Long> deptIds = SpringUtils.getBean(ISysDeptService.class).selectChildrenDeptIds(user.getDeptId());
+                if (deptIds.isEmpty())
+                {
+                    sqlString.append(StringUtils.format(" OR {}.dept_id = {} ", deptAlias, user.getDeptId()));
+                }
+                else if (deptIds.size() <= DATA_SCOPE_IN_LIMIT)
+                {
+                    sqlString.append(StringUtils.format(" OR {}.dept_id IN ( {} ) ", deptAlias, StringUtils.join(deptIds, ",")));
+                }
+                else
+                {
+                    sqlString.append(StringUtils.format(" OR {}.dept_id IN ( SELECT descendant_id FROM sys_dept_closure WHERE ancestor_id = {} ) ", deptAlias, user.getDeptId()));
+                }
             }
             else if (DATA_SCOPE_SELF.equals(dataScope))
             {
@@ -160,12 +284,25 @@ public class DataScopeAspect
 
         if (StringUtils.isNotBlank(sqlString.toString()))
         {
-            Object params = joinPoint.getArgs()[0];
-            if (StringUtils.isNotNull(params) && params instanceof BaseEntity)
-            {
-                BaseEntity baseEntity = (BaseEntity) params;
-                baseEntity.getParams().put(DATA_SCOPE, " AND (" + sqlString.substring(4) + ")");
-            }
+            return " AND (" + sqlString.substring(4) + ")";
+        }
+        return "";
+    }
+
+    /**
+     * 将数据范围过滤SQL写入查询参数
+     */
+    private static void applyDataScope(final JoinPoint joinPoint, String sql)
+    {
+        if (StringUtils.isEmpty(sql))
+        {
+            return;
+        }
+        Object params = joinPoint.getArgs()[0];
+        if (StringUtils.isNotNull(params) && params instanceof BaseEntity)
+        {
+            BaseEntity baseEntity = (BaseEntity) params;
+            baseEntity.getParams().put(DATA_SCOPE, sql);
         }
     }
 
@@ -2,7 +2,14 @@ package com.whisper.framework.aspectj;
 
 import java.lang.reflect.Method;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
@@ -10,18 +17,23 @@ import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 import com.whisper.common.annotation.RateLimiter;
+import com.whisper.common.enums.LimitAlgorithm;
 import com.whisper.common.enums.LimitType;
 import com.whisper.common.exception.ServiceException;
-import com.whisper.common.utils.StringUtils;
 import com.whisper.common.utils.ip.IpUtils;
 
 /**
  * 限流处理
  *
+ * 每个节点按限流key持有从Redis批量申请的许可租约，租约内的请求只在本地扣减；租约用完或过期时再向Redis申请，
+ * 剩余额度越少单批越小，接近上限时逐个申请，因此各节点合计不会超过限流次数。被拒绝后在建议的重试间隔内直接本地拒绝。
+ *
  * @author ruoyi
  */
 @Aspect
@@ -30,9 +42,50 @@ public class RateLimiterAspect
 {
     private static final Logger log = LoggerFactory.getLogger(RateLimiterAspect.class);
 
+    /** 单次申请许可数占限流次数的比例（1/n） */
+    private static final int LEASE_DIVISOR = 10;
+
+    /** 滑动窗口和GCRA的本地租约最长有效期（毫秒） */
+    private static final long LEASE_MILLIS = 1000;
+
+    /** 清理过期租约的周期（秒） */
+    private static final int CLEANUP_INTERVAL_SECONDS = 60;
+
     private RedisTemplate<Object, Object> redisTemplate;
 
-    private RedisScript<Long> limitScript;
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> limitScript;
+
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> slidingWindowLimitScript;
+
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> gcraLimitScript;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    /** 方法对应的key后缀（类名-方法名） */
+    private final Map<Method, String> methodKeys = new ConcurrentHashMap<Method, String>();
+
+    /** 本地许可租约 */
+    private final Map<String, Lease> leases = new ConcurrentHashMap<String, Lease>();
+
+    /** 本地放行次数 */
+    private final LongAdder localPassed = new LongAdder();
+
+    /** 经Redis申请后放行次数 */
+    private final LongAdder remotePassed = new LongAdder();
+
+    /** 拒绝次数 */
+    private final LongAdder rejected = new LongAdder();
+
+    /** Redis调用次数 */
+    private final LongAdder redisCalls = new LongAdder();
+
+    /** 限流异常次数 */
+    private final LongAdder errors = new LongAdder();
 
     @Autowired
     public void setRedisTemplate1(RedisTemplate<Object, Object> redisTemplate)
@@ -41,27 +94,45 @@ public class RateLimiterAspect
     }
 
     @Autowired
-    public void setLimitScript(RedisScript<Long> limitScript)
+    @SuppressWarnings("rawtypes")
+    public void setLimitScript(@Qualifier("limitScript") RedisScript<List> limitScript)
     {
         this.limitScript = limitScript;
     }
 
+    @Autowired
+    @SuppressWarnings("rawtypes")
+    public void setSlidingWindowLimitScript(@Qualifier("slidingWindowLimitScript") RedisScript<List> slidingWindowLimitScript)
+    {
+        this.slidingWindowLimitScript = slidingWindowLimitScript;
+    }
+
+    @Autowired
+    @SuppressWarnings("rawtypes")
+    public void setGcraLimitScript(@Qualifier("gcraLimitScript") RedisScript<List> gcraLimitScript)
+    {
+        this.gcraLimitScript = gcraLimitScript;
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        scheduledExecutorService.scheduleWithFixedDelay(this::cleanup, CLEANUP_INTERVAL_SECONDS, CLEANUP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
     @Before("@annotation(rateLimiter)")
     public void doBefore(JoinPoint point, RateLimiter rateLimiter) throws Throwable
     {
-        int time = rateLimiter.time();
-        int count = rateLimiter.count();
-
         String combineKey = getCombineKey(rateLimiter, point);
-        List<Object> keys = Collections.singletonList(combineKey);
+        Lease lease = leases.computeIfAbsent(combineKey, k -> new Lease());
         try
         {
-            Long number = redisTemplate.execute(limitScript, keys, count, time);
-            if (StringUtils.isNull(number) || number.intValue() > count)
+            if (!lease.tryAcquire(combineKey, rateLimiter))
             {
+                rejected.increment();
+                log.debug("限流key'{}'超过限制'{}'", combineKey, rateLimiter.count());
                 throw new ServiceException("访问过于频繁，请稍候再试");
             }
-            log.info("限制请求'{}',当前请求'{}',缓存key'{}'", count, number.intValue(), combineKey);
         }
         catch (ServiceException e)
         {
@@ -69,21 +140,138 @@ public class RateLimiterAspect
         }
         catch (Exception e)
         {
+            errors.increment();
+            log.error("限流处理异常'{}'", e.getMessage());
             throw new RuntimeException("服务器限流异常，请稍候再试");
         }
     }
 
     public String getCombineKey(RateLimiter rateLimiter, JoinPoint point)
     {
-        StringBuffer stringBuffer = new StringBuffer(rateLimiter.key());
+        Method method = ((MethodSignature) point.getSignature()).getMethod();
+        String methodKey = methodKeys.computeIfAbsent(method, m -> {
+            String suffix = m.getDeclaringClass().getName() + "-" + m.getName();
+            if (rateLimiter.algorithm() == LimitAlgorithm.SLIDING_WINDOW)
+            {
+                return suffix + ":sliding";
+            }
+            if (rateLimiter.algorithm() == LimitAlgorithm.GCRA)
+            {
+                return suffix + ":gcra";
+            }
+            return suffix;
+        });
         if (rateLimiter.limitType() == LimitType.IP)
         {
-            stringBuffer.append(IpUtils.getIpAddr()).append("-");
+            return rateLimiter.key() + IpUtils.getIpAddr() + "-" + methodKey;
+        }
+        return rateLimiter.key() + methodKey;
+    }
+
+    /**
+     * 获取限流统计
+     */
+    public Map<String, Object> getStatistics()
+    {
+        Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+        statistics.put("localPassed", localPassed.sum());
+        statistics.put("remotePassed", remotePassed.sum());
+        statistics.put("rejected", rejected.sum());
+        statistics.put("redisCalls", redisCalls.sum());
+        statistics.put("errors", errors.sum());
+        statistics.put("leases", leases.size());
+        return statistics;
+    }
+
+    /**
+     * 清理已过期且不在拒绝期内的租约
+     */
+    private void cleanup()
+    {
+        long now = System.currentTimeMillis();
+        leases.values().removeIf(lease -> lease.isIdle(now));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> scriptOf(LimitAlgorithm algorithm)
+    {
+        switch (algorithm)
+        {
+            case SLIDING_WINDOW:
+                return slidingWindowLimitScript;
+            case GCRA:
+                return gcraLimitScript;
+            default:
+                return limitScript;
+        }
+    }
+
+    /**
+     * 向Redis申请许可，返回 {发放数量, 毫秒数}
+     */
+    @SuppressWarnings("rawtypes")
+    private List requestLease(String combineKey, RateLimiter rateLimiter)
+    {
+        redisCalls.increment();
+        int count = rateLimiter.count();
+        long period = TimeUnit.SECONDS.toMillis(rateLimiter.time());
+        int requested = Math.max(1, count / LEASE_DIVISOR);
+        List<Object> keys = Collections.singletonList(combineKey);
+        return redisTemplate.execute(scriptOf(rateLimiter.algorithm()), RedisSerializer.string(), null, keys,
+                String.valueOf(count), String.valueOf(period), String.valueOf(requested),
+                String.valueOf(Math.min(LEASE_MILLIS, period)));
+    }
+
+    /**
+     * 单个限流key在本节点的许可租约
+     */
+    private class Lease
+    {
+        /** 剩余许可 */
+        private long permits;
+
+        /** 租约到期时间 */
+        private long expireAt;
+
+        /** 拒绝截止时间 */
+        private long blockedUntil;
+
+        @SuppressWarnings("rawtypes")
+        private synchronized boolean tryAcquire(String combineKey, RateLimiter rateLimiter)
+        {
+            long now = System.currentTimeMillis();
+            if (now < blockedUntil)
+            {
+                return false;
+            }
+            if (permits > 0 && now < expireAt)
+            {
+                permits--;
+                localPassed.increment();
+                return true;
+            }
+            List result = requestLease(combineKey, rateLimiter);
+            if (result == null || result.size() < 2)
+            {
+                throw new IllegalStateException("限流脚本返回值异常");
+            }
+            long granted = ((Number) result.get(0)).longValue();
+            long millis = ((Number) result.get(1)).longValue();
+            if (granted <= 0)
+            {
+                permits = 0;
+                blockedUntil = now + Math.max(millis, 1);
+                return false;
+            }
+            permits = granted - 1;
+            expireAt = now + millis;
+            remotePassed.increment();
+            return true;
+        }
+
+        private synchronized boolean isIdle(long now)
+        {
+            return now >= expireAt && now >= blockedUntil;
         }
-        MethodSignature signature = (MethodSignature) point.getSignature();
-        Method method = signature.getMethod();
-        Class<?> targetClass = method.getDeclaringClass();
-        stringBuffer.append(targetClass.getName()).append("-").append(method.getName());
-        return stringBuffer.toString();
     }
 }
@@ -0,0 +1,66 @@
+package com.whisper.framework.aspectj;
+
+import java.util.Objects;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import com.whisper.framework.datasource.DynamicDataSourceContextHolder;
+
+/**
+ * 事务读写路由
+ *
+ * 在事务拦截器之前执行：只读事务的连接可以使用从库，其余事务使用主库。事务在开始时获取连接，
+ * 因此必须在事务开始前设置好路由提示。
+ *
+ * @author ruoyi
+ */
+@Aspect
+@Order(2)
+@Component
+@ConditionalOnProperty(prefix = "spring.datasource.druid.readWrite", name = "enabled", havingValue = "true")
+public class ReadWriteRoutingAspect
+{
+    @Pointcut("@annotation(org.springframework.transaction.annotation.Transactional)"
+            + "|| @within(org.springframework.transaction.annotation.Transactional)")
+    public void txPointCut()
+    {
+
+    }
+
+    @Around("txPointCut()")
+    public Object around(ProceedingJoinPoint point) throws Throwable
+    {
+        Transactional transactional = getTransactional(point);
+        boolean readOnly = transactional != null && transactional.readOnly();
+        Boolean previous = DynamicDataSourceContextHolder.setReadOnly(readOnly);
+        try
+        {
+            return point.proceed();
+        }
+        finally
+        {
+            DynamicDataSourceContextHolder.setReadOnly(previous);
+        }
+    }
+
+    /**
+     * 获取事务注解，方法上的优先
+     */
+    private Transactional getTransactional(ProceedingJoinPoint point)
+    {
+        MethodSignature signature = (MethodSignature) point.getSignature();
+        Transactional transactional = AnnotationUtils.findAnnotation(signature.getMethod(), Transactional.class);
+        if (Objects.nonNull(transactional))
+        {
+            return transactional;
+        }
+        return AnnotationUtils.findAnnotation(signature.getDeclaringType(), Transactional.class);
+    }
+}
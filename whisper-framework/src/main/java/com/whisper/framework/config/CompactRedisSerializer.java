@@ -0,0 +1,35 @@
+package com.whisper.framework.config;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import com.whisper.common.core.redis.RedisValueCodec;
+
+/**
+ * Redis值序列化，按配置使用JSON或紧凑二进制编码，读取时兼容旧版JSON文本
+ * 
+ * @author ruoyi
+ */
+public class CompactRedisSerializer<T> implements RedisSerializer<T>
+{
+    private final RedisValueCodec codec;
+
+    private final Class<T> clazz;
+
+    public CompactRedisSerializer(RedisValueCodec codec, Class<T> clazz)
+    {
+        this.codec = codec;
+        this.clazz = clazz;
+    }
+
+    @Override
+    public byte[] serialize(T t) throws SerializationException
+    {
+        return codec.serialize(t);
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException
+    {
+        return codec.deserialize(bytes, clazz);
+    }
+}
@@ -1,20 +1,30 @@
 package com.whisper.framework.config;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceBuilder;
 import com.alibaba.druid.spring.boot.autoconfigure.properties.DruidStatProperties;
@@ -23,6 +33,8 @@ import com.whisper.common.enums.DataSourceType;
 import com.whisper.common.utils.spring.SpringUtils;
 import com.whisper.framework.config.properties.DruidProperties;
 import com.whisper.framework.datasource.DynamicDataSource;
+import com.whisper.framework.datasource.DynamicDataSourceContextHolder;
+import com.whisper.framework.datasource.ReplicaRouter;
 
 /**
  * druid 配置多数据源
@@ -32,6 +44,18 @@ import com.whisper.framework.datasource.DynamicDataSource;
 @Configuration
 public class DruidConfig
 {
+    /** 是否开启读写分离 */
+    @Value("${spring.datasource.druid.readWrite.enabled:false}")
+    private boolean readWriteEnabled;
+
+    /** 从库最大允许复制延迟（秒） */
+    @Value("${spring.datasource.druid.readWrite.maxLagSeconds:5}")
+    private long maxLagSeconds;
+
+    /** 从库健康检查间隔（秒） */
+    @Value("${spring.datasource.druid.readWrite.checkIntervalSeconds:5}")
+    private long checkIntervalSeconds;
+
     @Bean
     @ConfigurationProperties("spring.datasource.druid.master")
     public DataSource masterDataSource(DruidProperties druidProperties)
@@ -51,12 +75,37 @@ public class DruidConfig
 
     @Bean(name = "dynamicDataSource")
     @Primary
-    public DynamicDataSource dataSource(DataSource masterDataSource)
+    public DynamicDataSource dataSource(DataSource masterDataSource, DruidProperties druidProperties,
+            Environment environment, @Qualifier("scheduledExecutorService") ScheduledExecutorService scheduledExecutorService)
     {
         Map<Object, Object> targetDataSources = new HashMap<>();
         targetDataSources.put(DataSourceType.MASTER.name(), masterDataSource);
         setDataSource(targetDataSources, DataSourceType.SLAVE.name(), "slaveDataSource");
-        return new DynamicDataSource(masterDataSource, targetDataSources);
+        if (!readWriteEnabled)
+        {
+            return new DynamicDataSource(masterDataSource, targetDataSources);
+        }
+        // 从库池：slave及replicas下配置的其他从库
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        if (targetDataSources.containsKey(DataSourceType.SLAVE.name()))
+        {
+            replicas.put(DataSourceType.SLAVE.name(), (DataSource) targetDataSources.get(DataSourceType.SLAVE.name()));
+        }
+        List<DruidDataSource> extras = Binder.get(environment)
+                .bind("spring.datasource.druid.replicas", Bindable.listOf(DruidDataSource.class))
+                .orElse(Collections.emptyList());
+        for (int i = 0; i < extras.size(); i++)
+        {
+            String name = DataSourceType.SLAVE.name() + "_" + (i + 1);
+            DataSource replica = druidProperties.dataSource(extras.get(i));
+            replicas.put(name, replica);
+            targetDataSources.put(name, replica);
+        }
+        ReplicaRouter replicaRouter = new ReplicaRouter(replicas, maxLagSeconds);
+        // 可用从库的延迟不超过 maxLagSeconds（检查间隔内测得），超过二者之和的写入在从库上已可见
+        DynamicDataSourceContextHolder.setPinMillis(TimeUnit.SECONDS.toMillis(maxLagSeconds + checkIntervalSeconds));
+        replicaRouter.start(scheduledExecutorService, checkIntervalSeconds);
+        return new DynamicDataSource(masterDataSource, targetDataSources, replicaRouter);
     }
     
     /**
@@ -11,6 +11,7 @@ import org.springframework.context.annotation.Configuration;
 import com.whisper.common.filter.RepeatableFilter;
 import com.whisper.common.filter.XssFilter;
 import com.whisper.common.utils.StringUtils;
+import com.whisper.framework.datasource.ReadWriteRoutingFilter;
 
 /**
  * Filter配置
@@ -55,4 +56,17 @@ public class FilterConfig
         return registration;
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Bean
+    @ConditionalOnProperty(value = "spring.datasource.druid.readWrite.enabled", havingValue = "true")
+    public FilterRegistrationBean readWriteRoutingFilterRegistration()
+    {
+        FilterRegistrationBean registration = new FilterRegistrationBean();
+        registration.setFilter(new ReadWriteRoutingFilter());
+        registration.addUrlPatterns("/*");
+        registration.setName("readWriteRoutingFilter");
+        registration.setOrder(FilterRegistrationBean.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
 }
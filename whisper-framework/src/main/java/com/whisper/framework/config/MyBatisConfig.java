@@ -23,6 +23,7 @@ import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.util.ClassUtils;
 import com.whisper.common.utils.StringUtils;
+import com.whisper.framework.datasource.ReadWriteRoutingInterceptor;
 
 /**
  * Mybatis支持*匹配扫描包
@@ -127,6 +128,10 @@ public class MyBatisConfig
         sessionFactory.setTypeAliasesPackage(typeAliasesPackage);
         sessionFactory.setMapperLocations(resolveMapperLocations(StringUtils.split(mapperLocations, ",")));
         sessionFactory.setConfigLocation(new DefaultResourceLoader().getResource(configLocation));
+        if (Boolean.parseBoolean(env.getProperty("spring.datasource.druid.readWrite.enabled")))
+        {
+            sessionFactory.setPlugins(new ReadWriteRoutingInterceptor());
+        }
         return sessionFactory.getObject();
     }
 }
\ No newline at end of file
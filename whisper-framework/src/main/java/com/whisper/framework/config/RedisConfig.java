@@ -1,5 +1,7 @@
 package com.whisper.framework.config;
 
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -7,7 +9,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import com.whisper.common.core.redis.RedisValueCodec;
 
 /**
  * redis配置
@@ -18,14 +22,32 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 @EnableCaching
 public class RedisConfig extends CachingConfigurerSupport
 {
+    /** 值编码方式（json兼容旧版本节点，jsonb紧凑二进制） */
+    @Value("${redisCodec.type:json}")
+    private String codecType;
+
+    /** 超过该字节数时LZ4压缩，0表示不压缩 */
+    @Value("${redisCodec.compressThreshold:0}")
+    private int compressThreshold;
+
+    /** 固定使用jsonb编码的key前缀（逗号分隔），默认编码为json时可先对部分key启用 */
+    @Value("${redisCodec.jsonbPrefixes:}")
+    private String[] jsonbPrefixes;
+
+    @Bean
+    public RedisValueCodec redisValueCodec()
+    {
+        return new RedisValueCodec(RedisValueCodec.Codec.valueOf(codecType.toUpperCase()), compressThreshold, jsonbPrefixes);
+    }
+
     @Bean
     @SuppressWarnings(value = { "unchecked", "rawtypes" })
-    public RedisTemplate<Object, Object> redisTemplate(RedisConnectionFactory connectionFactory)
+    public RedisTemplate<Object, Object> redisTemplate(RedisConnectionFactory connectionFactory, RedisValueCodec redisValueCodec)
     {
         RedisTemplate<Object, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
-        FastJson2JsonRedisSerializer serializer = new FastJson2JsonRedisSerializer(Object.class);
+        CompactRedisSerializer serializer = new CompactRedisSerializer(redisValueCodec, Object.class);
 
         // 使用StringRedisSerializer来序列化和反序列化redis的key值
         template.setKeySerializer(new StringRedisSerializer());
@@ -39,31 +61,143 @@ public class RedisConfig extends CachingConfigurerSupport
         return template;
     }
 
+    /**
+     * 消息订阅容器，用于各节点本地缓存失效通知
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory)
+    {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public DefaultRedisScript<List> limitScript()
+    {
+        return leaseScript(limitScriptText());
+    }
+
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public DefaultRedisScript<List> slidingWindowLimitScript()
+    {
+        return leaseScript(slidingWindowLimitScriptText());
+    }
+
     @Bean
-    public DefaultRedisScript<Long> limitScript()
+    @SuppressWarnings("rawtypes")
+    public DefaultRedisScript<List> gcraLimitScript()
     {
-        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
-        redisScript.setScriptText(limitScriptText());
-        redisScript.setResultType(Long.class);
+        return leaseScript(gcraLimitScriptText());
+    }
+
+    /**
+     * 限流脚本按批申请许可，参数：限流次数、周期（毫秒）、申请数量、租约时长（毫秒）；
+     * 返回 {发放数量, 毫秒数}，发放为0时毫秒数为建议重试间隔，否则为本地租约有效期。
+     * 剩余额度越少单次发放越少，接近上限时逐个发放。
+     */
+    @SuppressWarnings("rawtypes")
+    private DefaultRedisScript<List> leaseScript(String text)
+    {
+        DefaultRedisScript<List> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptText(text);
+        redisScript.setResultType(List.class);
         return redisScript;
     }
 
     /**
-     * 限流脚本
+     * 固定窗口限流脚本
      */
     private String limitScriptText()
     {
         return "local key = KEYS[1]\n" +
                 "local count = tonumber(ARGV[1])\n" +
-                "local time = tonumber(ARGV[2])\n" +
-                "local current = redis.call('get', key);\n" +
-                "if current and tonumber(current) > count then\n" +
-                "    return tonumber(current);\n" +
+                "local period = tonumber(ARGV[2])\n" +
+                "local requested = tonumber(ARGV[3])\n" +
+                "local current = tonumber(redis.call('get', key) or '0')\n" +
+                "local remaining = count - current\n" +
+                "if remaining <= 0 then\n" +
+                "    local ttl = redis.call('pttl', key)\n" +
+                "    if ttl < 0 then\n" +
+                "        redis.call('pexpire', key, period)\n" +
+                "        ttl = period\n" +
+                "    end\n" +
+                "    return {0, ttl}\n" +
+                "end\n" +
+                "local granted = math.min(requested, math.max(1, math.floor(remaining / 2)))\n" +
+                "redis.call('incrby', key, granted)\n" +
+                "local ttl = redis.call('pttl', key)\n" +
+                "if ttl < 0 then\n" +
+                "    redis.call('pexpire', key, period)\n" +
+                "    ttl = period\n" +
+                "end\n" +
+                "return {granted, ttl}";
+    }
+
+    /**
+     * 滑动窗口限流脚本（当前窗口计数加上一窗口按剩余比例折算的计数）
+     */
+    private String slidingWindowLimitScriptText()
+    {
+        return "redis.replicate_commands()\n" +
+                "local key = KEYS[1]\n" +
+                "local count = tonumber(ARGV[1])\n" +
+                "local period = tonumber(ARGV[2])\n" +
+                "local requested = tonumber(ARGV[3])\n" +
+                "local lease = tonumber(ARGV[4])\n" +
+                "local time = redis.call('time')\n" +
+                "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+                "local window = math.floor(now / period)\n" +
+                "local data = redis.call('hmget', key, 'w', 'c', 'p')\n" +
+                "local current = tonumber(data[2]) or 0\n" +
+                "local previous = tonumber(data[3]) or 0\n" +
+                "local stored = tonumber(data[1])\n" +
+                "if stored ~= window then\n" +
+                "    if stored == window - 1 then previous = current else previous = 0 end\n" +
+                "    current = 0\n" +
                 "end\n" +
-                "current = redis.call('incr', key)\n" +
-                "if tonumber(current) == 1 then\n" +
-                "    redis.call('expire', key, time)\n" +
+                "local elapsed = now - window * period\n" +
+                "local estimated = previous * (period - elapsed) / period + current\n" +
+                "local remaining = math.floor(count - estimated)\n" +
+                "local granted = 0\n" +
+                "local millis = period - elapsed\n" +
+                "if remaining > 0 then\n" +
+                "    granted = math.min(requested, math.max(1, math.floor(remaining / 2)))\n" +
+                "    current = current + granted\n" +
+                "    millis = math.min(lease, millis)\n" +
+                "elseif previous > 0 then\n" +
+                "    millis = math.min(millis, math.ceil((estimated - count + 1) * period / previous))\n" +
+                "end\n" +
+                "redis.call('hmset', key, 'w', window, 'c', current, 'p', previous)\n" +
+                "redis.call('pexpire', key, period * 2)\n" +
+                "return {granted, millis}";
+    }
+
+    /**
+     * GCRA限流脚本（保存理论到达时间，发射间隔为 周期/限流次数，突发容量为限流次数）
+     */
+    private String gcraLimitScriptText()
+    {
+        return "redis.replicate_commands()\n" +
+                "local key = KEYS[1]\n" +
+                "local count = tonumber(ARGV[1])\n" +
+                "local period = tonumber(ARGV[2])\n" +
+                "local requested = tonumber(ARGV[3])\n" +
+                "local lease = tonumber(ARGV[4])\n" +
+                "local time = redis.call('time')\n" +
+                "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+                "local interval = period / count\n" +
+                "local tat = tonumber(redis.call('get', key) or '0')\n" +
+                "if tat < now then tat = now end\n" +
+                "local available = math.floor((now + period - tat) / interval)\n" +
+                "if available <= 0 then\n" +
+                "    return {0, math.ceil(tat + interval - period - now)}\n" +
                 "end\n" +
-                "return tonumber(current);";
+                "local granted = math.min(requested, math.max(1, math.floor(available / 2)))\n" +
+                "tat = math.ceil(tat + granted * interval)\n" +
+                "redis.call('set', key, tat, 'PX', tat - now)\n" +
+                "return {granted, lease}";
     }
 }
@@ -11,8 +11,6 @@ import org.springframework.web.filter.CorsFilter;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-import com.whisper.common.config.RuoYiConfig;
-import com.whisper.common.constant.Constants;
 import com.whisper.framework.interceptor.RepeatSubmitInterceptor;
 
 /**
@@ -29,9 +27,7 @@ public class ResourcesConfig implements WebMvcConfigurer
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry)
     {
-        /** 本地文件上传路径 */
-        registry.addResourceHandler(Constants.RESOURCE_PREFIX + "/**")
-                .addResourceLocations("file:" + RuoYiConfig.getProfile() + "/");
+        /** 本地文件上传路径由 ProfileResourceController 处理，支持断点续传和长期缓存 */
 
         /** swagger配置 */
         registry.addResourceHandler("/swagger-ui/**")
@@ -1,6 +1,7 @@
 package com.whisper.framework.config;
 
 import com.whisper.common.utils.Threads;
+import com.whisper.framework.datasource.DynamicDataSourceContextHolder;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -39,6 +40,17 @@ public class ThreadPoolConfig
         executor.setKeepAliveSeconds(keepAliveSeconds);
         // 线程池对拒绝任务(无线程可用)的处理策略
         executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // 任务结束清除读写路由状态，避免线程复用时影响后续任务
+        executor.setTaskDecorator(task -> () -> {
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                DynamicDataSourceContextHolder.clearRouting();
+            }
+        });
         return executor;
     }
 
@@ -56,6 +68,7 @@ public class ThreadPoolConfig
             protected void afterExecute(Runnable r, Throwable t)
             {
                 super.afterExecute(r, t);
+                DynamicDataSourceContextHolder.clearRouting();
                 Threads.printException(r, t);
             }
         };
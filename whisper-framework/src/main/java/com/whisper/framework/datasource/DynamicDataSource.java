@@ -7,20 +7,42 @@ import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
 /**
  * 动态数据源
  * 
+ * 注解指定的数据源优先；开启读写分离后，只读查询和只读事务在未写入过主库时路由到可用从库。
+ *
  * @author ruoyi
  */
 public class DynamicDataSource extends AbstractRoutingDataSource
 {
+    /** 从库选择，未开启读写分离时为null */
+    private final ReplicaRouter replicaRouter;
+
     public DynamicDataSource(DataSource defaultTargetDataSource, Map<Object, Object> targetDataSources)
     {
+        this(defaultTargetDataSource, targetDataSources, null);
+    }
+
+    public DynamicDataSource(DataSource defaultTargetDataSource, Map<Object, Object> targetDataSources,
+            ReplicaRouter replicaRouter)
+    {
+        this.replicaRouter = replicaRouter;
         super.setDefaultTargetDataSource(defaultTargetDataSource);
         super.setTargetDataSources(targetDataSources);
         super.afterPropertiesSet();
     }
 
+    public ReplicaRouter getReplicaRouter()
+    {
+        return replicaRouter;
+    }
+
     @Override
     protected Object determineCurrentLookupKey()
     {
-        return DynamicDataSourceContextHolder.getDataSourceType();
+        String dataSourceType = DynamicDataSourceContextHolder.getDataSourceType();
+        if (dataSourceType != null || replicaRouter == null || !DynamicDataSourceContextHolder.isReadOnly())
+        {
+            return dataSourceType;
+        }
+        return replicaRouter.select();
     }
-}
\ No newline at end of file
+}
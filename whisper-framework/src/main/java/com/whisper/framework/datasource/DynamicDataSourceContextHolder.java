@@ -18,6 +18,22 @@ public class DynamicDataSourceContextHolder
      */
     private static final ThreadLocal<String> CONTEXT_HOLDER = new ThreadLocal<>();
 
+    /**
+     * 读写路由提示，TRUE表示当前获取的连接只用于读
+     */
+    private static final ThreadLocal<Boolean> READ_ONLY_HOLDER = new ThreadLocal<>();
+
+    /**
+     * 固定使用主库的截止时间，写入后同一请求或任务内的读也走主库
+     */
+    private static final ThreadLocal<Long> MASTER_PINNED_HOLDER = new ThreadLocal<>();
+
+    /**
+     * 写入后固定使用主库的时长（毫秒），超过后可用从库已包含该写入；
+     * 请求和线程池任务结束时也会清除，未清除的线程（如常驻工作线程）到期后恢复读写分离
+     */
+    private static volatile long pinMillis = Long.MAX_VALUE;
+
     /**
      * 设置数据源的变量
      */
@@ -42,4 +58,71 @@ public class DynamicDataSourceContextHolder
     {
         CONTEXT_HOLDER.remove();
     }
+
+    /**
+     * 设置读写路由提示，返回原值以便恢复
+     */
+    public static Boolean setReadOnly(Boolean readOnly)
+    {
+        Boolean previous = READ_ONLY_HOLDER.get();
+        if (readOnly == null)
+        {
+            READ_ONLY_HOLDER.remove();
+        }
+        else
+        {
+            READ_ONLY_HOLDER.set(readOnly);
+        }
+        return previous;
+    }
+
+    /**
+     * 当前连接是否可以使用从库
+     */
+    public static boolean isReadOnly()
+    {
+        if (!Boolean.TRUE.equals(READ_ONLY_HOLDER.get()))
+        {
+            return false;
+        }
+        Long pinnedUntil = MASTER_PINNED_HOLDER.get();
+        if (pinnedUntil == null)
+        {
+            return true;
+        }
+        if (pinnedUntil > System.currentTimeMillis())
+        {
+            return false;
+        }
+        MASTER_PINNED_HOLDER.remove();
+        return true;
+    }
+
+    /**
+     * 标记当前请求已写主库
+     */
+    public static void pinMaster()
+    {
+        long now = System.currentTimeMillis();
+        MASTER_PINNED_HOLDER.set(pinMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + pinMillis);
+    }
+
+    /**
+     * 设置写入后固定使用主库的时长
+     *
+     * @param millis 时长（毫秒）
+     */
+    public static void setPinMillis(long millis)
+    {
+        pinMillis = millis;
+    }
+
+    /**
+     * 清空读写路由状态，请求或线程池任务结束时调用
+     */
+    public static void clearRouting()
+    {
+        READ_ONLY_HOLDER.remove();
+        MASTER_PINNED_HOLDER.remove();
+    }
 }
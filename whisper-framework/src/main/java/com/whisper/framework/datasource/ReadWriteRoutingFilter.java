@@ -0,0 +1,32 @@
+package com.whisper.framework.datasource;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * 读写路由过滤器
+ *
+ * 请求结束后清除主库固定标记，避免线程复用时影响后续请求。
+ *
+ * @author ruoyi
+ */
+public class ReadWriteRoutingFilter implements Filter
+{
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException
+    {
+        try
+        {
+            chain.doFilter(request, response);
+        }
+        finally
+        {
+            DynamicDataSourceContextHolder.clearRouting();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.whisper.framework.datasource;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * MyBatis读写路由
+ *
+ * 事务外的SELECT在执行期间标记为只读，由 DynamicDataSource 选择从库；执行过写语句后当前请求固定使用主库。
+ * 事务内的连接在事务开始时已确定，这里的标记不影响事务内的语句。
+ *
+ * @author ruoyi
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class }),
+        @Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class }),
+        @Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class }) })
+public class ReadWriteRoutingInterceptor implements Interceptor
+{
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        if (ms.getSqlCommandType() != SqlCommandType.SELECT || ms.getId().endsWith("!selectKey"))
+        {
+            DynamicDataSourceContextHolder.pinMaster();
+            return invocation.proceed();
+        }
+        Boolean previous = DynamicDataSourceContextHolder.setReadOnly(Boolean.TRUE);
+        try
+        {
+            return invocation.proceed();
+        }
+        finally
+        {
+            DynamicDataSourceContextHolder.setReadOnly(previous);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.whisper.framework.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 从库选择
+ *
+ * 定期检查每个从库能否连接以及复制延迟，只读请求在可用从库间轮询；没有可用从库时返回null由主库处理。
+ * 复制状态语句不支持或无权限查看时只按连通性判断，其余查询异常视为本轮不可用，下一轮重新检查。
+ *
+ * @author ruoyi
+ */
+public class ReplicaRouter
+{
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    /** MySQL语法错误（8.0.22之前不支持 SHOW REPLICA STATUS） */
+    private static final int ER_PARSE_ERROR = 1064;
+
+    /** MySQL缺少权限（查看复制状态需要 REPLICATION CLIENT） */
+    private static final int ER_SPECIFIC_ACCESS_DENIED = 1227;
+
+    /** 语法错误或无权限的SQLState */
+    private static final String SQL_STATE_SYNTAX_OR_ACCESS = "42000";
+
+    private final List<Replica> replicas = new ArrayList<Replica>();
+
+    /** 最大允许复制延迟（秒） */
+    private final long maxLagSeconds;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    /** 路由到从库的次数 */
+    private final LongAdder replicaRoutes = new LongAdder();
+
+    /** 无可用从库而回退主库的次数 */
+    private final LongAdder fallbackRoutes = new LongAdder();
+
+    public ReplicaRouter(Map<String, DataSource> dataSources, long maxLagSeconds)
+    {
+        dataSources.forEach((name, dataSource) -> replicas.add(new Replica(name, dataSource)));
+        this.maxLagSeconds = maxLagSeconds;
+    }
+
+    /**
+     * 开始定期健康检查
+     *
+     * @param executor 定时任务线程池
+     * @param intervalSeconds 检查间隔（秒）
+     */
+    public void start(ScheduledExecutorService executor, long intervalSeconds)
+    {
+        for (Replica replica : replicas)
+        {
+            executor.scheduleWithFixedDelay(() -> check(replica), 0, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 选择一个可用从库
+     *
+     * @return 数据源名称，没有可用从库时为null
+     */
+    public String select()
+    {
+        int size = replicas.size();
+        int start = Math.floorMod(sequence.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++)
+        {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available)
+            {
+                replicaRoutes.increment();
+                return replica.name;
+            }
+        }
+        fallbackRoutes.increment();
+        return null;
+    }
+
+    /**
+     * 获取路由统计和各从库状态
+     */
+    public Map<String, Object> getStatistics()
+    {
+        Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+        statistics.put("replicaRoutes", replicaRoutes.sum());
+        statistics.put("fallbackRoutes", fallbackRoutes.sum());
+        statistics.put("maxLagSeconds", maxLagSeconds);
+        List<Map<String, Object>> states = new ArrayList<Map<String, Object>>();
+        for (Replica replica : replicas)
+        {
+            Map<String, Object> state = new LinkedHashMap<String, Object>();
+            state.put("name", replica.name);
+            state.put("available", replica.available);
+            state.put("lagSeconds", replica.lagSeconds);
+            state.put("lastError", replica.lastError);
+            states.add(state);
+        }
+        statistics.put("replicas", states);
+        return statistics;
+    }
+
+    private void check(Replica replica)
+    {
+        try (Connection connection = replica.dataSource.getConnection())
+        {
+            Long lag = queryLag(replica, connection);
+            replica.lagSeconds = lag;
+            replica.lastError = null;
+            boolean available = lag == null || lag <= maxLagSeconds;
+            if (available != replica.available)
+            {
+                log.info("从库{}{}，复制延迟{}秒", replica.name, available ? "恢复可用" : "延迟过大", lag);
+            }
+            replica.available = available;
+        }
+        catch (Exception e)
+        {
+            if (replica.available)
+            {
+                log.warn("从库{}不可用'{}'", replica.name, e.getMessage());
+            }
+            replica.available = false;
+            replica.lastError = e.getMessage();
+        }
+    }
+
+    /**
+     * 查询复制延迟，不是从库或无权限时返回null，复制中断时返回Long.MAX_VALUE；
+     * 只有语法错误和无权限会改变查询方式，其余异常抛出由下一轮重试
+     */
+    private Long queryLag(Replica replica, Connection connection) throws SQLException
+    {
+        if (replica.statusUnsupported)
+        {
+            validate(connection);
+            return null;
+        }
+        try (Statement statement = connection.createStatement())
+        {
+            String sql = replica.legacyStatus ? "SHOW SLAVE STATUS" : "SHOW REPLICA STATUS";
+            String column = replica.legacyStatus ? "Seconds_Behind_Master" : "Seconds_Behind_Source";
+            try (ResultSet rs = statement.executeQuery(sql))
+            {
+                if (!rs.next())
+                {
+                    return null;
+                }
+                long lag = rs.getLong(column);
+                return rs.wasNull() ? Long.MAX_VALUE : lag;
+            }
+        }
+        catch (SQLException e)
+        {
+            boolean accessDenied = e.getErrorCode() == ER_SPECIFIC_ACCESS_DENIED;
+            boolean syntaxError = e.getErrorCode() == ER_PARSE_ERROR
+                    || (e.getErrorCode() == 0 && SQL_STATE_SYNTAX_OR_ACCESS.equals(e.getSQLState()));
+            if (!accessDenied && !syntaxError)
+            {
+                throw e;
+            }
+            if (syntaxError && !replica.legacyStatus)
+            {
+                replica.legacyStatus = true;
+                return queryLag(replica, connection);
+            }
+            log.info("从库{}无法查询复制状态，仅检查连通性'{}'", replica.name, e.getMessage());
+            replica.statusUnsupported = true;
+            validate(connection);
+            return null;
+        }
+    }
+
+    private void validate(Connection connection) throws SQLException
+    {
+        try (Statement statement = connection.createStatement())
+        {
+            statement.execute("SELECT 1");
+        }
+    }
+
+    private static class Replica
+    {
+        private final String name;
+
+        private final DataSource dataSource;
+
+        private volatile boolean available;
+
+        private volatile Long lagSeconds;
+
+        private volatile String lastError;
+
+        /** 使用旧版 SHOW SLAVE STATUS */
+        private volatile boolean legacyStatus;
+
+        /** 无法查询复制状态 */
+        private volatile boolean statusUnsupported;
+
+        private Replica(String name, DataSource dataSource)
+        {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
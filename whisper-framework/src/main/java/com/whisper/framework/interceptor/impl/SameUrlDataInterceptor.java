@@ -1,33 +1,43 @@
 package com.whisper.framework.interceptor.impl;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import com.alibaba.fastjson2.JSON;
 import com.whisper.common.annotation.RepeatSubmit;
 import com.whisper.common.constant.CacheConstants;
 import com.whisper.common.core.redis.RedisCache;
 import com.whisper.common.filter.RepeatedlyRequestWrapper;
 import com.whisper.common.utils.StringUtils;
-import com.whisper.common.utils.http.HttpHelper;
 import com.whisper.framework.interceptor.RepeatSubmitInterceptor;
 
 /**
  * 判断请求url和数据是否和上一次相同，
- * 如果和上次相同，则是重复提交表单。 有效时间为10秒内。
- * 
+ * 如果和上次相同，则是重复提交表单。 有效时间为注解指定的间隔。
+ *
+ * 以 url + 消息头 + 请求数据 的SHA-256摘要作为key，通过一次 SET NX PX 判断：写入失败即间隔内已有相同请求。
+ * 请求体按块流式计算摘要，Redis中只保存定长key，不再保存请求数据。
+ *
  * @author ruoyi
  */
 @Component
 public class SameUrlDataInterceptor extends RepeatSubmitInterceptor
 {
-    public final String REPEAT_PARAMS = "repeatParams";
+    private static final Logger log = LoggerFactory.getLogger(SameUrlDataInterceptor.class);
 
-    public final String REPEAT_TIME = "repeatTime";
+    /** 字段分隔符，避免不同字段拼接后产生相同的摘要输入 */
+    private static final byte SEPARATOR = 0;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     // 令牌自定义标识
     @Value("${token.header}")
@@ -36,75 +46,93 @@ public class SameUrlDataInterceptor extends RepeatSubmitInterceptor
     @Autowired
     private RedisCache redisCache;
 
-    @SuppressWarnings("unchecked")
     @Override
     public boolean isRepeatSubmit(HttpServletRequest request, RepeatSubmit annotation)
     {
-        String nowParams = "";
-        if (request instanceof RepeatedlyRequestWrapper)
+        String digest;
+        try
         {
-            RepeatedlyRequestWrapper repeatedlyRequest = (RepeatedlyRequestWrapper) request;
-            nowParams = HttpHelper.getBodyString(repeatedlyRequest);
+            digest = digest(request);
         }
-
-        // body参数为空，获取Parameter的数据
-        if (StringUtils.isEmpty(nowParams))
+        catch (IOException e)
         {
-            nowParams = JSON.toJSONString(request.getParameterMap());
+            log.warn("计算重复提交摘要失败'{}'", e.getMessage());
+            return false;
         }
-        Map<String, Object> nowDataMap = new HashMap<String, Object>();
-        nowDataMap.put(REPEAT_PARAMS, nowParams);
-        nowDataMap.put(REPEAT_TIME, System.currentTimeMillis());
-
-        // 请求地址（作为存放cache的key值）
-        String url = request.getRequestURI();
 
-        // 唯一值（没有消息头则使用请求地址）
-        String submitKey = StringUtils.trimToEmpty(request.getHeader(header));
+        // 唯一标识（指定key + 摘要）
+        String cacheRepeatKey = CacheConstants.REPEAT_SUBMIT_KEY + digest;
+        return !redisCache.setCacheObjectIfAbsent(cacheRepeatKey, 1, annotation.interval(), TimeUnit.MILLISECONDS);
+    }
 
-        // 唯一标识（指定key + url + 消息头）
-        String cacheRepeatKey = CacheConstants.REPEAT_SUBMIT_KEY + url + submitKey;
+    /**
+     * 计算 url + 消息头 + 请求数据 的摘要，body为空时使用Parameter的数据
+     */
+    private String digest(HttpServletRequest request) throws IOException
+    {
+        MessageDigest md = newDigest();
+        update(md, request.getRequestURI());
+        // 唯一值（没有消息头则只使用请求地址）
+        update(md, StringUtils.trimToEmpty(request.getHeader(header)));
 
-        Object sessionObj = redisCache.getCacheObject(cacheRepeatKey);
-        if (sessionObj != null)
+        long bodyLength = 0;
+        if (request instanceof RepeatedlyRequestWrapper)
+        {
+            byte[] buffer = new byte[8192];
+            try (InputStream is = request.getInputStream())
+            {
+                int n;
+                while ((n = is.read(buffer)) > 0)
+                {
+                    md.update(buffer, 0, n);
+                    bodyLength += n;
+                }
+            }
+        }
+        // body参数为空，使用Parameter的数据
+        if (bodyLength == 0)
         {
-            Map<String, Object> sessionMap = (Map<String, Object>) sessionObj;
-            if (sessionMap.containsKey(url))
+            for (Map.Entry<String, String[]> entry : request.getParameterMap().entrySet())
             {
-                Map<String, Object> preDataMap = (Map<String, Object>) sessionMap.get(url);
-                if (compareParams(nowDataMap, preDataMap) && compareTime(nowDataMap, preDataMap, annotation.interval()))
+                update(md, entry.getKey());
+                for (String value : entry.getValue())
                 {
-                    return true;
+                    update(md, value);
                 }
             }
         }
-        Map<String, Object> cacheMap = new HashMap<String, Object>();
-        cacheMap.put(url, nowDataMap);
-        redisCache.setCacheObject(cacheRepeatKey, cacheMap, annotation.interval(), TimeUnit.MILLISECONDS);
-        return false;
+        return toHex(md.digest());
     }
 
-    /**
-     * 判断参数是否相同
-     */
-    private boolean compareParams(Map<String, Object> nowMap, Map<String, Object> preMap)
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest md, String value)
     {
-        String nowParams = (String) nowMap.get(REPEAT_PARAMS);
-        String preParams = (String) preMap.get(REPEAT_PARAMS);
-        return nowParams.equals(preParams);
+        if (value != null)
+        {
+            md.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        md.update(SEPARATOR);
     }
 
-    /**
-     * 判断两次间隔时间
-     */
-    private boolean compareTime(Map<String, Object> nowMap, Map<String, Object> preMap, int interval)
+    private static String toHex(byte[] bytes)
     {
-        long time1 = (Long) nowMap.get(REPEAT_TIME);
-        long time2 = (Long) preMap.get(REPEAT_TIME);
-        if ((time1 - time2) < interval)
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++)
         {
-            return true;
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
         }
-        return false;
+        return new String(chars);
     }
 }
@@ -0,0 +1,464 @@
+package com.whisper.framework.manager;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import com.whisper.common.config.RuoYiConfig;
+import com.whisper.common.constant.CacheConstants;
+import com.whisper.common.core.domain.model.ExportJob;
+import com.whisper.common.core.domain.model.LoginUser;
+import com.whisper.common.core.redis.RedisCache;
+import com.whisper.common.exception.ServiceException;
+import com.whisper.common.utils.SecurityUtils;
+import com.whisper.common.utils.StringUtils;
+import com.whisper.common.utils.poi.ExcelUtil;
+import com.whisper.common.utils.uuid.IdUtils;
+import com.whisper.framework.security.context.PermissionContextHolder;
+
+/**
+ * 后台导出任务
+ *
+ * 导出请求只登记任务并返回任务ID，由固定大小的线程池在后台把数据流式写入导出目录下的文件，
+ * 同时执行的导出数即线程数，占用的数据库连接不超过该数，不再与在线业务争抢连接池。
+ * 任务状态和进度保存在Redis中，完成后通过 /common/download 下载，文件和状态在保留时间后自动清理。
+ * 导出目录默认与 profile 同级，不能位于 profile 内（/profile/** 可以匿名访问），只有提交用户和管理员可以下载。
+ * 多节点部署时导出目录必须是各节点共享的同一目录，下载请求可能落到任意节点，提交前通过目录中的标识文件检查。
+ * 排队数和每个用户的任务数在全部节点间限制：排队和执行中的任务登记在Redis有序集合中，分值为租约到期时间，
+ * 所在节点定期续约，节点异常退出后任务随租约到期释放。同时执行的导出数为每个节点的线程数。
+ *
+ * @author ruoyi
+ */
+@Component
+public class ExportManager
+{
+    private static final Logger log = LoggerFactory.getLogger(ExportManager.class);
+
+    /** 导出文件名称前缀，/common/download 按该前缀识别导出文件 */
+    public static final String EXPORT_DIR = "export/";
+
+    /** 每写入多少行更新一次进度 */
+    private static final int PROGRESS_ROWS = 1000;
+
+    /** 清理过期文件的间隔（分钟） */
+    private static final int CLEAN_INTERVAL_MINUTES = 10;
+
+    /** 任务租约时长（毫秒），所在节点每分钟续约 */
+    private static final long LEASE_MILLIS = TimeUnit.MINUTES.toMillis(3);
+
+    /** 排队和执行中的全部任务 */
+    private static final String ACTIVE_KEY = CacheConstants.EXPORT_ACTIVE_KEY + "all";
+
+    /** 用户排队和执行中的任务，后接用户ID */
+    private static final String USER_ACTIVE_KEY = CacheConstants.EXPORT_ACTIVE_KEY + "user:";
+
+    /** 导出目录标识文件，各节点读到同一标识说明使用的是同一个目录 */
+    private static final String VOLUME_FILE = ".volume";
+
+    /**
+     * 登记任务：先清除租约过期的任务，用户和全局的任务数都未达上限时加入
+     * 返回 0 成功，1 用户任务数已满，2 全局任务数已满
+     */
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = script(
+            "redis.call('zremrangebyscore', KEYS[1], '-inf', ARGV[1])\n" +
+            "redis.call('zremrangebyscore', KEYS[2], '-inf', ARGV[1])\n" +
+            "if redis.call('zcard', KEYS[2]) >= tonumber(ARGV[5]) then\n" +
+            "    return 1\n" +
+            "end\n" +
+            "if redis.call('zcard', KEYS[1]) >= tonumber(ARGV[4]) then\n" +
+            "    return 2\n" +
+            "end\n" +
+            "redis.call('zadd', KEYS[1], ARGV[2], ARGV[3])\n" +
+            "redis.call('zadd', KEYS[2], ARGV[2], ARGV[3])\n" +
+            "redis.call('pexpire', KEYS[2], ARGV[6])\n" +
+            "return 0");
+
+    /** 续约仍登记着的任务，已被清除的不再加回 */
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = script(
+            "redis.call('zadd', KEYS[1], 'XX', ARGV[1], ARGV[2])\n" +
+            "redis.call('zadd', KEYS[2], 'XX', ARGV[1], ARGV[2])\n" +
+            "redis.call('pexpire', KEYS[2], ARGV[3])\n" +
+            "return 0");
+
+    /** 同时执行的导出任务数 */
+    @Value("${export.maxConcurrent:2}")
+    private int maxConcurrent;
+
+    /** 排队等待的任务数上限 */
+    @Value("${export.maxQueued:20}")
+    private int maxQueued;
+
+    /** 每个用户排队和执行中的任务数上限 */
+    @Value("${export.maxPerUser:2}")
+    private int maxPerUser;
+
+    /** 导出文件和任务状态的保留时间（小时） */
+    @Value("${export.retentionHours:24}")
+    private int retentionHours;
+
+    /** 导出目录，为空时使用与 profile 同级的 data/export */
+    @Value("${export.path:}")
+    private String exportPath;
+
+    @Autowired
+    private RedisCache redisCache;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    private ThreadPoolExecutor executor;
+
+    /** 本节点排队和执行中的任务，任务ID到用户ID，用于续约 */
+    private final Map<String, Long> localJobs = new ConcurrentHashMap<String, Long>();
+
+    /** 导出目录已通过共享检查 */
+    private volatile boolean exportDirChecked;
+
+    @PostConstruct
+    public void init()
+    {
+        if (RuoYiConfig.isProfilePath(getExportDir()))
+        {
+            throw new IllegalStateException("导出目录不能位于 whisper.profile 内，否则可以通过 /profile/** 匿名访问：" + getExportDir());
+        }
+        executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(maxQueued),
+                new BasicThreadFactory.Builder().namingPattern("export-pool-%d").daemon(true).build());
+        scheduledExecutorService.scheduleWithFixedDelay(this::clean, CLEAN_INTERVAL_MINUTES, CLEAN_INTERVAL_MINUTES,
+                TimeUnit.MINUTES);
+        scheduledExecutorService.scheduleWithFixedDelay(this::renew, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交导出任务
+     *
+     * 数据来源在后台线程中以提交用户的身份和当前请求的权限字符串执行，数据权限与同步导出一致。
+     *
+     * @param util Excel工具，可预先设置显示或隐藏的列
+     * @param title 导出名称，同时作为工作表名称和文件名
+     * @param rows 数据来源，参数为逐条接收数据的回调
+     * @return 任务
+     */
+    public <T> ExportJob submit(ExcelUtil<T> util, String title, Consumer<Consumer<T>> rows)
+    {
+        LoginUser loginUser = SecurityUtils.getLoginUser();
+        Long userId = loginUser.getUserId();
+        checkExportDir();
+        String jobId = IdUtils.fastSimpleUUID();
+        acquire(jobId, userId);
+        ExportJob job = new ExportJob();
+        job.setJobId(jobId);
+        job.setUserId(userId);
+        job.setUserName(loginUser.getUsername());
+        job.setTitle(title);
+        job.setStatus(ExportJob.STATUS_WAITING);
+        job.setCreateTime(new Date());
+        save(job);
+        String userKey = CacheConstants.EXPORT_JOB_USER_KEY + userId;
+        redisCache.setCacheSetMember(userKey, job.getJobId());
+        redisCache.expire(userKey, retentionHours, TimeUnit.HOURS);
+        SecurityContext context = SecurityContextHolder.getContext();
+        String permission = PermissionContextHolder.getContext();
+        try
+        {
+            executor.execute(() -> run(job, util, rows, context, permission));
+        }
+        catch (RejectedExecutionException e)
+        {
+            release(jobId, userId);
+            job.setStatus(ExportJob.STATUS_FAILED);
+            job.setMessage("系统导出任务繁忙，请稍后再试");
+            job.setFinishTime(new Date());
+            save(job);
+            throw new ServiceException(job.getMessage());
+        }
+        return job;
+    }
+
+    /**
+     * 查询当前用户的导出任务，管理员可查询全部任务
+     *
+     * @param jobId 任务ID
+     * @return 任务，不存在或无权查看时为null
+     */
+    public ExportJob getJob(String jobId)
+    {
+        ExportJob job = redisCache.getCacheObject(CacheConstants.EXPORT_JOB_KEY + jobId);
+        return job != null && canAccess(job) ? job : null;
+    }
+
+    /**
+     * 查询当前用户保留期内的导出任务，按提交时间倒序
+     */
+    public List<ExportJob> listJobs()
+    {
+        Set<String> jobIds = redisCache.getCacheSet(CacheConstants.EXPORT_JOB_USER_KEY + SecurityUtils.getUserId());
+        List<ExportJob> jobs = new ArrayList<ExportJob>();
+        if (jobIds == null || jobIds.isEmpty())
+        {
+            return jobs;
+        }
+        List<String> keys = new ArrayList<String>(jobIds.size());
+        for (String jobId : jobIds)
+        {
+            keys.add(CacheConstants.EXPORT_JOB_KEY + jobId);
+        }
+        List<ExportJob> cached = redisCache.getMultiCacheObject(keys);
+        for (ExportJob job : cached)
+        {
+            if (job != null)
+            {
+                jobs.add(job);
+            }
+        }
+        jobs.sort(Comparator.comparing(ExportJob::getCreateTime).reversed());
+        return jobs;
+    }
+
+    /**
+     * 解析下载文件，导出文件只有提交用户和管理员可以下载，其他文件位于下载目录
+     *
+     * @param fileName 下载文件名称
+     * @return 文件，无权下载时为null
+     */
+    public File getDownloadFile(String fileName)
+    {
+        // 先规范化路径，./export/...、/export/... 等写法同样按导出文件校验
+        String normalized = StringUtils.stripStart(Paths.get(fileName).normalize().toString().replace('\\', '/'), "/");
+        if (!normalized.startsWith(EXPORT_DIR))
+        {
+            return new File(RuoYiConfig.getDownloadPath() + normalized);
+        }
+        String jobId = StringUtils.substringBetween(normalized, EXPORT_DIR, "_");
+        if (StringUtils.isEmpty(jobId))
+        {
+            return null;
+        }
+        ExportJob job = getJob(jobId);
+        if (job == null || !normalized.equals(job.getFileName()))
+        {
+            return null;
+        }
+        return new File(getExportDir(), normalized.substring(EXPORT_DIR.length()));
+    }
+
+    private <T> void run(ExportJob job, ExcelUtil<T> util, Consumer<Consumer<T>> rows, SecurityContext context,
+            String permission)
+    {
+        SecurityContextHolder.setContext(context);
+        PermissionContextHolder.bind(permission);
+        String fileName = EXPORT_DIR + job.getJobId() + "_" + job.getTitle() + ".xlsx";
+        File file = new File(getExportDir(), job.getJobId() + "_" + job.getTitle() + ".xlsx");
+        File temp = new File(file.getPath() + ".tmp");
+        try
+        {
+            job.setStatus(ExportJob.STATUS_RUNNING);
+            job.setStartTime(new Date());
+            save(job);
+            file.getParentFile().mkdirs();
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp)))
+            {
+                util.exportExcel(out, job.getTitle(), sink -> rows.accept(vo -> {
+                    sink.accept(vo);
+                    job.setRows(job.getRows() + 1);
+                    if (job.getRows() % PROGRESS_ROWS == 0)
+                    {
+                        save(job);
+                    }
+                }));
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            job.setFileName(fileName);
+            job.setStatus(ExportJob.STATUS_SUCCESS);
+        }
+        catch (Exception e)
+        {
+            log.error("导出任务{}失败", job.getJobId(), e);
+            temp.delete();
+            job.setStatus(ExportJob.STATUS_FAILED);
+            job.setMessage("导出失败，请联系网站管理员！");
+        }
+        finally
+        {
+            job.setFinishTime(new Date());
+            save(job);
+            SecurityContextHolder.clearContext();
+            PermissionContextHolder.clear();
+            release(job.getJobId(), job.getUserId());
+        }
+    }
+
+    private void acquire(String jobId, Long userId)
+    {
+        long now = System.currentTimeMillis();
+        Long result = stringRedisTemplate.execute(ACQUIRE_SCRIPT, Arrays.asList(ACTIVE_KEY, USER_ACTIVE_KEY + userId),
+                String.valueOf(now), String.valueOf(now + LEASE_MILLIS), jobId, String.valueOf(maxConcurrent + maxQueued),
+                String.valueOf(maxPerUser), String.valueOf(LEASE_MILLIS));
+        if (result != null && result == 1L)
+        {
+            throw new ServiceException("导出任务过多，请等待已提交的任务完成后再试");
+        }
+        if (result != null && result == 2L)
+        {
+            throw new ServiceException("系统导出任务繁忙，请稍后再试");
+        }
+        localJobs.put(jobId, userId);
+    }
+
+    private void release(String jobId, Long userId)
+    {
+        localJobs.remove(jobId);
+        stringRedisTemplate.opsForZSet().remove(ACTIVE_KEY, jobId);
+        stringRedisTemplate.opsForZSet().remove(USER_ACTIVE_KEY + userId, jobId);
+    }
+
+    /**
+     * 续约本节点排队和执行中的任务
+     */
+    private void renew()
+    {
+        String deadline = String.valueOf(System.currentTimeMillis() + LEASE_MILLIS);
+        for (Map.Entry<String, Long> entry : localJobs.entrySet())
+        {
+            try
+            {
+                stringRedisTemplate.execute(RENEW_SCRIPT, Arrays.asList(ACTIVE_KEY, USER_ACTIVE_KEY + entry.getValue()),
+                        deadline, entry.getKey(), String.valueOf(LEASE_MILLIS));
+            }
+            catch (Exception e)
+            {
+                log.warn("导出任务{}续约失败", entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * 检查导出目录是各节点共享的同一目录，每个节点首次提交前检查
+     *
+     * 首次检查时在目录中写入随机标识并登记到Redis，之后每个节点的目录中都需要读到相同的标识。
+     */
+    private void checkExportDir()
+    {
+        if (exportDirChecked)
+        {
+            return;
+        }
+        File dir = getExportDir();
+        File file = new File(dir, VOLUME_FILE);
+        try
+        {
+            if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+            {
+                throw new IOException("无法创建导出目录 " + dir);
+            }
+            String volume = file.exists() ? Files.readString(file.toPath()).trim() : null;
+            String expected = stringRedisTemplate.opsForValue().get(CacheConstants.EXPORT_VOLUME_KEY);
+            if (expected == null)
+            {
+                if (volume == null)
+                {
+                    volume = IdUtils.fastSimpleUUID();
+                    Files.writeString(file.toPath(), volume);
+                }
+                stringRedisTemplate.opsForValue().setIfAbsent(CacheConstants.EXPORT_VOLUME_KEY, volume);
+                expected = stringRedisTemplate.opsForValue().get(CacheConstants.EXPORT_VOLUME_KEY);
+            }
+            if (!StringUtils.equals(expected, volume))
+            {
+                log.error("当前节点的导出目录与其他节点不是同一目录，多节点部署时 export.path 需要配置为共享目录：{}", dir);
+                throw new ServiceException("导出目录配置错误，请联系网站管理员！");
+            }
+            exportDirChecked = true;
+        }
+        catch (IOException e)
+        {
+            log.error("检查导出目录失败 {}", dir, e);
+            throw new ServiceException("导出目录不可用，请联系网站管理员！");
+        }
+    }
+
+    private boolean canAccess(ExportJob job)
+    {
+        Long userId = SecurityUtils.getUserId();
+        return userId.equals(job.getUserId()) || SecurityUtils.isAdmin(userId);
+    }
+
+    private File getExportDir()
+    {
+        return new File(StringUtils.isNotEmpty(exportPath) ? exportPath : RuoYiConfig.getDataPath() + "/export");
+    }
+
+    private void save(ExportJob job)
+    {
+        redisCache.setCacheObject(CacheConstants.EXPORT_JOB_KEY + job.getJobId(), job, retentionHours, TimeUnit.HOURS);
+    }
+
+    /**
+     * 删除超过保留时间的导出文件，包括异常退出时残留的临时文件
+     */
+    private void clean()
+    {
+        File[] files = getExportDir().listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        long expireBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours);
+        for (File file : files)
+        {
+            if (file.isFile() && !VOLUME_FILE.equals(file.getName()) && file.lastModified() < expireBefore && !file.delete())
+            {
+                log.warn("删除过期导出文件失败 {}", file.getName());
+            }
+        }
+    }
+
+    private static DefaultRedisScript<Long> script(String text)
+    {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptText(text);
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+}
@@ -0,0 +1,275 @@
+package com.whisper.framework.manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import com.alibaba.fastjson2.JSON;
+import com.whisper.common.utils.ip.AddressUtils;
+import com.whisper.system.domain.SysLogininfor;
+import com.whisper.system.domain.SysOperLog;
+import com.whisper.system.service.ISysLogininforService;
+import com.whisper.system.service.ISysOperLogService;
+
+/**
+ * 操作日志和登录日志批量写入
+ *
+ * 日志先进入有界队列，由单个后台线程批量查询登录地点并多行插入。队列超过高水位后只保留失败日志和
+ * 按比例抽样的成功日志，队列满时丢弃，不阻塞请求线程。多行插入失败时逐条重试，只丢弃无法写入的日志。
+ * 应用退出时由 ShutdownManager 调用 shutdown 写完剩余日志。
+ *
+ * @author ruoyi
+ */
+@Component
+public class LogBatchManager
+{
+    private static final Logger log = LoggerFactory.getLogger(LogBatchManager.class);
+
+    /** 队列容量 */
+    private static final int QUEUE_CAPACITY = 10000;
+
+    /** 高水位，超过后对成功日志抽样 */
+    private static final int HIGH_WATER_MARK = QUEUE_CAPACITY * 8 / 10;
+
+    /** 高水位以上成功日志的抽样比例（1/n） */
+    private static final int SAMPLE_RATE = 10;
+
+    /** 单批最大条数 */
+    private static final int BATCH_SIZE = 500;
+
+    /** 队列为空时的等待时间（毫秒） */
+    private static final long POLL_MILLIS = 1000;
+
+    /** 退出时等待写完的最长时间（秒） */
+    private static final int DRAIN_TIMEOUT_SECONDS = 10;
+
+    @Autowired
+    private ISysOperLogService operLogService;
+
+    @Autowired
+    private ISysLogininforService logininforService;
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(QUEUE_CAPACITY);
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    /** 入队条数 */
+    private final LongAdder accepted = new LongAdder();
+
+    /** 抽样丢弃条数 */
+    private final LongAdder sampled = new LongAdder();
+
+    /** 队列满丢弃条数 */
+    private final LongAdder dropped = new LongAdder();
+
+    /** 写入条数 */
+    private final LongAdder written = new LongAdder();
+
+    /** 写入批次 */
+    private final LongAdder batches = new LongAdder();
+
+    /** 写入失败条数 */
+    private final LongAdder failed = new LongAdder();
+
+    private volatile boolean running = true;
+
+    private Thread worker;
+
+    @PostConstruct
+    public void init()
+    {
+        worker = new Thread(this::consume, "log-batch-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 提交操作日志
+     *
+     * @param operLog 操作日志
+     * @param important 是否必须保留（失败日志）
+     */
+    public void submit(SysOperLog operLog, boolean important)
+    {
+        offer(operLog, important);
+    }
+
+    /**
+     * 提交登录日志
+     *
+     * @param logininfor 登录日志
+     * @param important 是否必须保留（失败日志）
+     */
+    public void submit(SysLogininfor logininfor, boolean important)
+    {
+        offer(logininfor, important);
+    }
+
+    private void offer(Object item, boolean important)
+    {
+        if (!running)
+        {
+            dropped.increment();
+            return;
+        }
+        if (!important && queue.size() >= HIGH_WATER_MARK && sampleCounter.incrementAndGet() % SAMPLE_RATE != 0)
+        {
+            sampled.increment();
+            return;
+        }
+        if (queue.offer(item))
+        {
+            accepted.increment();
+        }
+        else
+        {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public Map<String, Object> getStatistics()
+    {
+        Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+        statistics.put("queued", queue.size());
+        statistics.put("capacity", QUEUE_CAPACITY);
+        statistics.put("accepted", accepted.sum());
+        statistics.put("sampled", sampled.sum());
+        statistics.put("dropped", dropped.sum());
+        statistics.put("written", written.sum());
+        statistics.put("batches", batches.sum());
+        statistics.put("failed", failed.sum());
+        return statistics;
+    }
+
+    /**
+     * 停止接收日志并写完队列中剩余的日志
+     */
+    public void shutdown()
+    {
+        running = false;
+        if (worker == null)
+        {
+            return;
+        }
+        try
+        {
+            worker.join(TimeUnit.SECONDS.toMillis(DRAIN_TIMEOUT_SECONDS));
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty())
+        {
+            log.warn("日志队列未写完，丢弃{}条", queue.size());
+        }
+    }
+
+    private void consume()
+    {
+        List<Object> batch = new ArrayList<Object>(BATCH_SIZE);
+        while (running || !queue.isEmpty())
+        {
+            try
+            {
+                Object first = running ? queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first == null)
+                {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                write(batch);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (Exception e)
+            {
+                failed.add(batch.size());
+                log.error("批量写入日志异常", e);
+            }
+            finally
+            {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Object> batch)
+    {
+        List<SysOperLog> operLogs = new ArrayList<SysOperLog>();
+        List<SysLogininfor> logininfors = new ArrayList<SysLogininfor>();
+        // 同一批次相同IP只查询一次地点
+        Map<String, String> locations = new HashMap<String, String>();
+        for (Object item : batch)
+        {
+            if (item instanceof SysOperLog)
+            {
+                SysOperLog operLog = (SysOperLog) item;
+                operLog.setOperLocation(locations.computeIfAbsent(operLog.getOperIp(), AddressUtils::getRealAddressByIP));
+                operLogs.add(operLog);
+            }
+            else if (item instanceof SysLogininfor)
+            {
+                SysLogininfor logininfor = (SysLogininfor) item;
+                logininfor.setLoginLocation(locations.computeIfAbsent(logininfor.getIpaddr(), AddressUtils::getRealAddressByIP));
+                logininfors.add(logininfor);
+            }
+        }
+        insert(operLogs, operLogService::insertOperlogBatch, operLogService::insertOperlog);
+        insert(logininfors, logininforService::insertLogininforBatch, logininforService::insertLogininfor);
+        batches.increment();
+    }
+
+    /**
+     * 多行插入，失败时逐条重试，只丢弃无法写入的日志
+     */
+    private <T> void insert(List<T> rows, Consumer<List<T>> batchInsert, Consumer<T> singleInsert)
+    {
+        if (rows.isEmpty())
+        {
+            return;
+        }
+        try
+        {
+            batchInsert.accept(rows);
+            written.add(rows.size());
+            return;
+        }
+        catch (Exception e)
+        {
+            log.warn("批量写入{}条日志失败，改为逐条写入: {}", rows.size(), e.getMessage());
+        }
+        for (T row : rows)
+        {
+            try
+            {
+                singleInsert.accept(row);
+                written.increment();
+            }
+            catch (Exception e)
+            {
+                failed.increment();
+                log.error("写入日志失败，已丢弃: {}", JSON.toJSONString(row), e);
+            }
+        }
+    }
+}
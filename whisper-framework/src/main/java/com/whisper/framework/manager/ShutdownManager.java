@@ -2,6 +2,7 @@ package com.whisper.framework.manager;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import javax.annotation.PreDestroy;
 
@@ -15,10 +16,14 @@ public class ShutdownManager
 {
     private static final Logger logger = LoggerFactory.getLogger("sys-user");
 
+    @Autowired
+    private LogBatchManager logBatchManager;
+
     @PreDestroy
     public void destroy()
     {
         shutdownAsyncManager();
+        shutdownLogBatchManager();
     }
 
     /**
@@ -36,4 +41,20 @@ public class ShutdownManager
             logger.error(e.getMessage(), e);
         }
     }
+
+    /**
+     * 写完日志队列，需在异步任务线程池关闭之后执行
+     */
+    private void shutdownLogBatchManager()
+    {
+        try
+        {
+            logger.info("====写入剩余日志====");
+            logBatchManager.shutdown();
+        }
+        catch (Exception e)
+        {
+            logger.error(e.getMessage(), e);
+        }
+    }
 }
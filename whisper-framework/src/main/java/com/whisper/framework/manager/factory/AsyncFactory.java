@@ -1,5 +1,6 @@
 package com.whisper.framework.manager.factory;
 
+import java.util.Date;
 import java.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,13 +8,12 @@ import com.whisper.common.constant.Constants;
 import com.whisper.common.utils.LogUtils;
 import com.whisper.common.utils.ServletUtils;
 import com.whisper.common.utils.StringUtils;
-import com.whisper.common.utils.ip.AddressUtils;
+import com.whisper.common.enums.BusinessStatus;
 import com.whisper.common.utils.ip.IpUtils;
 import com.whisper.common.utils.spring.SpringUtils;
+import com.whisper.framework.manager.LogBatchManager;
 import com.whisper.system.domain.SysLogininfor;
 import com.whisper.system.domain.SysOperLog;
-import com.whisper.system.service.ISysLogininforService;
-import com.whisper.system.service.ISysOperLogService;
 import eu.bitwalker.useragentutils.UserAgent;
 
 /**
@@ -39,15 +39,14 @@ public class AsyncFactory
     {
         final UserAgent userAgent = UserAgent.parseUserAgentString(ServletUtils.getRequest().getHeader("User-Agent"));
         final String ip = IpUtils.getIpAddr();
+        final Date loginTime = new Date();
         return new TimerTask()
         {
             @Override
             public void run()
             {
-                String address = AddressUtils.getRealAddressByIP(ip);
                 StringBuilder s = new StringBuilder();
                 s.append(LogUtils.getBlock(ip));
-                s.append(address);
                 s.append(LogUtils.getBlock(username));
                 s.append(LogUtils.getBlock(status));
                 s.append(LogUtils.getBlock(message));
@@ -61,10 +60,10 @@ public class AsyncFactory
                 SysLogininfor logininfor = new SysLogininfor();
                 logininfor.setUserName(username);
                 logininfor.setIpaddr(ip);
-                logininfor.setLoginLocation(address);
                 logininfor.setBrowser(browser);
                 logininfor.setOs(os);
                 logininfor.setMsg(message);
+                logininfor.setLoginTime(loginTime);
                 // 日志状态
                 if (StringUtils.equalsAny(status, Constants.LOGIN_SUCCESS, Constants.LOGOUT, Constants.REGISTER))
                 {
@@ -74,8 +73,8 @@ public class AsyncFactory
                 {
                     logininfor.setStatus(Constants.FAIL);
                 }
-                // 插入数据
-                SpringUtils.getBean(ISysLogininforService.class).insertLogininfor(logininfor);
+                // 批量写入，登录地点由写入线程查询
+                SpringUtils.getBean(LogBatchManager.class).submit(logininfor, Constants.LOGIN_FAIL.equals(status));
             }
         };
     }
@@ -88,14 +87,18 @@ public class AsyncFactory
      */
     public static TimerTask recordOper(final SysOperLog operLog)
     {
+        if (operLog.getOperTime() == null)
+        {
+            operLog.setOperTime(new Date());
+        }
         return new TimerTask()
         {
             @Override
             public void run()
             {
-                // 远程查询操作地点
-                operLog.setOperLocation(AddressUtils.getRealAddressByIP(operLog.getOperIp()));
-                SpringUtils.getBean(ISysOperLogService.class).insertOperlog(operLog);
+                // 批量写入，操作地点由写入线程查询
+                boolean failed = operLog.getStatus() != null && operLog.getStatus() == BusinessStatus.FAIL.ordinal();
+                SpringUtils.getBean(LogBatchManager.class).submit(operLog, failed);
             }
         };
     }
@@ -7,12 +7,16 @@ import com.whisper.common.core.text.Convert;
 /**
  * 权限信息
  * 
+ * 请求线程中保存在请求属性里；没有请求上下文的后台线程（如后台导出）通过 bind 绑定到当前线程，用完后 clear。
+ * 
  * @author ruoyi
  */
 public class PermissionContextHolder
 {
     private static final String PERMISSION_CONTEXT_ATTRIBUTES = "PERMISSION_CONTEXT";
 
+    private static final ThreadLocal<String> THREAD_CONTEXT = new ThreadLocal<String>();
+
     public static void setContext(String permission)
     {
         RequestContextHolder.currentRequestAttributes().setAttribute(PERMISSION_CONTEXT_ATTRIBUTES, permission,
@@ -21,7 +25,29 @@ public class PermissionContextHolder
 
     public static String getContext()
     {
-        return Convert.toStr(RequestContextHolder.currentRequestAttributes().getAttribute(PERMISSION_CONTEXT_ATTRIBUTES,
-                RequestAttributes.SCOPE_REQUEST));
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null)
+        {
+            return THREAD_CONTEXT.get();
+        }
+        return Convert.toStr(attributes.getAttribute(PERMISSION_CONTEXT_ATTRIBUTES, RequestAttributes.SCOPE_REQUEST));
+    }
+
+    /**
+     * 在没有请求上下文的线程中绑定权限
+     * 
+     * @param permission 权限字符串
+     */
+    public static void bind(String permission)
+    {
+        THREAD_CONTEXT.set(permission);
+    }
+
+    /**
+     * 清除当前线程绑定的权限
+     */
+    public static void clear()
+    {
+        THREAD_CONTEXT.remove();
     }
 }
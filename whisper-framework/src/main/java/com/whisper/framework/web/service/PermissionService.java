@@ -1,6 +1,5 @@
 package com.whisper.framework.web.service;
 
-import java.util.Set;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import com.whisper.common.constant.Constants;
@@ -36,7 +35,7 @@ public class PermissionService
             return false;
         }
         PermissionContextHolder.setContext(permission);
-        return hasPermissions(loginUser.getPermissions(), permission);
+        return loginUser.getPermissionBits().has(permission);
     }
 
     /**
@@ -68,15 +67,7 @@ public class PermissionService
             return false;
         }
         PermissionContextHolder.setContext(permissions);
-        Set<String> authorities = loginUser.getPermissions();
-        for (String permission : permissions.split(Constants.PERMISSION_DELIMETER))
-        {
-            if (permission != null && hasPermissions(authorities, permission))
-            {
-                return true;
-            }
-        }
-        return false;
+        return loginUser.getPermissionBits().hasAny(permissions);
     }
 
     /**
@@ -144,16 +135,4 @@ public class PermissionService
         }
         return false;
     }
-
-    /**
-     * 判断是否包含权限
-     * 
-     * @param permissions 权限列表
-     * @param permission 权限字符串
-     * @return 用户是否具备某权限
-     */
-    private boolean hasPermissions(Set<String> permissions, String permission)
-    {
-        return permissions.contains(Constants.ALL_PERMISSION) || permissions.contains(StringUtils.trim(permission));
-    }
 }
@@ -1,16 +1,34 @@
 package com.whisper.framework.web.service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 import com.whisper.common.constant.CacheConstants;
 import com.whisper.common.constant.Constants;
+import com.whisper.common.core.cache.LocalCache;
 import com.whisper.common.core.domain.model.LoginUser;
 import com.whisper.common.core.redis.RedisCache;
 import com.whisper.common.utils.ServletUtils;
@@ -51,9 +69,58 @@ public class TokenService
 
     private static final Long MILLIS_MINUTE_TWENTY = 20 * 60 * 1000L;
 
+    /** 本地缓存的登录用户数上限 */
+    private static final int LOCAL_CACHE_SIZE = 10000;
+
+    /** 本地缓存有效期（秒），未收到失效通知时最多延迟该时长感知变更 */
+    private static final int LOCAL_CACHE_SECONDS = 30;
+
+    /** 登录用户失效通知 */
+    private static final String EVICT_CHANNEL = CacheConstants.CACHE_EVICT_CHANNEL + "login_tokens";
+
+    /** 失效通知中表示全部用户的标识 */
+    public static final String EVICT_ALL = "*";
+
+    /** 在线会话索引单批处理条数 */
+    private static final int INDEX_BATCH_SIZE = 500;
+
+    /** 清理在线会话索引的周期（分钟） */
+    private static final int INDEX_CLEANUP_MINUTES = 10;
+
+    /** 已反序列化的登录用户（令牌uuid -> 用户信息） */
+    private final LocalCache<String, LoginUser> localCache = new LocalCache<String, LoginUser>(LOCAL_CACHE_SIZE,
+            LOCAL_CACHE_SECONDS, TimeUnit.SECONDS);
+
+    /** 本地缓存失效版本号，从Redis读取期间发生过失效的结果不写入本地缓存 */
+    private final AtomicLong evictVersion = new AtomicLong();
+
     @Autowired
     private RedisCache redisCache;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    @Qualifier("scheduledExecutorService")
+    private ScheduledExecutorService scheduledExecutorService;
+
+    /**
+     * 订阅其他节点的登录用户失效通知，并定期清理在线会话索引中已过期的令牌
+     */
+    @PostConstruct
+    public void init()
+    {
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> evictLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(EVICT_CHANNEL));
+        scheduledExecutorService.execute(this::initOnlineIndex);
+        scheduledExecutorService.scheduleWithFixedDelay(this::cleanupOnlineIndex, INDEX_CLEANUP_MINUTES,
+                INDEX_CLEANUP_MINUTES, TimeUnit.MINUTES);
+    }
+
     /**
      * 获取用户身份信息
      * 
@@ -70,8 +137,16 @@ public class TokenService
                 Claims claims = parseToken(token);
                 // 解析对应的权限以及用户信息
                 String uuid = (String) claims.get(Constants.LOGIN_USER_KEY);
-                String userKey = getTokenKey(uuid);
-                LoginUser user = redisCache.getCacheObject(userKey);
+                LoginUser user = localCache.get(uuid);
+                if (user == null)
+                {
+                    long startVersion = evictVersion.get();
+                    user = redisCache.getCacheObject(getTokenKey(uuid));
+                    if (user != null)
+                    {
+                        localCache.putIf(uuid, user, () -> evictVersion.get() == startVersion);
+                    }
+                }
                 return user;
             }
             catch (Exception e)
@@ -102,6 +177,8 @@ public class TokenService
         {
             String userKey = getTokenKey(token);
             redisCache.deleteObject(userKey);
+            stringRedisTemplate.opsForZSet().remove(CacheConstants.LOGIN_TOKEN_INDEX_KEY, token);
+            evictLoginUser(token);
         }
     }
 
@@ -125,7 +202,7 @@ public class TokenService
     }
 
     /**
-     * 验证令牌有效期，相差不足20分钟，自动刷新缓存
+     * 验证令牌有效期，相差不足20分钟，自动延长缓存有效期（只续期，不重写用户信息）
      * 
      * @param loginUser 登录信息
      * @return 令牌
@@ -136,7 +213,14 @@ public class TokenService
         long currentTime = System.currentTimeMillis();
         if (expireTime - currentTime <= MILLIS_MINUTE_TWENTY)
         {
-            refreshToken(loginUser);
+            if (redisCache.expire(getTokenKey(loginUser.getToken()), this.expireTime, TimeUnit.MINUTES))
+            {
+                loginUser.setExpireTime(currentTime + this.expireTime * MILLIS_MINUTE);
+            }
+            else
+            {
+                evictLocal(loginUser.getToken());
+            }
         }
     }
 
@@ -152,6 +236,234 @@ public class TokenService
         // 根据uuid将loginUser缓存
         String userKey = getTokenKey(loginUser.getToken());
         redisCache.setCacheObject(userKey, loginUser, expireTime, TimeUnit.MINUTES);
+        stringRedisTemplate.opsForZSet().add(CacheConstants.LOGIN_TOKEN_INDEX_KEY, loginUser.getToken(),
+                loginUser.getLoginTime());
+        evictLoginUser(loginUser.getToken());
+    }
+
+    /**
+     * 在线会话数，统计前先清理索引中已过期的令牌
+     */
+    public long countOnlineUsers()
+    {
+        cleanupOnlineIndex();
+        Long count = stringRedisTemplate.opsForZSet().zCard(CacheConstants.LOGIN_TOKEN_INDEX_KEY);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 按登录时间倒序分页查询在线用户，顺带移除索引中已过期的令牌
+     *
+     * @param offset 起始位置
+     * @param count 条数，小于0表示全部
+     * @return 在线用户
+     */
+    public List<LoginUser> selectOnlineUsers(long offset, long count)
+    {
+        long end = count < 0 ? -1 : offset + count - 1;
+        Set<String> tokens = stringRedisTemplate.opsForZSet().reverseRange(CacheConstants.LOGIN_TOKEN_INDEX_KEY, offset, end);
+        if (tokens == null || tokens.isEmpty())
+        {
+            return new ArrayList<LoginUser>();
+        }
+        return loadOnlineUsers(tokens, new HashSet<String>());
+    }
+
+    /**
+     * 按登录时间倒序分批遍历在线用户，顺带移除索引中已过期的令牌
+     *
+     * 以上一批最后的登录时间作为游标，遍历期间新登录或其他节点清理索引都不会造成重复或遗漏。
+     *
+     * @param consumer 每批在线用户的处理方法
+     */
+    public void scanOnlineUsers(Consumer<List<LoginUser>> consumer)
+    {
+        double max = Double.POSITIVE_INFINITY;
+        long skip = 0;
+        while (true)
+        {
+            Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().reverseRangeByScoreWithScores(
+                    CacheConstants.LOGIN_TOKEN_INDEX_KEY, Double.NEGATIVE_INFINITY, max, skip, INDEX_BATCH_SIZE);
+            if (tuples == null || tuples.isEmpty())
+            {
+                return;
+            }
+            List<String> tokens = new ArrayList<String>(tuples.size());
+            List<String> tied = new ArrayList<String>();
+            double last = max;
+            for (ZSetOperations.TypedTuple<String> tuple : tuples)
+            {
+                double score = tuple.getScore() == null ? 0 : tuple.getScore();
+                if (score != last)
+                {
+                    last = score;
+                    tied.clear();
+                }
+                tied.add(tuple.getValue());
+                tokens.add(tuple.getValue());
+            }
+            Set<String> expired = new HashSet<String>();
+            List<LoginUser> users = loadOnlineUsers(tokens, expired);
+            if (!users.isEmpty())
+            {
+                consumer.accept(users);
+            }
+            if (tuples.size() < INDEX_BATCH_SIZE)
+            {
+                return;
+            }
+            // 下一批从最后的登录时间开始，跳过已读取且仍在索引中的同分令牌
+            tied.removeAll(expired);
+            skip = (last == max ? skip : 0) + tied.size();
+            max = last;
+        }
+    }
+
+    /**
+     * 批量读取令牌对应的登录用户，移除索引中已过期的令牌
+     *
+     * @param tokens 令牌
+     * @param expired 已过期的令牌
+     * @return 登录用户
+     */
+    private List<LoginUser> loadOnlineUsers(Collection<String> tokens, Set<String> expired)
+    {
+        List<String> keys = new ArrayList<String>(tokens.size());
+        for (String token : tokens)
+        {
+            keys.add(getTokenKey(token));
+        }
+        List<LoginUser> values = redisCache.getMultiCacheObject(keys);
+        List<LoginUser> users = new ArrayList<LoginUser>(values.size());
+        int i = 0;
+        for (String token : tokens)
+        {
+            LoginUser user = values.get(i++);
+            if (user == null)
+            {
+                expired.add(token);
+            }
+            else
+            {
+                users.add(user);
+            }
+        }
+        if (!expired.isEmpty())
+        {
+            stringRedisTemplate.opsForZSet().remove(CacheConstants.LOGIN_TOKEN_INDEX_KEY, expired.toArray());
+        }
+        return users;
+    }
+
+    /**
+     * 在线会话索引不存在时（首次部署或被清空）由现有令牌重建
+     */
+    private void initOnlineIndex()
+    {
+        try
+        {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(CacheConstants.LOGIN_TOKEN_INDEX_KEY)))
+            {
+                return;
+            }
+            redisCache.scan(CacheConstants.LOGIN_TOKEN_KEY + "*", keys -> {
+                List<LoginUser> users = redisCache.getMultiCacheObject(keys);
+                for (LoginUser user : users)
+                {
+                    if (user != null && StringUtils.isNotEmpty(user.getToken()))
+                    {
+                        stringRedisTemplate.opsForZSet().add(CacheConstants.LOGIN_TOKEN_INDEX_KEY, user.getToken(),
+                                user.getLoginTime() == null ? System.currentTimeMillis() : user.getLoginTime());
+                    }
+                }
+            });
+        }
+        catch (Exception e)
+        {
+            log.warn("重建在线会话索引失败'{}'", e.getMessage());
+        }
+    }
+
+    /**
+     * 清理在线会话索引：登录时间早于一个有效期的令牌才可能已过期，分批检查是否仍存在
+     */
+    private void cleanupOnlineIndex()
+    {
+        try
+        {
+            double maxScore = System.currentTimeMillis() - expireTime * MILLIS_MINUTE;
+            long offset = 0;
+            while (true)
+            {
+                Set<String> tokens = stringRedisTemplate.opsForZSet().rangeByScore(CacheConstants.LOGIN_TOKEN_INDEX_KEY,
+                        0, maxScore, offset, INDEX_BATCH_SIZE);
+                if (tokens == null || tokens.isEmpty())
+                {
+                    return;
+                }
+                List<String> candidates = new ArrayList<String>(tokens);
+                List<Object> exists = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                    for (String token : candidates)
+                    {
+                        stringConnection.exists(getTokenKey(token));
+                    }
+                    return null;
+                });
+                List<Object> expired = new ArrayList<Object>();
+                for (int i = 0; i < candidates.size(); i++)
+                {
+                    if (!Boolean.TRUE.equals(exists.get(i)))
+                    {
+                        expired.add(candidates.get(i));
+                    }
+                }
+                if (!expired.isEmpty())
+                {
+                    stringRedisTemplate.opsForZSet().remove(CacheConstants.LOGIN_TOKEN_INDEX_KEY, expired.toArray());
+                }
+                if (tokens.size() < INDEX_BATCH_SIZE)
+                {
+                    return;
+                }
+                offset += INDEX_BATCH_SIZE - expired.size();
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn("清理在线会话索引失败'{}'", e.getMessage());
+        }
+    }
+
+    /**
+     * 清除本节点缓存并通知其他节点，用于退出、强退和权限变更
+     * 
+     * @param token 令牌uuid，EVICT_ALL表示全部
+     */
+    public void evictLoginUser(String token)
+    {
+        evictLocal(token);
+        try
+        {
+            stringRedisTemplate.convertAndSend(EVICT_CHANNEL, token);
+        }
+        catch (Exception e)
+        {
+            log.warn("发布登录用户失效通知失败'{}'", e.getMessage());
+        }
+    }
+
+    private void evictLocal(String token)
+    {
+        evictVersion.incrementAndGet();
+        if (EVICT_ALL.equals(token))
+        {
+            localCache.clear();
+        }
+        else
+        {
+            localCache.remove(token);
+        }
     }
 
     /**
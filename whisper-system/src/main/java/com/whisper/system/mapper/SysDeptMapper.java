@@ -52,6 +52,21 @@ public interface SysDeptMapper
      */
     public int selectNormalChildrenDeptById(Long deptId);
 
+    /**
+     * 根据ID查询部门及所有子部门ID（含自身）
+     * 
+     * @param deptId 部门ID
+     * @return 部门ID列表
+     */
+    public List<Long> selectChildrenDeptIds(Long deptId);
+
+    /**
+     * 查询未建立层级关系的部门数量
+     * 
+     * @return 部门数量
+     */
+    public int countDeptWithoutClosure();
+
     /**
      * 是否存在子节点
      * 
@@ -108,6 +123,46 @@ public interface SysDeptMapper
      */
     public int updateDeptChildren(@Param("depts") List<SysDept> depts);
 
+    /**
+     * 新增部门的层级关系
+     * 
+     * @param deptId 部门ID
+     * @param parentId 父部门ID
+     * @return 结果
+     */
+    public int insertDeptClosure(@Param("deptId") Long deptId, @Param("parentId") Long parentId);
+
+    /**
+     * 删除部门子树与原上级部门的层级关系
+     * 
+     * @param deptId 部门ID
+     * @return 结果
+     */
+    public int deleteDeptClosurePaths(Long deptId);
+
+    /**
+     * 建立部门子树与新上级部门的层级关系
+     * 
+     * @param deptId 部门ID
+     * @param parentId 新的父部门ID
+     * @return 结果
+     */
+    public int insertDeptClosurePaths(@Param("deptId") Long deptId, @Param("parentId") Long parentId);
+
+    /**
+     * 清空部门层级关系
+     * 
+     * @return 结果
+     */
+    public int clearDeptClosure();
+
+    /**
+     * 根据parent_id重建部门层级关系
+     * 
+     * @return 结果
+     */
+    public int rebuildDeptClosure();
+
     /**
      * 删除部门管理信息
      * 
@@ -17,6 +17,13 @@ public interface SysLogininforMapper
      */
     public void insertLogininfor(SysLogininfor logininfor);
 
+    /**
+     * 批量新增系统登录日志
+     * 
+     * @param logininfors 访问日志列表
+     */
+    public void insertLogininforBatch(List<SysLogininfor> logininfors);
+
     /**
      * 查询系统登录日志集合
      * 
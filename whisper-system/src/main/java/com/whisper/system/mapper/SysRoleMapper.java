@@ -41,6 +41,14 @@ public interface SysRoleMapper
      */
     public List<Long> selectRoleListByUserId(Long userId);
 
+    /**
+     * 根据用户ID查询正常状态的角色ID，按角色ID升序
+     *
+     * @param userId 用户ID
+     * @return 角色ID列表
+     */
+    public List<Long> selectNormalRoleIdsByUserId(Long userId);
+
     /**
      * 通过角色ID查询角色
      * 
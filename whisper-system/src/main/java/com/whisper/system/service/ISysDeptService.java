@@ -67,6 +67,14 @@ public interface ISysDeptService
      */
     public int selectNormalChildrenDeptById(Long deptId);
 
+    /**
+     * 根据ID查询部门及所有子部门ID（含自身）
+     * 
+     * @param deptId 部门ID
+     * @return 部门ID列表
+     */
+    public List<Long> selectChildrenDeptIds(Long deptId);
+
     /**
      * 是否存在部门子节点
      * 
@@ -54,6 +54,14 @@ public interface ISysMenuService
      */
     public List<SysMenu> selectMenuTreeByUserId(Long userId);
 
+    /**
+     * 根据用户ID查询前端路由，按用户的角色集合缓存
+     *
+     * @param userId 用户ID
+     * @return 路由列表
+     */
+    public List<RouterVo> selectRoutersByUserId(Long userId);
+
     /**
      * 根据角色ID查询菜单树信息
      * 
@@ -141,4 +149,9 @@ public interface ISysMenuService
      * @return 结果
      */
     public boolean checkMenuNameUnique(SysMenu menu);
+
+    /**
+     * 清空菜单路由和权限缓存，菜单或角色菜单变更后调用
+     */
+    public void clearMenuCache();
 }
@@ -2,12 +2,16 @@ package com.whisper.system.service.impl;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 import com.whisper.common.annotation.DataSource;
 import com.whisper.common.constant.CacheConstants;
 import com.whisper.common.constant.UserConstants;
+import com.whisper.common.core.cache.NearCache;
 import com.whisper.common.core.redis.RedisCache;
 import com.whisper.common.core.text.Convert;
 import com.whisper.common.enums.DataSourceType;
@@ -25,18 +29,35 @@ import com.whisper.system.service.ISysConfigService;
 @Service
 public class SysConfigServiceImpl implements ISysConfigService
 {
+    /** 本地缓存最大条目数 */
+    private static final int NEAR_CACHE_SIZE = 2000;
+
+    /** 本地缓存过期时间（分钟） */
+    private static final int NEAR_CACHE_MINUTES = 10;
+
     @Autowired
     private SysConfigMapper configMapper;
 
     @Autowired
     private RedisCache redisCache;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /** 参数键 -> 参数值，位于Redis之前 */
+    private NearCache<String> nearCache;
+
     /**
      * 项目启动时，初始化参数到缓存
      */
     @PostConstruct
     public void init()
     {
+        nearCache = new NearCache<String>("sys_config", NEAR_CACHE_SIZE, NEAR_CACHE_MINUTES, TimeUnit.MINUTES,
+                stringRedisTemplate, redisMessageListenerContainer);
         loadingConfigCache();
     }
 
@@ -63,6 +84,14 @@ public class SysConfigServiceImpl implements ISysConfigService
      */
     @Override
     public String selectConfigByKey(String configKey)
+    {
+        return nearCache.get(configKey, this::loadConfigByKey);
+    }
+
+    /**
+     * 从Redis或数据库读取参数值，本地缓存未命中时调用
+     */
+    private String loadConfigByKey(String configKey)
     {
         String configValue = Convert.toStr(redisCache.getCacheObject(getCacheKey(configKey)));
         if (StringUtils.isNotEmpty(configValue))
@@ -121,6 +150,7 @@ public class SysConfigServiceImpl implements ISysConfigService
         if (row > 0)
         {
             redisCache.setCacheObject(getCacheKey(config.getConfigKey()), config.getConfigValue());
+            nearCache.evict(config.getConfigKey());
         }
         return row;
     }
@@ -138,12 +168,14 @@ public class SysConfigServiceImpl implements ISysConfigService
         if (!StringUtils.equals(temp.getConfigKey(), config.getConfigKey()))
         {
             redisCache.deleteObject(getCacheKey(temp.getConfigKey()));
+            nearCache.evict(temp.getConfigKey());
         }
 
         int row = configMapper.updateConfig(config);
         if (row > 0)
         {
             redisCache.setCacheObject(getCacheKey(config.getConfigKey()), config.getConfigValue());
+            nearCache.evict(config.getConfigKey());
         }
         return row;
     }
@@ -165,6 +197,7 @@ public class SysConfigServiceImpl implements ISysConfigService
             }
             configMapper.deleteConfigById(configId);
             redisCache.deleteObject(getCacheKey(config.getConfigKey()));
+            nearCache.evict(config.getConfigKey());
         }
     }
 
@@ -179,6 +212,7 @@ public class SysConfigServiceImpl implements ISysConfigService
         {
             redisCache.setCacheObject(getCacheKey(config.getConfigKey()), config.getConfigValue());
         }
+        nearCache.evictAll();
     }
 
     /**
@@ -189,6 +223,7 @@ public class SysConfigServiceImpl implements ISysConfigService
     {
         Collection<String> keys = redisCache.keys(CacheConstants.SYS_CONFIG_KEY + "*");
         redisCache.deleteObject(keys);
+        nearCache.evictAll();
     }
 
     /**
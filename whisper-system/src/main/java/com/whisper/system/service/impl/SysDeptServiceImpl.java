@@ -1,13 +1,27 @@
 package com.whisper.system.service.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import com.whisper.common.annotation.DataScope;
+import com.whisper.common.constant.CacheConstants;
 import com.whisper.common.constant.UserConstants;
+import com.whisper.common.core.cache.LocalCache;
 import com.whisper.common.core.domain.TreeSelect;
 import com.whisper.common.core.domain.entity.SysDept;
 import com.whisper.common.core.domain.entity.SysRole;
@@ -29,12 +43,49 @@ import com.whisper.system.service.ISysDeptService;
 @Service
 public class SysDeptServiceImpl implements ISysDeptService
 {
+    private static final Logger log = LoggerFactory.getLogger(SysDeptServiceImpl.class);
+
+    /** 本地缓存的部门子树数量上限 */
+    private static final int SUBTREE_CACHE_SIZE = 2000;
+
+    /** 本地缓存有效期（秒），未收到失效通知时最多延迟该时长感知变更 */
+    private static final int SUBTREE_CACHE_SECONDS = 300;
+
+    /** 部门子树失效通知 */
+    private static final String EVICT_CHANNEL = CacheConstants.CACHE_EVICT_CHANNEL + "dept_subtree";
+
+    /** 部门ID -> 部门及所有子部门ID */
+    private final LocalCache<Long, List<Long>> subtreeCache = new LocalCache<Long, List<Long>>(SUBTREE_CACHE_SIZE,
+            SUBTREE_CACHE_SECONDS, TimeUnit.SECONDS);
+
     @Autowired
     private SysDeptMapper deptMapper;
 
     @Autowired
     private SysRoleMapper roleMapper;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 项目启动时补齐部门层级关系，并订阅其他节点的子树失效通知
+     */
+    @PostConstruct
+    public void init()
+    {
+        if (deptMapper.countDeptWithoutClosure() > 0)
+        {
+            log.info("部门层级关系不完整，重建sys_dept_closure");
+            deptMapper.clearDeptClosure();
+            deptMapper.rebuildDeptClosure();
+        }
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> subtreeCache.clear(),
+                new ChannelTopic(EVICT_CHANNEL));
+    }
+
     /**
      * 查询部门管理数据
      * 
@@ -138,6 +189,24 @@ public class SysDeptServiceImpl implements ISysDeptService
         return deptMapper.selectNormalChildrenDeptById(deptId);
     }
 
+    /**
+     * 根据ID查询部门及所有子部门ID（含自身），结果在本节点缓存
+     * 
+     * @param deptId 部门ID
+     * @return 部门ID列表
+     */
+    @Override
+    public List<Long> selectChildrenDeptIds(Long deptId)
+    {
+        List<Long> deptIds = subtreeCache.get(deptId);
+        if (deptIds == null)
+        {
+            deptIds = Collections.unmodifiableList(deptMapper.selectChildrenDeptIds(deptId));
+            subtreeCache.put(deptId, deptIds);
+        }
+        return deptIds;
+    }
+
     /**
      * 是否存在子节点
      * 
@@ -209,6 +278,7 @@ public class SysDeptServiceImpl implements ISysDeptService
      * @return 结果
      */
     @Override
+    @Transactional
     public int insertDept(SysDept dept)
     {
         SysDept info = deptMapper.selectDeptById(dept.getParentId());
@@ -218,7 +288,10 @@ public class SysDeptServiceImpl implements ISysDeptService
             throw new ServiceException("部门停用，不允许新增");
         }
         dept.setAncestors(info.getAncestors() + "," + dept.getParentId());
-        return deptMapper.insertDept(dept);
+        int result = deptMapper.insertDept(dept);
+        deptMapper.insertDeptClosure(dept.getDeptId(), dept.getParentId());
+        evictSubtreeCache();
+        return result;
     }
 
     /**
@@ -228,6 +301,7 @@ public class SysDeptServiceImpl implements ISysDeptService
      * @return 结果
      */
     @Override
+    @Transactional
     public int updateDept(SysDept dept)
     {
         SysDept newParentDept = deptMapper.selectDeptById(dept.getParentId());
@@ -238,6 +312,10 @@ public class SysDeptServiceImpl implements ISysDeptService
             String oldAncestors = oldDept.getAncestors();
             dept.setAncestors(newAncestors);
             updateDeptChildren(dept.getDeptId(), newAncestors, oldAncestors);
+            if (!Objects.equals(oldDept.getParentId(), dept.getParentId()))
+            {
+                moveDeptClosure(dept.getDeptId(), dept.getParentId());
+            }
         }
         int result = deptMapper.updateDept(dept);
         if (UserConstants.DEPT_NORMAL.equals(dept.getStatus()) && StringUtils.isNotEmpty(dept.getAncestors())
@@ -281,6 +359,53 @@ public class SysDeptServiceImpl implements ISysDeptService
         }
     }
 
+    /**
+     * 将部门子树挂到新的上级部门下
+     * 
+     * @param deptId 被移动的部门ID
+     * @param parentId 新的父部门ID
+     */
+    private void moveDeptClosure(Long deptId, Long parentId)
+    {
+        deptMapper.deleteDeptClosurePaths(deptId);
+        deptMapper.insertDeptClosurePaths(deptId, parentId);
+        evictSubtreeCache();
+    }
+
+    /**
+     * 清除本节点部门子树缓存并通知其他节点，在事务中时等提交后执行
+     */
+    private void evictSubtreeCache()
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    publishSubtreeEvict();
+                }
+            });
+            return;
+        }
+        publishSubtreeEvict();
+    }
+
+    private void publishSubtreeEvict()
+    {
+        subtreeCache.clear();
+        try
+        {
+            stringRedisTemplate.convertAndSend(EVICT_CHANNEL, "*");
+            stringRedisTemplate.convertAndSend(CacheConstants.DATA_SCOPE_EVICT_CHANNEL, "*");
+        }
+        catch (Exception e)
+        {
+            log.warn("发布部门子树失效通知失败'{}'", e.getMessage());
+        }
+    }
+
     /**
      * 删除部门管理信息
      * 
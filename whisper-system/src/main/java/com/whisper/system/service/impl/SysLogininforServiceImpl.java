@@ -30,6 +30,17 @@ public class SysLogininforServiceImpl implements ISysLogininforService
         logininforMapper.insertLogininfor(logininfor);
     }
 
+    /**
+     * 批量新增系统登录日志
+     * 
+     * @param logininfors 访问日志列表
+     */
+    @Override
+    public void insertLogininforBatch(List<SysLogininfor> logininfors)
+    {
+        logininforMapper.insertLogininforBatch(logininfors);
+    }
+
     /**
      * 查询系统登录日志集合
      * 
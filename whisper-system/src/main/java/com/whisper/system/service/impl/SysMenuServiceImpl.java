@@ -2,16 +2,30 @@ package com.whisper.system.service.impl;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import com.whisper.common.constant.CacheConstants;
 import com.whisper.common.constant.Constants;
 import com.whisper.common.constant.UserConstants;
+import com.whisper.common.core.cache.LocalCache;
 import com.whisper.common.core.domain.TreeSelect;
 import com.whisper.common.core.domain.entity.SysMenu;
 import com.whisper.common.core.domain.entity.SysRole;
@@ -28,13 +42,37 @@ import com.whisper.system.service.ISysMenuService;
 /**
  * 菜单 业务层处理
  * 
+ * 前端路由按用户的正常角色ID集合缓存，角色权限按角色ID缓存；菜单或角色菜单变更后经Redis通知各节点清空。
+ *
  * @author ruoyi
  */
 @Service
 public class SysMenuServiceImpl implements ISysMenuService
 {
+    private static final Logger log = LoggerFactory.getLogger(SysMenuServiceImpl.class);
+
     public static final String PREMISSION_STRING = "perms[\"{0}\"]";
 
+    /** 菜单缓存失效通知 */
+    private static final String EVICT_CHANNEL = CacheConstants.CACHE_EVICT_CHANNEL + "menu";
+
+    /** 管理员路由缓存key */
+    private static final String ADMIN_ROUTER_KEY = "admin";
+
+    /** 缓存最大条目数 */
+    private static final int CACHE_SIZE = 1000;
+
+    /** 缓存过期时间（分钟），失效通知丢失时兜底 */
+    private static final int CACHE_MINUTES = 30;
+
+    /** 排序后的角色ID集合 -> 前端路由 */
+    private final LocalCache<String, List<RouterVo>> routerCache = new LocalCache<String, List<RouterVo>>(CACHE_SIZE,
+            CACHE_MINUTES, TimeUnit.MINUTES);
+
+    /** 角色ID -> 权限集合 */
+    private final LocalCache<Long, Set<String>> rolePermsCache = new LocalCache<Long, Set<String>>(CACHE_SIZE,
+            CACHE_MINUTES, TimeUnit.MINUTES);
+
     @Autowired
     private SysMenuMapper menuMapper;
 
@@ -44,6 +82,22 @@ public class SysMenuServiceImpl implements ISysMenuService
     @Autowired
     private SysRoleMenuMapper roleMenuMapper;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 订阅其他节点的菜单缓存失效通知
+     */
+    @PostConstruct
+    public void init()
+    {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> clearLocalCache(),
+                new ChannelTopic(EVICT_CHANNEL));
+    }
+
     /**
      * 根据用户查询系统菜单列表
      * 
@@ -109,6 +163,11 @@ public class SysMenuServiceImpl implements ISysMenuService
     @Override
     public Set<String> selectMenuPermsByRoleId(Long roleId)
     {
+        Set<String> cached = rolePermsCache.get(roleId);
+        if (cached != null)
+        {
+            return cached;
+        }
         List<String> perms = menuMapper.selectMenuPermsByRoleId(roleId);
         Set<String> permsSet = new HashSet<>();
         for (String perm : perms)
@@ -118,6 +177,8 @@ public class SysMenuServiceImpl implements ISysMenuService
                 permsSet.addAll(Arrays.asList(perm.trim().split(",")));
             }
         }
+        permsSet = Collections.unmodifiableSet(permsSet);
+        rolePermsCache.put(roleId, permsSet);
         return permsSet;
     }
 
@@ -142,6 +203,32 @@ public class SysMenuServiceImpl implements ISysMenuService
         return getChildPerms(menus, 0);
     }
 
+    /**
+     * 根据用户ID查询前端路由
+     * 
+     * @param userId 用户ID
+     * @return 路由列表
+     */
+    @Override
+    public List<RouterVo> selectRoutersByUserId(Long userId)
+    {
+        boolean admin = SecurityUtils.isAdmin(userId);
+        List<Long> roleIds = admin ? Collections.emptyList() : roleMapper.selectNormalRoleIdsByUserId(userId);
+        if (!admin && roleIds.isEmpty())
+        {
+            return new ArrayList<RouterVo>();
+        }
+        String cacheKey = admin ? ADMIN_ROUTER_KEY : StringUtils.join(roleIds, ",");
+        List<RouterVo> routers = routerCache.get(cacheKey);
+        if (routers == null)
+        {
+            List<SysMenu> menus = admin ? menuMapper.selectMenuTreeAll() : menuMapper.selectMenuTreeByRoleIds(roleIds);
+            routers = Collections.unmodifiableList(buildMenus(getChildPerms(menus, 0)));
+            routerCache.put(cacheKey, routers);
+        }
+        return routers;
+    }
+
     /**
      * 根据角色ID查询菜单树信息
      * 
@@ -223,14 +310,15 @@ public class SysMenuServiceImpl implements ISysMenuService
     public List<SysMenu> buildMenuTree(List<SysMenu> menus)
     {
         List<SysMenu> returnList = new ArrayList<SysMenu>();
-        List<Long> tempList = menus.stream().map(SysMenu::getMenuId).collect(Collectors.toList());
+        Set<Long> tempList = menus.stream().map(SysMenu::getMenuId).collect(Collectors.toSet());
+        Map<Long, List<SysMenu>> childrenMap = groupByParentId(menus);
         for (Iterator<SysMenu> iterator = menus.iterator(); iterator.hasNext();)
         {
             SysMenu menu = (SysMenu) iterator.next();
             // 如果是顶级节点, 遍历该父节点的所有子节点
             if (!tempList.contains(menu.getParentId()))
             {
-                recursionFn(menus, menu);
+                recursionFn(childrenMap, menu);
                 returnList.add(menu);
             }
         }
@@ -301,7 +389,9 @@ public class SysMenuServiceImpl implements ISysMenuService
     @Override
     public int insertMenu(SysMenu menu)
     {
-        return menuMapper.insertMenu(menu);
+        int rows = menuMapper.insertMenu(menu);
+        clearMenuCache();
+        return rows;
     }
 
     /**
@@ -313,7 +403,9 @@ public class SysMenuServiceImpl implements ISysMenuService
     @Override
     public int updateMenu(SysMenu menu)
     {
-        return menuMapper.updateMenu(menu);
+        int rows = menuMapper.updateMenu(menu);
+        clearMenuCache();
+        return rows;
     }
 
     /**
@@ -325,7 +417,49 @@ public class SysMenuServiceImpl implements ISysMenuService
     @Override
     public int deleteMenuById(Long menuId)
     {
-        return menuMapper.deleteMenuById(menuId);
+        int rows = menuMapper.deleteMenuById(menuId);
+        clearMenuCache();
+        return rows;
+    }
+
+    /**
+     * 清空菜单路由和权限缓存并通知其他节点，在事务中时等提交后执行
+     */
+    @Override
+    public void clearMenuCache()
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    publishMenuEvict();
+                }
+            });
+            return;
+        }
+        publishMenuEvict();
+    }
+
+    private void publishMenuEvict()
+    {
+        clearLocalCache();
+        try
+        {
+            stringRedisTemplate.convertAndSend(EVICT_CHANNEL, "*");
+        }
+        catch (Exception e)
+        {
+            log.warn("发布菜单缓存失效通知失败'{}'", e.getMessage());
+        }
+    }
+
+    private void clearLocalCache()
+    {
+        routerCache.clear();
+        rolePermsCache.clear();
     }
 
     /**
@@ -470,14 +604,14 @@ public class SysMenuServiceImpl implements ISysMenuService
      */
     public List<SysMenu> getChildPerms(List<SysMenu> list, int parentId)
     {
+        Map<Long, List<SysMenu>> childrenMap = groupByParentId(list);
         List<SysMenu> returnList = new ArrayList<SysMenu>();
-        for (Iterator<SysMenu> iterator = list.iterator(); iterator.hasNext();)
+        for (SysMenu t : list)
         {
-            SysMenu t = (SysMenu) iterator.next();
             // 一、根据传入的某个父节点ID,遍历该父节点的所有子节点
             if (t.getParentId() == parentId)
             {
-                recursionFn(list, t);
+                recursionFn(childrenMap, t);
                 returnList.add(t);
             }
         }
@@ -485,49 +619,33 @@ public class SysMenuServiceImpl implements ISysMenuService
     }
 
     /**
-     * 递归列表
-     * 
-     * @param list 分类表
-     * @param t 子节点
+     * 按父节点ID分组，保持列表中的原有顺序
      */
-    private void recursionFn(List<SysMenu> list, SysMenu t)
+    private Map<Long, List<SysMenu>> groupByParentId(List<SysMenu> list)
     {
-        // 得到子节点列表
-        List<SysMenu> childList = getChildList(list, t);
-        t.setChildren(childList);
-        for (SysMenu tChild : childList)
+        Map<Long, List<SysMenu>> childrenMap = new HashMap<Long, List<SysMenu>>(list.size() * 2);
+        for (SysMenu menu : list)
         {
-            if (hasChild(list, tChild))
-            {
-                recursionFn(list, tChild);
-            }
+            childrenMap.computeIfAbsent(menu.getParentId(), k -> new ArrayList<SysMenu>()).add(menu);
         }
+        return childrenMap;
     }
 
     /**
-     * 得到子节点列表
+     * 递归列表
+     * 
+     * @param childrenMap 父节点ID -> 子节点列表
+     * @param t 子节点
      */
-    private List<SysMenu> getChildList(List<SysMenu> list, SysMenu t)
+    private void recursionFn(Map<Long, List<SysMenu>> childrenMap, SysMenu t)
     {
-        List<SysMenu> tlist = new ArrayList<SysMenu>();
-        Iterator<SysMenu> it = list.iterator();
-        while (it.hasNext())
+        // 得到子节点列表
+        List<SysMenu> childList = childrenMap.getOrDefault(t.getMenuId(), new ArrayList<SysMenu>());
+        t.setChildren(childList);
+        for (SysMenu tChild : childList)
         {
-            SysMenu n = (SysMenu) it.next();
-            if (n.getParentId().longValue() == t.getMenuId().longValue())
-            {
-                tlist.add(n);
-            }
+            recursionFn(childrenMap, tChild);
         }
-        return tlist;
-    }
-
-    /**
-     * 判断是否有子节点
-     */
-    private boolean hasChild(List<SysMenu> list, SysMenu t)
-    {
-        return getChildList(list, t).size() > 0;
     }
 
     /**
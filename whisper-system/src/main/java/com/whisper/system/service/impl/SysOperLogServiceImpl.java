@@ -29,6 +29,17 @@ public class SysOperLogServiceImpl implements ISysOperLogService
         operLogMapper.insertOperlog(operLog);
     }
 
+    /**
+     * 批量新增操作日志
+     * 
+     * @param operLogs 操作日志列表
+     */
+    @Override
+    public void insertOperlogBatch(List<SysOperLog> operLogs)
+    {
+        operLogMapper.insertOperlogBatch(operLogs);
+    }
+
     /**
      * 查询系统操作日志集合
      * 
@@ -5,10 +5,16 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import com.whisper.common.annotation.DataScope;
+import com.whisper.common.constant.CacheConstants;
 import com.whisper.common.constant.UserConstants;
 import com.whisper.common.core.domain.entity.SysRole;
 import com.whisper.common.core.domain.entity.SysUser;
@@ -23,6 +29,7 @@ import com.whisper.system.mapper.SysRoleDeptMapper;
 import com.whisper.system.mapper.SysRoleMapper;
 import com.whisper.system.mapper.SysRoleMenuMapper;
 import com.whisper.system.mapper.SysUserRoleMapper;
+import com.whisper.system.service.ISysMenuService;
 import com.whisper.system.service.ISysRoleService;
 
 /**
@@ -33,6 +40,8 @@ import com.whisper.system.service.ISysRoleService;
 @Service
 public class SysRoleServiceImpl implements ISysRoleService
 {
+    private static final Logger log = LoggerFactory.getLogger(SysRoleServiceImpl.class);
+
     @Autowired
     private SysRoleMapper roleMapper;
 
@@ -45,6 +54,12 @@ public class SysRoleServiceImpl implements ISysRoleService
     @Autowired
     private SysRoleDeptMapper roleDeptMapper;
 
+    @Autowired
+    private ISysMenuService menuService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
     /**
      * 根据条件分页查询角色数据
      * 
@@ -236,6 +251,7 @@ public class SysRoleServiceImpl implements ISysRoleService
     {
         // 新增角色信息
         roleMapper.insertRole(role);
+        menuService.clearMenuCache();
         return insertRoleMenu(role);
     }
 
@@ -253,6 +269,8 @@ public class SysRoleServiceImpl implements ISysRoleService
         roleMapper.updateRole(role);
         // 删除角色与菜单关联
         roleMenuMapper.deleteRoleMenuByRoleId(role.getRoleId());
+        menuService.clearMenuCache();
+        evictDataScopeCache();
         return insertRoleMenu(role);
     }
 
@@ -265,7 +283,9 @@ public class SysRoleServiceImpl implements ISysRoleService
     @Override
     public int updateRoleStatus(SysRole role)
     {
-        return roleMapper.updateRole(role);
+        int rows = roleMapper.updateRole(role);
+        evictDataScopeCache();
+        return rows;
     }
 
     /**
@@ -282,6 +302,7 @@ public class SysRoleServiceImpl implements ISysRoleService
         roleMapper.updateRole(role);
         // 删除角色与部门关联
         roleDeptMapper.deleteRoleDeptByRoleId(role.getRoleId());
+        evictDataScopeCache();
         // 新增角色和部门信息（数据权限）
         return insertRoleDept(role);
     }
@@ -348,6 +369,8 @@ public class SysRoleServiceImpl implements ISysRoleService
         roleMenuMapper.deleteRoleMenuByRoleId(roleId);
         // 删除角色与部门关联
         roleDeptMapper.deleteRoleDeptByRoleId(roleId);
+        menuService.clearMenuCache();
+        evictDataScopeCache();
         return roleMapper.deleteRoleById(roleId);
     }
 
@@ -375,9 +398,43 @@ public class SysRoleServiceImpl implements ISysRoleService
         roleMenuMapper.deleteRoleMenu(roleIds);
         // 删除角色与部门关联
         roleDeptMapper.deleteRoleDept(roleIds);
+        menuService.clearMenuCache();
+        evictDataScopeCache();
         return roleMapper.deleteRoleByIds(roleIds);
     }
 
+    /**
+     * 通知各节点清除数据权限SQL缓存，在事务中时等提交后发布
+     */
+    private void evictDataScopeCache()
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    publishDataScopeEvict();
+                }
+            });
+            return;
+        }
+        publishDataScopeEvict();
+    }
+
+    private void publishDataScopeEvict()
+    {
+        try
+        {
+            stringRedisTemplate.convertAndSend(CacheConstants.DATA_SCOPE_EVICT_CHANNEL, "*");
+        }
+        catch (Exception e)
+        {
+            log.warn("发布数据权限失效通知失败'{}'", e.getMessage());
+        }
+    }
+
     /**
      * 取消授权用户角色
      * 
@@ -2,6 +2,8 @@ package com.whisper.system.service.impl;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import javax.validation.Validator;
 import org.slf4j.Logger;
@@ -489,61 +491,77 @@ public class SysUserServiceImpl implements ISysUserService
         {
             throw new ServiceException("导入用户数据不能为空！");
         }
-        int successNum = 0;
-        int failureNum = 0;
+        return importUser(consumer -> consumer.accept(userList), isUpdateSupport, operName);
+    }
+
+    /**
+     * 分批导入用户数据
+     * 
+     * @param batches 数据来源，参数为逐批接收数据的回调
+     * @param isUpdateSupport 是否更新支持，如果已存在，则进行更新数据
+     * @param operName 操作用户
+     * @return 结果
+     */
+    @Override
+    public String importUser(Consumer<Consumer<List<SysUser>>> batches, Boolean isUpdateSupport, String operName)
+    {
+        AtomicInteger successNum = new AtomicInteger();
+        AtomicInteger failureNum = new AtomicInteger();
         StringBuilder successMsg = new StringBuilder();
         StringBuilder failureMsg = new StringBuilder();
-        for (SysUser user : userList)
-        {
-            try
+        batches.accept(userList -> {
+            for (SysUser user : userList)
             {
-                // 验证是否存在这个用户
-                SysUser u = userMapper.selectUserByUserName(user.getUserName());
-                if (StringUtils.isNull(u))
-                {
-                    BeanValidators.validateWithException(validator, user);
-                    deptService.checkDeptDataScope(user.getDeptId());
-                    String password = configService.selectConfigByKey("sys.user.initPassword");
-                    user.setPassword(SecurityUtils.encryptPassword(password));
-                    user.setCreateBy(operName);
-                    userMapper.insertUser(user);
-                    successNum++;
-                    successMsg.append("<br/>" + successNum + "、账号 " + user.getUserName() + " 导入成功");
-                }
-                else if (isUpdateSupport)
+                try
                 {
-                    BeanValidators.validateWithException(validator, user);
-                    checkUserAllowed(u);
-                    checkUserDataScope(u.getUserId());
-                    deptService.checkDeptDataScope(user.getDeptId());
-                    user.setUserId(u.getUserId());
-                    user.setUpdateBy(operName);
-                    userMapper.updateUser(user);
-                    successNum++;
-                    successMsg.append("<br/>" + successNum + "、账号 " + user.getUserName() + " 更新成功");
+                    // 验证是否存在这个用户
+                    SysUser u = userMapper.selectUserByUserName(user.getUserName());
+                    if (StringUtils.isNull(u))
+                    {
+                        BeanValidators.validateWithException(validator, user);
+                        deptService.checkDeptDataScope(user.getDeptId());
+                        String password = configService.selectConfigByKey("sys.user.initPassword");
+                        user.setPassword(SecurityUtils.encryptPassword(password));
+                        user.setCreateBy(operName);
+                        userMapper.insertUser(user);
+                        successMsg.append("<br/>" + successNum.incrementAndGet() + "、账号 " + user.getUserName() + " 导入成功");
+                    }
+                    else if (isUpdateSupport)
+                    {
+                        BeanValidators.validateWithException(validator, user);
+                        checkUserAllowed(u);
+                        checkUserDataScope(u.getUserId());
+                        deptService.checkDeptDataScope(user.getDeptId());
+                        user.setUserId(u.getUserId());
+                        user.setUpdateBy(operName);
+                        userMapper.updateUser(user);
+                        successMsg.append("<br/>" + successNum.incrementAndGet() + "、账号 " + user.getUserName() + " 更新成功");
+                    }
+                    else
+                    {
+                        failureMsg.append("<br/>" + failureNum.incrementAndGet() + "、账号 " + user.getUserName() + " 已存在");
+                    }
                 }
-                else
+                catch (Exception e)
                 {
-                    failureNum++;
-                    failureMsg.append("<br/>" + failureNum + "、账号 " + user.getUserName() + " 已存在");
+                    String msg = "<br/>" + failureNum.incrementAndGet() + "、账号 " + user.getUserName() + " 导入失败：";
+                    failureMsg.append(msg + e.getMessage());
+                    log.error(msg, e);
                 }
             }
-            catch (Exception e)
-            {
-                failureNum++;
-                String msg = "<br/>" + failureNum + "、账号 " + user.getUserName() + " 导入失败：";
-                failureMsg.append(msg + e.getMessage());
-                log.error(msg, e);
-            }
+        });
+        if (successNum.get() + failureNum.get() == 0)
+        {
+            throw new ServiceException("导入用户数据不能为空！");
         }
-        if (failureNum > 0)
+        if (failureNum.get() > 0)
         {
-            failureMsg.insert(0, "很抱歉，导入失败！共 " + failureNum + " 条数据格式不正确，错误如下：");
+            failureMsg.insert(0, "很抱歉，导入失败！共 " + failureNum.get() + " 条数据格式不正确，错误如下：");
             throw new ServiceException(failureMsg.toString());
         }
         else
         {
-            successMsg.insert(0, "恭喜您，数据已全部导入成功！共 " + successNum + " 条，数据如下：");
+            successMsg.insert(0, "恭喜您，数据已全部导入成功！共 " + successNum.get() + " 条，数据如下：");
         }
         return successMsg.toString();
     }
@@ -138,8 +138,12 @@ export function download(url, params, filename, config) {
     } else {
       const resText = await data.text()
       const rspObj = JSON.parse(resText)
-      const errMsg = errorCode[rspObj.code] || rspObj.msg || errorCode['default']
-      ElMessage.error(errMsg)
+      if (rspObj.code === 200 && rspObj.data && rspObj.data.jobId) {
+        await downloadExportJob(rspObj.data.jobId, filename)
+      } else {
+        const errMsg = errorCode[rspObj.code] || rspObj.msg || errorCode['default']
+        ElMessage.error(errMsg)
+      }
     }
     downloadLoadingInstance.close()
   }).catch((r) => {
@@ -149,4 +153,27 @@ export function download(url, params, filename, config) {
   })
 }
 
+// 后台导出任务：轮询进度，完成后下载生成的文件
+async function downloadExportJob(jobId, filename) {
+  while (true) {
+    await new Promise(resolve => setTimeout(resolve, 1000))
+    const { data: job } = await service.get('/common/export/' + jobId)
+    if (job.status === 'success') {
+      downloadLoadingInstance.setText('正在下载数据，请稍候')
+      const blob = await service.get('/common/download', { params: { fileName: job.fileName }, responseType: 'blob', timeout: 0 })
+      if (blobValidate(blob)) {
+        saveAs(new Blob([blob]), filename)
+      } else {
+        ElMessage.error('下载文件出现错误，请联系管理员！')
+      }
+      return
+    }
+    if (job.status === 'failed') {
+      ElMessage.error(job.message || errorCode['default'])
+      return
+    }
+    downloadLoadingInstance.setText('正在导出数据，已导出' + (job.rows || 0) + '条，请稍候')
+  }
+}
+
 export default service